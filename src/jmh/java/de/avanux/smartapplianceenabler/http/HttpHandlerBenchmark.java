@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.http;
+
+import de.avanux.smartapplianceenabler.meter.MeterValueName;
+import de.avanux.smartapplianceenabler.protocol.JsonContentProtocolHandler;
+import de.avanux.smartapplianceenabler.util.ParentWithChild;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Value extraction from a Tasmota status response using a JSON path and a regular expression.
+ * The response is returned by the executor without network access.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HttpHandlerBenchmark {
+    private static final String RESPONSE = "{\"StatusSNS\":{\"Time\":\"2020-06-21T13:00:00\",\"ENERGY\":"
+            + "{\"TotalStartTime\":\"2019-12-21T17:28:34\",\"Total\":123.456,\"Yesterday\":1.234,\"Today\":0.567,"
+            + "\"Power\":1843,\"ApparentPower\":1870,\"ReactivePower\":312,\"Factor\":0.99,\"Voltage\":231,"
+            + "\"Current\":8.012}}}";
+    private HttpHandler httpHandler;
+    private JsonContentProtocolHandler contentProtocolHandler;
+    private ParentWithChild<HttpRead, HttpReadValue> jsonRead;
+    private ParentWithChild<HttpRead, HttpReadValue> regexRead;
+
+    @Setup
+    public void setup() {
+        HttpTransactionExecutor executor = new HttpTransactionExecutor() {
+            @Override
+            public String execute(HttpMethod httpMethod, String url, String data) {
+                return RESPONSE;
+            }
+        };
+        executor.setStreaming(false);
+        httpHandler = new HttpHandler();
+        httpHandler.setHttpTransactionExecutor(executor);
+        contentProtocolHandler = new JsonContentProtocolHandler();
+        HttpRead read = new HttpRead("http://tasmota/cm?cmnd=Status%208");
+        jsonRead = new ParentWithChild<>(read, new HttpReadValue(MeterValueName.Power.name(),
+                "$.StatusSNS.ENERGY.Power", null));
+        regexRead = new ParentWithChild<>(read, new HttpReadValue(MeterValueName.Power.name(), null,
+                ".*\"Power\":(\\d+).*"));
+    }
+
+    @Benchmark
+    public Double getDoubleValue_Json() {
+        return httpHandler.getDoubleValue(jsonRead, contentProtocolHandler);
+    }
+
+    @Benchmark
+    public Double getDoubleValue_Regex() {
+        return httpHandler.getDoubleValue(regexRead, null);
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.loadmanagement;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recomputing the allocation of many EV chargers on a meter update with a fluctuating base load.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class LoadAllocatorBenchmark {
+    @Param({"10", "20", "50", "100"})
+    private int chargers;
+    private LoadAllocator allocator;
+    private double[] budget;
+    private int iteration;
+
+    @Setup
+    public void setup() {
+        allocator = new LoadAllocator();
+        for(int i=0; i<chargers; i++) {
+            LoadAllocator.Consumer consumer = new LoadAllocator.Consumer("F-" + i, i % 3,
+                    LoadAllocator.phaseMask(i % 4 == 0 ? 1 : 3, i % 3 + 1), 6);
+            consumer.setDemand(16);
+            allocator.addConsumer(consumer);
+        }
+        budget = new double[LoadAllocator.PHASES];
+    }
+
+    @Benchmark
+    public int allocate() {
+        double available = 35.0 * chargers / 4.0 - (iteration++ % 17) * chargers / 10.0;
+        budget[0] = available;
+        budget[1] = available - 3;
+        budget[2] = available + 2;
+        return allocator.allocate(budget);
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Power calculation from dense impulses: each invocation adds an impulse and calculates the average power
+ * over the impulses of the averaging interval.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PulsePowerMeterBenchmark {
+    @Param({"2000", "10000"})
+    private int power;
+    @Param({"1000"})
+    private int impulsesPerKwh;
+    private PulsePowerMeter pulsePowerMeter;
+    private long impulseIntervalMillis;
+    private long timestampMillis;
+
+    @Setup
+    public void setup() {
+        pulsePowerMeter = new PulsePowerMeter();
+        pulsePowerMeter.setImpulsesPerKwh(impulsesPerKwh);
+        impulseIntervalMillis = 3600L * 1000L * 1000L / ((long) power * impulsesPerKwh);
+        // fill the averaging interval
+        for(int i=0; i<Meter.averagingInterval * 1000 / impulseIntervalMillis; i++) {
+            addImpulse();
+        }
+    }
+
+    private void addImpulse() {
+        timestampMillis += impulseIntervalMillis;
+        pulsePowerMeter.addTimestamp(timestampMillis);
+    }
+
+    @Benchmark
+    public int getAveragePower() {
+        addImpulse();
+        return pulsePowerMeter.getAveragePower(timestampMillis);
+    }
+}
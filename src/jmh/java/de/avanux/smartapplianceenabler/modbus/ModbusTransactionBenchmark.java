@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus;
+
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+import de.avanux.smartapplianceenabler.meter.MeterValueName;
+import de.avanux.smartapplianceenabler.meter.ModbusElectricityMeter;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusExecutorFactory;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusReadTransactionExecutor;
+import de.avanux.smartapplianceenabler.modbus.simulator.ModbusTcpSimulator;
+import de.avanux.smartapplianceenabler.modbus.simulator.SimulatedModbusSlave;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of reading the power of a Modbus meter served by the {@link ModbusTcpSimulator} on localhost.
+ * <ul>
+ *     <li>perCall: executor created and connection opened and closed for every read as before</li>
+ *     <li>perCallExecutor: executor created for every read, but connection kept open</li>
+ *     <li>meter: executor reused and connection kept open by {@link ModbusElectricityMeter}</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ModbusTransactionBenchmark {
+    private static final int SLAVE_ADDRESS = 1;
+    private ModbusTcpSimulator simulator;
+    private ModbusTcp modbusTcp;
+    private ModbusRead read;
+    private ModbusElectricityMeter meter;
+    private TCPMasterConnection connection;
+
+    @Setup
+    public void setup() throws Exception {
+        read = new ModbusRead();
+        read.setAddress("0x0C");
+        read.setType(ReadRegisterType.Input.name());
+        read.setValueType(RegisterValueType.Float.name());
+        read.setWords(2);
+        read.setReadValues(Collections.singletonList(new ModbusReadValue(MeterValueName.Power.name(), null)));
+
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave.setValue(MeterValueName.Power.name(), 1843.0);
+        simulator = new ModbusTcpSimulator();
+        modbusTcp = new ModbusTcp();
+        modbusTcp.setId("simulator");
+        modbusTcp.setPort(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        meter = new ModbusElectricityMeter();
+        meter.setApplianceId("F-00000001-000000000001-00");
+        meter.setModbusReads(Collections.singletonList(read));
+        meter.setSlaveAddress(SLAVE_ADDRESS);
+        meter.setModbusTcp(modbusTcp);
+        meter.init();
+
+        connection = modbusTcp.getConnection();
+        connection.connect();
+    }
+
+    @TearDown
+    public void tearDown() {
+        connection.close();
+        meter.stop(null);
+        simulator.stop();
+    }
+
+    @Benchmark
+    public Object perCall() throws Exception {
+        TCPMasterConnection connection = modbusTcp.getConnection();
+        connection.connect();
+        try {
+            return execute(connection);
+        }
+        finally {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public Object perCallExecutor() throws Exception {
+        return execute(connection);
+    }
+
+    @Benchmark
+    public Double meter() {
+        return meter.pollPower();
+    }
+
+    private Object execute(TCPMasterConnection connection) throws Exception {
+        ModbusReadTransactionExecutor executor = ModbusExecutorFactory.getReadExecutor(null, read.getAddress(),
+                read.getType(), read.getValueType(), read.getWords(), read.getByteOrder(), read.getFactorToValue());
+        executor.execute(connection, SLAVE_ADDRESS);
+        return executor.getValueTransformer().getValue();
+    }
+}
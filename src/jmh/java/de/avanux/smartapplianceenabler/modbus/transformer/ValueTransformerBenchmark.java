@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus.transformer;
+
+import de.avanux.smartapplianceenabler.modbus.ByteOrder;
+import de.avanux.smartapplianceenabler.modbus.RegisterValueType;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of register values as read from the Modbus for the supported value types.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ValueTransformerBenchmark {
+    // 1843.5 as float and double
+    private final Integer[] floatRegisters = { 0x44e6, 0x7000 };
+    private final Integer[] float64Registers = { 0x409c, 0xce00, 0x0000, 0x0000 };
+    private final Integer[] integerRegisters = { 1843 };
+    private final Integer[] integer32Registers = { 0x0001, 0x2345 };
+    // 184.3 with factor 0.1 in little endian order
+    private final Integer[] integer2FloatRegisters = { 1843, 0 };
+    private FloatValueTransformer floatValueTransformer;
+    private FloatValueTransformer float64ValueTransformer;
+    private IntegerValueTransformer integerValueTransformer;
+    private IntegerValueTransformer integer32ValueTransformer;
+    private Integer2FloatValueTransformer integer2FloatValueTransformer;
+
+    @Setup
+    public void setup() {
+        floatValueTransformer = new FloatValueTransformer(null, RegisterValueType.Float);
+        float64ValueTransformer = new FloatValueTransformer(null, RegisterValueType.Float64);
+        integerValueTransformer = new IntegerValueTransformer(RegisterValueType.Integer);
+        integer32ValueTransformer = new IntegerValueTransformer(RegisterValueType.Integer32);
+        integer2FloatValueTransformer = new Integer2FloatValueTransformer(ByteOrder.LittleEndian, 0.1);
+    }
+
+    @Benchmark
+    public Double decodeFloat() {
+        floatValueTransformer.setByteValues(floatRegisters);
+        return floatValueTransformer.getValue();
+    }
+
+    @Benchmark
+    public Double decodeFloat64() {
+        float64ValueTransformer.setByteValues(float64Registers);
+        return float64ValueTransformer.getValue();
+    }
+
+    @Benchmark
+    public Integer decodeInteger() {
+        integerValueTransformer.setByteValues(integerRegisters);
+        return integerValueTransformer.getValue();
+    }
+
+    @Benchmark
+    public Integer decodeInteger32() {
+        integer32ValueTransformer.setByteValues(integer32Registers);
+        return integer32ValueTransformer.getValue();
+    }
+
+    @Benchmark
+    public Double decodeInteger2Float() {
+        integer2FloatValueTransformer.setByteValues(integer2FloatRegisters);
+        return integer2FloatValueTransformer.getValue();
+    }
+}
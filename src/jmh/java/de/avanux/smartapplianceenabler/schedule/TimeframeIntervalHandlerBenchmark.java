@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.schedule;
+
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import de.avanux.smartapplianceenabler.control.MockSwitch;
+import de.avanux.smartapplianceenabler.simulation.SimulatedMeter;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue maintenance of an appliance with weekday, weekend and consecutive days schedules
+ * advancing in steps of the update interval.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TimeframeIntervalHandlerBenchmark {
+    private TimeframeIntervalHandler timeframeIntervalHandler;
+    private LocalDateTime now;
+    private LocalDateTime nextFillQueue;
+
+    @Setup
+    public void setup() {
+        List<Schedule> schedules = new ArrayList<>();
+        schedules.add(new Schedule(true, 1800, 3600, new TimeOfDay(8, 0, 0), new TimeOfDay(12, 0, 0),
+                Arrays.asList(1, 2, 3, 4, 5)));
+        schedules.add(new Schedule(true, 3600, 7200, new TimeOfDay(10, 0, 0), new TimeOfDay(16, 0, 0),
+                Arrays.asList(6, 7)));
+        schedules.add(Schedule.withEnergyRequest(1000, 5000, new TimeOfDay(18, 0, 0), new TimeOfDay(22, 0, 0)));
+        schedules.add(new Schedule(true, new ConsecutiveDaysTimeframe(new TimeOfDayOfWeek(5, 15, 0, 0),
+                new TimeOfDayOfWeek(1, 8, 0, 0)), new RuntimeRequest(null, 14400)));
+        Appliance appliance = new Appliance();
+        appliance.setId("F-00000001-000000000001-00");
+        appliance.setControl(new MockSwitch());
+        appliance.setMeter(new SimulatedMeter(2000));
+        appliance.setSchedules(schedules);
+        appliance.init(null, new HashMap<>(), new HashMap<>(), null);
+        timeframeIntervalHandler = appliance.getTimeframeIntervalHandler();
+        now = LocalDateTime.of(2020, 6, 22, 0, 0);
+        timeframeIntervalHandler.fillQueue(now);
+        nextFillQueue = now.plusSeconds(TimeframeIntervalHandler.FILL_QUEUE_INTERVAL_SECONDS);
+    }
+
+    @Benchmark
+    public int updateQueue() {
+        now = now.plusSeconds(TimeframeIntervalHandler.UPDATE_QUEUE_INTERVAL_SECONDS);
+        if(! now.isBefore(nextFillQueue)) {
+            timeframeIntervalHandler.fillQueue(now);
+            nextFillQueue = now.plusSeconds(TimeframeIntervalHandler.FILL_QUEUE_INTERVAL_SECONDS);
+        }
+        timeframeIntervalHandler.updateQueue(now, false);
+        return timeframeIntervalHandler.getQueue().size();
+    }
+
+    @Benchmark
+    public int fillQueue() {
+        timeframeIntervalHandler.fillQueue(now);
+        return timeframeIntervalHandler.getQueue().size();
+    }
+}
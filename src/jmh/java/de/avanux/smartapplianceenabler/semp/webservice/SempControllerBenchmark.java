@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.semp.webservice;
+
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import de.avanux.smartapplianceenabler.appliance.ApplianceManager;
+import de.avanux.smartapplianceenabler.appliance.Appliances;
+import de.avanux.smartapplianceenabler.control.MockSwitch;
+import de.avanux.smartapplianceenabler.schedule.Schedule;
+import de.avanux.smartapplianceenabler.schedule.TimeOfDay;
+import de.avanux.smartapplianceenabler.util.Clock;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation of the SEMP document polled by the energy manager, with and without marshalling to XML.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SempControllerBenchmark {
+    @Param({"1", "10", "50"})
+    private int applianceCount;
+    private SempController sempController;
+    private LocalDateTime now;
+
+    @Setup
+    public void setup() {
+        List<Appliance> appliances = new ArrayList<>();
+        Device2EM device2EM = new Device2EM();
+        device2EM.setDeviceInfo(new ArrayList<>());
+        for(int i=0; i<applianceCount; i++) {
+            Appliance appliance = new Appliance();
+            appliance.setId(String.format("F-00000001-%012d-00", i + 1));
+            appliance.setControl(new MockSwitch());
+            appliance.setSchedules(Collections.singletonList(new Schedule(1800, 3600,
+                    new TimeOfDay(0, 0, 0), new TimeOfDay(23, 59, 59))));
+            appliances.add(appliance);
+
+            Identification identification = new Identification();
+            identification.setDeviceId(appliance.getId());
+            Characteristics characteristics = new Characteristics();
+            characteristics.setMaxPowerConsumption(2000);
+            DeviceInfo deviceInfo = new DeviceInfo();
+            deviceInfo.setIdentification(identification);
+            deviceInfo.setCharacteristics(characteristics);
+            device2EM.getDeviceInfo().add(deviceInfo);
+        }
+        Appliances root = new Appliances();
+        root.setAppliances(appliances);
+        ApplianceManager applianceManager = ApplianceManager.getInstanceWithoutTimer();
+        applianceManager.setAppliances(root);
+        applianceManager.setDevice2EM(device2EM);
+        applianceManager.init();
+
+        now = Clock.now();
+        appliances.forEach(appliance -> appliance.getTimeframeIntervalHandler().fillQueue(now));
+        sempController = new SempController();
+    }
+
+    @Benchmark
+    public Device2EM createDevice2EM() {
+        return sempController.createDevice2EM(now);
+    }
+
+    @Benchmark
+    public String device2EM() {
+        return sempController.device2EM(null);
+    }
+}
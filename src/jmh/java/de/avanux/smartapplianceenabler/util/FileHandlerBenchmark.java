@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import de.avanux.smartapplianceenabler.appliance.Appliances;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unmarshalling of an Appliances.xml containing the given number of appliances with switch, meter and schedule.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileHandlerBenchmark {
+    private static final String APPLIANCE = "    <Appliance id=\"F-00000001-%012d-00\">\n"
+            + "        <HttpSwitch>\n"
+            + "            <HttpWrite url=\"http://tasmota/cm?cmnd=Power%%20On\">\n"
+            + "                <HttpWriteValue name=\"On\" method=\"GET\"/>\n"
+            + "            </HttpWrite>\n"
+            + "            <HttpWrite url=\"http://tasmota/cm?cmnd=Power%%20Off\">\n"
+            + "                <HttpWriteValue name=\"Off\" method=\"GET\"/>\n"
+            + "            </HttpWrite>\n"
+            + "        </HttpSwitch>\n"
+            + "        <HttpElectricityMeter contentProtocol=\"JSON\">\n"
+            + "            <HttpRead url=\"http://tasmota/cm?cmnd=Status%%208\">\n"
+            + "                <HttpReadValue name=\"Energy\" method=\"GET\" path=\"$.StatusSNS.ENERGY.Total\"/>\n"
+            + "            </HttpRead>\n"
+            + "        </HttpElectricityMeter>\n"
+            + "        <Schedule enabled=\"true\">\n"
+            + "            <RuntimeRequest min=\"1800\" max=\"3600\"/>\n"
+            + "            <DayTimeframe>\n"
+            + "                <Start hour=\"8\" minute=\"0\" second=\"0\"/>\n"
+            + "                <End hour=\"16\" minute=\"0\" second=\"0\"/>\n"
+            + "            </DayTimeframe>\n"
+            + "        </Schedule>\n"
+            + "    </Appliance>\n";
+    @Param({"10", "100"})
+    private int applianceCount;
+    private byte[] content;
+    private FileHandler fileHandler;
+
+    @Setup
+    public void setup() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n");
+        builder.append("<Appliances xmlns=\"http://github.com/camueller/SmartApplianceEnabler/v1.6\">\n");
+        for(int i=0; i<applianceCount; i++) {
+            builder.append(String.format(APPLIANCE, i + 1));
+        }
+        builder.append("</Appliances>\n");
+        content = builder.toString().getBytes(StandardCharsets.UTF_8);
+        fileHandler = new FileHandler();
+    }
+
+    @Benchmark
+    public Appliances load() throws Exception {
+        return fileHandler.load(Appliances.class, new ByteArrayInputStream(content), null);
+    }
+}
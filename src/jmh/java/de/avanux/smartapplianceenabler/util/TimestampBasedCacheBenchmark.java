@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Adding a value per second to a cache keeping the values of the last minute and reading the values not expired.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampBasedCacheBenchmark {
+    private TimestampBasedCache<Double> cache;
+    private LocalDateTime timestamp;
+
+    @Setup
+    public void setup() {
+        cache = new TimestampBasedCache<>("Benchmark");
+        cache.setMaxAgeSeconds(60);
+        cache.setKeepLastExpired(1);
+        timestamp = LocalDateTime.of(2020, 6, 21, 12, 0);
+        for(int i=0; i<60; i++) {
+            addValue();
+        }
+    }
+
+    private void addValue() {
+        timestamp = timestamp.plusSeconds(1);
+        cache.addValue(timestamp, 1843.0);
+    }
+
+    @Benchmark
+    public Map<LocalDateTime, Double> addValue_getNotExpired() {
+        addValue();
+        return cache.getNotExpiredTimestampWithValue(timestamp);
+    }
+}
@@ -154,7 +154,8 @@ export class ControlComponent implements OnInit, CanDeactivate<ControlComponent>
   get notficationTypes() {
     if (this.isAlwaysOnSwitch) {
       return [
-        NotificationType.COMMUNICATION_ERROR
+        NotificationType.COMMUNICATION_ERROR,
+        NotificationType.DEVICE_UNREACHABLE
       ];
     }
     if (this.isEvCharger) {
@@ -164,13 +165,15 @@ export class ControlComponent implements OnInit, CanDeactivate<ControlComponent>
         NotificationType.EVCHARGER_CHARGING,
         NotificationType.EVCHARGER_CHARGING_COMPLETED,
         NotificationType.EVCHARGER_ERROR,
-        NotificationType.COMMUNICATION_ERROR
+        NotificationType.COMMUNICATION_ERROR,
+        NotificationType.DEVICE_UNREACHABLE
       ];
     }
     return [
         NotificationType.CONTROL_ON,
         NotificationType.CONTROL_OFF,
-        NotificationType.COMMUNICATION_ERROR
+        NotificationType.COMMUNICATION_ERROR,
+        NotificationType.DEVICE_UNREACHABLE
       ];
   }
 
@@ -7,6 +7,7 @@ export class HttpRead {
 
   '@class' = HttpRead.TYPE;
   url: string;
+  maxBodySize?: number;
   readValues: HttpReadValue[];
 
   public constructor(init?: Partial<HttpRead>) {
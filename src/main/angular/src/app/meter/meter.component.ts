@@ -121,7 +121,7 @@ export class MeterComponent implements OnInit, CanDeactivate<MeterComponent> {
   }
 
   get notficationTypes() {
-    return [NotificationType.COMMUNICATION_ERROR];
+    return [NotificationType.COMMUNICATION_ERROR, NotificationType.DEVICE_UNREACHABLE];
   }
 
   get isNotifcationEnabled() {
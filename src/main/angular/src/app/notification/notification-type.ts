@@ -25,4 +25,5 @@ export enum NotificationType {
   EVCHARGER_CHARGING_COMPLETED = 'EVCHARGER_CHARGING_COMPLETED',
   EVCHARGER_ERROR = 'EVCHARGER_ERROR',
   COMMUNICATION_ERROR = 'COMMUNICATION_ERROR',
+  DEVICE_UNREACHABLE = 'DEVICE_UNREACHABLE',
 }
@@ -20,6 +20,9 @@ export class ModbusSetting {
   modbusTcpId: string;
   modbusTcpHost: string;
   modbusTcpPort: number;
+  modbusTcpMaxPendingRequests: number;
+  modbusTcpMaxRequestsPerSecond: number;
+  modbusTcpInterFrameGapMillis: number;
 
   public constructor(init?: Partial<ModbusSetting>) {
     Object.assign(this, init);
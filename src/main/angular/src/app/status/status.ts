@@ -23,6 +23,11 @@ export class Status {
   soc: number;
   socInitial: number;
   socInitialTimestamp: number;
+  deviceReachable: boolean;
+  deviceUnreachableSinceTimestamp: number;
+  mailboxDepth: number;
+  mailboxAverageLatency: number;
+  mailboxMaxLatency: number;
 
 
   public constructor(init?: Partial<Status>) {
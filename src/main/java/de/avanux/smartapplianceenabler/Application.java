@@ -20,6 +20,7 @@ package de.avanux.smartapplianceenabler;
 
 import de.avanux.smartapplianceenabler.appliance.ApplianceManager;
 import de.avanux.smartapplianceenabler.semp.discovery.SempDiscovery;
+import de.avanux.smartapplianceenabler.semp.discovery.SsdpResponder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.SpringApplication;
@@ -99,7 +100,9 @@ public class Application {
         }
         else {
             logger.debug("Starting SEMP discovery ...");
-            Thread discoveryThread = new Thread(new SempDiscovery());
+            String discoveryType = System.getProperty("sae.discovery.type", "cling");
+            Runnable discovery = "ssdp".equals(discoveryType) ? new SsdpResponder() : new SempDiscovery();
+            Thread discoveryThread = new Thread(discovery);
             discoveryThread.start();
             logger.debug("... SEMP discovery started");
         }
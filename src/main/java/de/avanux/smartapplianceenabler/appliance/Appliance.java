@@ -22,16 +22,28 @@ import de.avanux.smartapplianceenabler.configuration.ConfigurationException;
 import de.avanux.smartapplianceenabler.control.*;
 import de.avanux.smartapplianceenabler.control.ev.*;
 import de.avanux.smartapplianceenabler.meter.*;
+import de.avanux.smartapplianceenabler.loadmanagement.LoadManagement;
 import de.avanux.smartapplianceenabler.modbus.EVModbusControl;
 import de.avanux.smartapplianceenabler.modbus.ModbusElectricityMeterDefaults;
 import de.avanux.smartapplianceenabler.modbus.ModbusSlave;
 import de.avanux.smartapplianceenabler.modbus.ModbusTcp;
+import de.avanux.smartapplianceenabler.mqtt.MqttBroker;
+import de.avanux.smartapplianceenabler.mqtt.MqttBrokerConsumer;
 import de.avanux.smartapplianceenabler.notification.Notification;
 import de.avanux.smartapplianceenabler.notification.NotificationHandler;
 import de.avanux.smartapplianceenabler.notification.NotificationProvider;
+import de.avanux.smartapplianceenabler.persistence.Checkpointable;
 import de.avanux.smartapplianceenabler.schedule.*;
 import de.avanux.smartapplianceenabler.semp.webservice.DeviceInfo;
 import de.avanux.smartapplianceenabler.configuration.Validateable;
+import de.avanux.smartapplianceenabler.timeseries.TimeSeriesStore;
+import de.avanux.smartapplianceenabler.util.Clock;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import org.slf4j.Logger;
@@ -42,7 +54,8 @@ import java.util.*;
 
 @XmlRootElement
 @XmlAccessorType(XmlAccessType.FIELD)
-public class Appliance implements Validateable, ControlStateChangedListener, TimeframeIntervalChangedListener {
+public class Appliance implements Validateable, ControlStateChangedListener, TimeframeIntervalChangedListener,
+        Checkpointable {
 
     private transient Logger logger = LoggerFactory.getLogger(Appliance.class);
     @XmlAttribute
@@ -56,6 +69,7 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
             @XmlElement(name = "MeterReportingSwitch", type = MeterReportingSwitch.class),
             @XmlElement(name = "MockSwitch", type = MockSwitch.class),
             @XmlElement(name = "ModbusSwitch", type = ModbusSwitch.class),
+            @XmlElement(name = "MqttSwitch", type = MqttSwitch.class),
             @XmlElement(name = "StartingCurrentSwitch", type = StartingCurrentSwitch.class),
             @XmlElement(name = "Switch", type = Switch.class),
             @XmlElement(name = "ElectricVehicleCharger", type = ElectricVehicleCharger.class),
@@ -64,6 +78,7 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
     @XmlElements({
             @XmlElement(name = "HttpElectricityMeter", type = HttpElectricityMeter.class),
             @XmlElement(name = "ModbusElectricityMeter", type = ModbusElectricityMeter.class),
+            @XmlElement(name = "MqttElectricityMeter", type = MqttElectricityMeter.class),
             @XmlElement(name = "S0ElectricityMeter", type = S0ElectricityMeter.class),
     })
     private Meter meter;
@@ -72,6 +87,10 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
     @XmlElement(name = "Notification")
     private Notification notification;
     private transient TimeframeIntervalHandler timeframeIntervalHandler;
+    private transient ApplianceMailbox mailbox;
+    private transient LoadManagement loadManagement;
+    private transient boolean resumeControlOn;
+    private transient volatile boolean ready;
     private transient static final int CONSIDERATION_INTERVAL_DAYS = 2;
 
     public void setId(String id) {
@@ -82,6 +101,18 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
         return id;
     }
 
+    /**
+     * Returns true, if the appliance has been started successfully and can be reported to the energy manager.
+     * @return
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
     public Meter getMeter() {
         return this.meter;
     }
@@ -93,7 +124,7 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
     public void deleteMeter() {
         logger.debug("{}: Delete meter", id);
         if(meter != null) {
-            meter.stop(LocalDateTime.now());
+            meter.stop(Clock.now());
         }
         setMeter(null);
     }
@@ -120,7 +151,7 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
     public void deleteControl() {
         logger.debug("{}: Delete control", id);
         if(control != null) {
-            control.stop(LocalDateTime.now());
+            control.stop(Clock.now());
         }
         setControl(null);
     }
@@ -134,7 +165,7 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
         if(timeframeIntervalHandler != null) {
             timeframeIntervalHandler.setSchedules(schedules);
             timeframeIntervalHandler.clearQueue();
-            timeframeIntervalHandler.fillQueue(LocalDateTime.now());
+            timeframeIntervalHandler.fillQueue(Clock.now());
         }
     }
 
@@ -163,6 +194,17 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
         return timeframeIntervalHandler;
     }
 
+    /**
+     * Returns the mailbox through which all changes of the appliance state are executed.
+     * @return
+     */
+    public synchronized ApplianceMailbox getMailbox() {
+        if(mailbox == null) {
+            mailbox = new ApplianceMailbox(id);
+        }
+        return mailbox;
+    }
+
     public void setTimeframeIntervalHandler(TimeframeIntervalHandler timeframeIntervalHandler) {
         if(this.timeframeIntervalHandler == null) {
             this.timeframeIntervalHandler = timeframeIntervalHandler;
@@ -171,11 +213,13 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
         this.timeframeIntervalHandler.addTimeframeIntervalChangedListener(this);
     }
 
-    public void init(GpioController gpioController, Map<String, ModbusTcp> modbusIdWithModbusTcp, String notificationCommand) {
+    public void init(GpioController gpioController, Map<String, ModbusTcp> modbusIdWithModbusTcp,
+                     Map<String, MqttBroker> mqttIdWithMqttBroker, String notificationCommand) {
         logger.debug("{}: Initializing appliance", id);
         if(getTimeframeIntervalHandler() == null) {
             setTimeframeIntervalHandler(new TimeframeIntervalHandler(this.schedules, this.control));
         }
+        timeframeIntervalHandler.setMailbox(getMailbox());
         Meter meter = getMeter();
         if(meter != null) {
             if(meter instanceof ApplianceIdConsumer) {
@@ -203,6 +247,8 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
                 ((NotificationProvider) meter).setNotificationHandler(notificationHandler);
             }
             meter.init();
+            meter.addPowerUpdateListener(averagePower ->
+                    TimeSeriesStore.getInstance().add(id, Clock.currentTimeMillis(), averagePower));
         }
         if(control == null) {
             control = new MeterReportingSwitch();
@@ -248,6 +294,7 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
             StartingCurrentSwitch startingCurrentSwitch = (StartingCurrentSwitch) control;
             startingCurrentSwitch.setMeter(meter);
             startingCurrentSwitch.setTimeframeIntervalHandler(timeframeIntervalHandler);
+            startingCurrentSwitch.setMailbox(getMailbox());
             startingCurrentSwitch.init();
             logger.debug("{}: {} uses {}", id, control.getClass().getSimpleName(), meter.getClass().getSimpleName());
         }
@@ -270,6 +317,12 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
             ModbusTcp modbusTcp = modbusIdWithModbusTcp.get(modbusId);
             modbusSlave.setModbusTcp(modbusTcp);
         }
+
+        for(MqttBrokerConsumer mqttBrokerConsumer : getMqttBrokerConsumers()) {
+            logger.info("{}: Configuring {}", id, mqttBrokerConsumer.getClass().getSimpleName());
+            MqttBroker mqttBroker = mqttIdWithMqttBroker.get(mqttBrokerConsumer.getIdref());
+            mqttBrokerConsumer.setMqttBroker(mqttBroker);
+        }
     }
 
     @Override
@@ -285,16 +338,23 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
 
     public void start(Timer timer) {
         logger.info("{}: Starting appliance", id);
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = Clock.now();
         if(meter != null) {
             logger.info("{}: Starting {}", id, meter.getClass().getSimpleName());
             meter.start(now, timer);
         }
         if(control != null) {
             logger.info("{}: Starting {}", id, control.getClass().getSimpleName());
-            control.start(LocalDateTime.now(), timer);
-            logger.info("{}: Switch off appliance initially", id);
-            control.on(now, false);
+            control.start(Clock.now(), timer);
+            if(resumeControlOn) {
+                logger.info("{}: Switch on appliance to resume operation", id);
+                control.on(now, true);
+                resumeControlOn = false;
+            }
+            else {
+                logger.info("{}: Switch off appliance initially", id);
+                control.on(now, false);
+            }
         }
         if(timeframeIntervalHandler != null) {
             timeframeIntervalHandler.setTimer(timer);
@@ -303,7 +363,8 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
 
     public void stop() {
         logger.info("{}: Stopping appliance ...", id);
-        LocalDateTime now = LocalDateTime.now();
+        ready = false;
+        LocalDateTime now = Clock.now();
         if(control != null) {
             logger.info("{}: Stopping {}", id, control.getClass().getSimpleName());
             control.stop(now);
@@ -317,6 +378,57 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
         }
     }
 
+    /**
+     * Saves the state of control and timeframe interval handler. The state is captured within the mailbox
+     * in order to be consistent.
+     */
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        byte[] checkpoint = getMailbox().call(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try {
+                writeCheckpointWithinMailbox(now, new DataOutputStream(bytes));
+            }
+            catch(IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        });
+        out.write(checkpoint);
+    }
+
+    private void writeCheckpointWithinMailbox(LocalDateTime now, DataOutput out) throws IOException {
+        out.writeBoolean(control != null && control.isOn());
+        out.writeBoolean(control instanceof Checkpointable);
+        if(control instanceof Checkpointable) {
+            ((Checkpointable) control).writeCheckpoint(now, out);
+        }
+        out.writeBoolean(timeframeIntervalHandler != null);
+        if(timeframeIntervalHandler != null) {
+            timeframeIntervalHandler.writeCheckpoint(now, out);
+        }
+    }
+
+    /**
+     * Restores the state of control and timeframe interval handler. Has to be called after {@link #init} and
+     * before {@link #start(Timer)}.
+     */
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        boolean controlOn = in.readBoolean();
+        if(in.readBoolean()) {
+            if(!(control instanceof Checkpointable)) {
+                throw new IOException("Checkpoint does not match control " + control);
+            }
+            ((Checkpointable) control).readCheckpoint(now, in);
+        }
+        if(in.readBoolean() && timeframeIntervalHandler != null) {
+            timeframeIntervalHandler.readCheckpoint(now, in);
+        }
+        this.resumeControlOn = controlOn;
+        logger.info("{}: Restored from checkpoint: controlOn={}", id, controlOn);
+    }
+
     public void setHolidays(List<LocalDate> holidays) {
         if(schedules != null) {
             for(Schedule schedule : schedules) {
@@ -378,13 +490,27 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
         return this.control instanceof ElectricVehicleCharger;
     }
 
+    public void setLoadManagement(LoadManagement loadManagement) {
+        this.loadManagement = loadManagement;
+    }
+
     public void setApplianceState(LocalDateTime now, boolean switchOn, Integer chargePower, String logMessage) {
         if(control != null) {
             logger.debug("{}: {}", id, logMessage);
+            if(switchOn && loadManagement != null && !control.isOn()
+                    && !loadManagement.requestSwitchOn(id, Clock.currentTimeMillis())) {
+                logger.info("{}: Switching on deferred by load management", id);
+                return;
+            }
             if(switchOn && isEvCharger()) {
                 ElectricVehicleCharger evCharger = (ElectricVehicleCharger) control;
                 if(chargePower != null) {
-                    evCharger.setChargePower(chargePower);
+                    if(evCharger.isSurplusControlActive()) {
+                        logger.debug("{}: Ignoring charge power since surplus control is active", id);
+                    }
+                    else {
+                        evCharger.setChargePower(chargePower);
+                    }
                 }
                 else if(!evCharger.isOn()) {
                     evCharger.setChargePowerToMinimum();
@@ -480,6 +606,23 @@ public class Appliance implements Validateable, ControlStateChangedListener, Tim
         return slaves;
     }
 
+    private Set<MqttBrokerConsumer> getMqttBrokerConsumers() {
+        Set<MqttBrokerConsumer> consumers = new HashSet<>();
+        if(meter instanceof MqttBrokerConsumer) {
+            consumers.add((MqttBrokerConsumer) meter);
+        }
+        if(control instanceof MqttBrokerConsumer) {
+            consumers.add((MqttBrokerConsumer) control);
+        }
+        else if(control instanceof StartingCurrentSwitch) {
+            Control wrappedControl = ((StartingCurrentSwitch) control).getControl();
+            if(wrappedControl instanceof MqttBrokerConsumer) {
+                consumers.add((MqttBrokerConsumer) wrappedControl);
+            }
+        }
+        return consumers;
+    }
+
     public boolean canConsumeOptionalEnergy(LocalDateTime now) {
         if(isEvCharger()) {
             return ((ElectricVehicleCharger) this.control).isUseOptionalEnergy();
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.appliance;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * The mailbox of an appliance processes all tasks changing the state of the appliance one after another.
+ * <p>
+ * Mailboxes do not own threads: a mailbox containing tasks is drained by a thread of a shared pool,
+ * so that appliances are processed in parallel with each other while tasks of the same appliance never run
+ * concurrently. Tasks may block on device I/O (Modbus, HTTP), so the pool is elastic: it keeps a number of threads
+ * (system property <code>sae.mailbox.threads</code>, default is the number of processors but at least 2) and adds
+ * a thread whenever all of them are busy. Since a mailbox is drained by at most one thread at a time, the number of
+ * threads is limited by the number of appliances, and an appliance waiting for a slow or hung device never delays
+ * the tasks of other appliances. Tasks must not wait for tasks of other mailboxes.
+ * <p>
+ * In direct mode mailboxes are drained by the thread adding the task instead, which makes the processing
+ * deterministic (e.g. for simulations with a virtual clock).
+ */
+public class ApplianceMailbox implements Executor {
+    private static final int BATCH_SIZE = 32;
+    private static final long CALL_TIMEOUT_SECONDS = 60;
+    private static final AtomicInteger threadNumber = new AtomicInteger();
+    private static final int THREADS = Integer.getInteger("sae.mailbox.threads",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private static final ThreadPoolExecutor executorService = new ThreadPoolExecutor(THREADS, Integer.MAX_VALUE,
+            60L, TimeUnit.SECONDS, new SynchronousQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "appliance-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    private static final ThreadLocal<ApplianceMailbox> currentMailbox = new ThreadLocal<>();
+    private static volatile boolean direct;
+    private transient Logger logger = LoggerFactory.getLogger(ApplianceMailbox.class);
+    private final String applianceId;
+    private final Queue<Message> messages = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger depth = new AtomicInteger();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile int maxDepth;
+    // the following metrics are only updated by the thread draining the mailbox
+    private volatile long processedCount;
+    private volatile long totalLatencyNanos;
+    private volatile long maxLatencyNanos;
+    private volatile long totalExecutionNanos;
+    private volatile long maxExecutionNanos;
+
+    private static class Message {
+        private final Runnable task;
+        private final long enqueuedNanos;
+
+        Message(Runnable task) {
+            this.task = task;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    public ApplianceMailbox(String applianceId) {
+        this.applianceId = applianceId;
+    }
+
+    /**
+     * Add a task to the mailbox without waiting for its execution.
+     * @param task
+     */
+    @Override
+    public void execute(Runnable task) {
+        messages.add(new Message(task));
+        int currentDepth = depth.incrementAndGet();
+        if(currentDepth > maxDepth) {
+            maxDepth = currentDepth;
+        }
+        schedule();
+    }
+
+    /**
+     * Add a task to the mailbox.
+     * @param task
+     * @return a future completing with the result of the task
+     */
+    public <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        execute(() -> {
+            try {
+                future.complete(task.get());
+            }
+            catch(Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Execute a task in the mailbox and wait for its result. If called while processing a task of this mailbox,
+     * the task is executed immediately.
+     * @param task
+     * @return the result of the task
+     */
+    public <T> T call(Supplier<T> task) {
+        if(isProcessing()) {
+            return task.get();
+        }
+        try {
+            return submit(task).get(CALL_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        }
+        catch(ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if(cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(applianceId + ": Interrupted while waiting for mailbox", e);
+        }
+        catch(TimeoutException e) {
+            logger.error("{}: Timeout waiting for mailbox task: depth={}", applianceId, getDepth());
+            throw new IllegalStateException(applianceId + ": Timeout waiting for mailbox", e);
+        }
+    }
+
+    /**
+     * Execute a task in the mailbox and wait for its completion.
+     * @param task
+     */
+    public void run(Runnable task) {
+        call(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Enables or disables direct mode for all mailboxes: if enabled, tasks are executed by the thread adding them
+     * unless this thread is already processing a task of the same mailbox; in this case the task is executed
+     * after the current one.
+     * @param direct
+     */
+    public static void setDirect(boolean direct) {
+        ApplianceMailbox.direct = direct;
+    }
+
+    public static boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Returns true, if the current thread is processing a task of this mailbox.
+     * @return
+     */
+    public boolean isProcessing() {
+        return currentMailbox.get() == this;
+    }
+
+    private void schedule() {
+        if(scheduled.compareAndSet(false, true)) {
+            if(direct) {
+                drain();
+            }
+            else {
+                executorService.execute(this::drain);
+            }
+        }
+    }
+
+    private void drain() {
+        // in direct mode the thread may already be processing a task of another mailbox
+        ApplianceMailbox previousMailbox = currentMailbox.get();
+        currentMailbox.set(this);
+        try {
+            Message message;
+            int processed = 0;
+            while(processed < BATCH_SIZE && (message = messages.poll()) != null) {
+                depth.decrementAndGet();
+                long startNanos = System.nanoTime();
+                long latencyNanos = startNanos - message.enqueuedNanos;
+                try {
+                    message.task.run();
+                }
+                catch(Throwable e) {
+                    logger.error("{}: Error processing mailbox task", applianceId, e);
+                }
+                long executionNanos = System.nanoTime() - startNanos;
+                processedCount++;
+                totalLatencyNanos += latencyNanos;
+                maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+                totalExecutionNanos += executionNanos;
+                maxExecutionNanos = Math.max(maxExecutionNanos, executionNanos);
+                processed++;
+            }
+        }
+        finally {
+            if(previousMailbox != null) {
+                currentMailbox.set(previousMailbox);
+            }
+            else {
+                currentMailbox.remove();
+            }
+            scheduled.set(false);
+            // tasks added after the last poll or remaining after the batch have to be processed by a new drain
+            if(! messages.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Returns the number of threads currently draining mailboxes or waiting for mailboxes to be drained.
+     * @return
+     */
+    public static int getPoolSize() {
+        return executorService.getPoolSize();
+    }
+
+    /**
+     * Returns the largest number of threads that have ever been used to drain mailboxes.
+     * @return
+     */
+    public static int getLargestPoolSize() {
+        return executorService.getLargestPoolSize();
+    }
+
+    public String getApplianceId() {
+        return applianceId;
+    }
+
+    /**
+     * Returns the number of tasks waiting for execution.
+     * @return
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * Returns the average time tasks were waiting in the mailbox before being executed.
+     * @return
+     */
+    public long getAverageLatencyMillis() {
+        long count = processedCount;
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLatencyNanos / count) : 0L;
+    }
+
+    public long getMaxLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+    }
+
+    public long getAverageExecutionMillis() {
+        long count = processedCount;
+        return count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalExecutionNanos / count) : 0L;
+    }
+
+    public long getMaxExecutionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(maxExecutionNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "depth=" + getDepth() + " maxDepth=" + maxDepth + " processed=" + processedCount
+                + " averageLatency=" + getAverageLatencyMillis() + "ms maxLatency=" + getMaxLatencyMillis() + "ms";
+    }
+}
@@ -24,19 +24,30 @@ import de.avanux.smartapplianceenabler.configuration.Configuration;
 import de.avanux.smartapplianceenabler.configuration.ConfigurationException;
 import de.avanux.smartapplianceenabler.configuration.Connectivity;
 import de.avanux.smartapplianceenabler.control.Control;
+import de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger;
 import de.avanux.smartapplianceenabler.control.ev.EvChargerTemplatesDownloader;
+import de.avanux.smartapplianceenabler.control.ev.SurplusControl;
 import de.avanux.smartapplianceenabler.http.HttpRead;
+import de.avanux.smartapplianceenabler.loadmanagement.LoadManagement;
+import de.avanux.smartapplianceenabler.meter.GridPowerSource;
 import de.avanux.smartapplianceenabler.meter.HttpElectricityMeter;
 import de.avanux.smartapplianceenabler.meter.Meter;
 import de.avanux.smartapplianceenabler.meter.MeterValueName;
 import de.avanux.smartapplianceenabler.meter.ModbusElectricityMeter;
 import de.avanux.smartapplianceenabler.modbus.ModbusRead;
 import de.avanux.smartapplianceenabler.modbus.ModbusTcp;
+import de.avanux.smartapplianceenabler.mqtt.MqttBroker;
+import de.avanux.smartapplianceenabler.speedwire.SmaEnergyMeter;
 import de.avanux.smartapplianceenabler.notification.NotificationHandler;
 import de.avanux.smartapplianceenabler.schedule.Schedule;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
+import de.avanux.smartapplianceenabler.persistence.SegmentLog;
 import de.avanux.smartapplianceenabler.semp.webservice.Device2EM;
 import de.avanux.smartapplianceenabler.semp.webservice.DeviceInfo;
 import de.avanux.smartapplianceenabler.semp.webservice.DeviceStatus;
+import de.avanux.smartapplianceenabler.timeseries.TimeSeriesStore;
+import de.avanux.smartapplianceenabler.util.CircuitBreakerRegistry;
+import de.avanux.smartapplianceenabler.util.Clock;
 import de.avanux.smartapplianceenabler.util.FileHandler;
 import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
 import org.slf4j.Logger;
@@ -47,11 +58,24 @@ import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 
 public class ApplianceManager implements Runnable {
     public static final String SCHEMA_LOCATION = "http://github.com/camueller/SmartApplianceEnabler/v1.6";
+    public static final String CONFIGURATION_KEY_STARTUP_CONCURRENCY = "Startup.Concurrency";
+    public static final String CONFIGURATION_KEY_STARTUP_TIMEOUT = "Startup.ApplianceTimeout";
+    public static final int DEFAULT_STARTUP_CONCURRENCY = 4;
+    public static final int DEFAULT_STARTUP_TIMEOUT_SECONDS = 60;
     private Logger logger = LoggerFactory.getLogger(ApplianceManager.class);
     private static ApplianceManager instance;
     private FileHandler fileHandler = new FileHandler();
@@ -61,6 +85,16 @@ public class ApplianceManager implements Runnable {
     private GuardedTimerTask holidaysDownloaderTimerTask;
     private Integer autoclearSeconds;
     private boolean initializationCompleted;
+    private RuntimeCheckpoint runtimeCheckpoint;
+    private long configurationChecksum;
+    private Map<String, byte[]> applianceCheckpoints = new ConcurrentHashMap<>();
+    private StartupProfile startupProfile;
+    // changes collected while a batch is open
+    private boolean batchOpen;
+    private boolean batchWriteDevice2EM;
+    private boolean batchWriteAppliances;
+    private boolean batchRestartAll;
+    private Set<String> batchChangedApplianceIds = new LinkedHashSet<>();
 
     private ApplianceManager() {
     }
@@ -83,6 +117,38 @@ public class ApplianceManager implements Runnable {
         return initializationCompleted;
     }
 
+    /**
+     * Returns the checksum of the configuration files which changes whenever the configuration is saved.
+     * @return
+     */
+    public long getConfigurationChecksum() {
+        return configurationChecksum;
+    }
+
+    /**
+     * Returns the timing of the last startup of the appliances.
+     * @return
+     */
+    public StartupProfile getStartupProfile() {
+        return startupProfile;
+    }
+
+    /**
+     * Should only be used for testing
+     * @param fileHandler
+     */
+    public void setFileHandler(FileHandler fileHandler) {
+        this.fileHandler = fileHandler;
+    }
+
+    /**
+     * Should only be used for testing and simulation
+     * @param timer
+     */
+    public void setTimer(Timer timer) {
+        this.timer = timer;
+    }
+
     public static ApplianceManager getInstanceWithoutTimer() {
         if(instance == null) {
             instance = new ApplianceManager();
@@ -183,7 +249,15 @@ public class ApplianceManager implements Runnable {
             device2EM.setDeviceInfo(deviceInfos);
         }
         if(appliances != null) {
+            if(timer != null && SegmentLog.getInstance() == null) {
+                openSegmentLog();
+            }
+            configurationChecksum = fileHandler.getChecksum(Appliances.class, Device2EM.class);
+            if(timer != null && runtimeCheckpoint == null) {
+                openRuntimeCheckpoint();
+            }
             init();
+            applianceCheckpoints.clear();
         }
         else {
             logger.warn("No valid appliance configuration found.");
@@ -191,6 +265,82 @@ public class ApplianceManager implements Runnable {
         logger.info(getAppliances().size() + " appliance(s) configured.");
     }
 
+    /**
+     * Open the log used to persist energy counters and power history and restore the power history.
+     */
+    private void openSegmentLog() {
+        SegmentLog segmentLog = new SegmentLog(fileHandler.getSegmentLogDirectory());
+        try {
+            segmentLog.open();
+            TimeSeriesStore.getInstance().restore(segmentLog);
+        }
+        catch(Exception e) {
+            logger.error("Error opening segment log - energy counters and history will not be persisted", e);
+            return;
+        }
+        String flushInterval = appliances.getConfigurationValue(SegmentLog.CONFIGURATION_KEY_FLUSH_INTERVAL);
+        segmentLog.startFlushTimer(timer, flushInterval != null
+                ? Integer.parseInt(flushInterval) : SegmentLog.DEFAULT_FLUSH_INTERVAL_SECONDS);
+        Runtime.getRuntime().addShutdownHook(new Thread(segmentLog::close));
+        SegmentLog.setInstance(segmentLog);
+    }
+
+    /**
+     * Read the checkpoint of the runtime state to be restored during initialization of the appliances and
+     * write checkpoints periodically and on shutdown.
+     */
+    private void openRuntimeCheckpoint() {
+        runtimeCheckpoint = new RuntimeCheckpoint(fileHandler.getRuntimeCheckpointFile());
+        String maxAge = appliances.getConfigurationValue(RuntimeCheckpoint.CONFIGURATION_KEY_MAX_AGE);
+        applianceCheckpoints = new ConcurrentHashMap<>(runtimeCheckpoint.read(configurationChecksum, Clock.currentTimeMillis(),
+                maxAge != null ? Integer.parseInt(maxAge) : RuntimeCheckpoint.DEFAULT_MAX_AGE_SECONDS));
+        String interval = appliances.getConfigurationValue(RuntimeCheckpoint.CONFIGURATION_KEY_INTERVAL);
+        GuardedTimerTask checkpointTimerTask = new GuardedTimerTask(null, "RuntimeCheckpoint",
+                (interval != null ? Integer.parseInt(interval) : RuntimeCheckpoint.DEFAULT_INTERVAL_SECONDS) * 1000) {
+            @Override
+            public void runTask() {
+                writeRuntimeCheckpoint();
+            }
+        };
+        timer.schedule(checkpointTimerTask, checkpointTimerTask.getPeriod(), checkpointTimerTask.getPeriod());
+        Runtime.getRuntime().addShutdownHook(new Thread(this::writeRuntimeCheckpoint));
+    }
+
+    private void writeRuntimeCheckpoint() {
+        if(! initializationCompleted) {
+            // keep the previous checkpoint instead of overwriting it with incomplete state
+            return;
+        }
+        LocalDateTime now = Clock.now();
+        Map<String, byte[]> checkpoints = new LinkedHashMap<>();
+        for(Appliance appliance : getAppliances()) {
+            try {
+                checkpoints.put(appliance.getId(), RuntimeCheckpoint.toBytes(now, appliance));
+            }
+            catch(Exception e) {
+                logger.error("{}: Error creating checkpoint", appliance.getId(), e);
+            }
+        }
+        try {
+            runtimeCheckpoint.write(configurationChecksum, Clock.currentTimeMillis(), checkpoints);
+        }
+        catch(IOException e) {
+            logger.error("Error writing checkpoint", e);
+        }
+    }
+
+    private void restoreRuntimeCheckpoint(Appliance appliance) {
+        byte[] checkpoint = applianceCheckpoints.remove(appliance.getId());
+        if(checkpoint != null) {
+            try {
+                RuntimeCheckpoint.fromBytes(Clock.now(), appliance, checkpoint);
+            }
+            catch(Exception e) {
+                logger.error("{}: Error restoring checkpoint", appliance.getId(), e);
+            }
+        }
+    }
+
     private void stopAppliances() {
         logger.info("Stopping appliances ...");
         initializationCompleted = false;
@@ -206,20 +356,119 @@ public class ApplianceManager implements Runnable {
                     }
                 }
             }
+            Connectivity connectivity = appliances.getConnectivity();
+            if(connectivity != null && connectivity.getMqttBrokers() != null) {
+                connectivity.getMqttBrokers().forEach(MqttBroker::stop);
+            }
+            if(connectivity != null && connectivity.getModbusTCPs() != null) {
+                connectivity.getModbusTCPs().forEach(ModbusTcp::stop);
+            }
+            if(appliances.getLoadManagement() != null) {
+                appliances.getLoadManagement().stop();
+            }
+            if(connectivity != null && connectivity.getSmaEnergyMeter() != null) {
+                connectivity.getSmaEnergyMeter().stop();
+            }
         }
     }
 
     private void restartAppliances() {
         logger.info("Restarting appliances ...");
         stopAppliances();
+        CircuitBreakerRegistry.getInstance().clear();
         this.appliances = null;
         this.device2EM = null;
         startAppliances();
     }
 
+    /**
+     * Restart only the given appliances with their configuration reloaded from file while all other appliances
+     * keep running with their runtime state. Appliances depending on one of the given appliances are restarted
+     * as well, after them.
+     * If any of the appliances cannot be found in the saved configuration all appliances are restarted.
+     * @param applianceIds
+     */
+    private void restartAppliances(Set<String> applianceIds) {
+        Appliances savedAppliances = loadAppliances();
+        List<Appliance> applianceList = getAppliances();
+        Set<String> restartApplianceIds = new LinkedHashSet<>(applianceIds);
+        Set<String> dependentApplianceIds = getDependentApplianceIds(applianceIds);
+        if(! dependentApplianceIds.isEmpty()) {
+            logger.info("Restarting dependent appliance(s) {}", dependentApplianceIds);
+            restartApplianceIds.addAll(dependentApplianceIds);
+        }
+        Map<String, Appliance> reloadedAppliances = new LinkedHashMap<>();
+        for(String applianceId : restartApplianceIds) {
+            Appliance reloadedAppliance = savedAppliances != null && savedAppliances.getAppliances() != null
+                    ? savedAppliances.getAppliances().stream()
+                        .filter(appliance -> appliance.getId().equals(applianceId)).findFirst().orElse(null)
+                    : null;
+            if(reloadedAppliance == null || getAppliance(applianceId) == null) {
+                logger.warn("{}: Appliance not found for restart", applianceId);
+                restartAppliances();
+                return;
+            }
+            reloadedAppliances.put(applianceId, reloadedAppliance);
+        }
+
+        logger.info("Restarting {} appliance(s) ...", reloadedAppliances.size());
+        configurationChecksum = fileHandler.getChecksum(Appliances.class, Device2EM.class);
+        Map<String,ModbusTcp> modbusIdWithModbusTcp = new HashMap<>();
+        Map<String,MqttBroker> mqttIdWithMqttBroker = new HashMap<>();
+        Connectivity connectivity = appliances.getConnectivity();
+        if(connectivity != null && connectivity.getModbusTCPs() != null) {
+            connectivity.getModbusTCPs().forEach(modbusTcp -> modbusIdWithModbusTcp.put(modbusTcp.getId(), modbusTcp));
+        }
+        if(connectivity != null && connectivity.getMqttBrokers() != null) {
+            connectivity.getMqttBrokers().forEach(mqttBroker -> mqttIdWithMqttBroker.put(mqttBroker.getId(), mqttBroker));
+        }
+        GpioController gpioController = getGpioController();
+        String notificationCommand = appliances.getConfigurationValue(
+                NotificationHandler.CONFIGURATION_KEY_NOTIFICATION_COMMAND);
+        StartupProfile profile = new StartupProfile();
+        for(Appliance reloadedAppliance : reloadedAppliances.values()) {
+            Appliance appliance = getAppliance(reloadedAppliance.getId());
+            try {
+                appliance.stop();
+            }
+            catch(Exception e) {
+                logger.error("{}: Error stopping appliance", appliance.getId(), e);
+            }
+            applianceList.set(applianceList.indexOf(appliance), reloadedAppliance);
+            initAppliance(profile, reloadedAppliance, gpioController, modbusIdWithModbusTcp, mqttIdWithMqttBroker,
+                    notificationCommand);
+        }
+        profile.complete();
+        profile.toReport().forEach(line -> logger.info(line));
+    }
+
+    /**
+     * Returns the ids of running appliances depending on one of the given appliances, i.e. electric vehicle chargers
+     * whose surplus control uses the meter of one of them as grid power source. The meter is resolved when the
+     * charger is started, so the charger has to be restarted if the meter appliance is replaced.
+     * @param applianceIds
+     * @return
+     */
+    private Set<String> getDependentApplianceIds(Set<String> applianceIds) {
+        Set<String> dependentApplianceIds = new LinkedHashSet<>();
+        for(Appliance appliance : getAppliances()) {
+            if(! applianceIds.contains(appliance.getId()) && appliance.getControl() instanceof ElectricVehicleCharger) {
+                SurplusControl surplusControl = ((ElectricVehicleCharger) appliance.getControl()).getSurplusControl();
+                if(surplusControl != null && applianceIds.contains(surplusControl.getMeterApplianceId())) {
+                    dependentApplianceIds.add(appliance.getId());
+                }
+            }
+        }
+        return dependentApplianceIds;
+    }
+
     public void init() {
         logger.debug("Initializing ...");
+        StartupProfile profile = new StartupProfile();
+        this.startupProfile = profile;
+        long phaseStart = profile.start();
         Map<String,ModbusTcp> modbusIdWithModbusTcp = new HashMap<String,ModbusTcp>();
+        Map<String,MqttBroker> mqttIdWithMqttBroker = new HashMap<String,MqttBroker>();
         Connectivity connectivity = appliances.getConnectivity();
         if(connectivity != null) {
             // make ModbusTcp accessible by id
@@ -229,36 +478,47 @@ public class ApplianceManager implements Runnable {
                     modbusIdWithModbusTcp.put(modbusTCP.getId(), modbusTCP);
                 }
             }
-        }
-
-        boolean holidaysUsed = false;
-        for (Appliance appliance : getAppliances()) {
-            if(appliance.hasTimeframeForHolidays()) {
-                holidaysUsed = true;
-            }
-            logger.debug("{}: Initializing appliance ...", appliance.getId());
-            try {
-                appliance.init(getGpioController(), modbusIdWithModbusTcp,
-                        appliances.getConfigurationValue(NotificationHandler.CONFIGURATION_KEY_NOTIFICATION_COMMAND));
-            }
-            catch (Exception e) {
-                logger.error("{}: Error initializing appliance", appliance.getId(), e);
+            // make MqttBroker accessible by id
+            if(connectivity.getMqttBrokers() != null) {
+                for(MqttBroker mqttBroker : connectivity.getMqttBrokers()) {
+                    logger.info("MQTT broker " + mqttBroker.getId() + " configured for " + mqttBroker.toString());
+                    mqttIdWithMqttBroker.put(mqttBroker.getId(), mqttBroker);
+                }
             }
-            logger.debug("{}: Validating appliance ...", appliance.getId());
-            try {
-                appliance.validate();
-            } catch (ConfigurationException e) {
-                logger.error("{}: Terminating because of incorrect configuration", appliance.getId());
-                System.exit(-1);
+            SmaEnergyMeter smaEnergyMeter = connectivity.getSmaEnergyMeter();
+            if(smaEnergyMeter != null) {
+                logger.info("SMA energy meter configured for " + smaEnergyMeter.toString());
+                try {
+                    smaEnergyMeter.start();
+                }
+                catch(Exception e) {
+                    logger.error("Error starting SMA energy meter", e);
+                }
             }
-            logger.debug("{}: Starting appliance ...", appliance.getId());
+        }
+
+        profile.endPhase("connectivity", phaseStart);
+
+        phaseStart = profile.start();
+        GpioController gpioController = getGpioController();
+        profile.endPhase("gpio", phaseStart);
+
+        phaseStart = profile.start();
+        boolean holidaysUsed = getAppliances().stream().anyMatch(Appliance::hasTimeframeForHolidays);
+        initAppliances(profile, gpioController, modbusIdWithModbusTcp, mqttIdWithMqttBroker);
+        profile.endPhase("appliances", phaseStart);
+
+        phaseStart = profile.start();
+        LoadManagement loadManagement = appliances.getLoadManagement();
+        if(loadManagement != null) {
             try {
-                appliance.start(timer);
+                loadManagement.start(getAppliances(), getGridPowerSource());
             }
             catch(Exception e) {
-                logger.error("{}: Error starting appliance", appliance.getId(), e);
+                logger.error("Error starting load management", e);
             }
         }
+        profile.endPhase("loadManagement", phaseStart);
 
         if(holidaysUsed) {
             logger.debug("Holidays are used.");
@@ -311,9 +571,198 @@ public class ApplianceManager implements Runnable {
         }
 
         initializationCompleted = true;
+        profile.complete();
+        profile.toReport().forEach(line -> logger.info(line));
+    }
+
+    /**
+     * Initialize, validate and start the appliances. Unless running in direct mode (e.g. simulation) or without timer
+     * this is done in parallel by a bounded number of threads. Each appliance becomes ready as soon as it has been
+     * started. Waiting for an appliance is aborted after a timeout - it continues to start in the background while
+     * an additional thread is used for the remaining appliances.
+     */
+    private void initAppliances(StartupProfile profile, GpioController gpioController,
+                                Map<String, ModbusTcp> modbusIdWithModbusTcp,
+                                Map<String, MqttBroker> mqttIdWithMqttBroker) {
+        String notificationCommand = appliances.getConfigurationValue(
+                NotificationHandler.CONFIGURATION_KEY_NOTIFICATION_COMMAND);
+        String concurrencyValue = appliances.getConfigurationValue(CONFIGURATION_KEY_STARTUP_CONCURRENCY);
+        int concurrency = concurrencyValue != null ? Integer.parseInt(concurrencyValue) : DEFAULT_STARTUP_CONCURRENCY;
+        String timeoutValue = appliances.getConfigurationValue(CONFIGURATION_KEY_STARTUP_TIMEOUT);
+        int timeoutSeconds = timeoutValue != null ? Integer.parseInt(timeoutValue) : DEFAULT_STARTUP_TIMEOUT_SECONDS;
+
+        List<Appliance> applianceList = new ArrayList<>(getAppliances());
+        if(timer == null || ApplianceMailbox.isDirect() || concurrency <= 1 || applianceList.size() <= 1) {
+            for (Appliance appliance : applianceList) {
+                initAppliance(profile, appliance, gpioController, modbusIdWithModbusTcp, mqttIdWithMqttBroker,
+                        notificationCommand);
+            }
+            return;
+        }
+
+        logger.info("Starting {} appliance(s) with {} thread(s)", applianceList.size(), concurrency);
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "appliance-startup-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Map<Appliance, Future<?>> applianceWithFuture = new LinkedHashMap<>();
+        Map<Appliance, AtomicLong> applianceWithStartNanos = new HashMap<>();
+        for (Appliance appliance : applianceList) {
+            AtomicLong startNanos = new AtomicLong();
+            applianceWithStartNanos.put(appliance, startNanos);
+            applianceWithFuture.put(appliance, executor.submit(() -> {
+                startNanos.set(System.nanoTime());
+                initAppliance(profile, appliance, gpioController, modbusIdWithModbusTcp, mqttIdWithMqttBroker,
+                        notificationCommand);
+            }));
+        }
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(timeoutSeconds);
+        for (Appliance appliance : applianceList) {
+            Future<?> future = applianceWithFuture.get(appliance);
+            AtomicLong startNanos = applianceWithStartNanos.get(appliance);
+            while(! future.isDone()) {
+                long started = startNanos.get();
+                if(started != 0 && System.nanoTime() - started > timeoutNanos) {
+                    logger.error("{}: Appliance not started within {}s - continuing without it", appliance.getId(),
+                            timeoutSeconds);
+                    profile.setApplianceResult(appliance.getId(), "timeout");
+                    // the thread starting the appliance remains busy
+                    executor.setMaximumPoolSize(executor.getMaximumPoolSize() + 1);
+                    executor.setCorePoolSize(executor.getCorePoolSize() + 1);
+                    break;
+                }
+                try {
+                    future.get(100, TimeUnit.MILLISECONDS);
+                }
+                catch(TimeoutException e) {
+                    // check timeout again
+                }
+                catch(ExecutionException e) {
+                    logger.error("{}: Error starting appliance", appliance.getId(), e.getCause());
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    executor.shutdown();
+                    return;
+                }
+            }
+        }
+        executor.shutdown();
+    }
+
+    private void initAppliance(StartupProfile profile, Appliance appliance, GpioController gpioController,
+                               Map<String, ModbusTcp> modbusIdWithModbusTcp,
+                               Map<String, MqttBroker> mqttIdWithMqttBroker, String notificationCommand) {
+        long phaseStart = profile.start();
+        logger.debug("{}: Initializing appliance ...", appliance.getId());
+        try {
+            appliance.init(gpioController, modbusIdWithModbusTcp, mqttIdWithMqttBroker, notificationCommand);
+        }
+        catch (Exception e) {
+            logger.error("{}: Error initializing appliance", appliance.getId(), e);
+        }
+        profile.endAppliancePhase(appliance.getId(), "init", phaseStart);
+
+        phaseStart = profile.start();
+        logger.debug("{}: Validating appliance ...", appliance.getId());
+        try {
+            appliance.validate();
+        } catch (ConfigurationException e) {
+            logger.error("{}: Terminating because of incorrect configuration", appliance.getId());
+            System.exit(-1);
+        }
+        profile.endAppliancePhase(appliance.getId(), "validate", phaseStart);
+
+        phaseStart = profile.start();
+        restoreRuntimeCheckpoint(appliance);
+        profile.endAppliancePhase(appliance.getId(), "checkpoint", phaseStart);
+
+        phaseStart = profile.start();
+        logger.debug("{}: Starting appliance ...", appliance.getId());
+        try {
+            appliance.start(timer);
+            appliance.setReady(true);
+            if(profile.getApplianceResult(appliance.getId()) != null) {
+                logger.info("{}: Appliance ready after timeout", appliance.getId());
+            }
+            profile.setApplianceResult(appliance.getId(), "ready");
+        }
+        catch(Exception e) {
+            logger.error("{}: Error starting appliance", appliance.getId(), e);
+            profile.setApplianceResult(appliance.getId(), "failed");
+        }
+        profile.endAppliancePhase(appliance.getId(), "start", phaseStart);
+    }
+
+    /**
+     * Start collecting changes: until {@link #commitBatch()} or {@link #rollbackBatch()} is called changes
+     * are neither saved nor do they cause appliances to be restarted.
+     */
+    public void beginBatch() {
+        logger.debug("Begin batch");
+        batchOpen = true;
+        batchWriteDevice2EM = false;
+        batchWriteAppliances = false;
+        batchRestartAll = false;
+        batchChangedApplianceIds.clear();
+    }
+
+    /**
+     * Save all changes collected since {@link #beginBatch()} and restart the appliances affected.
+     */
+    public void commitBatch() {
+        logger.debug("Commit batch: writeDevice2EM={} writeAppliances={} restartAll={} changedAppliances={}",
+                batchWriteDevice2EM, batchWriteAppliances, batchRestartAll, batchChangedApplianceIds);
+        batchOpen = false;
+        writeAndRestart(batchWriteDevice2EM, batchWriteAppliances,
+                batchRestartAll ? null : new LinkedHashSet<>(batchChangedApplianceIds));
+    }
+
+    /**
+     * Discard all changes collected since {@link #beginBatch()} by restarting with the saved configuration.
+     */
+    public void rollbackBatch() {
+        if(batchOpen) {
+            logger.debug("Rollback batch");
+            batchOpen = false;
+            if(batchWriteDevice2EM || batchWriteAppliances) {
+                restartAppliances();
+            }
+        }
     }
 
     public void save(boolean writeDevice2EM, boolean writeAppliances) {
+        saveApplianceChange(writeDevice2EM, writeAppliances, null);
+    }
+
+    /**
+     * Save the configuration after the configuration of a single appliance has been changed.
+     * @param changedApplianceId the id of the appliance changed or null, if all appliances have to be restarted
+     */
+    private void saveApplianceChange(boolean writeDevice2EM, boolean writeAppliances, String changedApplianceId) {
+        if(batchOpen) {
+            batchWriteDevice2EM |= writeDevice2EM;
+            batchWriteAppliances |= writeAppliances;
+            if(changedApplianceId != null) {
+                batchChangedApplianceIds.add(changedApplianceId);
+            }
+            else {
+                batchRestartAll |= writeDevice2EM || writeAppliances;
+            }
+            return;
+        }
+        writeAndRestart(writeDevice2EM, writeAppliances,
+                changedApplianceId != null ? Collections.singleton(changedApplianceId) : null);
+    }
+
+    /**
+     * Write the configuration files and restart the appliances affected.
+     * @param changedApplianceIds the ids of the appliances changed or null, if all appliances have to be restarted
+     */
+    private void writeAndRestart(boolean writeDevice2EM, boolean writeAppliances, Set<String> changedApplianceIds) {
         logger.debug("Saving to file: writeDevice2EM=" + writeDevice2EM + " writeAppliances=" + writeAppliances);
         if(writeDevice2EM) {
             fileHandler.save(this.device2EM);
@@ -322,7 +771,13 @@ public class ApplianceManager implements Runnable {
             fileHandler.save(this.appliances);
         }
         if(writeDevice2EM || writeAppliances) {
-            restartAppliances();
+            // load management keeps references to the appliances and SEMP device info might have changed
+            if(changedApplianceIds != null && !writeDevice2EM && appliances.getLoadManagement() == null) {
+                restartAppliances(changedApplianceIds);
+            }
+            else {
+                restartAppliances();
+            }
             if(this.autoclearSeconds != null) {
                 this.timer.schedule(new TimerTask() {
                     @Override
@@ -402,6 +857,14 @@ public class ApplianceManager implements Runnable {
         return Collections.EMPTY_LIST;
     }
 
+    /**
+     * Returns the appliances which have been started successfully.
+     * @return
+     */
+    public List<Appliance> getReadyAppliances() {
+        return getAppliances().stream().filter(Appliance::isReady).collect(Collectors.toList());
+    }
+
     /**
      * Should only be used for testing
      * @param appliances
@@ -484,6 +947,7 @@ public class ApplianceManager implements Runnable {
         Appliance applianceToBeDeleted = getAppliance(applianceId);
         if(applianceToBeDeleted != null) {
             appliances.getAppliances().remove(applianceToBeDeleted);
+            TimeSeriesStore.getInstance().remove(applianceId);
             save(true, true);
             return true;
         }
@@ -512,13 +976,13 @@ public class ApplianceManager implements Runnable {
         if(appliance != null) {
             Control oldControl = appliance.getControl();
             if(oldControl != null) {
-                oldControl.stop(LocalDateTime.now());
+                oldControl.stop(Clock.now());
             }
             if(control instanceof ApplianceIdConsumer) {
                 ((ApplianceIdConsumer) control).setApplianceId(applianceId);
             }
             appliance.setControl(control);
-            save(false, true);
+            saveApplianceChange(false, true, applianceId);
             return true;
         }
         return false;
@@ -534,7 +998,7 @@ public class ApplianceManager implements Runnable {
         Appliance appliance = getAppliance(applianceId);
         if(appliance != null) {
             appliance.deleteControl();
-            save(false, true);
+            saveApplianceChange(false, true, applianceId);
             return true;
         }
         return false;
@@ -552,13 +1016,13 @@ public class ApplianceManager implements Runnable {
         if(appliance != null) {
             Meter oldMeter = appliance.getMeter();
             if(oldMeter != null) {
-                oldMeter.stop(LocalDateTime.now());
+                oldMeter.stop(Clock.now());
             }
             if(meter instanceof ApplianceIdConsumer) {
                 ((ApplianceIdConsumer) meter).setApplianceId(applianceId);
             }
             appliance.setMeter(meter);
-            save(false, true);
+            saveApplianceChange(false, true, applianceId);
             return true;
         }
         return false;
@@ -574,7 +1038,7 @@ public class ApplianceManager implements Runnable {
         Appliance appliance = getAppliance(applianceId);
         if(appliance != null) {
             appliance.deleteMeter();
-            save(false, true);
+            saveApplianceChange(false, true, applianceId);
             return true;
         }
         return false;
@@ -585,13 +1049,24 @@ public class ApplianceManager implements Runnable {
         Appliance appliance = getAppliance(applianceId);
         if(appliance != null) {
             appliance.setSchedules(schedules);
-            save(false, true);
+            saveApplianceChange(false, true, applianceId);
         }
         else {
             logger.error("Appliance not found", applianceId);
         }
     }
 
+    /**
+     * Returns the meter measuring the grid power of the site or null, if none is configured.
+     * @return
+     */
+    public GridPowerSource getGridPowerSource() {
+        if(appliances != null && appliances.getConnectivity() != null) {
+            return appliances.getConnectivity().getSmaEnergyMeter();
+        }
+        return null;
+    }
+
     public Appliances getAppliancesRoot() {
         return this.appliances;
     }
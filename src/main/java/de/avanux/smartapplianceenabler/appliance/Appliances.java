@@ -19,6 +19,7 @@ package de.avanux.smartapplianceenabler.appliance;
 
 import de.avanux.smartapplianceenabler.configuration.Configuration;
 import de.avanux.smartapplianceenabler.configuration.Connectivity;
+import de.avanux.smartapplianceenabler.loadmanagement.LoadManagement;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -35,6 +36,8 @@ public class Appliances {
     private List<Appliance> appliances;
     @XmlElement(name = "Connectivity")
     private Connectivity connectivity;
+    @XmlElement(name = "LoadManagement")
+    private LoadManagement loadManagement;
 
     public String getConfigurationValue(String param) {
         if(configurations != null) {
@@ -66,4 +69,12 @@ public class Appliances {
     public void setConnectivity(Connectivity connectivity) {
         this.connectivity = connectivity;
     }
+
+    public LoadManagement getLoadManagement() {
+        return loadManagement;
+    }
+
+    public void setLoadManagement(LoadManagement loadManagement) {
+        this.loadManagement = loadManagement;
+    }
 }
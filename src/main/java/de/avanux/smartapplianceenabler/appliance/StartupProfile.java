@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.appliance;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durations of the phases of the startup of the appliances. Phases of different appliances may be recorded
+ * in parallel.
+ */
+public class StartupProfile {
+    private final long startNanos = System.nanoTime();
+    private final Map<String, Long> phaseMillis = new LinkedHashMap<>();
+    private final Map<String, Map<String, Long>> appliancePhaseMillis = new LinkedHashMap<>();
+    private final Map<String, String> applianceResults = new LinkedHashMap<>();
+    private Long totalMillis;
+
+    /**
+     * Returns the start of a phase to be passed to {@link #endPhase(String, long)}
+     * or {@link #endAppliancePhase(String, String, long)}.
+     * @return
+     */
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public synchronized void endPhase(String phase, long phaseStartNanos) {
+        phaseMillis.put(phase, toMillis(System.nanoTime() - phaseStartNanos));
+    }
+
+    public synchronized void endAppliancePhase(String applianceId, String phase, long phaseStartNanos) {
+        appliancePhaseMillis.computeIfAbsent(applianceId, id -> new LinkedHashMap<>())
+                .put(phase, toMillis(System.nanoTime() - phaseStartNanos));
+    }
+
+    public synchronized void setApplianceResult(String applianceId, String result) {
+        applianceResults.put(applianceId, result);
+    }
+
+    public synchronized String getApplianceResult(String applianceId) {
+        return applianceResults.get(applianceId);
+    }
+
+    public synchronized void complete() {
+        totalMillis = toMillis(System.nanoTime() - startNanos);
+    }
+
+    public synchronized Long getTotalMillis() {
+        return totalMillis;
+    }
+
+    public synchronized Map<String, Long> getPhaseMillis() {
+        return new LinkedHashMap<>(phaseMillis);
+    }
+
+    public synchronized Map<String, Long> getAppliancePhaseMillis(String applianceId) {
+        Map<String, Long> phases = appliancePhaseMillis.get(applianceId);
+        return phases != null ? new LinkedHashMap<>(phases) : new LinkedHashMap<>();
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos / 1_000_000;
+    }
+
+    /**
+     * Returns the report as lines: phases in the order they were recorded, followed by the phases of each appliance.
+     * @return
+     */
+    public synchronized List<String> toReport() {
+        List<String> lines = new ArrayList<>();
+        lines.add("Startup completed in " + (totalMillis != null ? totalMillis : toMillis(System.nanoTime() - startNanos))
+                + "ms");
+        phaseMillis.forEach((phase, millis) -> lines.add(String.format("  %-16s %6dms", phase, millis)));
+        appliancePhaseMillis.forEach((applianceId, phases) -> {
+            StringBuilder line = new StringBuilder("  ").append(applianceId).append(":");
+            long sum = 0;
+            for(Map.Entry<String, Long> phase : phases.entrySet()) {
+                line.append(' ').append(phase.getKey()).append('=').append(phase.getValue()).append("ms");
+                sum += phase.getValue();
+            }
+            line.append(" total=").append(sum).append("ms");
+            String result = applianceResults.get(applianceId);
+            if(result != null) {
+                line.append(" (").append(result).append(')');
+            }
+            lines.add(line.toString());
+        });
+        return lines;
+    }
+}
@@ -18,6 +18,8 @@
 package de.avanux.smartapplianceenabler.configuration;
 
 import de.avanux.smartapplianceenabler.modbus.ModbusTcp;
+import de.avanux.smartapplianceenabler.mqtt.MqttBroker;
+import de.avanux.smartapplianceenabler.speedwire.SmaEnergyMeter;
 
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
@@ -30,6 +32,10 @@ import java.util.List;
 public class Connectivity {
     @XmlElement(name = "ModbusTCP")
     private List<ModbusTcp> modbusTCPs;
+    @XmlElement(name = "MqttBroker")
+    private List<MqttBroker> mqttBrokers;
+    @XmlElement(name = "SmaEnergyMeter")
+    private SmaEnergyMeter smaEnergyMeter;
 
     public List<ModbusTcp> getModbusTCPs() {
         return modbusTCPs;
@@ -39,4 +45,20 @@ public class Connectivity {
         this.modbusTCPs = modbusTCPs;
     }
 
+    public List<MqttBroker> getMqttBrokers() {
+        return mqttBrokers;
+    }
+
+    public void setMqttBrokers(List<MqttBroker> mqttBrokers) {
+        this.mqttBrokers = mqttBrokers;
+    }
+
+    public SmaEnergyMeter getSmaEnergyMeter() {
+        return smaEnergyMeter;
+    }
+
+    public void setSmaEnergyMeter(SmaEnergyMeter smaEnergyMeter) {
+        this.smaEnergyMeter = smaEnergyMeter;
+    }
+
 }
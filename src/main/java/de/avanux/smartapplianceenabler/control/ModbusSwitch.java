@@ -54,13 +54,27 @@ public class ModbusSwitch extends ModbusSlave implements Control, Validateable,
         }
     }
 
+    @Override
+    protected NotificationHandler getNotificationHandler() {
+        return notificationHandler;
+    }
+
     @Override
     public Notifications getNotifications() {
         return notifications;
     }
 
+    public List<ModbusWrite> getModbusWrites() {
+        return modbusWrites;
+    }
+
+    public void setModbusWrites(List<ModbusWrite> modbusWrites) {
+        this.modbusWrites = modbusWrites;
+    }
+
     @Override
     public void init() {
+        clearExecutors();
     }
 
     @Override
@@ -104,18 +118,22 @@ public class ModbusSwitch extends ModbusSlave implements Control, Validateable,
                 if(this.notificationHandler != null) {
                     on = isOn();
                 }
-                ModbusWriteTransactionExecutor executor = ModbusExecutorFactory.getWriteExecutor(getApplianceId(),
-                        registerWrite.getType(), registerWrite.getValueType(), registerWrite.getAddress(),registerWrite.getFactorToValue());
-                if(executor instanceof WriteCoilExecutor) {
-                    executor.setValue(1 == Integer.valueOf(write.child().getValue()));
-                    executeTransaction(executor, true);
-                    result = switchOn == ((WriteCoilExecutor) executor).getResult();
-                }
-                else if(executor instanceof WriteHoldingRegisterExecutor) {
-                    executor.setValue(Integer.valueOf(write.child().getValue()));
-                    executeTransaction(executor, true);
-                    result = Integer.valueOf(write.child().getValue()).equals(((WriteHoldingRegisterExecutor) executor).getResult());
-                }
+                result = executeWithPermit(ModbusRequestScheduler.Priority.HIGH, () -> {
+                    synchronized (this) {
+                        ModbusWriteTransactionExecutor executor = getWriteExecutor(registerWrite);
+                        if(executor instanceof WriteCoilExecutor) {
+                            executor.setValue(1 == Integer.valueOf(write.child().getValue()));
+                            executeTransaction(executor);
+                            return Boolean.valueOf(switchOn).equals(((WriteCoilExecutor) executor).getResult());
+                        }
+                        else if(executor instanceof WriteHoldingRegisterExecutor) {
+                            executor.setValue(Integer.valueOf(write.child().getValue()));
+                            executeTransaction(executor);
+                            return Integer.valueOf(write.child().getValue()).equals(((WriteHoldingRegisterExecutor) executor).getResult());
+                        }
+                        return false;
+                    }
+                });
                 if(this.notificationHandler != null && switchOn != on) {
                     this.notificationHandler.sendNotification(switchOn ? NotificationType.CONTROL_ON : NotificationType.CONTROL_OFF);
                 }
@@ -144,18 +162,22 @@ public class ModbusSwitch extends ModbusSlave implements Control, Validateable,
             try {
                 RegisterValueType registerValueType = getRegisterValueType(
                         registerWrite.getReadRegisterType(), registerWrite.getValueType());
-                ModbusReadTransactionExecutor executor = ModbusExecutorFactory.getReadExecutor(getApplianceId(),
-                        registerWrite.getAddress(), registerWrite.getReadRegisterType(), registerValueType);
-                executeTransaction(executor, true);
-                if(executor instanceof ReadCoilExecutorImpl) {
-                    on = ((ReadCoilExecutorImpl) executor).getValue();
-                }
-                else if(executor instanceof ReadHoldingRegisterExecutor) {
-                    Object registerValue = ((ReadHoldingRegisterExecutor) executor).getValueTransformer().getValue();
-                    if(registerValue instanceof Integer) {
-                        on = Integer.valueOf(write.child().getValue()).equals((Integer) registerValue);
+                on = executeWithPermit(ModbusRequestScheduler.Priority.LOW, () -> {
+                    synchronized (this) {
+                        ModbusReadTransactionExecutor executor = getReadExecutor(registerWrite, registerValueType);
+                        executeTransaction(executor);
+                        if(executor instanceof ReadCoilExecutorImpl) {
+                            return Boolean.TRUE.equals(((ReadCoilExecutorImpl) executor).getValue());
+                        }
+                        else if(executor instanceof ReadHoldingRegisterExecutor) {
+                            Object registerValue = ((ReadHoldingRegisterExecutor) executor).getValueTransformer().getValue();
+                            if(registerValue instanceof Integer) {
+                                return Integer.valueOf(write.child().getValue()).equals((Integer) registerValue);
+                            }
+                        }
+                        return false;
                     }
-                }
+                });
             }
             catch (Exception e) {
                 logger.error("{}: Error reading {} register {}", getApplianceId(), registerWrite.getReadRegisterType(),
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.control;
+
+import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.appliance.ApplianceLifeCycle;
+import de.avanux.smartapplianceenabler.configuration.ConfigurationException;
+import de.avanux.smartapplianceenabler.configuration.Validateable;
+import de.avanux.smartapplianceenabler.mqtt.*;
+import de.avanux.smartapplianceenabler.protocol.ContentProtocolHandler;
+import de.avanux.smartapplianceenabler.protocol.ContentProtocolType;
+import de.avanux.smartapplianceenabler.protocol.JsonContentProtocolHandler;
+import de.avanux.smartapplianceenabler.util.Clock;
+import de.avanux.smartapplianceenabler.util.ParentWithChild;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Timer;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Changes the on/off state of an appliance by publishing a message to an MQTT broker.
+ * The message is published with QoS 1 and switching is reported as successful only after the broker acknowledged it.
+ * If a state topic is configured, the state reported by the device is used instead of the state requested last
+ * and listeners are notified if it differs from the current state.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MqttSwitch implements Control, ApplianceLifeCycle, Validateable, ApplianceIdConsumer, MqttBrokerConsumer {
+
+    private transient Logger logger = LoggerFactory.getLogger(MqttSwitch.class);
+    @XmlAttribute
+    private String idref;
+    @XmlAttribute
+    private String contentProtocol;
+    @XmlElement(name = "MqttWrite")
+    private List<MqttWrite> mqttWrites;
+    @XmlElement(name = "MqttRead")
+    private MqttRead mqttRead;
+    private transient String applianceId;
+    private transient MqttBroker mqttBroker;
+    private transient MqttHandler mqttHandler = new MqttHandler();
+    private transient ContentProtocolHandler contentContentProtocolHandler;
+    private transient MqttMessageListener stateListener;
+    protected transient volatile boolean on;
+    private transient List<ControlStateChangedListener> controlStateChangedListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void setApplianceId(String applianceId) {
+        this.applianceId = applianceId;
+        this.mqttHandler.setApplianceId(applianceId);
+    }
+
+    @Override
+    public String getIdref() {
+        return idref;
+    }
+
+    public void setIdref(String idref) {
+        this.idref = idref;
+    }
+
+    @Override
+    public void setMqttBroker(MqttBroker mqttBroker) {
+        this.mqttBroker = mqttBroker;
+    }
+
+    public void setMqttWrites(List<MqttWrite> mqttWrites) {
+        this.mqttWrites = mqttWrites;
+    }
+
+    public void setMqttRead(MqttRead mqttRead) {
+        this.mqttRead = mqttRead;
+    }
+
+    public void setContentProtocol(ContentProtocolType contentProtocolType) {
+        this.contentProtocol = contentProtocolType != null ? contentProtocolType.name() : null;
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void validate() throws ConfigurationException {
+        logger.debug("{}: Validating configuration", applianceId);
+        if(idref == null) {
+            logger.error("{}: Missing 'idref' property", applianceId);
+            throw new ConfigurationException();
+        }
+        for(ControlValueName valueName : ControlValueName.values()) {
+            ParentWithChild<MqttWrite, MqttWriteValue> write = MqttWrite.getFirstMqttWrite(valueName.name(), this.mqttWrites);
+            if(write == null || write.parent().getTopic() == null) {
+                logger.error("{}: Missing MqttWrite for {}", applianceId, valueName.name());
+                throw new ConfigurationException();
+            }
+        }
+        if(this.mqttRead != null && this.mqttRead.getTopic() == null) {
+            logger.error("{}: Missing 'topic' property of MqttRead", applianceId);
+            throw new ConfigurationException();
+        }
+    }
+
+    @Override
+    public void start(LocalDateTime now, Timer timer) {
+        if(mqttBroker == null) {
+            logger.error("{}: MQTT broker not found: {}", applianceId, idref);
+            return;
+        }
+        ParentWithChild<MqttRead, MqttReadValue> onRead = getOnRead();
+        if(onRead != null) {
+            this.stateListener = (topic, payload) -> {
+                boolean wasOn = this.on;
+                this.on = mqttHandler.getBooleanValue(onRead.child(), payload, getContentContentProtocolHandler());
+                logger.debug("{}: State received: on={}", applianceId, this.on);
+                if(this.on != wasOn) {
+                    // e.g. switched by the device itself or by another client
+                    LocalDateTime stateChangedAt = Clock.now();
+                    for(ControlStateChangedListener listener : controlStateChangedListeners) {
+                        listener.controlStateChanged(stateChangedAt, this.on);
+                    }
+                }
+            };
+            mqttBroker.getClient().subscribe(onRead.parent().getTopic(), this.stateListener);
+        }
+    }
+
+    @Override
+    public void stop(LocalDateTime now) {
+        if(mqttBroker != null && this.stateListener != null) {
+            mqttBroker.getClient().unsubscribe(this.mqttRead.getTopic(), this.stateListener);
+            this.stateListener = null;
+        }
+    }
+
+    private ParentWithChild<MqttRead, MqttReadValue> getOnRead() {
+        return this.mqttRead != null
+                ? MqttRead.getFirstMqttRead(ControlValueName.On.name(), Collections.singletonList(this.mqttRead))
+                : null;
+    }
+
+    @Override
+    public boolean isControllable() {
+        return true;
+    }
+
+    @Override
+    public boolean isOn() {
+        return on;
+    }
+
+    @Override
+    public boolean on(LocalDateTime now, boolean switchOn) {
+        logger.info("{}: Switching {}", applianceId, (switchOn ? "on" : "off"));
+        ParentWithChild<MqttWrite, MqttWriteValue> write = MqttWrite.getFirstMqttWrite(
+                (switchOn ? ControlValueName.On : ControlValueName.Off).name(), this.mqttWrites);
+        if(write != null && mqttBroker != null) {
+            if(mqttBroker.getClient().publishAcknowledged(write.parent().getTopic(), write.child().getValue(),
+                    write.parent().isRetain())) {
+                for(ControlStateChangedListener listener : controlStateChangedListeners) {
+                    listener.controlStateChanged(now, switchOn);
+                }
+                on = switchOn;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public ContentProtocolHandler getContentContentProtocolHandler() {
+        if(this.contentContentProtocolHandler == null) {
+            if(ContentProtocolType.JSON.name().equals(this.contentProtocol)) {
+                this.contentContentProtocolHandler = new JsonContentProtocolHandler();
+            }
+        }
+        return this.contentContentProtocolHandler;
+    }
+
+    @Override
+    public void addControlStateChangedListener(ControlStateChangedListener listener) {
+        this.controlStateChangedListeners.add(listener);
+    }
+
+    @Override
+    public void removeControlStateChangedListener(ControlStateChangedListener listener) {
+        this.controlStateChangedListeners.remove(listener);
+    }
+}
@@ -18,6 +18,7 @@
 package de.avanux.smartapplianceenabler.control;
 
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.appliance.ApplianceMailbox;
 import de.avanux.smartapplianceenabler.meter.Meter;
 import de.avanux.smartapplianceenabler.meter.PowerUpdateListener;
 import de.avanux.smartapplianceenabler.meter.S0ElectricityMeter;
@@ -25,15 +26,22 @@ import de.avanux.smartapplianceenabler.notification.NotificationHandler;
 import de.avanux.smartapplianceenabler.notification.NotificationType;
 import de.avanux.smartapplianceenabler.notification.NotificationProvider;
 import de.avanux.smartapplianceenabler.notification.Notifications;
+import de.avanux.smartapplianceenabler.persistence.Checkpointable;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
 import de.avanux.smartapplianceenabler.schedule.DayTimeframeCondition;
 import de.avanux.smartapplianceenabler.schedule.TimeframeIntervalHandler;
+import de.avanux.smartapplianceenabler.util.Clock;
 import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.annotation.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Allows to prepare operation of an appliance while only little power is consumed.
@@ -48,7 +56,8 @@ import java.util.*;
  * The latter is only powered off after the starting current has been detected until the "on" command is received.
  */
 @XmlAccessorType(XmlAccessType.FIELD)
-public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, PowerUpdateListener, NotificationProvider {
+public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, PowerUpdateListener, NotificationProvider,
+        Checkpointable {
     private transient Logger logger = LoggerFactory.getLogger(StartingCurrentSwitch.class);
     @XmlAttribute
     private Integer powerThreshold;
@@ -63,6 +72,7 @@ public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, Powe
             @XmlElement(name = "HttpSwitch", type = HttpSwitch.class),
             @XmlElement(name = "MockSwitch", type = MockSwitch.class),
             @XmlElement(name = "ModbusSwitch", type = ModbusSwitch.class),
+            @XmlElement(name = "MqttSwitch", type = MqttSwitch.class),
             @XmlElement(name = "Switch", type = Switch.class)
     })
     private Control control;
@@ -75,10 +85,11 @@ public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, Powe
     private transient boolean on;
     private transient boolean startingCurrentDetected;
     private transient LocalDateTime switchOnTime;
-    private transient List<ControlStateChangedListener> controlStateChangedListeners = new ArrayList<>();
-    private transient List<StartingCurrentSwitchListener> startingCurrentSwitchListeners = new ArrayList<>();
+    private transient List<ControlStateChangedListener> controlStateChangedListeners = new CopyOnWriteArrayList<>();
+    private transient List<StartingCurrentSwitchListener> startingCurrentSwitchListeners = new CopyOnWriteArrayList<>();
     private transient GuardedTimerTask powerUpdateTimerTask;
     private transient NotificationHandler notificationHandler;
+    private transient ApplianceMailbox mailbox;
 
 
     @Override
@@ -115,6 +126,14 @@ public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, Powe
         this.timeframeIntervalHandler = timeframeIntervalHandler;
     }
 
+    /**
+     * Set the mailbox of the appliance which processes the power updates received from the meter.
+     * @param mailbox
+     */
+    public void setMailbox(ApplianceMailbox mailbox) {
+        this.mailbox = mailbox;
+    }
+
     public DayTimeframeCondition getDayTimeframeCondition() {
         return dayTimeframeCondition;
     }
@@ -176,13 +195,14 @@ public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, Powe
         if(this.control != null) {
             this.control.start(now, timer);
         }
-        applianceOn(now, true);
+        // after restore from checkpoint the appliance stays switched off if the starting current has been detected
+        applianceOn(now, !startingCurrentDetected);
         if (timer != null && meter instanceof S0ElectricityMeter) {
             logger.debug("{}: Creating timer task to trigger power updates for finished current detection", this.applianceId);
             // for PulsePowerMeter the finished current cannot be detected if there are no pulses anymore
             // therefore this time task is needed
             this.powerUpdateTimerTask = new GuardedTimerTask(applianceId, "StartingCurrentSwitchPowerUpdate",
-                    getFinishedCurrentDetectionDuration() * 1000) {
+                    getFinishedCurrentDetectionDuration() * 1000, mailbox) {
                 @Override
                 public void runTask() {
                     if(on) {
@@ -208,6 +228,25 @@ public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, Powe
         }
     }
 
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        out.writeBoolean(on);
+        out.writeBoolean(startingCurrentDetected);
+        RuntimeCheckpoint.writeNullableLocalDateTime(out, switchOnTime);
+    }
+
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        boolean restoredOn = in.readBoolean();
+        boolean restoredStartingCurrentDetected = in.readBoolean();
+        LocalDateTime restoredSwitchOnTime = RuntimeCheckpoint.readNullableLocalDateTime(in);
+        this.on = restoredOn;
+        this.startingCurrentDetected = restoredStartingCurrentDetected;
+        this.switchOnTime = restoredSwitchOnTime;
+        logger.debug("{}: Restored on={} startingCurrentDetected={} switchOnTime={}", applianceId, on,
+                startingCurrentDetected, switchOnTime);
+    }
+
     @Override
     public boolean on(LocalDateTime now, boolean switchOn) {
         logger.debug("{}: Setting switch state to {}", applianceId, (switchOn ? "on" : "off"));
@@ -248,7 +287,7 @@ public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, Powe
     }
 
     private void updateControlStateChangedListeners(LocalDateTime now, boolean switchOn) {
-        for(ControlStateChangedListener listener : new ArrayList<>(controlStateChangedListeners)) {
+        for(ControlStateChangedListener listener : controlStateChangedListeners) {
             logger.debug("{}: Notifying {} {}", applianceId, ControlStateChangedListener.class.getSimpleName(),
                     listener.getClass().getSimpleName());
             listener.controlStateChanged(now, switchOn);
@@ -257,7 +296,17 @@ public class StartingCurrentSwitch implements Control, ApplianceIdConsumer, Powe
 
     @Override
     public void onPowerUpdate(int averagePower) {
-        LocalDateTime now = LocalDateTime.now();
+        if(mailbox != null && ! mailbox.isProcessing()) {
+            // power updates are received by the thread of the meter
+            mailbox.execute(() -> processPowerUpdate(averagePower));
+        }
+        else {
+            processPowerUpdate(averagePower);
+        }
+    }
+
+    private void processPowerUpdate(int averagePower) {
+        LocalDateTime now = Clock.now();
         boolean applianceOn = isApplianceOn();
         logger.debug("{}: on={} applianceOn={}", applianceId, on, applianceOn);
         if (applianceOn) {
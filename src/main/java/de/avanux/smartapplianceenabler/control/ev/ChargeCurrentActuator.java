@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.control.ev;
+
+import de.avanux.smartapplianceenabler.util.Clock;
+import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Timer;
+import java.util.concurrent.Executor;
+
+/**
+ * Write-through layer between {@link ElectricVehicleCharger} and its {@link EVChargerControl} for the charge current.
+ * <ul>
+ *     <li>A charge current equal to the last value written to the charger is not written again.</li>
+ *     <li>Changes following the previous write within the minimum interval are deferred until the interval
+ *     has elapsed; only the latest of them is written.</li>
+ *     <li>If the charger requires the charge current to be repeated, it is re-sent only if nothing was written
+ *     within the repetition interval.</li>
+ * </ul>
+ * A charge current is considered written only if the charger control reports success; after a failed write
+ * the same charge current is written again on the next request.
+ * Without a timer neither deferred writes nor repetitions are possible so that changed values are written immediately.
+ */
+public class ChargeCurrentActuator {
+    private transient Logger logger = LoggerFactory.getLogger(ChargeCurrentActuator.class);
+    public static final int DEFAULT_MIN_INTERVAL_SECONDS = 5;
+    private String applianceId;
+    private EVChargerControl control;
+    private Timer timer;
+    private Executor executor;
+    private Integer repetitionSeconds;
+    private long minIntervalMillis = Integer.parseInt(System.getProperty("sae.evcharger.chargeCurrentMinInterval",
+            String.valueOf(DEFAULT_MIN_INTERVAL_SECONDS))) * 1000L;
+    private Integer writtenCurrent;
+    private Integer deferredCurrent;
+    private long lastWriteMillis;
+    private GuardedTimerTask deferredWriteTimerTask;
+    private GuardedTimerTask repetitionTimerTask;
+    private long writeCount;
+    private long suppressedCount;
+    private long coalescedCount;
+    private long repetitionCount;
+    private long failureCount;
+
+    public ChargeCurrentActuator(String applianceId, EVChargerControl control) {
+        this.applianceId = applianceId;
+        this.control = control;
+    }
+
+    /**
+     * Enables deferred writes and repetitions.
+     * @param timer
+     * @param executor executor running timer tasks; if null they are run by the timer thread
+     * @param repetitionSeconds interval in which the charger requires the charge current to be repeated or null
+     */
+    public synchronized void start(Timer timer, Executor executor, Integer repetitionSeconds) {
+        this.timer = timer;
+        this.executor = executor;
+        this.repetitionSeconds = repetitionSeconds;
+    }
+
+    public void setMinIntervalMillis(long minIntervalMillis) {
+        this.minIntervalMillis = minIntervalMillis;
+    }
+
+    public synchronized void setChargeCurrent(int current) {
+        setChargeCurrent(Clock.currentTimeMillis(), current);
+    }
+
+    protected synchronized void setChargeCurrent(long nowMillis, int current) {
+        if(this.deferredCurrent != null) {
+            if(this.writtenCurrent != null && current == this.writtenCurrent) {
+                logger.debug("{}: Dropping deferred charge current {}A since {}A has been written already",
+                        applianceId, this.deferredCurrent, current);
+                cancelDeferredWrite();
+                this.suppressedCount++;
+            }
+            else if(current != this.deferredCurrent) {
+                logger.debug("{}: Replacing deferred charge current {}A with {}A", applianceId, this.deferredCurrent, current);
+                this.deferredCurrent = current;
+                this.coalescedCount++;
+            }
+            return;
+        }
+        if(this.writtenCurrent != null && current == this.writtenCurrent) {
+            logger.debug("{}: Charge current {}A has been written already", applianceId, current);
+            this.suppressedCount++;
+            return;
+        }
+        long elapsedMillis = nowMillis - this.lastWriteMillis;
+        if(this.timer != null && this.writtenCurrent != null && elapsedMillis < this.minIntervalMillis) {
+            long delay = this.minIntervalMillis - elapsedMillis;
+            logger.debug("{}: Deferring charge current {}A for {}ms", applianceId, current, delay);
+            this.deferredCurrent = current;
+            this.deferredWriteTimerTask = new GuardedTimerTask(this.applianceId, "DeferredChargeCurrent",
+                    delay, this.executor) {
+                @Override
+                public void runTask() {
+                    writeDeferred(this);
+                }
+            };
+            this.timer.schedule(this.deferredWriteTimerTask, delay);
+            return;
+        }
+        write(nowMillis, current);
+    }
+
+    private synchronized void writeDeferred(GuardedTimerTask task) {
+        if(task == this.deferredWriteTimerTask && this.deferredCurrent != null) {
+            int current = this.deferredCurrent;
+            this.deferredCurrent = null;
+            this.deferredWriteTimerTask = null;
+            write(Clock.currentTimeMillis(), current);
+        }
+    }
+
+    private void write(long nowMillis, int current) {
+        if(! control.setChargeCurrent(current)) {
+            logger.warn("{}: Writing charge current {}A failed", applianceId, current);
+            this.failureCount++;
+            return;
+        }
+        this.writtenCurrent = current;
+        this.lastWriteMillis = nowMillis;
+        this.writeCount++;
+        scheduleRepetition();
+    }
+
+    /**
+     * Schedules the repetition one repetition interval after the last write.
+     */
+    private void scheduleRepetition() {
+        if(this.timer != null && this.repetitionSeconds != null) {
+            cancelRepetition();
+            long period = this.repetitionSeconds * 1000L;
+            this.repetitionTimerTask = new GuardedTimerTask(this.applianceId, "ChargePowerRepetition",
+                    period, this.executor) {
+                @Override
+                public void runTask() {
+                    repeat(this);
+                }
+            };
+            this.timer.schedule(this.repetitionTimerTask, period, period);
+        }
+    }
+
+    private synchronized void repeat(GuardedTimerTask task) {
+        if(task == this.repetitionTimerTask && this.writtenCurrent != null) {
+            logger.debug("{}: Repeating charge current {}A", applianceId, this.writtenCurrent);
+            if(control.setChargeCurrent(this.writtenCurrent)) {
+                this.lastWriteMillis = Clock.currentTimeMillis();
+                this.repetitionCount++;
+            }
+            else {
+                logger.warn("{}: Repeating charge current {}A failed", applianceId, this.writtenCurrent);
+                this.failureCount++;
+            }
+        }
+    }
+
+    /**
+     * Forget the charge current written last and stop deferred writes and repetitions,
+     * e.g. if the charging process has been stopped.
+     */
+    public synchronized void reset() {
+        cancelDeferredWrite();
+        cancelRepetition();
+        this.writtenCurrent = null;
+        this.lastWriteMillis = 0;
+    }
+
+    private void cancelDeferredWrite() {
+        if(this.deferredWriteTimerTask != null) {
+            this.deferredWriteTimerTask.cancel();
+            this.deferredWriteTimerTask = null;
+        }
+        this.deferredCurrent = null;
+    }
+
+    private void cancelRepetition() {
+        if(this.repetitionTimerTask != null) {
+            this.repetitionTimerTask.cancel();
+            this.repetitionTimerTask = null;
+        }
+    }
+
+    public synchronized Integer getWrittenCurrent() {
+        return writtenCurrent;
+    }
+
+    public synchronized Integer getDeferredCurrent() {
+        return deferredCurrent;
+    }
+
+    public synchronized long getWriteCount() {
+        return writeCount;
+    }
+
+    public synchronized long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public synchronized long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public synchronized long getRepetitionCount() {
+        return repetitionCount;
+    }
+
+    public synchronized long getFailureCount() {
+        return failureCount;
+    }
+}
@@ -38,7 +38,12 @@ public interface EVChargerControl extends ApplianceIdConsumer, Validateable {
 
     boolean isInErrorState();
 
-    void setChargeCurrent(int current);
+    /**
+     * Set the charge current.
+     * @param current
+     * @return true, if the charge current has been written to the charger successfully
+     */
+    boolean setChargeCurrent(int current);
 
     void startCharging();
 
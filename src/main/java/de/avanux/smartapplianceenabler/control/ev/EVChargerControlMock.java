@@ -107,8 +107,9 @@ public class EVChargerControlMock implements EVChargerControl, Meter {
     }
 
     @Override
-    public void setChargeCurrent(int current) {
+    public boolean setChargeCurrent(int current) {
         logDebug("setChargeCurrent=" + current);
+        return true;
     }
 
     @Override
@@ -155,6 +156,11 @@ public class EVChargerControlMock implements EVChargerControl, Meter {
         return 0;
     }
 
+    @Override
+    public int getAveragingInterval() {
+        return Meter.averagingInterval;
+    }
+
     @Override
     public float getEnergy() {
         return energyCounter;
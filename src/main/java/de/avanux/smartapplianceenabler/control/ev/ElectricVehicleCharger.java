@@ -23,27 +23,36 @@ import de.avanux.smartapplianceenabler.configuration.ConfigurationException;
 import de.avanux.smartapplianceenabler.control.Control;
 import de.avanux.smartapplianceenabler.control.ControlStateChangedListener;
 import de.avanux.smartapplianceenabler.http.EVHttpControl;
+import de.avanux.smartapplianceenabler.meter.GridPowerSource;
 import de.avanux.smartapplianceenabler.meter.Meter;
+import de.avanux.smartapplianceenabler.meter.MeterGridPowerSource;
 import de.avanux.smartapplianceenabler.modbus.EVModbusControl;
 import de.avanux.smartapplianceenabler.notification.*;
+import de.avanux.smartapplianceenabler.persistence.Checkpointable;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
 import de.avanux.smartapplianceenabler.schedule.*;
 import de.avanux.smartapplianceenabler.semp.webservice.DeviceInfo;
 import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
 import de.avanux.smartapplianceenabler.configuration.Validateable;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.annotation.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Validateable, ApplianceIdConsumer,
-        TimeframeIntervalChangedListener, NotificationProvider {
+        TimeframeIntervalChangedListener, NotificationProvider, Checkpointable {
 
     private transient Logger logger = LoggerFactory.getLogger(ElectricVehicleCharger.class);
     @XmlAttribute
@@ -69,11 +78,14 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
             @XmlElement(name = "ElectricVehicle", type = ElectricVehicle.class),
     })
     private List<ElectricVehicle> vehicles;
+    @XmlElement(name = "SurplusControl")
+    private SurplusControl surplusControl;
     private transient Integer connectedVehicleId;
     private transient SocValues socValues = new SocValues();;
     private transient SocValues socValuesSentToListeners;
-    private transient LocalDateTime socTimestamp;
-    private transient LocalDateTime socInitialTimestamp;
+    // set by the thread retrieving the SOC
+    private transient volatile LocalDateTime socTimestamp;
+    private transient volatile LocalDateTime socInitialTimestamp;
     private transient boolean socScriptAsync = true;
     private transient boolean socScriptRunning;
     private transient boolean socCalculationRequired;
@@ -85,14 +97,18 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
     private transient Vector<EVChargerState> stateHistory = new Vector<>();
     private transient LocalDateTime stateLastChangedTimestamp;
     private transient boolean useOptionalEnergy = true;
-    private transient List<ControlStateChangedListener> controlStateChangedListeners = new ArrayList<>();
+    private transient List<ControlStateChangedListener> controlStateChangedListeners = new CopyOnWriteArrayList<>();
     private transient Long switchChargingStateTimestamp;
     private transient Integer chargePower;
+    private transient Integer currentLimit;
     private transient Timer timer;
     private transient GuardedTimerTask updateStateTimerTask;
-    private transient GuardedTimerTask chargePowerRepetitionTimerTask;
+    private transient ChargeCurrentActuator chargeCurrentActuator;
     private transient boolean startChargingRequested;
     private transient boolean stopChargingRequested;
+    private transient boolean chargingPausedByLoadManagement;
+    private transient Long chargingPausedTimestamp;
+    private transient int minPauseDuration; // seconds
     private transient boolean firstInvocationAfterSkip;
     private transient Integer minPowerConsumption;
     private transient NotificationHandler notificationHandler;
@@ -143,6 +159,15 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
 
     public void setControl(EVChargerControl control) {
         this.control = control;
+        this.chargeCurrentActuator = null;
+    }
+
+    public SurplusControl getSurplusControl() {
+        return surplusControl;
+    }
+
+    public void setSurplusControl(SurplusControl surplusControl) {
+        this.surplusControl = surplusControl;
     }
 
     public Integer getVoltage() {
@@ -211,7 +236,7 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
     }
 
     private void updateControlStateChangedListeners(LocalDateTime now, boolean switchOn) {
-        for(ControlStateChangedListener listener : new ArrayList<>(controlStateChangedListeners)) {
+        for(ControlStateChangedListener listener : controlStateChangedListeners) {
             logger.debug("{}: Notifying {} {}", applianceId, ControlStateChangedListener.class.getSimpleName(),
                     listener.getClass().getSimpleName());
             listener.controlStateChanged(now, switchOn);
@@ -253,7 +278,7 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
     }
 
     public Long getSocInitialTimestamp() {
-        ZoneOffset zoneOffset = ZoneId.systemDefault().getRules().getOffset(LocalDateTime.now());
+        ZoneOffset zoneOffset = ZoneId.systemDefault().getRules().getOffset(Clock.now());
         return socInitialTimestamp != null ? socInitialTimestamp.toEpochSecond(zoneOffset) * 1000 : null;
     }
 
@@ -303,6 +328,7 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         boolean useEvControlMock = Boolean.parseBoolean(System.getProperty("sae.evcontrol.mock", "false"));
         if(useEvControlMock) {
             this.control= new EVChargerControlMock();
+            this.chargeCurrentActuator = null;
             this.appliance.setMeter((Meter) this.control);
         }
         logger.debug("{}: voltage={} phases={} startChargingStateDetectionDelay={} chargePowerRepetition={}",
@@ -328,18 +354,42 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         this.timer = timer;
         if(timer != null) {
             this.updateStateTimerTask = new GuardedTimerTask(this.applianceId,"UpdateState",
-                    getPollInterval() * 1000) {
+                    getPollInterval() * 1000, getMailbox()) {
                 @Override
                 public void runTask() {
                     // don't add code here since it is not used by integration tests
                     // add it in updateStateTimerTaskImpl()
-                    updateStateTimerTaskImpl(LocalDateTime.now());
+                    updateStateTimerTaskImpl(Clock.now());
                 }
             };
             // the initial delay is needed in order to have regular timeframe intervals created by TimeframeIntervalHandler
             // before OptionalEnergyInterval is created by onEVChargerStateChanged
             timer.schedule(this.updateStateTimerTask, this.updateStateTimerTask.getPeriod(), this.updateStateTimerTask.getPeriod());
         }
+        getChargeCurrentActuator().start(timer, getMailbox(), this.chargePowerRepetition);
+        if(this.surplusControl != null) {
+            GridPowerSource gridPowerSource = getGridPowerSource();
+            if(gridPowerSource != null) {
+                this.surplusControl.setApplianceId(this.applianceId);
+                getChargeCurrentActuator().setMinIntervalMillis(this.surplusControl.getInterval() * 1000L);
+                this.surplusControl.start(gridPowerSource, timer, getMailbox(), this);
+            }
+            else {
+                logger.warn("{}: No grid power source found for surplus control", this.applianceId);
+            }
+        }
+    }
+
+    private GridPowerSource getGridPowerSource() {
+        String meterApplianceId = this.surplusControl.getMeterApplianceId();
+        if(meterApplianceId != null) {
+            Appliance meterAppliance = ApplianceManager.getInstance().findAppliance(meterApplianceId);
+            if(meterAppliance != null && meterAppliance.getMeter() != null) {
+                return new MeterGridPowerSource(meterAppliance.getMeter());
+            }
+            return null;
+        }
+        return ApplianceManager.getInstance().getGridPowerSource();
     }
 
     public void updateStateTimerTaskImpl(LocalDateTime now) {
@@ -354,14 +404,28 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         if(this.updateStateTimerTask != null) {
             this.updateStateTimerTask.cancel();
         }
-        cancelChargePowerRepetitionTimerTask();
+        getChargeCurrentActuator().reset();
+        if(this.surplusControl != null) {
+            this.surplusControl.stop();
+        }
     }
 
     /**
      * Returns true, if the state update was performed. This does not necessarily mean that the state has changed!
      * @return
      */
-    public synchronized boolean updateState(LocalDateTime now) {
+    public boolean updateState(LocalDateTime now) {
+        if(this.chargingPausedByLoadManagement) {
+            if(control.isVehicleNotConnected() || control.isInErrorState()) {
+                this.chargingPausedByLoadManagement = false;
+                this.chargingPausedTimestamp = null;
+            }
+            else if(! resumeChargingIfPossible()) {
+                // the charger is not charging on purpose which must not be detected as charging completed
+                logger.debug("{}: Skipping state detection while charging is paused by load management", applianceId);
+                return false;
+            }
+        }
         if(isWithinSwitchChargingStateDetectionDelay(false)) {
             logger.debug("{}: Skipping state detection for {}s", applianceId, getStartChargingStateDetectionDelay());
             this.firstInvocationAfterSkip = true;
@@ -495,6 +559,64 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         return currenState;
     }
 
+    /**
+     * Saves state history and SOC values so that a connected vehicle and its charging process are known
+     * immediately after restore without state detection.
+     */
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        out.writeShort(stateHistory.size());
+        for(EVChargerState state : stateHistory) {
+            out.writeByte(state.ordinal());
+        }
+        RuntimeCheckpoint.writeNullableLocalDateTime(out, stateLastChangedTimestamp);
+        RuntimeCheckpoint.writeNullableInt(out, connectedVehicleId);
+        socValues.writeCheckpoint(out);
+        RuntimeCheckpoint.writeNullableLocalDateTime(out, socTimestamp);
+        RuntimeCheckpoint.writeNullableLocalDateTime(out, socInitialTimestamp);
+        out.writeFloat(socRetrievalEnergyMeterValue);
+        out.writeBoolean(socRetrievalForChargingAlmostCompleted);
+        out.writeDouble(chargeLoss);
+    }
+
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        EVChargerState[] states = EVChargerState.values();
+        List<EVChargerState> restoredStateHistory = new ArrayList<>();
+        int stateCount = in.readShort();
+        for(int i=0; i<stateCount; i++) {
+            int ordinal = in.readByte();
+            if(ordinal < 0 || ordinal >= states.length) {
+                throw new IOException("Invalid charger state " + ordinal);
+            }
+            restoredStateHistory.add(states[ordinal]);
+        }
+        if(restoredStateHistory.isEmpty()) {
+            throw new IOException("Empty charger state history");
+        }
+        LocalDateTime restoredStateLastChangedTimestamp = RuntimeCheckpoint.readNullableLocalDateTime(in);
+        Integer restoredConnectedVehicleId = RuntimeCheckpoint.readNullableInt(in);
+        SocValues restoredSocValues = SocValues.readCheckpoint(in);
+        LocalDateTime restoredSocTimestamp = RuntimeCheckpoint.readNullableLocalDateTime(in);
+        LocalDateTime restoredSocInitialTimestamp = RuntimeCheckpoint.readNullableLocalDateTime(in);
+        float restoredSocRetrievalEnergyMeterValue = in.readFloat();
+        boolean restoredSocRetrievalForChargingAlmostCompleted = in.readBoolean();
+        double restoredChargeLoss = in.readDouble();
+
+        this.stateHistory.clear();
+        this.stateHistory.addAll(restoredStateHistory);
+        this.stateLastChangedTimestamp = restoredStateLastChangedTimestamp;
+        this.connectedVehicleId = restoredConnectedVehicleId;
+        this.socValues = restoredSocValues;
+        this.socTimestamp = restoredSocTimestamp;
+        this.socInitialTimestamp = restoredSocInitialTimestamp;
+        this.socRetrievalEnergyMeterValue = restoredSocRetrievalEnergyMeterValue;
+        this.socRetrievalForChargingAlmostCompleted = restoredSocRetrievalForChargingAlmostCompleted;
+        this.chargeLoss = restoredChargeLoss;
+        logger.debug("{}: Restored state={} connectedVehicleId={} socValues={}", applianceId, getState(),
+                connectedVehicleId, socValues);
+    }
+
     public void resetChargingCompletedToVehicleConnected(LocalDateTime now) {
         if(isChargingCompleted()) {
             logger.debug("{}: Enforcing state {}", applianceId, EVChargerState.VEHICLE_CONNECTED.name());
@@ -541,11 +663,14 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
     @Override
     public boolean isOn() {
         return isOn(getStartChargingStateDetectionDelay(),
-                System.currentTimeMillis(), this.switchChargingStateTimestamp);
+                Clock.currentTimeMillis(), this.switchChargingStateTimestamp);
     }
 
     protected boolean isOn(Integer startChargingStateDetectionDelay,
                         long currentMillis, Long startChargingTimestamp) {
+        if(this.chargingPausedByLoadManagement) {
+            return true;
+        }
         if(isWithinSwitchChargingStateDetectionDelay(true, startChargingStateDetectionDelay, currentMillis,
                 startChargingTimestamp)) {
             if(this.startChargingRequested) {
@@ -609,7 +734,7 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
             initStateHistory();
         }
 
-        for(ControlStateChangedListener listener : new ArrayList<>(controlStateChangedListeners)) {
+        for(ControlStateChangedListener listener : controlStateChangedListeners) {
             logger.debug("{}: Notifying {} {}", applianceId, ControlStateChangedListener.class.getSimpleName(),
                     listener.getClass().getSimpleName());
             listener.onEVChargerStateChanged(now, previousState, newState, getConnectedVehicle());
@@ -636,7 +761,7 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
 
     protected boolean isWithinSwitchChargingStateDetectionDelay(boolean addPollInterval) {
         return isWithinSwitchChargingStateDetectionDelay(addPollInterval, getStartChargingStateDetectionDelay(),
-                System.currentTimeMillis(), this.switchChargingStateTimestamp);
+                Clock.currentTimeMillis(), this.switchChargingStateTimestamp);
     }
 
     protected boolean isWithinSwitchChargingStateDetectionDelay(boolean addPollInterval, Integer switchChargingStateDetectionDelay,
@@ -758,30 +883,34 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         }
     }
 
-    private GuardedTimerTask createChargePowerRepetitionTimerTask(int chargeCurrent) {
-        return new GuardedTimerTask(this.applianceId,"ChargePowerRepetition",
-                this.chargePowerRepetition * 1000) {
-            @Override
-            public void runTask() {
-                control.setChargeCurrent(chargeCurrent);
-            }
-        };
+    private ApplianceMailbox getMailbox() {
+        return this.appliance != null ? this.appliance.getMailbox() : null;
     }
 
-    private void cancelChargePowerRepetitionTimerTask() {
-        if(this.chargePowerRepetitionTimerTask != null) {
-            this.chargePowerRepetitionTimerTask.cancel();
+    private synchronized ChargeCurrentActuator getChargeCurrentActuator() {
+        if(this.chargeCurrentActuator == null) {
+            this.chargeCurrentActuator = new ChargeCurrentActuator(this.applianceId, this.control);
         }
+        return this.chargeCurrentActuator;
     }
 
-    public synchronized void setChargePower(int power) {
-        int phases = getPhases();
+    /**
+     * Returns the number of phases used for charging the connected vehicle.
+     * @return
+     */
+    private int getChargingPhases() {
+        ElectricVehicle chargingVehicle = getConnectedVehicle();
+        if(chargingVehicle != null && chargingVehicle.getPhases() != null) {
+            return chargingVehicle.getPhases();
+        }
+        return getPhases();
+    }
+
+    public void setChargePower(int power) {
+        int phases = getChargingPhases();
         int adjustedPower = power;
         ElectricVehicle chargingVehicle = getConnectedVehicle();
         if(chargingVehicle != null) {
-            if(chargingVehicle.getPhases() != null) {
-                phases = chargingVehicle.getPhases();
-            }
             if(chargingVehicle.getMaxChargePower() != null && power > chargingVehicle.getMaxChargePower()) {
                 adjustedPower = chargingVehicle.getMaxChargePower();
                 logger.debug("{}: Limiting charge power to vehicle maximum of {}W",
@@ -789,33 +918,168 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
             }
         }
         int current = Float.valueOf((float) adjustedPower / (getVoltage() * phases)).intValue();
+        if(this.currentLimit != null && current > this.currentLimit) {
+            logger.debug("{}: Limiting charge current to {}A set by load management", applianceId, this.currentLimit);
+            current = this.currentLimit;
+        }
         logger.debug("{}: Set charge power: {}W corresponds to {}A using {} phases",
                 applianceId, adjustedPower, current, phases);
         this.chargePower = adjustedPower;
-        if(this.chargePowerRepetition != null && this.timer != null) {
-            logger.debug("{}: Scheduling charge power repetition ...", this.applianceId);
-            if(this.chargePowerRepetitionTimerTask != null) {
-                cancelChargePowerRepetitionTimerTask();
-            }
-            this.chargePowerRepetitionTimerTask = createChargePowerRepetitionTimerTask(current);
-            this.timer.schedule(this.chargePowerRepetitionTimerTask, 0, this.chargePowerRepetitionTimerTask.getPeriod());
-        } else {
-            control.setChargeCurrent(current);
+        if(this.chargingPausedByLoadManagement) {
+            logger.debug("{}: Charging is paused by load management", applianceId);
+            return;
         }
+        getChargeCurrentActuator().setChargeCurrent(current);
     }
 
     public Integer getChargePower() {
         return chargePower;
     }
 
-    public synchronized void startCharging() {
+    /**
+     * Returns the charge current corresponding to the charge power requested or null, if no charge power
+     * has been requested.
+     * @return
+     */
+    public Integer getChargeCurrentDemand() {
+        Integer chargePower = this.chargePower;
+        if(chargePower == null) {
+            return null;
+        }
+        return (int) Math.ceil((double) chargePower / (getVoltage() * getChargingPhases()));
+    }
+
+    public Integer getCurrentLimit() {
+        return currentLimit;
+    }
+
+    /**
+     * Limits the charge current. If charge power has been requested before it is set again with the new limit.
+     * A limit of 0 pauses charging since chargers do not accept a charge current of 0. Charging is resumed
+     * as soon as the limit is raised again unless charging has been stopped in the meantime. In order to avoid
+     * switching the charger on and off whenever the available current oscillates around the minimum current,
+     * charging is not resumed before the minimum pause duration has elapsed. If the limit is raised earlier,
+     * charging is resumed by the next state update after the minimum pause duration.
+     * @param currentLimit the maximum charge current or null, if not limited
+     */
+    public void setCurrentLimit(Integer currentLimit) {
+        if(! Objects.equals(this.currentLimit, currentLimit)) {
+            logger.debug("{}: Set current limit: {}A", applianceId, currentLimit);
+            this.currentLimit = currentLimit;
+            if(isCurrentLimitZero()) {
+                if(isOn() && ! this.chargingPausedByLoadManagement) {
+                    logger.debug("{}: Pause charging", applianceId);
+                    this.chargingPausedByLoadManagement = true;
+                    this.chargingPausedTimestamp = Clock.currentTimeMillis();
+                    control.stopCharging();
+                    getChargeCurrentActuator().reset();
+                }
+                return;
+            }
+            if(this.chargingPausedByLoadManagement) {
+                resumeChargingIfPossible();
+            }
+            else if(this.chargePower != null) {
+                setChargePower(this.chargePower);
+            }
+        }
+    }
+
+    /**
+     * Resumes charging paused by load management if the current limit is no longer 0 and the minimum pause
+     * duration has elapsed.
+     * @return true, if charging has been resumed
+     */
+    private boolean resumeChargingIfPossible() {
+        if(isCurrentLimitZero()) {
+            return false;
+        }
+        if(this.chargingPausedTimestamp != null) {
+            long remainingMillis = this.chargingPausedTimestamp + this.minPauseDuration * 1000L
+                    - Clock.currentTimeMillis();
+            if(remainingMillis > 0) {
+                logger.debug("{}: Resume charging deferred by {}s due to minimum pause duration",
+                        applianceId, remainingMillis / 1000);
+                return false;
+            }
+        }
+        logger.debug("{}: Resume charging", applianceId);
+        this.chargingPausedByLoadManagement = false;
+        this.chargingPausedTimestamp = null;
+        control.startCharging();
+        this.switchChargingStateTimestamp = Clock.currentTimeMillis();
+        if(this.chargePower != null) {
+            setChargePower(this.chargePower);
+        }
+        return true;
+    }
+
+    /**
+     * Sets the minimum duration of a pause caused by load management.
+     * @param minPauseDuration the minimum pause duration in seconds
+     */
+    public void setMinPauseDuration(int minPauseDuration) {
+        this.minPauseDuration = minPauseDuration;
+    }
+
+    private boolean isCurrentLimitZero() {
+        return this.currentLimit != null && this.currentLimit == 0;
+    }
+
+    /**
+     * Returns true, if charging has been paused since load management has no current available for the charger.
+     * @return
+     */
+    public boolean isChargingPausedByLoadManagement() {
+        return chargingPausedByLoadManagement;
+    }
+
+    public boolean isSurplusControlActive() {
+        return this.surplusControl != null && this.surplusControl.isActive();
+    }
+
+    /**
+     * Adjusts the charge current to the surplus if charging is on and the active timeframe interval
+     * is using optional energy.
+     * @param now
+     */
+    public void controlSurplus(LocalDateTime now) {
+        if(this.surplusControl == null) {
+            return;
+        }
+        TimeframeInterval activeTimeframeInterval = this.appliance.getTimeframeIntervalHandler().getActiveTimeframeInterval();
+        if(isOn() && activeTimeframeInterval != null
+                && activeTimeframeInterval.getRequest().isUsingOptionalEnergy(now)
+                && activeTimeframeInterval.getRequest().isAcceptControlRecommendations()) {
+            int wattsPerAmpere = getVoltage() * getChargingPhases();
+            this.surplusControl.activate(this.chargePower,
+                    this.chargePower != null ? this.chargePower / wattsPerAmpere : null);
+            ElectricVehicle chargingVehicle = getConnectedVehicle();
+            Integer current = this.surplusControl.computeChargeCurrent(Clock.currentTimeMillis(), getVoltage(),
+                    getChargingPhases(), chargingVehicle != null ? chargingVehicle.getMaxChargePower() : null);
+            if(current != null) {
+                setChargePower(current * wattsPerAmpere);
+            }
+        }
+        else {
+            this.surplusControl.deactivate();
+        }
+    }
+
+    public void startCharging() {
         if(!startChargingRequested) {
             logger.debug("{}: Start charging process", applianceId);
             this.startChargingRequested = true;
             this.stopChargingRequested = false;
-            control.startCharging();
-            this.switchChargingStateTimestamp = System.currentTimeMillis();
-            updateControlStateChangedListeners(LocalDateTime.now(), true);
+            if(isCurrentLimitZero()) {
+                logger.debug("{}: Charging is paused by load management", applianceId);
+                this.chargingPausedByLoadManagement = true;
+            }
+            else {
+                control.startCharging();
+            }
+            this.switchChargingStateTimestamp = Clock.currentTimeMillis();
+            updateControlStateChangedListeners(Clock.now(), true);
         }
     }
 
@@ -823,19 +1087,19 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         this.startChargingRequested = startChargingRequested;
     }
 
-    public synchronized void stopCharging() {
+    public void stopCharging() {
         if(!stopChargingRequested) {
             logger.debug("{}: Stop charging process", applianceId);
-            updateControlStateChangedListeners(LocalDateTime.now(), false);
+            updateControlStateChangedListeners(Clock.now(), false);
             this.startChargingRequested = false;
             this.stopChargingRequested = true;
+            this.chargingPausedByLoadManagement = false;
+            this.chargingPausedTimestamp = null;
             control.stopCharging();
             boolean wasInChargingAfterLastVehicleConnected = wasInStateAfterLastState(EVChargerState.CHARGING, EVChargerState.VEHICLE_CONNECTED);
-            this.switchChargingStateTimestamp = wasInChargingAfterLastVehicleConnected ? System.currentTimeMillis() : null;
+            this.switchChargingStateTimestamp = wasInChargingAfterLastVehicleConnected ? Clock.currentTimeMillis() : null;
             this.chargePower = null;
-            if(this.chargePowerRepetitionTimerTask != null) {
-                this.chargePowerRepetitionTimerTask.cancel();
-            }
+            getChargeCurrentActuator().reset();
         }
     }
 
@@ -857,7 +1121,7 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         }
     }
 
-    public synchronized void updateSoc(LocalDateTime now) {
+    public void updateSoc(LocalDateTime now) {
         if(! isVehicleNotConnected()) {
             boolean chargingAlmostCompleted = false;
             boolean socChanged = false;
@@ -928,6 +1192,17 @@ public class ElectricVehicleCharger implements Control, ApplianceLifeCycle, Vali
         @Override
         public void run() {
             Double soc = getStateOfCharge(now, electricVehicle);
+            ApplianceMailbox mailbox = getMailbox();
+            if(socScriptAsync && mailbox != null && ! mailbox.isProcessing()) {
+                // the script is executed by a separate thread but the SOC values are changed in the mailbox
+                mailbox.execute(() -> applyStateOfCharge(soc));
+            }
+            else {
+                applyStateOfCharge(soc);
+            }
+        }
+
+        private void applyStateOfCharge(Double soc) {
             if(soc != null) {
                 logger.debug("{}: Retrieved SOC={}", applianceId, percentageFormat.format(soc));
                 Integer socLastRetrieved = socValues.retrieved != null ? socValues.retrieved : socValues.initial;
@@ -18,9 +18,14 @@
 
 package de.avanux.smartapplianceenabler.control.ev;
 
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 public class SocValues {
     public Integer batteryCapacity;
     public Integer initial;
@@ -41,6 +46,18 @@ public class SocValues {
         this.batteryCapacity = batteryCapacity;
     }
 
+    public void writeCheckpoint(DataOutput out) throws IOException {
+        RuntimeCheckpoint.writeNullableInt(out, batteryCapacity);
+        RuntimeCheckpoint.writeNullableInt(out, initial);
+        RuntimeCheckpoint.writeNullableInt(out, retrieved);
+        RuntimeCheckpoint.writeNullableInt(out, current);
+    }
+
+    public static SocValues readCheckpoint(DataInput in) throws IOException {
+        return new SocValues(RuntimeCheckpoint.readNullableInt(in), RuntimeCheckpoint.readNullableInt(in),
+                RuntimeCheckpoint.readNullableInt(in), RuntimeCheckpoint.readNullableInt(in));
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.control.ev;
+
+import de.avanux.smartapplianceenabler.meter.GridPowerListener;
+import de.avanux.smartapplianceenabler.meter.GridPowerSource;
+import de.avanux.smartapplianceenabler.util.Clock;
+import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import java.util.Timer;
+import java.util.concurrent.Executor;
+
+/**
+ * Closed-loop control of the charge current following the surplus measured by a {@link GridPowerSource}.
+ * <p>
+ * The charge power is the output of a PI controller whose error is the difference between the target grid power
+ * and the measured grid power. Grid import within the deadband is ignored as well as a surplus too small for the next
+ * current step, which avoids a limit cycle between two adjacent currents. The integral term holds the charge power
+ * in steady state and is limited to the power range of the charger (anti-windup). The resulting charge current
+ * is only changed if it leaves the hysteresis band around the current set before.
+ * <p>
+ * The controller does not switch charging on or off - this is still done based on the timeframe intervals and
+ * the recommendations of the energy manager. It only adjusts the charge current while charging is on and
+ * the active timeframe interval is using optional energy.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class SurplusControl implements GridPowerListener {
+    private transient Logger logger = LoggerFactory.getLogger(SurplusControl.class);
+    public transient static final int DEFAULT_INTERVAL = 2;
+    public transient static final int DEFAULT_TARGET_GRID_POWER = 0;
+    public transient static final double DEFAULT_KP = 0.3;
+    public transient static final double DEFAULT_KI = 0.1;
+    public transient static final int DEFAULT_DEADBAND = 50;
+    public transient static final double DEFAULT_HYSTERESIS = 0.25;
+    public transient static final int DEFAULT_MIN_CURRENT = 6;
+    public transient static final int DEFAULT_MAX_CURRENT = 16;
+    @XmlAttribute
+    private String meterApplianceId;
+    @XmlAttribute
+    private Integer interval; // seconds
+    @XmlAttribute
+    private Integer targetGridPower; // W
+    @XmlAttribute
+    private Double kp;
+    @XmlAttribute
+    private Double ki; // 1/s
+    @XmlAttribute
+    private Integer deadband; // W
+    @XmlAttribute
+    private Double hysteresis; // A
+    @XmlAttribute
+    private Integer minCurrent; // A
+    @XmlAttribute
+    private Integer maxCurrent; // A
+    private transient String applianceId;
+    private transient GridPowerSource gridPowerSource;
+    private transient GuardedTimerTask controlTimerTask;
+    private transient volatile long measurementMillis;
+    private transient volatile int measuredGridPower;
+    private transient long lastControlMillis;
+    private transient long lastMeasurementMillis;
+    private transient boolean active;
+    private transient double integral;
+    private transient Integer current;
+
+    public String getMeterApplianceId() {
+        return meterApplianceId;
+    }
+
+    public void setMeterApplianceId(String meterApplianceId) {
+        this.meterApplianceId = meterApplianceId;
+    }
+
+    public int getInterval() {
+        return interval != null ? interval : DEFAULT_INTERVAL;
+    }
+
+    public void setInterval(Integer interval) {
+        this.interval = interval;
+    }
+
+    public int getTargetGridPower() {
+        return targetGridPower != null ? targetGridPower : DEFAULT_TARGET_GRID_POWER;
+    }
+
+    public void setTargetGridPower(Integer targetGridPower) {
+        this.targetGridPower = targetGridPower;
+    }
+
+    public double getKp() {
+        return kp != null ? kp : DEFAULT_KP;
+    }
+
+    public void setKp(Double kp) {
+        this.kp = kp;
+    }
+
+    public double getKi() {
+        return ki != null ? ki : DEFAULT_KI;
+    }
+
+    public void setKi(Double ki) {
+        this.ki = ki;
+    }
+
+    public int getDeadband() {
+        return deadband != null ? deadband : DEFAULT_DEADBAND;
+    }
+
+    public void setDeadband(Integer deadband) {
+        this.deadband = deadband;
+    }
+
+    public double getHysteresis() {
+        return hysteresis != null ? hysteresis : DEFAULT_HYSTERESIS;
+    }
+
+    public void setHysteresis(Double hysteresis) {
+        this.hysteresis = hysteresis;
+    }
+
+    public int getMinCurrent() {
+        return minCurrent != null ? minCurrent : DEFAULT_MIN_CURRENT;
+    }
+
+    public void setMinCurrent(Integer minCurrent) {
+        this.minCurrent = minCurrent;
+    }
+
+    public int getMaxCurrent() {
+        return maxCurrent != null ? maxCurrent : DEFAULT_MAX_CURRENT;
+    }
+
+    public void setMaxCurrent(Integer maxCurrent) {
+        this.maxCurrent = maxCurrent;
+    }
+
+    public void setApplianceId(String applianceId) {
+        this.applianceId = applianceId;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public void start(GridPowerSource gridPowerSource, Timer timer, Executor executor, ElectricVehicleCharger evCharger) {
+        logger.debug("{}: Starting surplus control: meterApplianceId={} interval={}s targetGridPower={}W kp={} ki={} "
+                        + "deadband={}W hysteresis={}A minCurrent={}A maxCurrent={}A",
+                applianceId, meterApplianceId, getInterval(), getTargetGridPower(), getKp(), getKi(),
+                getDeadband(), getHysteresis(), getMinCurrent(), getMaxCurrent());
+        this.gridPowerSource = gridPowerSource;
+        gridPowerSource.addGridPowerListener(this);
+        if(timer != null) {
+            this.controlTimerTask = new GuardedTimerTask(applianceId, "SurplusControl",
+                    getInterval() * 1000, executor) {
+                @Override
+                public void runTask() {
+                    evCharger.controlSurplus(Clock.now());
+                }
+            };
+            timer.schedule(this.controlTimerTask, this.controlTimerTask.getPeriod(), this.controlTimerTask.getPeriod());
+        }
+    }
+
+    public void stop() {
+        if(this.controlTimerTask != null) {
+            this.controlTimerTask.cancel();
+            this.controlTimerTask = null;
+        }
+        if(this.gridPowerSource != null) {
+            this.gridPowerSource.removeGridPowerListener(this);
+            this.gridPowerSource = null;
+        }
+        deactivate();
+    }
+
+    @Override
+    public void onGridPowerUpdate(long timestampMillis, int gridPower) {
+        this.measuredGridPower = gridPower;
+        this.measurementMillis = timestampMillis;
+    }
+
+    /**
+     * Starts control with the integral term set to the current charge power to avoid a bump.
+     * @param chargePower the current charge power or null if unknown
+     * @param chargeCurrent the current charge current or null if unknown
+     */
+    public void activate(Integer chargePower, Integer chargeCurrent) {
+        if(! active) {
+            logger.debug("{}: Activating surplus control: chargePower={}W chargeCurrent={}A",
+                    applianceId, chargePower, chargeCurrent);
+            this.active = true;
+            this.integral = chargePower != null ? chargePower : 0.0;
+            this.current = chargeCurrent;
+            this.lastControlMillis = 0;
+        }
+    }
+
+    public void deactivate() {
+        if(active) {
+            logger.debug("{}: Deactivating surplus control", applianceId);
+            this.active = false;
+            this.current = null;
+        }
+    }
+
+    /**
+     * Computes the charge current based on the most recent grid power measurement.
+     * @param nowMillis
+     * @param voltage
+     * @param phases the number of phases used for charging
+     * @param maxPower the maximum charge power of the vehicle or null
+     * @return the charge current to be set or null, if it should not be changed
+     */
+    public Integer computeChargeCurrent(long nowMillis, int voltage, int phases, Integer maxPower) {
+        long measurementMillis = this.measurementMillis;
+        if(measurementMillis == 0 || measurementMillis == lastMeasurementMillis) {
+            return null;
+        }
+        long maxMeasurementAge = Math.max(3 * getInterval(), 10) * 1000L;
+        if(nowMillis - measurementMillis > maxMeasurementAge) {
+            logger.debug("{}: Grid power measurement outdated", applianceId);
+            return null;
+        }
+        this.lastMeasurementMillis = measurementMillis;
+        return computeChargeCurrent(nowMillis, this.measuredGridPower, voltage, phases, maxPower);
+    }
+
+    protected Integer computeChargeCurrent(long nowMillis, int gridPower, int voltage, int phases, Integer maxPower) {
+        if(! active) {
+            return null;
+        }
+        double wattsPerAmpere = (double) voltage * phases;
+        double minOutput = getMinCurrent() * wattsPerAmpere;
+        double maxOutput = getMaxCurrent() * wattsPerAmpere;
+        if(maxPower != null) {
+            maxOutput = Math.max(minOutput, Math.min(maxOutput, maxPower));
+        }
+        double dt = lastControlMillis > 0 ? Math.min((nowMillis - lastControlMillis) / 1000.0, 3 * getInterval())
+                : getInterval();
+        this.lastControlMillis = nowMillis;
+
+        double error = getTargetGridPower() - gridPower;
+        // a surplus smaller than one current step cannot be used without drawing power from the grid
+        if(error >= - getDeadband() && error < Math.max(getDeadband(), wattsPerAmpere)) {
+            error = 0.0;
+        }
+        this.integral = clamp(this.integral + getKi() * error * dt, minOutput, maxOutput);
+        double output = clamp(this.integral + getKp() * error, minOutput, maxOutput);
+
+        double rawCurrent = output / wattsPerAmpere;
+        int newCurrent = (int) Math.floor(rawCurrent);
+        if(this.current != null
+                && rawCurrent > this.current - getHysteresis()
+                && rawCurrent < this.current + 1 + getHysteresis()) {
+            newCurrent = this.current;
+        }
+        int maxCurrent = (int) Math.floor(maxOutput / wattsPerAmpere);
+        newCurrent = Math.max(getMinCurrent(), Math.min(newCurrent, maxCurrent));
+        logger.trace("{}: Surplus control: gridPower={}W error={}W integral={}W output={}W current={}A",
+                applianceId, gridPower, error, integral, output, newCurrent);
+        this.current = newCurrent;
+        return newCurrent;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(value, max));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.http;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Creates the Authorization header for HTTP Digest authentication (RFC 7616) in response to a challenge
+ * received with status 401. Supports algorithms MD5 and SHA-256 (as used by Shelly Gen2 devices), both also
+ * in their session variants, with quality of protection "auth" or without quality of protection.
+ */
+public class DigestAuthorization {
+    private static final Pattern PARAMETER = Pattern.compile("(\\w+)\\s*=\\s*(?:\"((?:[^\"\\\\]|\\\\.)*)\"|([^\\s,]*))");
+    private static final SecureRandom random = new SecureRandom();
+
+    /**
+     * Returns the value of the Authorization header for the challenge given.
+     * @param challenge value of the WWW-Authenticate header
+     * @param method request method
+     * @param uri request target, i.e. path and query of the URL
+     * @param username
+     * @param password
+     * @return the header value or null, if the challenge is not a supported Digest challenge
+     */
+    public static String create(String challenge, String method, String uri, String username, String password) {
+        return create(challenge, method, uri, username, password, createCnonce());
+    }
+
+    static String create(String challenge, String method, String uri, String username, String password,
+                         String cnonce) {
+        if(challenge == null || ! challenge.regionMatches(true, 0, "Digest ", 0, 7)) {
+            return null;
+        }
+        Map<String, String> parameters = parseParameters(challenge.substring(7));
+        String realm = parameters.get("realm");
+        String nonce = parameters.get("nonce");
+        String algorithm = parameters.getOrDefault("algorithm", "MD5");
+        String qop = parameters.get("qop");
+        if(realm == null || nonce == null) {
+            return null;
+        }
+        boolean session = algorithm.toUpperCase(Locale.ROOT).endsWith("-SESS");
+        String digestAlgorithm = getDigestAlgorithm(session ? algorithm.substring(0, algorithm.length() - 5) : algorithm);
+        if(digestAlgorithm == null) {
+            return null;
+        }
+        if(qop != null) {
+            boolean auth = false;
+            for(String option : qop.split(",")) {
+                auth |= "auth".equals(option.trim());
+            }
+            if(! auth) {
+                // auth-int is not supported
+                return null;
+            }
+            qop = "auth";
+        }
+        String nc = "00000001";
+        String ha1 = hash(digestAlgorithm, username + ":" + realm + ":" + password);
+        if(session) {
+            ha1 = hash(digestAlgorithm, ha1 + ":" + nonce + ":" + cnonce);
+        }
+        String ha2 = hash(digestAlgorithm, method + ":" + uri);
+        String response = qop != null
+                ? hash(digestAlgorithm, ha1 + ":" + nonce + ":" + nc + ":" + cnonce + ":" + qop + ":" + ha2)
+                : hash(digestAlgorithm, ha1 + ":" + nonce + ":" + ha2);
+
+        StringBuilder authorization = new StringBuilder("Digest ");
+        authorization.append("username=\"").append(username).append("\"");
+        authorization.append(", realm=\"").append(realm).append("\"");
+        authorization.append(", nonce=\"").append(nonce).append("\"");
+        authorization.append(", uri=\"").append(uri).append("\"");
+        authorization.append(", algorithm=").append(algorithm);
+        if(qop != null) {
+            authorization.append(", qop=").append(qop);
+            authorization.append(", nc=").append(nc);
+            authorization.append(", cnonce=\"").append(cnonce).append("\"");
+        }
+        authorization.append(", response=\"").append(response).append("\"");
+        String opaque = parameters.get("opaque");
+        if(opaque != null) {
+            authorization.append(", opaque=\"").append(opaque).append("\"");
+        }
+        return authorization.toString();
+    }
+
+    private static Map<String, String> parseParameters(String parameters) {
+        Map<String, String> result = new HashMap<>();
+        Matcher matcher = PARAMETER.matcher(parameters);
+        while(matcher.find()) {
+            String value = matcher.group(2) != null ? matcher.group(2).replaceAll("\\\\(.)", "$1") : matcher.group(3);
+            result.put(matcher.group(1).toLowerCase(Locale.ROOT), value);
+        }
+        return result;
+    }
+
+    private static String getDigestAlgorithm(String algorithm) {
+        switch (algorithm.toUpperCase(Locale.ROOT)) {
+            case "MD5":
+                return "MD5";
+            case "SHA-256":
+                return "SHA-256";
+            default:
+                return null;
+        }
+    }
+
+    private static String hash(String digestAlgorithm, String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance(digestAlgorithm).digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for(byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        }
+        catch(NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String createCnonce() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        return Base64.getEncoder().withoutPadding().encodeToString(bytes);
+    }
+}
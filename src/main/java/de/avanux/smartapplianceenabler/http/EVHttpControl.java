@@ -36,7 +36,13 @@ import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlElement;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -56,6 +62,7 @@ public class EVHttpControl implements EVChargerControl {
     private transient RequestCache<ParentWithChild<HttpRead, HttpReadValue>, String> requestCache;
     private transient HttpTransactionExecutor httpTransactionExecutor = new HttpTransactionExecutor();
     private transient Integer pollInterval; // seconds
+    private transient Map<HttpRead, CompletableFuture<String>> pendingResponses = new HashMap<>();
 
 
     public EVHttpControl() {
@@ -161,14 +168,7 @@ public class EVHttpControl implements EVChargerControl {
     protected boolean readValue(EVReadValueName valueName) {
         ParentWithChild<HttpRead, HttpReadValue> read = getReadValue(valueName);
         if(read != null) {
-            String response = this.requestCache.get(read);
-            if(response == null) {
-                response = this.httpTransactionExecutor.execute(HttpMethod.GET, read.parent().getUrl(), null);
-                this.requestCache.put(read, response);
-            }
-            else {
-                logger.debug("{}: Cached response: {}", applianceId, response);
-            }
+            String response = getResponse(read);
             if(response != null) {
                 String value = response;
                 ContentProtocolHandler contentProtocolHandler = getContentProtocolHandler();
@@ -185,6 +185,73 @@ public class EVHttpControl implements EVChargerControl {
         return false;
     }
 
+    private String getResponse(ParentWithChild<HttpRead, HttpReadValue> read) {
+        String response = getCachedResponse(read);
+        if(response != null) {
+            logger.debug("{}: Cached response: {}", applianceId, response);
+            return response;
+        }
+        if(this.httpTransactionExecutor.isAsync()) {
+            CompletableFuture<String> future = requestReadsAsync().get(read.parent());
+            try {
+                return future.get(this.httpTransactionExecutor.getMaxAsyncDuration().toMillis(), TimeUnit.MILLISECONDS);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            catch(ExecutionException e) {
+                logger.error("{}: Error reading HTTP response", applianceId, e);
+            }
+            catch(TimeoutException e) {
+                logger.error("{}: Timeout reading HTTP response", applianceId);
+            }
+            return null;
+        }
+        String url = read.parent().getUrl();
+        response = this.httpTransactionExecutor.isStreaming()
+                ? this.httpTransactionExecutor.execute(HttpMethod.GET, url, null, null, read.parent().getMaxBodySize())
+                : this.httpTransactionExecutor.execute(HttpMethod.GET, url, null);
+        putCachedResponse(read.parent(), response);
+        return response;
+    }
+
+    /**
+     * Requests all reads concurrently unless a request for the same read is still pending.
+     * Responses are put into the request cache by callbacks, so that subsequent reads of the same state update
+     * are served from the cache.
+     * @return the futures of the responses by read
+     */
+    protected synchronized Map<HttpRead, CompletableFuture<String>> requestReadsAsync() {
+        Map<HttpRead, CompletableFuture<String>> responses = new HashMap<>(this.pendingResponses);
+        if(this.httpReads != null) {
+            for(HttpRead read : this.httpReads) {
+                if(! responses.containsKey(read)) {
+                    CompletableFuture<String> future = this.httpTransactionExecutor.executeAsync(HttpMethod.GET,
+                            read.getUrl(), null, null, read.getMaxBodySize());
+                    responses.put(read, future);
+                    this.pendingResponses.put(read, future);
+                    future.thenAccept(response -> onResponse(read, future, response));
+                }
+            }
+        }
+        return responses;
+    }
+
+    private synchronized void onResponse(HttpRead read, CompletableFuture<String> future, String response) {
+        // responses of requests issued before the cache was cleared must not be cached
+        if(this.pendingResponses.remove(read, future)) {
+            putCachedResponse(read, response);
+        }
+    }
+
+    private synchronized String getCachedResponse(ParentWithChild<HttpRead, HttpReadValue> read) {
+        return this.requestCache.get(read);
+    }
+
+    private synchronized void putCachedResponse(HttpRead read, String response) {
+        this.requestCache.put(new ParentWithChild<>(read, null), response);
+    }
+
     public ParentWithChild<HttpRead, HttpReadValue> getReadValue(EVReadValueName name) {
         if(this.httpReads != null) {
             for(HttpRead read : this.httpReads) {
@@ -212,12 +279,12 @@ public class EVHttpControl implements EVChargerControl {
     }
 
     @Override
-    public void setChargeCurrent(int current) {
+    public boolean setChargeCurrent(int current) {
         ParentWithChild<HttpWrite, HttpWriteValue> write = getWriteValue(EVWriteValueName.ChargingCurrent);
         Double factorToValue = write.child().getFactorToValue();
         logger.debug("{}: Set charge current {}A", applianceId, current);
         Integer factoredCurrent = factorToValue != null ? Double.valueOf(current * factorToValue).intValue() : current;
-        writeValue(write, factoredCurrent);
+        return writeValue(write, factoredCurrent);
     }
 
     @Override
@@ -232,11 +299,16 @@ public class EVHttpControl implements EVChargerControl {
         writeValue(write);
     }
 
-    private void writeValue(ParentWithChild<HttpWrite, HttpWriteValue> write, Object ... arguments) {
+    private boolean writeValue(ParentWithChild<HttpWrite, HttpWriteValue> write, Object ... arguments) {
+        clearCachedResponses();
+        return write.parent().writeValue(this.httpTransactionExecutor, write.child(), arguments);
+    }
+
+    private synchronized void clearCachedResponses() {
         if(this.requestCache != null) {
             // the next poll after write should return a fresh response from charger
             this.requestCache.clear();
         }
-        write.parent().writeValue(this.httpTransactionExecutor, write.child(), arguments);
+        this.pendingResponses.clear();
     }
 }
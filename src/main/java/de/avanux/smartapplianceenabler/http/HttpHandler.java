@@ -25,6 +25,8 @@ import de.avanux.smartapplianceenabler.util.RegexUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.CompletableFuture;
+
 public class HttpHandler implements ApplianceIdConsumer {
 
     private transient Logger logger = LoggerFactory.getLogger(HttpHandler.class);
@@ -42,15 +44,64 @@ public class HttpHandler implements ApplianceIdConsumer {
 
     public Double getDoubleValue(ParentWithChild<HttpRead, HttpReadValue> read,
                                ContentProtocolHandler contentProtocolHandler) {
-        String protocolHandlerValue = getValue(read, contentProtocolHandler);
+        if(read != null && isStreamingExtraction(read, contentProtocolHandler)) {
+            String extractedValue = this.httpTransactionExecutor.execute(getMethod(read), read.parent().getUrl(),
+                    read.child().getData(), read.child().getExtractionRegex(), read.parent().getMaxBodySize());
+            return parseDoubleValue(read, extractedValue);
+        }
+        return toDoubleValue(read, getValue(read, contentProtocolHandler));
+    }
+
+    /**
+     * Returns the value without blocking the caller. The future completes with null if no value could be read.
+     * @param read
+     * @param contentProtocolHandler
+     * @return
+     */
+    public CompletableFuture<Double> getDoubleValueAsync(ParentWithChild<HttpRead, HttpReadValue> read,
+                                                        ContentProtocolHandler contentProtocolHandler) {
+        if(read == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        String url = read.parent().getUrl();
+        HttpMethod method = getMethod(read);
+        String data = read.child().getData();
+        if(isStreamingExtraction(read, contentProtocolHandler)) {
+            return this.httpTransactionExecutor.executeAsync(method, url, data,
+                    read.child().getExtractionRegex(), read.parent().getMaxBodySize())
+                    .thenApply(extractedValue -> parseDoubleValue(read, extractedValue));
+        }
+        return this.httpTransactionExecutor.executeAsync(method, url, data)
+                .thenApply(response -> toDoubleValue(read, extractValue(read, contentProtocolHandler, response)));
+    }
+
+    /**
+     * Returns true, if the value can be extracted while the response body is being received, i.e. the extraction
+     * regex is applied to the body itself and not to a value read by the content protocol handler.
+     */
+    private boolean isStreamingExtraction(ParentWithChild<HttpRead, HttpReadValue> read,
+                                          ContentProtocolHandler contentProtocolHandler) {
+        return this.httpTransactionExecutor.isStreaming()
+                && (contentProtocolHandler == null || read.child().getPath() == null);
+    }
+
+    private Double toDoubleValue(ParentWithChild<HttpRead, HttpReadValue> read, String protocolHandlerValue) {
         if(protocolHandlerValue != null) {
             String valueExtractionRegex = read.child().getExtractionRegex();
             String extractedValue = null;
             if(valueExtractionRegex != null) {
                 extractedValue = RegexUtil.getMatchingGroup1(protocolHandlerValue, valueExtractionRegex);
             }
-            String parsableString = (extractedValue != null ? extractedValue : protocolHandlerValue)
-                    .replace(',', '.');
+            logger.debug("{}: protocolHandlerValue={} valueExtractionRegex={} extractedValue={}",
+                    applianceId, protocolHandlerValue, valueExtractionRegex, extractedValue);
+            return parseDoubleValue(read, extractedValue != null ? extractedValue : protocolHandlerValue);
+        }
+        return null;
+    }
+
+    private Double parseDoubleValue(ParentWithChild<HttpRead, HttpReadValue> read, String extractedValue) {
+        if(extractedValue != null) {
+            String parsableString = extractedValue.replace(',', '.');
             Double value;
             Double factorToValue = read.child().getFactorToValue();
             if(factorToValue != null) {
@@ -59,8 +110,8 @@ public class HttpHandler implements ApplianceIdConsumer {
             else {
                 value = Double.parseDouble(parsableString);
             }
-            logger.debug("{}: value={} protocolHandlerValue={} valueExtractionRegex={} extractedValue={} factorToValue={}",
-                    applianceId, value, protocolHandlerValue, valueExtractionRegex, extractedValue, factorToValue);
+            logger.debug("{}: value={} extractedValue={} factorToValue={}",
+                    applianceId, value, extractedValue, factorToValue);
             return value;
         }
         return null;
@@ -83,20 +134,36 @@ public class HttpHandler implements ApplianceIdConsumer {
                                ContentProtocolHandler contentProtocolHandler) {
         if(read != null) {
             String url = read.parent().getUrl();
-            HttpMethod method = read.child().getMethod() != null ? read.child().getMethod() : HttpMethod.GET;
+            HttpMethod method = getMethod(read);
             String data = read.child().getData();
-            String response = this.httpTransactionExecutor.execute(method, url, data);
+            String response = this.httpTransactionExecutor.isStreaming()
+                    ? this.httpTransactionExecutor.execute(method, url, data, null, read.parent().getMaxBodySize())
+                    : this.httpTransactionExecutor.execute(method, url, data);
+            logger.debug("{}: url={} method={} data={} path={}", applianceId, url, method, data, read.child().getPath());
+            return extractValue(read, contentProtocolHandler, response);
+        }
+        return null;
+    }
+
+    private HttpMethod getMethod(ParentWithChild<HttpRead, HttpReadValue> read) {
+        return read.child().getMethod() != null ? read.child().getMethod() : HttpMethod.GET;
+    }
+
+    /**
+     * Extracts the value from the response. Synchronized since responses of asynchronous requests may arrive
+     * concurrently while the content protocol handler keeps the parsed response as state.
+     */
+    private synchronized String extractValue(ParentWithChild<HttpRead, HttpReadValue> read,
+                                             ContentProtocolHandler contentProtocolHandler, String response) {
+        if(response != null) {
+            logger.debug("{}: Response: {}", applianceId, response);
+            String protocolHandlerValue = response;
             String path = read.child().getPath();
-            logger.debug("{}: url={} method={} data={} path={}", applianceId, url, method, data, path);
-            if(response != null) {
-                logger.debug("{}: Response: {}", applianceId, response);
-                String protocolHandlerValue = response;
-                if(contentProtocolHandler != null && path != null) {
-                    contentProtocolHandler.parse(response);
-                    protocolHandlerValue = contentProtocolHandler.readValue(path);
-                }
-                return protocolHandlerValue;
+            if(contentProtocolHandler != null && path != null) {
+                contentProtocolHandler.parse(response);
+                protocolHandlerValue = contentProtocolHandler.readValue(path);
             }
+            return protocolHandlerValue;
         }
         return null;
     }
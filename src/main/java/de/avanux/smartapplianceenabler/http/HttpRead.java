@@ -33,8 +33,11 @@ import java.util.List;
 @XmlAccessorType(XmlAccessType.FIELD)
 public class HttpRead {
     private transient Logger logger = LoggerFactory.getLogger(HttpRead.class);
+    public static final int DEFAULT_MAX_BODY_SIZE = 1048576; // bytes
     @XmlAttribute
     private String url;
+    @XmlAttribute
+    private Integer maxBodySize;
     @XmlElement(name = "HttpReadValue")
     private List<HttpReadValue> readValues;
 
@@ -49,6 +52,18 @@ public class HttpRead {
         return url;
     }
 
+    /**
+     * Returns the maximum number of bytes to be read from the response body.
+     * @return
+     */
+    public int getMaxBodySize() {
+        return maxBodySize != null ? maxBodySize : DEFAULT_MAX_BODY_SIZE;
+    }
+
+    public void setMaxBodySize(Integer maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
     public List<HttpReadValue> getReadValues() {
         return readValues;
     }
@@ -19,6 +19,9 @@ package de.avanux.smartapplianceenabler.http;
 
 import de.avanux.smartapplianceenabler.notification.NotificationHandler;
 import de.avanux.smartapplianceenabler.notification.NotificationType;
+import de.avanux.smartapplianceenabler.util.CircuitBreaker;
+import de.avanux.smartapplianceenabler.util.CircuitBreakerRegistry;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpStatus;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -36,16 +39,55 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Executor of a HTTP transaction.
+ * <p>
+ * Besides the blocking execution a transaction can be executed asynchronously. Asynchronous transactions
+ * share a single non-blocking client served by a small number of threads, so that many devices can be polled
+ * concurrently. Each asynchronous request has a deadline after which its future completes with no response.
+ * Dependent actions of the returned futures are executed by separate callback threads, so that slow consumers
+ * cannot delay the processing of responses. Requests are sent without credentials; if the server responds with 401,
+ * the request is repeated once using the scheme requested by the server (Digest or Basic). Sending Basic credentials
+ * preemptively saves this round trip but has to be enabled explicitly (system property
+ * <code>sae.http.preemptiveBasicAuth</code>) since it reveals the password to any server.
+ * <p>
+ * Values can be extracted while the response body is being received, so that reading stops and the connection
+ * is aborted as soon as the value has been found.
  */
 public class HttpTransactionExecutor {
+    private static final int TIMEOUT_SECONDS = 5;
+    private static final int ASYNC_THREADS = 2;
+    private static final int CALLBACK_THREADS = 2;
+    private static HttpClient asyncClient;
+    private static ExecutorService callbackExecutor;
     private Logger logger = LoggerFactory.getLogger(HttpTransactionExecutor.class);
     private String applianceId;
     private RequestConfig requestConfig;
     private HttpConfiguration configuration = new HttpConfiguration();
     private NotificationHandler notificationHandler = null;
+    private boolean async = Boolean.parseBoolean(System.getProperty("sae.http.async", "true"));
+    private Duration requestTimeout = Duration.ofSeconds(TIMEOUT_SECONDS);
+    private boolean streaming = Boolean.parseBoolean(System.getProperty("sae.http.streaming", "true"));
+    private boolean preemptiveBasicAuth = Boolean.parseBoolean(System.getProperty("sae.http.preemptiveBasicAuth", "false"));
 
     public void setApplianceId(String applianceId) {
         this.applianceId = applianceId;
@@ -59,6 +101,63 @@ public class HttpTransactionExecutor {
         this.notificationHandler = notificationHandler;
     }
 
+    /**
+     * Returns true, if consumers should use {@link #executeAsync(HttpMethod, String, String)}.
+     * Asynchronous execution can be disabled with system property <code>sae.http.async=false</code>.
+     * @return
+     */
+    public boolean isAsync() {
+        return async;
+    }
+
+    public void setAsync(boolean async) {
+        this.async = async;
+    }
+
+    /**
+     * Returns true, if consumers should extract values while receiving the response body using
+     * {@link #execute(HttpMethod, String, String, String, Integer)} or
+     * {@link #executeAsync(HttpMethod, String, String, String, Integer)}.
+     * Streaming extraction can be disabled with system property <code>sae.http.streaming=false</code>.
+     * @return
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public boolean isPreemptiveBasicAuth() {
+        return preemptiveBasicAuth;
+    }
+
+    /**
+     * Send Basic credentials with the first asynchronous request instead of waiting for the server's challenge.
+     * @param preemptiveBasicAuth
+     */
+    public void setPreemptiveBasicAuth(boolean preemptiveBasicAuth) {
+        this.preemptiveBasicAuth = preemptiveBasicAuth;
+    }
+
+    /**
+     * Set the deadline of asynchronous requests.
+     * @param requestTimeout
+     */
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Returns the maximum time until the future of an asynchronous transaction completes, which includes
+     * a repeated request if Digest authentication is required.
+     * @return
+     */
+    public Duration getMaxAsyncDuration() {
+        return requestTimeout.multipliedBy(2);
+    }
+
     public String execute(HttpMethod httpMethod, String url, String data) {
         CloseableHttpResponse response = null;
         try {
@@ -74,9 +173,69 @@ public class HttpTransactionExecutor {
         return null;
     }
 
+    /**
+     * Execute a HTTP transaction and extract a value from the response body while it is being received.
+     * Reading stops and the connection is aborted as soon as the value has been found.
+     * @param httpMethod
+     * @param url
+     * @param data
+     * @param extractionRegex regex containing a capture group for the value or null to return the whole body
+     * @param maxBodySize maximum number of bytes to be read or null for no limit
+     * @return the value or null if it could not be found
+     */
+    public String execute(HttpMethod httpMethod, String url, String data, String extractionRegex, Integer maxBodySize) {
+        CloseableHttpResponse response = null;
+        try {
+            response = executeLeaveOpen(httpMethod, url, data);
+            if (response != null && response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
+                HttpEntity entity = response.getEntity();
+                ContentType contentType = ContentType.getOrDefault(entity);
+                ResponseValueExtractor extractor = new ResponseValueExtractor(extractionRegex, maxBodySize,
+                        contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.ISO_8859_1);
+                try(InputStream inputStream = entity.getContent()) {
+                    byte[] bytes = new byte[4096];
+                    int length;
+                    while(! extractor.isDone() && (length = inputStream.read(bytes)) != -1) {
+                        extractor.onBytes(ByteBuffer.wrap(bytes, 0, length));
+                    }
+                    if(extractor.isDone()) {
+                        // closing the response without consuming the entity aborts the connection
+                        response.close();
+                    }
+                    else {
+                        extractor.onEndOfBody();
+                    }
+                }
+                return getExtractedValue(extractor, url);
+            }
+        } catch (Exception e) {
+            logger.error("{}: Error reading HTTP response", applianceId, e);
+        } finally {
+            closeResponse(response);
+        }
+        return null;
+    }
+
+    private String getExtractedValue(ResponseValueExtractor extractor, String url) {
+        if(extractor.isMaxBodySizeExceeded()) {
+            logger.warn("{}: Response body exceeds maximum size: url={} bytesRead={}",
+                    applianceId, url, extractor.getBytesRead());
+        }
+        logger.debug("{}: Extracted value={} bytesRead={}", applianceId, extractor.getValue(), extractor.getBytesRead());
+        return extractor.getValue();
+    }
+
     public CloseableHttpResponse executeLeaveOpen(HttpMethod httpMethod, String url, String data) {
+        CircuitBreaker circuitBreaker = CircuitBreakerRegistry.getInstance().getCircuitBreaker(applianceId, getEndpoint(url));
+        if(! circuitBreaker.allowRequest()) {
+            logger.debug("{}: Skipping HTTP request since {} is unreachable: method={} url={}",
+                    applianceId, circuitBreaker.getEndpoint(), httpMethod, url);
+            return null;
+        }
         logger.debug("{}: HTTP request: method={} url={} data={}", applianceId, httpMethod, url, data);
         CloseableHttpResponse response = null;
+        // null, if the request did not reach the endpoint; the probe permit has to be released in that case
+        Boolean reachable = null;
         try {
             HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
             withUsernameAndPassword(httpClientBuilder, configuration.getUsername(), configuration.getPassword());
@@ -107,23 +266,312 @@ public class HttpTransactionExecutor {
                                 .setEntity(new StringEntity(data, configuration.getContentType()));
                     }
                     response = client.execute(request);
+                    reachable = true;
                     logResponse(response);
                 }
+                else {
+                    logger.error("{}: Unsupported HTTP method {}", applianceId, httpMethod);
+                }
             }
             catch(IOException e) {
                 logger.error("{}: Error executing GET request.", applianceId, e);
-                if(this.notificationHandler != null) {
-                    this.notificationHandler.sendNotification(NotificationType.COMMUNICATION_ERROR);
-                }
+                reachable = false;
             }
 
             return response;
         } catch (Exception e) {
             logger.error("{}: Error reading HTTP response", applianceId, e);
+        } finally {
+            if(reachable == null) {
+                circuitBreaker.releaseProbe();
+            }
+            else if(reachable) {
+                circuitBreaker.recordSuccess();
+            }
+            else {
+                onFailure(circuitBreaker);
+            }
         }
         return null;
     }
 
+    /**
+     * Execute a HTTP transaction without blocking the caller.
+     * The returned future completes with the response body if the response code is 200 and with null otherwise,
+     * i.e. it never completes exceptionally due to communication errors or timeouts.
+     * @param httpMethod
+     * @param url
+     * @param data
+     * @return
+     */
+    public CompletableFuture<String> executeAsync(HttpMethod httpMethod, String url, String data) {
+        return executeAsync(httpMethod, url, data,
+                responseInfo -> responseInfo.statusCode() == HttpStatus.SC_OK
+                        ? HttpResponse.BodySubscribers.ofString(getCharset(responseInfo))
+                        : HttpResponse.BodySubscribers.replacing(null));
+    }
+
+    /**
+     * Execute a HTTP transaction without blocking the caller and extract a value from the response body
+     * while it is being received. Reading stops and the connection is aborted as soon as the value has been found.
+     * @param httpMethod
+     * @param url
+     * @param data
+     * @param extractionRegex regex containing a capture group for the value or null to return the whole body
+     * @param maxBodySize maximum number of bytes to be read or null for no limit
+     * @return future completing with the value or null if it could not be found
+     */
+    public CompletableFuture<String> executeAsync(HttpMethod httpMethod, String url, String data,
+                                                  String extractionRegex, Integer maxBodySize) {
+        return executeAsync(httpMethod, url, data,
+                responseInfo -> responseInfo.statusCode() == HttpStatus.SC_OK
+                        ? new ExtractingBodySubscriber(url,
+                            new ResponseValueExtractor(extractionRegex, maxBodySize, getCharset(responseInfo)))
+                        : HttpResponse.BodySubscribers.replacing(null));
+    }
+
+    private CompletableFuture<String> executeAsync(HttpMethod httpMethod, String url, String data,
+                                                   HttpResponse.BodyHandler<String> bodyHandler) {
+        CircuitBreaker circuitBreaker = CircuitBreakerRegistry.getInstance().getCircuitBreaker(applianceId, getEndpoint(url));
+        if(! circuitBreaker.allowRequest()) {
+            logger.debug("{}: Skipping HTTP request since {} is unreachable: method={} url={}",
+                    applianceId, circuitBreaker.getEndpoint(), httpMethod, url);
+            return CompletableFuture.completedFuture(null);
+        }
+        logger.debug("{}: Async HTTP request: method={} url={} data={}", applianceId, httpMethod, url, data);
+        HttpRequest request;
+        try {
+            request = buildAsyncRequest(httpMethod, url, data, null);
+        }
+        catch(Exception e) {
+            logger.error("{}: Error creating HTTP request", applianceId, e);
+            circuitBreaker.releaseProbe();
+            return CompletableFuture.completedFuture(null);
+        }
+        long startMillis = System.currentTimeMillis();
+        CompletableFuture<HttpResponse<String>> responseFuture;
+        try {
+            responseFuture = getAsyncClient().sendAsync(request, bodyHandler);
+        }
+        catch(RuntimeException e) {
+            logger.error("{}: Error sending HTTP request", applianceId, e);
+            circuitBreaker.releaseProbe();
+            return CompletableFuture.completedFuture(null);
+        }
+        return responseFuture
+                .thenCompose(response -> authenticateIfRequired(response, httpMethod, url, data, bodyHandler))
+                .handleAsync((response, throwable) -> {
+                    if(throwable != null) {
+                        Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                                ? throwable.getCause() : throwable;
+                        logger.error("{}: Error executing {} request: {}", applianceId, request.method(), cause.toString());
+                        onFailure(circuitBreaker);
+                        return null;
+                    }
+                    circuitBreaker.recordSuccess();
+                    logger.debug("{}: Response code is {} duration={}ms", applianceId, response.statusCode(),
+                            System.currentTimeMillis() - startMillis);
+                    return response.body();
+                }, getCallbackExecutor());
+    }
+
+    /**
+     * Repeats the request once with the credentials if the server requests authentication. Digest is preferred
+     * if the server offers both schemes. The request is not repeated with Basic if Basic credentials have been
+     * sent already.
+     */
+    private CompletableFuture<HttpResponse<String>> authenticateIfRequired(HttpResponse<String> response,
+                HttpMethod httpMethod, String url, String data, HttpResponse.BodyHandler<String> bodyHandler) {
+        String username = configuration.getUsername();
+        String password = configuration.getPassword();
+        if(response.statusCode() != HttpStatus.SC_UNAUTHORIZED || username == null || password == null) {
+            return CompletableFuture.completedFuture(response);
+        }
+        URI uri = response.request().uri();
+        String requestTarget = uri.getRawPath() + (uri.getRawQuery() != null ? "?" + uri.getRawQuery() : "");
+        List<String> challenges = response.headers().allValues("WWW-Authenticate");
+        for(String challenge : challenges) {
+            String authorization = DigestAuthorization.create(challenge, response.request().method(),
+                    requestTarget, username, password);
+            if(authorization != null) {
+                logger.debug("{}: Repeating HTTP request with Digest authentication", applianceId);
+                return getAsyncClient().sendAsync(buildAsyncRequest(httpMethod, url, data, authorization), bodyHandler);
+            }
+        }
+        boolean basicSent = response.request().headers().firstValue("Authorization").isPresent();
+        for(String challenge : challenges) {
+            if(! basicSent && isBasicChallenge(challenge)) {
+                logger.debug("{}: Repeating HTTP request with Basic authentication", applianceId);
+                return getAsyncClient().sendAsync(buildAsyncRequest(httpMethod, url, data,
+                        createBasicAuthorization(username, password)), bodyHandler);
+            }
+        }
+        return CompletableFuture.completedFuture(response);
+    }
+
+    private static boolean isBasicChallenge(String challenge) {
+        String trimmed = challenge.trim();
+        return trimmed.regionMatches(true, 0, "Basic", 0, 5)
+                && (trimmed.length() == 5 || Character.isWhitespace(trimmed.charAt(5)));
+    }
+
+    private static String createBasicAuthorization(String username, String password) {
+        String credentials = username + ":" + password;
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private Charset getCharset(HttpResponse.ResponseInfo responseInfo) {
+        Charset charset = null;
+        String contentType = responseInfo.headers().firstValue("Content-Type").orElse(null);
+        if(contentType != null) {
+            try {
+                charset = ContentType.parse(contentType).getCharset();
+            }
+            catch(Exception e) {
+                logger.trace("{}: Cannot parse content type {}", applianceId, contentType);
+            }
+        }
+        return charset != null ? charset : StandardCharsets.ISO_8859_1;
+    }
+
+    /**
+     * Feeds the body of an asynchronous response into a {@link ResponseValueExtractor} and cancels the subscription
+     * once the value has been found or the maximum body size has been exceeded.
+     */
+    private class ExtractingBodySubscriber implements HttpResponse.BodySubscriber<String> {
+        private final String url;
+        private final ResponseValueExtractor extractor;
+        private final CompletableFuture<String> body = new CompletableFuture<>();
+        private Flow.Subscription subscription;
+
+        ExtractingBodySubscriber(String url, ResponseValueExtractor extractor) {
+            this.url = url;
+            this.extractor = extractor;
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return body;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> items) {
+            for(ByteBuffer item : items) {
+                if(extractor.onBytes(item)) {
+                    subscription.cancel();
+                    body.complete(getExtractedValue(extractor, url));
+                    return;
+                }
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            body.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            extractor.onEndOfBody();
+            body.complete(getExtractedValue(extractor, url));
+        }
+    }
+
+    private HttpRequest buildAsyncRequest(HttpMethod httpMethod, String url, String data, String authorization) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url)).timeout(requestTimeout);
+        if(httpMethod == null || httpMethod == HttpMethod.GET) {
+            builder.GET();
+        }
+        else if(httpMethod == HttpMethod.DELETE) {
+            builder.DELETE();
+        }
+        else {
+            ContentType contentType = configuration.getContentType() != null
+                    ? configuration.getContentType() : ContentType.DEFAULT_TEXT;
+            HttpRequest.BodyPublisher bodyPublisher = HttpRequest.BodyPublishers.noBody();
+            if(data != null) {
+                Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.ISO_8859_1;
+                bodyPublisher = HttpRequest.BodyPublishers.ofString(data, charset);
+                builder.header("Content-Type", contentType.toString());
+            }
+            builder.method(httpMethod.name(), bodyPublisher);
+        }
+        String username = configuration.getUsername();
+        String password = configuration.getPassword();
+        if(authorization != null) {
+            builder.header("Authorization", authorization);
+        }
+        else if(preemptiveBasicAuth && username != null && password != null) {
+            builder.header("Authorization", createBasicAuthorization(username, password));
+        }
+        return builder.build();
+    }
+
+    private static synchronized HttpClient getAsyncClient() {
+        if(asyncClient == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            ExecutorService executor = Executors.newFixedThreadPool(ASYNC_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "http-async-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            asyncClient = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
+                    .executor(executor)
+                    .build();
+        }
+        return asyncClient;
+    }
+
+    private static synchronized ExecutorService getCallbackExecutor() {
+        if(callbackExecutor == null) {
+            AtomicInteger threadNumber = new AtomicInteger();
+            callbackExecutor = Executors.newFixedThreadPool(CALLBACK_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "http-callback-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return callbackExecutor;
+    }
+
+    private void onFailure(CircuitBreaker circuitBreaker) {
+        boolean opened = circuitBreaker.recordFailure();
+        if(this.notificationHandler != null) {
+            this.notificationHandler.sendNotification(NotificationType.COMMUNICATION_ERROR);
+            if(opened) {
+                this.notificationHandler.sendNotification(NotificationType.DEVICE_UNREACHABLE);
+            }
+        }
+    }
+
+    /**
+     * Returns the endpoint of an URL used to identify its circuit breaker.
+     * @param url
+     * @return scheme, host and port of the URL
+     */
+    protected String getEndpoint(String url) {
+        try {
+            URI uri = new URI(url);
+            if(uri.getHost() != null) {
+                return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() != -1 ? ":" + uri.getPort() : "");
+            }
+        }
+        catch(Exception e) {
+            logger.trace("{}: Cannot parse URL {}", applianceId, url);
+        }
+        return url;
+    }
+
     protected HttpClientBuilder withUsernameAndPassword(HttpClientBuilder httpClientBuilder, String username, String password) {
         if(username != null && password != null) {
             logger.debug("{}: username={} password={}", applianceId, username, password);
@@ -153,11 +601,10 @@ public class HttpTransactionExecutor {
 
     private RequestConfig getRequestConfig() {
         if(this.requestConfig == null) {
-            int timeout = 5; // seconds
             this.requestConfig = RequestConfig.custom()
-                    .setConnectTimeout(timeout * 1000)
-                    .setConnectionRequestTimeout(timeout * 1000)
-                    .setSocketTimeout(timeout * 1000).build();
+                    .setConnectTimeout(TIMEOUT_SECONDS * 1000)
+                    .setConnectionRequestTimeout(TIMEOUT_SECONDS * 1000)
+                    .setSocketTimeout(TIMEOUT_SECONDS * 1000).build();
 
         }
         return this.requestConfig;
@@ -66,11 +66,15 @@ public class HttpWrite {
         return null;
     }
 
-    public void writeValue(HttpTransactionExecutor executor, HttpWriteValue value, Object ... arguments) {
+    /**
+     * Write the value.
+     * @return true, if the HTTP request has been answered successfully
+     */
+    public boolean writeValue(HttpTransactionExecutor executor, HttpWriteValue value, Object ... arguments) {
         String urlWithPlaceholder = buildUrl(this.url, value.getValue(), value.getMethod());
         String resolvedUrl = MessageFormat.format(urlWithPlaceholder, arguments);
         String resolvedValue = MessageFormat.format(value.getValue(), arguments);
-        executor.execute(value.getMethod(), resolvedUrl, resolvedValue);
+        return executor.execute(value.getMethod(), resolvedUrl, resolvedValue) != null;
     }
 
     protected String buildUrl(String url, String value, HttpMethod httpMethod) {
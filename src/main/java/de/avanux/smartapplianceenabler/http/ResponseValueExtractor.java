@@ -0,0 +1,225 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.http;
+
+import de.avanux.smartapplianceenabler.util.RegexUtil;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts a value from a response body while it is being received.
+ * <p>
+ * The body is decoded into a char buffer which is matched against the extraction regex after each chunk.
+ * Once the value has been found and further input cannot change the match, no more input is needed and the
+ * connection may be aborted. If the regex starts with a greedy ".*" the last occurrence in the whole body is
+ * requested, so that the body has to be read completely before matching. If the value has not been found within
+ * the first {@link #BUFFER_CAPACITY} chars, the body is also read completely and matched once at its end,
+ * so that matches of any length are found while a long body is not matched again after each chunk.
+ * <p>
+ * As with {@link RegexUtil#getMatchingGroup1(String, String)} the whole body is returned if the regex does not
+ * match. Reading stops if the body exceeds the maximum body size. In this case the part of the body within the
+ * maximum body size is matched, unless the last occurrence is requested, which may follow after the limit.
+ * No value is returned if it has not been found within the limit.
+ * <p>
+ * The decoded body is buffered until the value has been found. The maximum body size therefore bounds the memory
+ * used for a response; without a maximum body size a body without the value is buffered completely.
+ */
+public class ResponseValueExtractor {
+    static final int BUFFER_CAPACITY = 16384; // chars
+    private static final int DECODE_BUFFER_SIZE = 4096; // chars
+    private final Pattern pattern;
+    private final boolean lastOccurrence;
+    private boolean streaming;
+    private final Integer maxBodySize;
+    private final CharsetDecoder decoder;
+    private final CharBuffer decodeBuffer = CharBuffer.allocate(DECODE_BUFFER_SIZE);
+    private final StringBuilder buffer = new StringBuilder();
+    private ByteBuffer undecodedBytes;
+    private long bytesRead;
+    private boolean maxBodySizeExceeded;
+    private boolean done;
+    private String value;
+
+    /**
+     * @param extractionRegex regex containing a capture group for the value or null to return the whole body
+     * @param maxBodySize maximum number of bytes to be read or null for no limit
+     * @param charset the charset of the body
+     */
+    public ResponseValueExtractor(String extractionRegex, Integer maxBodySize, Charset charset) {
+        this.maxBodySize = maxBodySize;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        if(extractionRegex == null) {
+            this.pattern = null;
+            this.lastOccurrence = false;
+            this.streaming = false;
+        }
+        else if(extractionRegex.startsWith(".*") && ! extractionRegex.startsWith(".*?")) {
+            this.pattern = RegexUtil.getPattern(extractionRegex);
+            this.lastOccurrence = true;
+            this.streaming = false;
+        }
+        else {
+            this.pattern = RegexUtil.getPattern(getStreamingRegex(extractionRegex));
+            this.lastOccurrence = false;
+            this.streaming = ! extractionRegex.startsWith("^");
+        }
+    }
+
+    /**
+     * Returns the regex without leading ".*?" and trailing ".*" which do not affect the captured value
+     * but would prevent matching before the end of the body.
+     */
+    protected static String getStreamingRegex(String extractionRegex) {
+        String regex = extractionRegex;
+        if(regex.startsWith(".*?")) {
+            regex = regex.substring(3);
+        }
+        if(regex.endsWith(".*") && ! regex.endsWith("\\.*")) {
+            regex = regex.substring(0, regex.length() - 2);
+        }
+        return regex;
+    }
+
+    /**
+     * Process the next chunk of the body.
+     * @param bytes
+     * @return true, if no more input is needed
+     */
+    public boolean onBytes(ByteBuffer bytes) {
+        if(done) {
+            return true;
+        }
+        long bytesReadBefore = bytesRead;
+        bytesRead += bytes.remaining();
+        if(maxBodySize != null && bytesRead > maxBodySize) {
+            maxBodySizeExceeded = true;
+            done = true;
+            if(pattern != null && ! lastOccurrence) {
+                // the value may still be contained in the part of the chunk within the limit
+                ByteBuffer withinLimit = bytes.duplicate();
+                withinLimit.limit(withinLimit.position() + (int) (maxBodySize - bytesReadBefore));
+                decode(withUndecodedBytes(withinLimit), false);
+                Matcher matcher = pattern.matcher(buffer);
+                if(matcher.find()) {
+                    value = matcher.group(1);
+                }
+            }
+            return true;
+        }
+        ByteBuffer input = withUndecodedBytes(bytes);
+        decode(input, false);
+        if(input.hasRemaining()) {
+            // incomplete multi-byte character at the end of the chunk
+            undecodedBytes = ByteBuffer.allocate(input.remaining());
+            undecodedBytes.put(input).flip();
+        }
+        if(streaming) {
+            Matcher matcher = pattern.matcher(buffer);
+            if(matcher.find()) {
+                if(! matcher.hitEnd()) {
+                    value = matcher.group(1);
+                    done = true;
+                }
+            }
+            else if(buffer.length() > BUFFER_CAPACITY) {
+                // the match may be longer than any part of the buffer retained, so match the whole body at its end
+                streaming = false;
+            }
+        }
+        return done;
+    }
+
+    /**
+     * Signals that the body has been received completely.
+     */
+    public void onEndOfBody() {
+        if(done) {
+            return;
+        }
+        decode(undecodedBytes != null ? undecodedBytes : ByteBuffer.allocate(0), true);
+        undecodedBytes = null;
+        decodeBuffer.clear();
+        decoder.flush(decodeBuffer);
+        decodeBuffer.flip();
+        buffer.append(decodeBuffer);
+        if(pattern == null) {
+            value = buffer.toString();
+        }
+        else {
+            Matcher matcher = pattern.matcher(buffer);
+            value = matcher.find() ? matcher.group(1) : buffer.toString();
+        }
+        done = true;
+    }
+
+    /**
+     * Returns the bytes of an incomplete character left over from the previous chunk followed by the chunk given.
+     */
+    private ByteBuffer withUndecodedBytes(ByteBuffer bytes) {
+        if(undecodedBytes == null) {
+            return bytes;
+        }
+        ByteBuffer input = ByteBuffer.allocate(undecodedBytes.remaining() + bytes.remaining());
+        input.put(undecodedBytes).put(bytes).flip();
+        undecodedBytes = null;
+        return input;
+    }
+
+    private void decode(ByteBuffer input, boolean endOfInput) {
+        CoderResult result;
+        do {
+            decodeBuffer.clear();
+            result = decoder.decode(input, decodeBuffer, endOfInput);
+            decodeBuffer.flip();
+            buffer.append(decodeBuffer);
+        }
+        while(result.isOverflow());
+    }
+
+    /**
+     * Returns the value captured by the extraction regex or the whole body if no extraction regex was given
+     * or the extraction regex did not match.
+     * @return the value or null, if the body exceeded the maximum body size and the value has not been found
+     * within the limit
+     */
+    public String getValue() {
+        return value;
+    }
+
+    public boolean isDone() {
+        return done;
+    }
+
+    public boolean isMaxBodySizeExceeded() {
+        return maxBodySizeExceeded;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.loadmanagement;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Allocates the current available on each phase of the grid connection to consumers whose current can be limited.
+ * <p>
+ * First each consumer requesting current is granted its minimum current in order of priority if it fits on all
+ * of its phases; otherwise it is granted nothing. Then the remaining current is shared by the consumers of each
+ * priority (highest first) by water-filling: the allocation of all consumers not yet satisfied is raised equally
+ * until either their demand is met or one of their phases is exhausted.
+ * <p>
+ * Consumers are kept sorted by priority so that an allocation runs in O(n) per filling step without allocating
+ * memory. The allocator is not thread-safe; callers have to synchronize access.
+ */
+public class LoadAllocator {
+    public static final int PHASES = 3;
+    private static final double EPSILON = 1e-6;
+    private Consumer[] consumers = new Consumer[0];
+    private final double[] remaining = new double[PHASES];
+    private final int[] unsaturated = new int[PHASES];
+
+    public static class Consumer {
+        private final String id;
+        private final int priority;
+        private final int phaseMask;
+        private final int minCurrent;
+        private int demand;
+        private int allocation;
+        private double level;
+        private boolean saturated;
+
+        /**
+         * @param id
+         * @param priority consumers with higher priority are served first
+         * @param phaseMask bit 0 for phase 1, bit 1 for phase 2, bit 2 for phase 3
+         * @param minCurrent the minimum current the consumer can operate with
+         */
+        public Consumer(String id, int priority, int phaseMask, int minCurrent) {
+            this.id = id;
+            this.priority = priority;
+            this.phaseMask = phaseMask;
+            this.minCurrent = minCurrent;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public int getPhaseMask() {
+            return phaseMask;
+        }
+
+        public boolean isOnPhase(int phaseIndex) {
+            return (phaseMask & (1 << phaseIndex)) != 0;
+        }
+
+        public int getMinCurrent() {
+            return minCurrent;
+        }
+
+        public int getDemand() {
+            return demand;
+        }
+
+        /**
+         * Sets the current requested by the consumer; 0 if it does not request current.
+         * @param demand
+         */
+        public void setDemand(int demand) {
+            this.demand = demand;
+        }
+
+        public int getAllocation() {
+            return allocation;
+        }
+
+        @Override
+        public String toString() {
+            return id + "(priority=" + priority + " demand=" + demand + "A allocation=" + allocation + "A)";
+        }
+    }
+
+    /**
+     * Returns the mask of phases used by a consumer using the given number of phases starting with the given phase.
+     * @param phases 1 .. 3
+     * @param startPhase 1 .. 3
+     * @return
+     */
+    public static int phaseMask(int phases, int startPhase) {
+        int mask = 0;
+        for(int i=0; i<Math.min(phases, PHASES); i++) {
+            mask |= 1 << ((startPhase - 1 + i) % PHASES);
+        }
+        return mask;
+    }
+
+    public void addConsumer(Consumer consumer) {
+        Consumer[] newConsumers = Arrays.copyOf(consumers, consumers.length + 1);
+        newConsumers[consumers.length] = consumer;
+        // stable sort keeps the order of addition within a priority
+        Arrays.sort(newConsumers, Comparator.comparingInt(Consumer::getPriority).reversed());
+        consumers = newConsumers;
+    }
+
+    public Consumer[] getConsumers() {
+        return consumers;
+    }
+
+    /**
+     * Computes the allocation of all consumers.
+     * @param budget the current available for the consumers on each phase
+     * @return the number of consumers whose allocation has changed
+     */
+    public int allocate(double[] budget) {
+        for(int p=0; p<PHASES; p++) {
+            remaining[p] = Math.max(budget[p], 0.0);
+        }
+        for(Consumer consumer : consumers) {
+            consumer.level = 0.0;
+            consumer.saturated = true;
+            if(consumer.demand > 0 && fits(consumer.phaseMask, consumer.minCurrent)) {
+                consumer.level = consumer.minCurrent;
+                consumer.saturated = false;
+                consume(consumer.phaseMask, consumer.minCurrent);
+            }
+        }
+        int groupStart = 0;
+        while(groupStart < consumers.length) {
+            int groupEnd = groupStart + 1;
+            while(groupEnd < consumers.length && consumers[groupEnd].priority == consumers[groupStart].priority) {
+                groupEnd++;
+            }
+            fill(groupStart, groupEnd);
+            groupStart = groupEnd;
+        }
+        int changed = 0;
+        for(Consumer consumer : consumers) {
+            int allocation = (int) Math.floor(consumer.level + EPSILON);
+            if(allocation != consumer.allocation) {
+                consumer.allocation = allocation;
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    private void fill(int from, int to) {
+        while(true) {
+            Arrays.fill(unsaturated, 0);
+            double step = Double.MAX_VALUE;
+            boolean pending = false;
+            for(int i=from; i<to; i++) {
+                Consumer consumer = consumers[i];
+                if(consumer.saturated) {
+                    continue;
+                }
+                double headroom = consumer.demand - consumer.level;
+                if(headroom <= EPSILON) {
+                    consumer.saturated = true;
+                    continue;
+                }
+                pending = true;
+                step = Math.min(step, headroom);
+                for(int p=0; p<PHASES; p++) {
+                    if(consumer.isOnPhase(p)) {
+                        unsaturated[p]++;
+                    }
+                }
+            }
+            if(! pending) {
+                return;
+            }
+            for(int p=0; p<PHASES; p++) {
+                if(unsaturated[p] > 0) {
+                    step = Math.min(step, remaining[p] / unsaturated[p]);
+                }
+            }
+            if(step <= EPSILON) {
+                // consumers on exhausted phases cannot get more
+                int exhaustedMask = 0;
+                for(int p=0; p<PHASES; p++) {
+                    if(unsaturated[p] > 0 && remaining[p] / unsaturated[p] <= EPSILON) {
+                        exhaustedMask |= 1 << p;
+                    }
+                }
+                for(int i=from; i<to; i++) {
+                    Consumer consumer = consumers[i];
+                    if(! consumer.saturated && (consumer.phaseMask & exhaustedMask) != 0) {
+                        consumer.saturated = true;
+                    }
+                }
+                continue;
+            }
+            for(int i=from; i<to; i++) {
+                Consumer consumer = consumers[i];
+                if(! consumer.saturated) {
+                    consumer.level += step;
+                    consume(consumer.phaseMask, step);
+                }
+            }
+        }
+    }
+
+    private boolean fits(int phaseMask, double current) {
+        for(int p=0; p<PHASES; p++) {
+            if((phaseMask & (1 << p)) != 0 && remaining[p] + EPSILON < current) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void consume(int phaseMask, double current) {
+        for(int p=0; p<PHASES; p++) {
+            if((phaseMask & (1 << p)) != 0) {
+                remaining[p] -= current;
+            }
+        }
+    }
+
+    /**
+     * Returns the current available on a phase after the last allocation.
+     * @param phaseIndex 0 .. 2
+     * @return
+     */
+    public double getRemaining(int phaseIndex) {
+        return remaining[phaseIndex];
+    }
+}
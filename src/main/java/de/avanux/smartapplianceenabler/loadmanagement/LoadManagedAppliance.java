@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.loadmanagement;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+
+/**
+ * Load management settings of an appliance. EV chargers are load managed even without these settings,
+ * other appliances only if they are configured.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class LoadManagedAppliance {
+    public transient static final int DEFAULT_PRIORITY = 0;
+    public transient static final int DEFAULT_PHASES = 1;
+    public transient static final int DEFAULT_START_PHASE = 1;
+    public transient static final int DEFAULT_MIN_CURRENT = 6;
+    public transient static final int DEFAULT_MAX_CURRENT = 16;
+    public transient static final int DEFAULT_MIN_PAUSE_DURATION = 300;
+    @XmlAttribute
+    private String id;
+    @XmlAttribute
+    private Integer priority;
+    @XmlAttribute
+    private Integer phases;
+    @XmlAttribute
+    private Integer startPhase;
+    @XmlAttribute
+    private Integer minCurrent; // A
+    @XmlAttribute
+    private Integer maxCurrent; // A
+    @XmlAttribute
+    private Integer minPauseDuration; // seconds
+
+    public LoadManagedAppliance() {
+    }
+
+    public LoadManagedAppliance(String id) {
+        this.id = id;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getPriority() {
+        return priority != null ? priority : DEFAULT_PRIORITY;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
+    /**
+     * Returns the number of phases configured or null, if not configured.
+     * @return
+     */
+    public Integer getPhases() {
+        return phases;
+    }
+
+    public void setPhases(Integer phases) {
+        this.phases = phases;
+    }
+
+    /**
+     * Returns the phase of the grid connection the first phase of the appliance is connected to.
+     * @return
+     */
+    public int getStartPhase() {
+        return startPhase != null ? startPhase : DEFAULT_START_PHASE;
+    }
+
+    public void setStartPhase(Integer startPhase) {
+        this.startPhase = startPhase;
+    }
+
+    public int getMinCurrent() {
+        return minCurrent != null ? minCurrent : DEFAULT_MIN_CURRENT;
+    }
+
+    public void setMinCurrent(Integer minCurrent) {
+        this.minCurrent = minCurrent;
+    }
+
+    /**
+     * Returns the maximum current of an EV charger or the nominal current of another appliance.
+     * @return
+     */
+    public int getMaxCurrent() {
+        return maxCurrent != null ? maxCurrent : DEFAULT_MAX_CURRENT;
+    }
+
+    public void setMaxCurrent(Integer maxCurrent) {
+        this.maxCurrent = maxCurrent;
+    }
+
+    /**
+     * Returns the minimum duration of a pause of an EV charger if no current is available for it.
+     * @return the minimum pause duration in seconds
+     */
+    public int getMinPauseDuration() {
+        return minPauseDuration != null ? minPauseDuration : DEFAULT_MIN_PAUSE_DURATION;
+    }
+
+    public void setMinPauseDuration(Integer minPauseDuration) {
+        this.minPauseDuration = minPauseDuration;
+    }
+}
@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.loadmanagement;
+
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger;
+import de.avanux.smartapplianceenabler.meter.GridPowerListener;
+import de.avanux.smartapplianceenabler.meter.GridPowerSource;
+import de.avanux.smartapplianceenabler.meter.Meter;
+import de.avanux.smartapplianceenabler.meter.PowerUpdateListener;
+import de.avanux.smartapplianceenabler.util.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static de.avanux.smartapplianceenabler.loadmanagement.LoadAllocator.PHASES;
+
+/**
+ * Keeps the current drawn from the grid connection within the per-phase limit by distributing the available
+ * current across EV chargers and by deferring the start of other high-power appliances.
+ * <p>
+ * The current available on each phase is the limit minus the current drawn by everything but the EV chargers.
+ * The latter is the current measured by the grid power source minus the current metered for the EV chargers.
+ * Without a grid power source only the EV chargers are considered. The allocation is recomputed on every update
+ * of the grid power source or the meter of an EV charger. Only chargers whose allocation has changed are notified.
+ * <p>
+ * Appliances other than EV chargers cannot be throttled. They are switched on only if their nominal current is
+ * available, taking into account that EV chargers of lower priority can be reduced to their minimum current.
+ * Once running their current is part of the measured grid current.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class LoadManagement implements GridPowerListener, PowerUpdateListener {
+    private transient Logger logger = LoggerFactory.getLogger(LoadManagement.class);
+    public transient static final int DEFAULT_VOLTAGE = 230;
+    public transient static final int RESERVATION_SECONDS = 10;
+    @XmlAttribute
+    private Integer maxPhaseCurrent; // A
+    @XmlAttribute
+    private Integer voltage;
+    @XmlElement(name = "LoadManagedAppliance")
+    private List<LoadManagedAppliance> loadManagedAppliances;
+    private transient LoadAllocator allocator;
+    private transient List<ChargerEntry> chargers;
+    private transient Map<String, SwitchEntry> switches;
+    private transient GridPowerSource gridPowerSource;
+    private transient volatile boolean started;
+    private transient final double[] budget = new double[PHASES];
+    private transient final double[] chargerCurrent = new double[PHASES];
+    private transient final double[] reserved = new double[PHASES];
+    private transient long reservationEndMillis;
+    private transient long updateCount;
+
+    private static class ChargerEntry {
+        private Appliance appliance;
+        private ElectricVehicleCharger charger;
+        private LoadAllocator.Consumer consumer;
+        private int phases;
+        private int maxCurrent;
+        private Integer limit;
+    }
+
+    private static class SwitchEntry {
+        private int priority;
+        private int phaseMask;
+        private int current;
+    }
+
+    public int getMaxPhaseCurrent() {
+        return maxPhaseCurrent;
+    }
+
+    public void setMaxPhaseCurrent(Integer maxPhaseCurrent) {
+        this.maxPhaseCurrent = maxPhaseCurrent;
+    }
+
+    public int getVoltage() {
+        return voltage != null ? voltage : DEFAULT_VOLTAGE;
+    }
+
+    public void setVoltage(Integer voltage) {
+        this.voltage = voltage;
+    }
+
+    public List<LoadManagedAppliance> getLoadManagedAppliances() {
+        return loadManagedAppliances;
+    }
+
+    public void setLoadManagedAppliances(List<LoadManagedAppliance> loadManagedAppliances) {
+        this.loadManagedAppliances = loadManagedAppliances;
+    }
+
+    private LoadManagedAppliance getLoadManagedAppliance(String applianceId) {
+        if(loadManagedAppliances != null) {
+            for(LoadManagedAppliance loadManagedAppliance : loadManagedAppliances) {
+                if(applianceId.equals(loadManagedAppliance.getId())) {
+                    return loadManagedAppliance;
+                }
+            }
+        }
+        return null;
+    }
+
+    public synchronized void start(List<Appliance> appliances, GridPowerSource gridPowerSource) {
+        logger.info("Starting load management: maxPhaseCurrent={}A voltage={}V gridPowerSource={}",
+                maxPhaseCurrent, getVoltage(), gridPowerSource);
+        this.allocator = new LoadAllocator();
+        this.chargers = new ArrayList<>();
+        this.switches = new HashMap<>();
+        for(Appliance appliance : appliances) {
+            LoadManagedAppliance settings = getLoadManagedAppliance(appliance.getId());
+            if(appliance.getControl() instanceof ElectricVehicleCharger) {
+                if(settings == null) {
+                    settings = new LoadManagedAppliance(appliance.getId());
+                }
+                ElectricVehicleCharger charger = (ElectricVehicleCharger) appliance.getControl();
+                charger.setMinPauseDuration(settings.getMinPauseDuration());
+                ChargerEntry entry = new ChargerEntry();
+                entry.appliance = appliance;
+                entry.charger = charger;
+                entry.phases = settings.getPhases() != null ? settings.getPhases() : charger.getPhases();
+                entry.maxCurrent = settings.getMaxCurrent();
+                entry.consumer = new LoadAllocator.Consumer(appliance.getId(), settings.getPriority(),
+                        LoadAllocator.phaseMask(entry.phases, settings.getStartPhase()), settings.getMinCurrent());
+                allocator.addConsumer(entry.consumer);
+                chargers.add(entry);
+                if(appliance.getMeter() != null) {
+                    appliance.getMeter().addPowerUpdateListener(this);
+                }
+                logger.debug("{}: Load managed EV charger: priority={} phases={} minCurrent={}A maxCurrent={}A "
+                                + "minPauseDuration={}s", appliance.getId(), settings.getPriority(), entry.phases,
+                        settings.getMinCurrent(), entry.maxCurrent, settings.getMinPauseDuration());
+            }
+            else if(settings != null) {
+                SwitchEntry entry = new SwitchEntry();
+                entry.priority = settings.getPriority();
+                entry.phaseMask = LoadAllocator.phaseMask(
+                        settings.getPhases() != null ? settings.getPhases() : LoadManagedAppliance.DEFAULT_PHASES,
+                        settings.getStartPhase());
+                entry.current = settings.getMaxCurrent();
+                switches.put(appliance.getId(), entry);
+                appliance.setLoadManagement(this);
+                logger.debug("{}: Load managed appliance: priority={} current={}A",
+                        appliance.getId(), entry.priority, entry.current);
+            }
+        }
+        this.gridPowerSource = gridPowerSource;
+        if(gridPowerSource != null) {
+            gridPowerSource.addGridPowerListener(this);
+        }
+        this.started = true;
+        update(Clock.currentTimeMillis());
+    }
+
+    public synchronized void stop() {
+        this.started = false;
+        if(this.gridPowerSource != null) {
+            this.gridPowerSource.removeGridPowerListener(this);
+            this.gridPowerSource = null;
+        }
+    }
+
+    @Override
+    public void onGridPowerUpdate(long timestampMillis, int gridPower) {
+        update(timestampMillis);
+    }
+
+    @Override
+    public void onPowerUpdate(int averagePower) {
+        update(Clock.currentTimeMillis());
+    }
+
+    /**
+     * Recomputes the allocation based on the most recent measurements and notifies chargers of changed limits.
+     * @param nowMillis
+     */
+    public synchronized void update(long nowMillis) {
+        if(! started) {
+            return;
+        }
+        updateBudget(nowMillis);
+        allocator.allocate(budget);
+        updateCount++;
+        for(ChargerEntry entry : chargers) {
+            Integer limit = entry.consumer.getDemand() > 0 ? entry.consumer.getAllocation() : null;
+            if(limit == null ? entry.limit != null : ! limit.equals(entry.limit)) {
+                entry.limit = limit;
+                logger.debug("{}: Current limit changed: {}A budget={}A/{}A/{}A", entry.appliance.getId(), limit,
+                        (int) budget[0], (int) budget[1], (int) budget[2]);
+                ElectricVehicleCharger charger = entry.charger;
+                entry.appliance.getMailbox().execute(() -> charger.setCurrentLimit(limit));
+            }
+        }
+    }
+
+    private void updateBudget(long nowMillis) {
+        for(int p=0; p<PHASES; p++) {
+            chargerCurrent[p] = 0.0;
+        }
+        for(ChargerEntry entry : chargers) {
+            if(entry.charger.isOn()) {
+                Integer demand = entry.charger.getChargeCurrentDemand();
+                entry.consumer.setDemand(demand != null ? Math.min(demand, entry.maxCurrent) : entry.maxCurrent);
+            }
+            else {
+                entry.consumer.setDemand(0);
+            }
+            Meter meter = entry.appliance.getMeter();
+            double current = meter != null ? meter.getAveragePower() / ((double) getVoltage() * entry.phases)
+                    : entry.consumer.getAllocation();
+            for(int p=0; p<PHASES; p++) {
+                if(entry.consumer.isOnPhase(p)) {
+                    chargerCurrent[p] += current;
+                }
+            }
+        }
+        boolean reservationActive = nowMillis < reservationEndMillis;
+        for(int p=0; p<PHASES; p++) {
+            double otherCurrent = 0.0;
+            if(gridPowerSource != null) {
+                otherCurrent = getGridCurrent(p + 1) - chargerCurrent[p];
+            }
+            budget[p] = maxPhaseCurrent - otherCurrent - (reservationActive ? reserved[p] : 0.0);
+        }
+    }
+
+    private double getGridCurrent(int phase) {
+        Integer phaseGridPower = gridPowerSource.getPhaseGridPower(phase);
+        if(phaseGridPower != null) {
+            return phaseGridPower / (double) getVoltage();
+        }
+        // assume balanced load if phases are not metered individually
+        return gridPowerSource.getGridPower() / (3.0 * getVoltage());
+    }
+
+    /**
+     * Returns true, if the appliance may be switched on. If so, its current is reserved until it shows up
+     * in the measurements.
+     * @param applianceId
+     * @param nowMillis
+     * @return
+     */
+    public synchronized boolean requestSwitchOn(String applianceId, long nowMillis) {
+        SwitchEntry entry = switches.get(applianceId);
+        if(! started || entry == null) {
+            return true;
+        }
+        updateBudget(nowMillis);
+        for(int p=0; p<PHASES; p++) {
+            if((entry.phaseMask & (1 << p)) == 0) {
+                continue;
+            }
+            double headroom = budget[p];
+            for(ChargerEntry charger : chargers) {
+                LoadAllocator.Consumer consumer = charger.consumer;
+                if(consumer.isOnPhase(p) && consumer.getAllocation() > 0) {
+                    headroom -= consumer.getPriority() >= entry.priority
+                            ? consumer.getAllocation() : consumer.getMinCurrent();
+                }
+            }
+            if(headroom < entry.current) {
+                logger.info("{}: Switching on not possible: {}A required but only {}A available on phase {}",
+                        applianceId, entry.current, (int) headroom, p + 1);
+                return false;
+            }
+        }
+        if(nowMillis >= reservationEndMillis) {
+            for(int p=0; p<PHASES; p++) {
+                reserved[p] = 0.0;
+            }
+        }
+        for(int p=0; p<PHASES; p++) {
+            if((entry.phaseMask & (1 << p)) != 0) {
+                reserved[p] += entry.current;
+            }
+        }
+        reservationEndMillis = nowMillis + RESERVATION_SECONDS * 1000L;
+        update(nowMillis);
+        return true;
+    }
+
+    /**
+     * Returns the current limit of an EV charger or null, if it is not limited.
+     * @param applianceId
+     * @return
+     */
+    public synchronized Integer getCurrentLimit(String applianceId) {
+        if(chargers != null) {
+            for(ChargerEntry entry : chargers) {
+                if(entry.appliance.getId().equals(applianceId)) {
+                    return entry.limit;
+                }
+            }
+        }
+        return null;
+    }
+
+    public synchronized long getUpdateCount() {
+        return updateCount;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+/**
+ * Listener notified about each grid power measurement of a {@link GridPowerSource}.
+ */
+public interface GridPowerListener {
+
+    /**
+     * @param timestampMillis the time of the measurement
+     * @param gridPower the grid power in W which is positive for import and negative for export (surplus)
+     */
+    void onGridPowerUpdate(long timestampMillis, int gridPower);
+
+}
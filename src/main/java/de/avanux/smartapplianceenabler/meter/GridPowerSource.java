@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+/**
+ * A meter measuring the power exchanged with the grid at the connection point of the site.
+ */
+public interface GridPowerSource {
+
+    /**
+     * Returns the most recent grid power in W which is positive for import and negative for export (surplus).
+     * @return
+     */
+    int getGridPower();
+
+    /**
+     * Returns the time of the most recent measurement or 0 if no measurement has been received yet.
+     * @return
+     */
+    long getLastUpdateMillis();
+
+    /**
+     * Returns the most recent grid power of a phase in W which is positive for import and negative for export.
+     * @param phase 1 .. 3
+     * @return the grid power or null, if the source does not measure phases individually
+     */
+    Integer getPhaseGridPower(int phase);
+
+    void addGridPowerListener(GridPowerListener listener);
+
+    void removeGridPowerListener(GridPowerListener listener);
+}
@@ -30,6 +30,7 @@ import de.avanux.smartapplianceenabler.protocol.ContentProtocolType;
 import de.avanux.smartapplianceenabler.protocol.JsonContentProtocolHandler;
 import de.avanux.smartapplianceenabler.util.ParentWithChild;
 import de.avanux.smartapplianceenabler.configuration.Validateable;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -40,6 +41,7 @@ import javax.xml.bind.annotation.XmlElement;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Electricity meter reading current power and energy from the response of a HTTP request.
@@ -54,6 +56,8 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
     @XmlAttribute
     private Integer pollInterval; // seconds
     @XmlAttribute
+    private String powerSmoothing;
+    @XmlAttribute
     private String contentProtocol;
     @XmlElement(name = "HttpConfiguration")
     private HttpConfiguration httpConfiguration;
@@ -117,6 +121,14 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
         }
     }
 
+    public PowerSmoothing getPowerSmoothing() {
+        return powerSmoothing != null ? PowerSmoothing.valueOf(powerSmoothing) : PowerSmoothing.NONE;
+    }
+
+    public void setPowerSmoothing(PowerSmoothing powerSmoothing) {
+        this.powerSmoothing = powerSmoothing != null ? powerSmoothing.name() : null;
+    }
+
     protected PollPowerMeter getPollPowerMeter() {
         return pollPowerMeter;
     }
@@ -156,6 +168,7 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
         if(HttpRead.getFirstHttpRead(MeterValueName.Power.name(), this.httpReads) != null) {
             pollPowerMeter = new PollPowerMeter();
             pollPowerMeter.setApplianceId(applianceId);
+            pollPowerMeter.setPowerSmoothing(getPowerSmoothing());
         }
         if(HttpRead.getFirstHttpRead(MeterValueName.Energy.name(), this.httpReads) != null) {
             pollEnergyMeter = new PollEnergyMeter();
@@ -206,7 +219,7 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
             power = pollEnergyMeter.getAveragePower();
         }
         else if(pollPowerMeter != null) {
-            power = pollPowerMeter.getAveragePower(LocalDateTime.now());
+            power = pollPowerMeter.getAveragePower(Clock.now());
         }
         logger.debug("{}: average power = {}W", applianceId, power);
         return power;
@@ -219,7 +232,7 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
             power = pollEnergyMeter.getAveragePower();
         }
         else if(pollPowerMeter != null) {
-            power = pollPowerMeter.getMinPower(LocalDateTime.now());
+            power = pollPowerMeter.getMinPower(Clock.now());
         }
         logger.debug("{}: min power = {}W", applianceId, power);
         return power;
@@ -232,7 +245,7 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
             power = pollEnergyMeter.getAveragePower();
         }
         else if(pollPowerMeter != null) {
-            power = pollPowerMeter.getMaxPower(LocalDateTime.now());
+            power = pollPowerMeter.getMaxPower(Clock.now());
         }
         logger.debug("{}: max power = {}W", applianceId, power);
         return power;
@@ -244,6 +257,23 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
         return getValue(powerRead);
     }
 
+    @Override
+    public CompletableFuture<Double> pollPowerAsync() {
+        if(this.httpTransactionExecutor.isAsync()) {
+            ParentWithChild<HttpRead, HttpReadValue> powerRead = HttpRead.getFirstHttpRead(MeterValueName.Power.name(), this.httpReads);
+            return this.httpHandler.getDoubleValueAsync(powerRead, getContentContentProtocolHandler());
+        }
+        return PollPowerExecutor.super.pollPowerAsync();
+    }
+
+    @Override
+    public int getAveragingInterval() {
+        if(pollEnergyMeter == null && pollPowerMeter != null) {
+            return pollPowerMeter.getAveragingInterval();
+        }
+        return Meter.averagingInterval;
+    }
+
     @Override
     public float getEnergy() {
         return pollEnergyMeter != null ? (float) this.pollEnergyMeter.getEnergy() : 0.0f;
@@ -280,6 +310,15 @@ public class HttpElectricityMeter implements Meter, ApplianceLifeCycle, Validate
         return pollEnergy();
     }
 
+    @Override
+    public CompletableFuture<Double> pollEnergyAsync(LocalDateTime now) {
+        if(this.httpTransactionExecutor.isAsync()) {
+            ParentWithChild<HttpRead, HttpReadValue> energyRead = HttpRead.getFirstHttpRead(MeterValueName.Energy.name(), this.httpReads);
+            return this.httpHandler.getDoubleValueAsync(energyRead, getContentContentProtocolHandler());
+        }
+        return PollEnergyExecutor.super.pollEnergyAsync(now);
+    }
+
     protected Double pollEnergy() {
         ParentWithChild<HttpRead, HttpReadValue> energyRead = HttpRead.getFirstHttpRead(MeterValueName.Energy.name(), this.httpReads);
         return getValue(energyRead);
@@ -44,6 +44,12 @@ public interface Meter extends ApplianceLifeCycle {
      */
     int getMaxPower();
 
+    /**
+     * Length of the interval actually used for average, min and max power in seconds.
+     * @return
+     */
+    int getAveragingInterval();
+
     /**
      * Returns the energy metered since energy counter was started.
      * @return energy in kWh
@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+import de.avanux.smartapplianceenabler.util.Clock;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Provides the power measured by a meter of an appliance as grid power, e.g. if a bidirectional meter
+ * is configured as meter of a dedicated appliance representing the grid connection point.
+ */
+public class MeterGridPowerSource implements GridPowerSource, PowerUpdateListener {
+    private Meter meter;
+    private List<GridPowerListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile int gridPower;
+    private volatile long lastUpdateMillis;
+
+    public MeterGridPowerSource(Meter meter) {
+        this.meter = meter;
+        meter.addPowerUpdateListener(this);
+    }
+
+    @Override
+    public void onPowerUpdate(int averagePower) {
+        this.gridPower = averagePower;
+        this.lastUpdateMillis = Clock.currentTimeMillis();
+        for(GridPowerListener listener : listeners) {
+            listener.onGridPowerUpdate(lastUpdateMillis, averagePower);
+        }
+    }
+
+    @Override
+    public int getGridPower() {
+        return gridPower;
+    }
+
+    @Override
+    public long getLastUpdateMillis() {
+        return lastUpdateMillis;
+    }
+
+    @Override
+    public Integer getPhaseGridPower(int phase) {
+        return null;
+    }
+
+    @Override
+    public void addGridPowerListener(GridPowerListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeGridPowerListener(GridPowerListener listener) {
+        listeners.remove(listener);
+    }
+}
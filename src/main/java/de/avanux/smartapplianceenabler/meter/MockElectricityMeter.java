@@ -73,6 +73,11 @@ public class MockElectricityMeter implements Meter, ApplianceIdConsumer {
         return 0;
     }
 
+    @Override
+    public int getAveragingInterval() {
+        return Meter.averagingInterval;
+    }
+
     @Override
     public float getEnergy() {
         return (float) this.pollEnergyMeter.getEnergy();
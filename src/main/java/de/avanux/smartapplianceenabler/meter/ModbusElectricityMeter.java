@@ -21,12 +21,12 @@ import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
 import de.avanux.smartapplianceenabler.configuration.ConfigurationException;
 import de.avanux.smartapplianceenabler.configuration.Validateable;
 import de.avanux.smartapplianceenabler.modbus.*;
-import de.avanux.smartapplianceenabler.modbus.executor.ModbusExecutorFactory;
 import de.avanux.smartapplianceenabler.modbus.executor.ModbusReadTransactionExecutor;
 import de.avanux.smartapplianceenabler.notification.NotificationHandler;
 import de.avanux.smartapplianceenabler.notification.NotificationProvider;
 import de.avanux.smartapplianceenabler.notification.NotificationType;
 import de.avanux.smartapplianceenabler.notification.Notifications;
+import de.avanux.smartapplianceenabler.util.Clock;
 import de.avanux.smartapplianceenabler.util.ParentWithChild;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,6 +51,8 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
     private List<ModbusRead> modbusReads;
     @XmlAttribute
     private Integer pollInterval; // seconds
+    @XmlAttribute
+    private String powerSmoothing;
     @XmlElement(name = "Notifications")
     private Notifications notifications;
     private transient PollPowerMeter pollPowerMeter;
@@ -70,6 +72,11 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
         }
     }
 
+    @Override
+    protected NotificationHandler getNotificationHandler() {
+        return notificationHandler;
+    }
+
     @Override
     public Notifications getNotifications() {
         return notifications;
@@ -92,6 +99,14 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
         }
     }
 
+    public PowerSmoothing getPowerSmoothing() {
+        return powerSmoothing != null ? PowerSmoothing.valueOf(powerSmoothing) : PowerSmoothing.NONE;
+    }
+
+    public void setPowerSmoothing(PowerSmoothing powerSmoothing) {
+        this.powerSmoothing = powerSmoothing != null ? powerSmoothing.name() : null;
+    }
+
     @Override
     public void validate() throws ConfigurationException {
         logger.debug("{}: Validating configuration", getApplianceId());
@@ -123,9 +138,11 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
 
     @Override
     public void init() {
+        clearExecutors();
         if(ModbusRead.getFirstRegisterRead(MeterValueName.Power.name(), modbusReads) != null) {
             this.pollPowerMeter = new PollPowerMeter();
             this.pollPowerMeter.setApplianceId(getApplianceId());
+            this.pollPowerMeter.setPowerSmoothing(getPowerSmoothing());
         }
         if(ModbusRead.getFirstRegisterRead(MeterValueName.Energy.name(), modbusReads) != null) {
             this.pollEnergyMeter = new PollEnergyMeter();
@@ -162,7 +179,7 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
             power = pollEnergyMeter.getAveragePower();
         }
         else if(pollPowerMeter != null) {
-            power = pollPowerMeter.getAveragePower(LocalDateTime.now());
+            power = pollPowerMeter.getAveragePower(Clock.now());
         }
         logger.debug("{}: average power = {}W", getApplianceId(), power);
         return power;
@@ -175,7 +192,7 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
             power = pollEnergyMeter.getAveragePower();
         }
         else if(pollPowerMeter != null) {
-            power = pollPowerMeter.getMinPower(LocalDateTime.now());
+            power = pollPowerMeter.getMinPower(Clock.now());
         }
         logger.debug("{}: min power = {}W", getApplianceId(), power);
         return power;
@@ -188,7 +205,7 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
             power = pollEnergyMeter.getAveragePower();
         }
         else if(pollPowerMeter != null) {
-            power = pollPowerMeter.getMaxPower(LocalDateTime.now());
+            power = pollPowerMeter.getMaxPower(Clock.now());
         }
         logger.debug("{}: max power = {}W", getApplianceId(), power);
         return power;
@@ -202,6 +219,14 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
         return readRegister(read.parent());
     }
 
+    @Override
+    public int getAveragingInterval() {
+        if(pollEnergyMeter == null && pollPowerMeter != null) {
+            return pollPowerMeter.getAveragingInterval();
+        }
+        return Meter.averagingInterval;
+    }
+
     @Override
     public float getEnergy() {
         return pollEnergyMeter != null ? (float) this.pollEnergyMeter.getEnergy() : 0.0f;
@@ -244,18 +269,24 @@ public class ModbusElectricityMeter extends ModbusSlave implements Meter, Applia
 
     private double readRegister(ModbusRead registerRead) {
         try {
-            ModbusReadTransactionExecutor executor = ModbusExecutorFactory.getReadExecutor(getApplianceId(),
-                    registerRead.getAddress(), registerRead.getType(), registerRead.getValueType(), registerRead.getWords(),
-                    registerRead.getByteOrder(), registerRead.getFactorToValue());
-            if(executor != null) {
-                executeTransaction(executor, true);
-                Object registerValue = executor.getValueTransformer().getValue();
-                if(registerValue instanceof Double) {
-                    return (Double) registerValue;
+            Double value = executeWithPermit(ModbusRequestScheduler.Priority.LOW, () -> {
+                synchronized (this) {
+                    ModbusReadTransactionExecutor executor = getReadExecutor(registerRead);
+                    if(executor != null) {
+                        executeTransaction(executor);
+                        Object registerValue = executor.getValueTransformer().getValue();
+                        if(registerValue instanceof Double) {
+                            return (Double) registerValue;
+                        }
+                    }
+                    else {
+                        logger.error("{}: No executor found", getApplianceId());
+                    }
+                    return null;
                 }
-            }
-            else {
-                logger.error("{}: No executor found", getApplianceId());
+            });
+            if(value != null) {
+                return value;
             }
         }
         catch(Exception e) {
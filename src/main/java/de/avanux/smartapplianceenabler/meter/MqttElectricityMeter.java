@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.appliance.ApplianceLifeCycle;
+import de.avanux.smartapplianceenabler.configuration.ConfigurationException;
+import de.avanux.smartapplianceenabler.configuration.Validateable;
+import de.avanux.smartapplianceenabler.mqtt.*;
+import de.avanux.smartapplianceenabler.protocol.ContentProtocolHandler;
+import de.avanux.smartapplianceenabler.protocol.ContentProtocolType;
+import de.avanux.smartapplianceenabler.protocol.JsonContentProtocolHandler;
+import de.avanux.smartapplianceenabler.util.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Electricity meter receiving current power and/or energy from messages published to an MQTT broker.
+ * Power update listeners are notified whenever a message has been received.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MqttElectricityMeter implements Meter, ApplianceLifeCycle, Validateable, PollEnergyExecutor,
+        ApplianceIdConsumer, MqttBrokerConsumer {
+
+    private transient Logger logger = LoggerFactory.getLogger(MqttElectricityMeter.class);
+    @XmlAttribute
+    private String idref;
+    @XmlAttribute
+    private String powerSmoothing;
+    @XmlAttribute
+    private String contentProtocol;
+    @XmlElement(name = "MqttRead")
+    private List<MqttRead> mqttReads;
+    private transient String applianceId;
+    private transient MqttBroker mqttBroker;
+    private transient MqttHandler mqttHandler = new MqttHandler();
+    private transient PollPowerMeter pollPowerMeter;
+    private transient PollEnergyMeter pollEnergyMeter;
+    private transient volatile Double energy;
+    private transient ContentProtocolHandler contentContentProtocolHandler;
+    private transient Map<String, List<MqttMessageListener>> subscriptions = new HashMap<>();
+    private transient List<PowerUpdateListener> powerUpdateListeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void setApplianceId(String applianceId) {
+        this.applianceId = applianceId;
+        this.mqttHandler.setApplianceId(applianceId);
+    }
+
+    @Override
+    public String getIdref() {
+        return idref;
+    }
+
+    public void setIdref(String idref) {
+        this.idref = idref;
+    }
+
+    @Override
+    public void setMqttBroker(MqttBroker mqttBroker) {
+        this.mqttBroker = mqttBroker;
+    }
+
+    public List<MqttRead> getMqttReads() {
+        return mqttReads;
+    }
+
+    public void setMqttReads(List<MqttRead> mqttReads) {
+        this.mqttReads = mqttReads;
+    }
+
+    public void setContentProtocol(ContentProtocolType contentProtocolType) {
+        this.contentProtocol = contentProtocolType != null ? contentProtocolType.name() : null;
+    }
+
+    public PowerSmoothing getPowerSmoothing() {
+        return powerSmoothing != null ? PowerSmoothing.valueOf(powerSmoothing) : PowerSmoothing.NONE;
+    }
+
+    @Override
+    public void validate() throws ConfigurationException {
+        logger.debug("{}: Validating configuration", applianceId);
+        if(idref == null) {
+            logger.error("{}: Missing 'idref' property", applianceId);
+            throw new ConfigurationException();
+        }
+        if(MqttRead.getFirstMqttRead(MeterValueName.Power.name(), this.mqttReads) == null
+                && MqttRead.getFirstMqttRead(MeterValueName.Energy.name(), this.mqttReads) == null) {
+            logger.error("{}: Configuration missing for either {} or {}",
+                    applianceId, MeterValueName.Power.name(), MeterValueName.Energy.name());
+            throw new ConfigurationException();
+        }
+        for(MqttRead read : this.mqttReads) {
+            if(read.getTopic() == null) {
+                logger.error("{}: Missing 'topic' property", applianceId);
+                throw new ConfigurationException();
+            }
+        }
+    }
+
+    @Override
+    public void init() {
+        if(MqttRead.getFirstMqttRead(MeterValueName.Power.name(), this.mqttReads) != null) {
+            pollPowerMeter = new PollPowerMeter();
+            pollPowerMeter.setApplianceId(applianceId);
+            pollPowerMeter.setPowerSmoothing(getPowerSmoothing());
+            pollPowerMeter.configureWindow(null);
+        }
+        if(MqttRead.getFirstMqttRead(MeterValueName.Energy.name(), this.mqttReads) != null) {
+            pollEnergyMeter = new PollEnergyMeter();
+            pollEnergyMeter.setApplianceId(applianceId);
+        }
+    }
+
+    @Override
+    public void start(LocalDateTime now, Timer timer) {
+        logger.debug("{}: Starting ...", applianceId);
+        if(pollEnergyMeter != null) {
+            // no timer: energy counter values are pushed by the broker
+            pollEnergyMeter.start(null, this);
+        }
+        if(mqttBroker == null) {
+            logger.error("{}: MQTT broker not found: {}", applianceId, idref);
+            return;
+        }
+        MqttClient client = mqttBroker.getClient();
+        for(MqttRead read : this.mqttReads) {
+            MqttMessageListener listener = (topic, payload) -> onMessage(Clock.now(), read, payload);
+            // several reads may use the same topic
+            subscriptions.computeIfAbsent(read.getTopic(), topic -> new ArrayList<>()).add(listener);
+            client.subscribe(read.getTopic(), listener);
+        }
+    }
+
+    @Override
+    public void stop(LocalDateTime now) {
+        logger.debug("{}: Stopping ...", applianceId);
+        if(mqttBroker != null) {
+            MqttClient client = mqttBroker.getClient();
+            subscriptions.forEach((topic, listeners) -> listeners.forEach(listener -> client.unsubscribe(topic, listener)));
+        }
+        subscriptions.clear();
+    }
+
+    protected void onMessage(LocalDateTime now, MqttRead read, String payload) {
+        for(MqttReadValue readValue : read.getReadValues()) {
+            Double value = mqttHandler.getDoubleValue(readValue, payload, getContentContentProtocolHandler());
+            if(value == null) {
+                continue;
+            }
+            if(MeterValueName.Power.name().equals(readValue.getName()) && pollPowerMeter != null) {
+                pollPowerMeter.addValue(now, value);
+                int power = value.intValue();
+                powerUpdateListeners.forEach(listener -> listener.onPowerUpdate(power));
+            }
+            else if(MeterValueName.Energy.name().equals(readValue.getName()) && pollEnergyMeter != null) {
+                this.energy = value;
+                pollEnergyMeter.updateEnergyCounter(now, value);
+                if(pollPowerMeter == null) {
+                    int power = pollEnergyMeter.getAveragePower();
+                    powerUpdateListeners.forEach(listener -> listener.onPowerUpdate(power));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void addPowerUpdateListener(PowerUpdateListener listener) {
+        this.powerUpdateListeners.add(listener);
+    }
+
+    @Override
+    public int getAveragePower() {
+        int power = 0;
+        if(pollPowerMeter != null) {
+            power = pollPowerMeter.getAveragePower(Clock.now());
+        }
+        else if(pollEnergyMeter != null) {
+            power = pollEnergyMeter.getAveragePower();
+        }
+        logger.debug("{}: average power = {}W", applianceId, power);
+        return power;
+    }
+
+    @Override
+    public int getMinPower() {
+        if(pollPowerMeter != null) {
+            return pollPowerMeter.getMinPower(Clock.now());
+        }
+        return pollEnergyMeter != null ? pollEnergyMeter.getAveragePower() : 0;
+    }
+
+    @Override
+    public int getMaxPower() {
+        if(pollPowerMeter != null) {
+            return pollPowerMeter.getMaxPower(Clock.now());
+        }
+        return pollEnergyMeter != null ? pollEnergyMeter.getAveragePower() : 0;
+    }
+
+    @Override
+    public int getAveragingInterval() {
+        if(pollPowerMeter != null) {
+            return pollPowerMeter.getAveragingInterval();
+        }
+        return Meter.averagingInterval;
+    }
+
+    /**
+     * Returns the energy counter value received last.
+     */
+    @Override
+    public Double pollEnergy(LocalDateTime now) {
+        return energy;
+    }
+
+    @Override
+    public float getEnergy() {
+        return pollEnergyMeter != null ? (float) this.pollEnergyMeter.getEnergy() : 0.0f;
+    }
+
+    @Override
+    public void startEnergyMeter() {
+        if(pollEnergyMeter != null) {
+            logger.debug("{}: Start energy meter ...", applianceId);
+            Double energy = this.pollEnergyMeter.startEnergyCounter();
+            logger.debug("{}: Current energy meter value: {} kWh", applianceId, energy);
+        }
+    }
+
+    @Override
+    public void stopEnergyMeter() {
+        if(pollEnergyMeter != null && this.energy != null) {
+            logger.debug("{}: Stop energy meter ...", applianceId);
+            Double energy = this.pollEnergyMeter.stopEnergyCounter();
+            logger.debug("{}: Current energy meter value: {} kWh", applianceId, energy);
+        }
+    }
+
+    @Override
+    public void resetEnergyMeter() {
+        logger.debug("{}: Reset energy meter ...", applianceId);
+        if(pollEnergyMeter != null) {
+            this.pollEnergyMeter.reset();
+        }
+    }
+
+    public ContentProtocolHandler getContentContentProtocolHandler() {
+        if(this.contentContentProtocolHandler == null) {
+            if(ContentProtocolType.JSON.name().equals(this.contentProtocol)) {
+                this.contentContentProtocolHandler = new JsonContentProtocolHandler();
+            }
+        }
+        return this.contentContentProtocolHandler;
+    }
+}
@@ -19,8 +19,19 @@
 package de.avanux.smartapplianceenabler.meter;
 
 import java.time.LocalDateTime;
+import java.util.concurrent.CompletableFuture;
 
 public interface PollEnergyExecutor {
 
     Double pollEnergy(LocalDateTime now);
+
+    /**
+     * Poll the energy counter without blocking the caller.
+     * Executors not supporting asynchronous polling complete the future before returning it.
+     * @param now
+     * @return future completing with the energy counter or null
+     */
+    default CompletableFuture<Double> pollEnergyAsync(LocalDateTime now) {
+        return CompletableFuture.completedFuture(pollEnergy(now));
+    }
 }
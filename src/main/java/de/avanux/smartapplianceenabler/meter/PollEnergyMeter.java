@@ -19,6 +19,8 @@
 package de.avanux.smartapplianceenabler.meter;
 
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.persistence.SegmentLog;
+import de.avanux.smartapplianceenabler.util.Clock;
 import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
 import de.avanux.smartapplianceenabler.util.TimestampBasedCache;
 
@@ -30,9 +32,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A PollEnergyMeter meters energy by polling the energy count.
+ * Periodic polling does not block the timer thread: polled values are processed by a callback once available.
+ * The energy metered so far and the counter value at start are persisted in the {@link SegmentLog} (if enabled),
+ * so that metering continues after a restart.
  */
 public class PollEnergyMeter implements ApplianceIdConsumer {
 
@@ -46,6 +52,7 @@ public class PollEnergyMeter implements ApplianceIdConsumer {
     private transient Double previousEnergyCounter;
     private transient LocalDateTime previousEnergyCounterTimestamp;
     private GuardedTimerTask pollTimerTask;
+    private volatile boolean pollPending;
     private boolean started;
     private List<PowerUpdateListener> powerUpdateListeners = new ArrayList<>();
     private DecimalFormat energyFormat;
@@ -63,6 +70,7 @@ public class PollEnergyMeter implements ApplianceIdConsumer {
 
     public void start(Timer timer, PollEnergyExecutor pollEnergyExecutor) {
         this.pollEnergyExecutor = pollEnergyExecutor;
+        restoreEnergyCounter();
         if(timer != null) {
             this.pollTimerTask = buildPollTimerTask();
             timer.schedule(this.pollTimerTask, 0, this.pollTimerTask.getPeriod());
@@ -74,20 +82,54 @@ public class PollEnergyMeter implements ApplianceIdConsumer {
             @Override
             public void runTask() {
                 if(pollEnergyExecutor != null) {
-                    LocalDateTime now = LocalDateTime.now();
-                    Double energy = pollEnergyExecutor.pollEnergy(now);
-                    if(energy != null) {
-                        previousEnergyCounter = currentEnergyCounter;
-                        previousEnergyCounterTimestamp = currentEnergyCounterTimestamp;
-                        currentEnergyCounter = energy;
-                        currentEnergyCounterTimestamp = now;
-                    }
+                    poll();
+                }
+                else {
+                    notifyPowerUpdateListeners();
                 }
-                powerUpdateListeners.forEach(listener -> listener.onPowerUpdate(getAveragePower()));
             }
         };
     }
 
+    protected void poll() {
+        if(pollPending) {
+            logger.debug("{}: Skipping poll since previous poll is still pending", applianceId);
+            return;
+        }
+        LocalDateTime now = Clock.now();
+        CompletableFuture<Double> future;
+        pollPending = true;
+        try {
+            future = pollEnergyExecutor.pollEnergyAsync(now);
+        }
+        catch(RuntimeException e) {
+            pollPending = false;
+            throw e;
+        }
+        future.whenComplete((energy, throwable) -> {
+            pollPending = false;
+            if(throwable != null) {
+                logger.error("{}: Error polling energy", applianceId, throwable);
+            }
+            else if(energy != null) {
+                updateEnergyCounter(now, energy);
+            }
+            notifyPowerUpdateListeners();
+        });
+    }
+
+    protected synchronized void updateEnergyCounter(LocalDateTime now, double energy) {
+        previousEnergyCounter = currentEnergyCounter;
+        previousEnergyCounterTimestamp = currentEnergyCounterTimestamp;
+        currentEnergyCounter = energy;
+        currentEnergyCounterTimestamp = now;
+    }
+
+    private void notifyPowerUpdateListeners() {
+        int averagePower = getAveragePower();
+        powerUpdateListeners.forEach(listener -> listener.onPowerUpdate(averagePower));
+    }
+
     public void cancelTimer() {
         if(this.pollTimerTask != null) {
             this.pollTimerTask.cancel();
@@ -95,7 +137,7 @@ public class PollEnergyMeter implements ApplianceIdConsumer {
         }
     }
 
-    public int getAveragePower() {
+    public synchronized int getAveragePower() {
         if(this.previousEnergyCounter != null && this.previousEnergyCounterTimestamp != null
                 && this.currentEnergyCounter != null && this.currentEnergyCounterTimestamp != null) {
             double diffEnergy = currentEnergyCounter - previousEnergyCounter;
@@ -110,7 +152,7 @@ public class PollEnergyMeter implements ApplianceIdConsumer {
         return 0;
     }
 
-    public double getEnergy() {
+    public synchronized double getEnergy() {
         double energy = 0.0f;
         if(currentEnergyCounter != null) {
             if(this.startEnergyCounter != null) {
@@ -134,15 +176,16 @@ public class PollEnergyMeter implements ApplianceIdConsumer {
 
     public Double startEnergyCounter() {
         if(! this.started) {
-            this.startEnergyCounter = this.pollEnergyExecutor.pollEnergy(LocalDateTime.now());
+            this.startEnergyCounter = this.pollEnergyExecutor.pollEnergy(Clock.now());
             logger.debug("{}: Start energy counter: {}", applianceId, startEnergyCounter);
             this.started = true;
+            persistEnergyCounter();
         }
         return startEnergyCounter;
     }
 
     public Double stopEnergyCounter() {
-        double stopEnergyCounter = this.pollEnergyExecutor.pollEnergy(LocalDateTime.now());
+        double stopEnergyCounter = this.pollEnergyExecutor.pollEnergy(Clock.now());
         if(this.startEnergyCounter != null) {
             if(this.totalEnergy != null) {
                 this.totalEnergy += stopEnergyCounter - this.startEnergyCounter;
@@ -155,12 +198,50 @@ public class PollEnergyMeter implements ApplianceIdConsumer {
                 applianceId, totalEnergy, startEnergyCounter, stopEnergyCounter);
         this.started = false;
         this.startEnergyCounter = null;
+        persistEnergyCounter();
         return stopEnergyCounter;
     }
 
     public void reset() {
         this.startEnergyCounter = null;
         this.totalEnergy = null;
+        persistEnergyCounter();
+    }
+
+    private String getSegmentLogKey(String name) {
+        return applianceId + "." + PollEnergyMeter.class.getSimpleName() + "." + name;
+    }
+
+    private void persistEnergyCounter() {
+        SegmentLog segmentLog = SegmentLog.getInstance();
+        if(segmentLog != null && applianceId != null) {
+            long now = Clock.currentTimeMillis();
+            if(startEnergyCounter != null) {
+                segmentLog.put(getSegmentLogKey("startEnergyCounter"), now, startEnergyCounter);
+            }
+            else {
+                segmentLog.remove(getSegmentLogKey("startEnergyCounter"));
+            }
+            if(totalEnergy != null) {
+                segmentLog.put(getSegmentLogKey("totalEnergy"), now, totalEnergy);
+            }
+            else {
+                segmentLog.remove(getSegmentLogKey("totalEnergy"));
+            }
+        }
+    }
+
+    private synchronized void restoreEnergyCounter() {
+        SegmentLog segmentLog = SegmentLog.getInstance();
+        if(segmentLog != null && applianceId != null) {
+            this.startEnergyCounter = segmentLog.get(getSegmentLogKey("startEnergyCounter"));
+            this.totalEnergy = segmentLog.get(getSegmentLogKey("totalEnergy"));
+            this.started = this.startEnergyCounter != null;
+            if(this.startEnergyCounter != null || this.totalEnergy != null) {
+                logger.debug("{}: Restored energy counter: totalEnergy={} startEnergyCounter={}",
+                        applianceId, totalEnergy, startEnergyCounter);
+            }
+        }
     }
 
     public boolean isStarted() {
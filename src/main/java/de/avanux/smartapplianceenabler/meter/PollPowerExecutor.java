@@ -17,6 +17,8 @@
  */
 package de.avanux.smartapplianceenabler.meter;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Poll power consumption from a appliance.
  */
@@ -24,4 +26,13 @@ public interface PollPowerExecutor {
 
     Double pollPower();
 
+    /**
+     * Poll power consumption without blocking the caller.
+     * Executors not supporting asynchronous polling complete the future before returning it.
+     * @return future completing with the power or null
+     */
+    default CompletableFuture<Double> pollPowerAsync() {
+        return CompletableFuture.completedFuture(pollPower());
+    }
+
 }
@@ -18,17 +18,24 @@
 package de.avanux.smartapplianceenabler.meter;
 
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.util.Clock;
 import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
+import de.avanux.smartapplianceenabler.util.SlidingTimeWindow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A PollPowerMeter calculates power consumption by polling.
+ * The polled values are kept in a window covering the averaging interval (but at least two poll intervals)
+ * in order to provide min/avg/max values.
+ * Polling does not block the timer thread: polled values are processed by a callback once available.
  */
 public class PollPowerMeter implements ApplianceIdConsumer {
 
@@ -36,23 +43,31 @@ public class PollPowerMeter implements ApplianceIdConsumer {
     private String applianceId;
     private GuardedTimerTask pollTimerTask;
     private List<PowerUpdateListener> powerUpdateListeners = new ArrayList<>();
-    private int power = 0;
+    private SlidingTimeWindow window = new SlidingTimeWindow(Meter.averagingInterval, 8);
+    private PowerSmoothing powerSmoothing = PowerSmoothing.NONE;
+    private double ewma;
+    private long ewmaTimestamp;
+    private volatile boolean pollPending;
 
     @Override
     public void setApplianceId(String applianceId) {
         this.applianceId = applianceId;
     }
 
+    public void setPowerSmoothing(PowerSmoothing powerSmoothing) {
+        this.powerSmoothing = powerSmoothing != null ? powerSmoothing : PowerSmoothing.NONE;
+    }
+
+    public PowerSmoothing getPowerSmoothing() {
+        return powerSmoothing;
+    }
+
     public void start(Timer timer, Integer pollInterval, PollPowerExecutor pollPowerExecutor) {
+        configureWindow(pollInterval);
         this.pollTimerTask = new GuardedTimerTask(this.applianceId, "PollPowerMeter", pollInterval * 1000) {
             @Override
             public void runTask() {
-                LocalDateTime now = LocalDateTime.now();
-                Double powerPolled = pollPowerExecutor.pollPower();
-                if(powerPolled != null) {
-                    power = powerPolled.intValue();
-                    powerUpdateListeners.forEach(listener -> listener.onPowerUpdate(power));
-                }
+                poll(pollPowerExecutor);
             }
         };
         if(timer != null) {
@@ -60,25 +75,110 @@ public class PollPowerMeter implements ApplianceIdConsumer {
         }
     }
 
+    /**
+     * Size the window so that it covers the averaging interval but contains at least one value polled
+     * on schedule even if the poll interval exceeds the averaging interval.
+     * @param pollInterval poll interval in seconds
+     */
+    protected synchronized void configureWindow(Integer pollInterval) {
+        int windowSeconds = Meter.averagingInterval;
+        if(pollInterval != null && pollInterval > 0) {
+            windowSeconds = Math.max(windowSeconds, 2 * pollInterval);
+            int expectedValues = windowSeconds / pollInterval + 2;
+            this.window = new SlidingTimeWindow(windowSeconds, expectedValues);
+        }
+        else {
+            this.window.setWindowSeconds(windowSeconds);
+        }
+        logger.debug("{}: Averaging interval={}s", applianceId, windowSeconds);
+    }
+
+    protected void poll(PollPowerExecutor pollPowerExecutor) {
+        if(pollPending) {
+            logger.debug("{}: Skipping poll since previous poll is still pending", applianceId);
+            return;
+        }
+        LocalDateTime now = Clock.now();
+        CompletableFuture<Double> future;
+        pollPending = true;
+        try {
+            future = pollPowerExecutor.pollPowerAsync();
+        }
+        catch(RuntimeException e) {
+            pollPending = false;
+            throw e;
+        }
+        future.whenComplete((powerPolled, throwable) -> {
+            pollPending = false;
+            if(throwable != null) {
+                logger.error("{}: Error polling power", applianceId, throwable);
+            }
+            else if(powerPolled != null) {
+                addValue(now, powerPolled);
+                int power = powerPolled.intValue();
+                powerUpdateListeners.forEach(listener -> listener.onPowerUpdate(power));
+            }
+        });
+    }
+
     public void cancelTimer() {
         if(this.pollTimerTask != null) {
             this.pollTimerTask.cancel();
         }
     }
 
-    public int getAveragePower(LocalDateTime now) {
-        return power;
+    protected synchronized void addValue(LocalDateTime timestamp, double power) {
+        long timestampMillis = toMillis(timestamp);
+        window.add(timestampMillis, power);
+        if(ewmaTimestamp == 0L) {
+            ewma = power;
+        }
+        else {
+            long deltaMillis = Math.max(timestampMillis - ewmaTimestamp, 0L);
+            double alpha = 1.0 - Math.exp(-deltaMillis / (window.getWindowSeconds() * 1000.0));
+            ewma += alpha * (power - ewma);
+        }
+        ewmaTimestamp = timestampMillis;
+    }
+
+    /**
+     * Returns the length of the window used for averaging.
+     * @return averaging interval in seconds
+     */
+    public synchronized int getAveragingInterval() {
+        return window.getWindowSeconds();
     }
 
-    public int getMinPower(LocalDateTime now) {
-        return power;
+    public synchronized int getAveragePower(LocalDateTime now) {
+        window.expire(toMillis(now));
+        if(window.isEmpty()) {
+            return 0;
+        }
+        switch (powerSmoothing) {
+            case EWMA:
+                return Double.valueOf(ewma).intValue();
+            case MEDIAN:
+                return Double.valueOf(window.getMedian()).intValue();
+            default:
+                return Double.valueOf(window.getAverage()).intValue();
+        }
+    }
+
+    public synchronized int getMinPower(LocalDateTime now) {
+        window.expire(toMillis(now));
+        return Double.valueOf(window.getMin()).intValue();
     }
 
-    public int getMaxPower(LocalDateTime now) {
-        return power;
+    public synchronized int getMaxPower(LocalDateTime now) {
+        window.expire(toMillis(now));
+        return Double.valueOf(window.getMax()).intValue();
     }
 
     public void addPowerUpateListener(PowerUpdateListener listener) {
         this.powerUpdateListeners.add(listener);
     }
+
+    private long toMillis(LocalDateTime timestamp) {
+        return timestamp.toEpochSecond(ZoneOffset.UTC) * 1000L + timestamp.getNano() / 1000000;
+    }
 }
@@ -19,19 +19,25 @@
 package de.avanux.smartapplianceenabler.meter;
 
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.persistence.SegmentLog;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * A PulseEnergyMeter meters energy by counting pulses.
+ * The pulse counter is persisted in the {@link SegmentLog} (if enabled), so that metering continues after a restart.
+ * While counting it is persisted at most once per flush interval of the log, since the log forces records to the
+ * storage device not more often anyway; starting, stopping and resetting the counter are persisted immediately.
  */
 public class PulseEnergyMeter implements ApplianceIdConsumer {
 
     private Logger logger = LoggerFactory.getLogger(PulseEnergyMeter.class);
     private String applianceId;
     private Integer impulsesPerKwh;
-    private int pulseCounter;
+    private volatile int pulseCounter;
     private boolean started;
+    private long persistedMillis;
 
     @Override
     public void setApplianceId(String applianceId) {
@@ -45,8 +51,16 @@ public class PulseEnergyMeter implements ApplianceIdConsumer {
     public void increasePulseCounter() {
         if(started) {
             pulseCounter++;
+            SegmentLog segmentLog = SegmentLog.getInstance();
+            if(segmentLog != null && applianceId != null) {
+                long now = Clock.currentTimeMillis();
+                if(now - persistedMillis >= segmentLog.getFlushIntervalMillis()) {
+                    segmentLog.put(getSegmentLogKey("pulseCounter"), now, pulseCounter);
+                    persistedMillis = now;
+                }
+            }
         }
-        logger.debug("{}: energy={}kWh started={} pulses={} pulses/kWh={}", applianceId, getEnergy(),
+        logger.trace("{}: energy={}kWh started={} pulses={} pulses/kWh={}", applianceId, getEnergy(),
                 started, pulseCounter, impulsesPerKwh);
     }
 
@@ -56,14 +70,47 @@ public class PulseEnergyMeter implements ApplianceIdConsumer {
 
     public void startEnergyCounter() {
         started = true;
+        persistEnergyCounter();
     }
 
     public void stopEnergyCounter() {
         started = false;
+        persistEnergyCounter();
     }
 
     public void resetEnergyCounter() {
         pulseCounter = 0;
+        persistEnergyCounter();
+    }
+
+    private String getSegmentLogKey(String name) {
+        return applianceId + "." + PulseEnergyMeter.class.getSimpleName() + "." + name;
+    }
+
+    private void persistEnergyCounter() {
+        SegmentLog segmentLog = SegmentLog.getInstance();
+        if(segmentLog != null && applianceId != null) {
+            long now = Clock.currentTimeMillis();
+            segmentLog.put(getSegmentLogKey("pulseCounter"), now, pulseCounter);
+            segmentLog.put(getSegmentLogKey("started"), now, started ? 1.0 : 0.0);
+            persistedMillis = now;
+        }
+    }
+
+    /**
+     * Restore the pulse counter persisted before a restart.
+     */
+    public void restoreEnergyCounter() {
+        SegmentLog segmentLog = SegmentLog.getInstance();
+        if(segmentLog != null && applianceId != null) {
+            Double persistedPulseCounter = segmentLog.get(getSegmentLogKey("pulseCounter"));
+            Double persistedStarted = segmentLog.get(getSegmentLogKey("started"));
+            if(persistedPulseCounter != null) {
+                pulseCounter = persistedPulseCounter.intValue();
+                started = persistedStarted != null && persistedStarted > 0.0;
+                logger.debug("{}: Restored energy counter: pulses={} started={}", applianceId, pulseCounter, started);
+            }
+        }
     }
 
 }
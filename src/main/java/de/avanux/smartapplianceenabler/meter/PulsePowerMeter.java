@@ -21,6 +21,7 @@ package de.avanux.smartapplianceenabler.meter;
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
 import de.avanux.smartapplianceenabler.configuration.ConfigurationException;
 import de.avanux.smartapplianceenabler.configuration.Validateable;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -112,7 +113,7 @@ public class PulsePowerMeter implements ApplianceIdConsumer, Validateable {
     }
 
     public int getAveragePower() {
-        return getAveragePower(System.currentTimeMillis());
+        return getAveragePower(Clock.currentTimeMillis());
     }
 
     int getAveragePower(long timestampNow) {
@@ -132,7 +133,7 @@ public class PulsePowerMeter implements ApplianceIdConsumer, Validateable {
     }
 
     public int getMinPower() {
-        return getMinPower(System.currentTimeMillis());
+        return getMinPower(Clock.currentTimeMillis());
     }
 
     int getMinPower(long timestampNow) {
@@ -155,7 +156,7 @@ public class PulsePowerMeter implements ApplianceIdConsumer, Validateable {
     }
 
     public int getMaxPower() {
-        return getMaxPower(System.currentTimeMillis());
+        return getMaxPower(Clock.currentTimeMillis());
     }
 
     int getMaxPower(long timestampNow) {
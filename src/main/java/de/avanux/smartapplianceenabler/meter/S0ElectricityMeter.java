@@ -26,6 +26,7 @@ import de.avanux.smartapplianceenabler.notification.NotificationHandler;
 import de.avanux.smartapplianceenabler.notification.NotificationType;
 import de.avanux.smartapplianceenabler.notification.NotificationProvider;
 import de.avanux.smartapplianceenabler.notification.Notifications;
+import de.avanux.smartapplianceenabler.util.LongRingBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -33,7 +34,17 @@ import javax.xml.bind.annotation.*;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Timer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Meter counting S0 impulses on a GPIO pin.
+ * The GPIO listener only adds the edge (nanosecond timestamp and pulse start flag) to a lock-free ring buffer.
+ * A consumer thread debounces the edges, updates the counters and notifies power update listeners
+ * at most once per power update interval. The consumer thread is unparked by the GPIO listener after each edge
+ * and parks without a deadline while there are neither edges nor pending power updates.
+ */
 public class S0ElectricityMeter extends GpioControllable implements Meter, NotificationProvider {
 
     private transient Logger logger = LoggerFactory.getLogger(S0ElectricityMeter.class);
@@ -49,6 +60,18 @@ public class S0ElectricityMeter extends GpioControllable implements Meter, Notif
     private transient PulseEnergyMeter pulseEnergyMeter = new PulseEnergyMeter();
     private transient List<PowerUpdateListener> powerMeterListeners = new ArrayList<>();
     private transient NotificationHandler notificationHandler;
+    private static final int EDGE_BUFFER_CAPACITY = 1024;
+    private static final int DRAIN_LIMIT = 64;
+    private transient LongRingBuffer edges = new LongRingBuffer(EDGE_BUFFER_CAPACITY);
+    private transient long powerUpdateIntervalMillis = Long.parseLong(System.getProperty("sae.s0.powerUpdateInterval", "1000"));
+    private transient volatile Thread edgeConsumerThread;
+    private transient S0PulseSimulator pulseSimulator;
+    private transient long baseMillis;
+    private transient long baseNanos;
+    private transient boolean powerUpdatePending;
+    private transient long lastPowerUpdateMillis;
+    private transient volatile long impulseCount;
+    private transient AtomicLong droppedEdgeCount = new AtomicLong();
 
     @Override
     public void setNotificationHandler(NotificationHandler notificationHandler) {
@@ -71,6 +94,34 @@ public class S0ElectricityMeter extends GpioControllable implements Meter, Notif
         return minPulseDuration != null ? minPulseDuration : S0ElectricityMeterDefaults.getMinPulseDuration();
     }
 
+    public void setMinPulseDuration(Integer minPulseDuration) {
+        this.minPulseDuration = minPulseDuration;
+    }
+
+    public void setImpulsesPerKwh(Integer impulsesPerKwh) {
+        this.impulsesPerKwh = impulsesPerKwh;
+    }
+
+    public void setPowerUpdateIntervalMillis(long powerUpdateIntervalMillis) {
+        this.powerUpdateIntervalMillis = powerUpdateIntervalMillis;
+    }
+
+    /**
+     * Returns the number of impulses detected since start.
+     * @return
+     */
+    public long getImpulseCount() {
+        return impulseCount;
+    }
+
+    /**
+     * Returns the number of edges lost since the consumer thread did not keep up.
+     * @return
+     */
+    public long getDroppedEdgeCount() {
+        return droppedEdgeCount.get();
+    }
+
     @Override
     public void setApplianceId(String applianceId) {
         super.setApplianceId(applianceId);
@@ -101,6 +152,11 @@ public class S0ElectricityMeter extends GpioControllable implements Meter, Notif
         return pulsePowerMeter.getMaxPower();
     }
 
+    @Override
+    public int getAveragingInterval() {
+        return Meter.averagingInterval;
+    }
+
     @Override
     public float getEnergy() {
         return this.pulseEnergyMeter.getEnergy();
@@ -130,6 +186,7 @@ public class S0ElectricityMeter extends GpioControllable implements Meter, Notif
     public void init() {
         pulsePowerMeter.setImpulsesPerKwh(impulsesPerKwh);
         pulseEnergyMeter.setImpulsesPerKwh(impulsesPerKwh);
+        pulseEnergyMeter.restoreEnergyCounter();
         logger.debug("{}: configured: GPIO={} impulsesPerKwh={} minPulseDuration={} pinPullResistance={}",
                 getApplianceId(), getGpio() != null ? getGpio().getAddress() : null, getImpulsesPerKwh(), getMinPulseDuration(),
                 getPinPullResistance().name());
@@ -145,8 +202,9 @@ public class S0ElectricityMeter extends GpioControllable implements Meter, Notif
                 if(inputPin == null) {
                     inputPin = gpioController.provisionDigitalInputPin(getGpio(), getPinPullResistance());
                 }
+                startEdgeConsumer();
                 inputPin.addListener((GpioPinListenerDigital) event -> {
-                    handleEvent(event.getPin(), event.getState(), getPinPullResistance(), System.currentTimeMillis());
+                    onEdge(isPulseStart(event.getState(), getPinPullResistance()), System.nanoTime());
                 });
             }
             catch(Exception e) {
@@ -158,6 +216,18 @@ public class S0ElectricityMeter extends GpioControllable implements Meter, Notif
         }
         else {
             logGpioAccessDisabled(logger);
+            String simulatedFrequency = System.getProperty("sae.s0.simulate");
+            if(simulatedFrequency != null) {
+                try {
+                    pulseSimulator = new S0PulseSimulator(this, Double.parseDouble(simulatedFrequency),
+                            getMinPulseDuration());
+                    startEdgeConsumer();
+                    pulseSimulator.start();
+                }
+                catch(IllegalArgumentException e) {
+                    logger.error("{}: Cannot simulate S0 impulses: {}", getApplianceId(), e.getMessage());
+                }
+            }
         }
     }
 
@@ -171,20 +241,109 @@ public class S0ElectricityMeter extends GpioControllable implements Meter, Notif
         else {
             logGpioAccessDisabled(logger);
         }
+        if(pulseSimulator != null) {
+            pulseSimulator.stop();
+            pulseSimulator = null;
+        }
+        stopEdgeConsumer();
+    }
+
+    private boolean isPulseStart(PinState state, PinPullResistance pinPullResistance) {
+        return (pinPullResistance == PinPullResistance.PULL_DOWN && state == PinState.HIGH)
+                || (pinPullResistance == PinPullResistance.PULL_UP && state == PinState.LOW);
+    }
+
+    /**
+     * Called by the GPIO listener for each edge. Must neither block nor allocate memory.
+     * @param pulseStart true, if the edge starts a pulse
+     * @param timestampNanos {@link System#nanoTime()} of the edge
+     */
+    protected void onEdge(boolean pulseStart, long timestampNanos) {
+        if(! edges.offer(timestampNanos << 1 | (pulseStart ? 1L : 0L))) {
+            droppedEdgeCount.incrementAndGet();
+        }
+        Thread consumer = edgeConsumerThread;
+        if(consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    protected synchronized void startEdgeConsumer() {
+        if(edgeConsumerThread == null) {
+            baseMillis = System.currentTimeMillis();
+            baseNanos = System.nanoTime();
+            Thread thread = new Thread(this::consumeEdges, "s0-" + getApplianceId());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MAX_PRIORITY);
+            edgeConsumerThread = thread;
+            thread.start();
+        }
+    }
+
+    protected synchronized void stopEdgeConsumer() {
+        Thread thread = edgeConsumerThread;
+        if(thread != null) {
+            edgeConsumerThread = null;
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void consumeEdges() {
+        Thread currentThread = Thread.currentThread();
+        while(edgeConsumerThread == currentThread) {
+            try {
+                int drained = edges.drain(this::handleEdge, DRAIN_LIMIT);
+                long nowMillis = System.currentTimeMillis();
+                if(powerUpdatePending && nowMillis - lastPowerUpdateMillis >= powerUpdateIntervalMillis) {
+                    powerUpdatePending = false;
+                    lastPowerUpdateMillis = nowMillis;
+                    int averagePower = getAveragePower();
+                    logger.debug("{}: power: {}W", getApplianceId(), averagePower);
+                    powerMeterListeners.forEach(listener -> listener.onPowerUpdate(averagePower));
+                }
+                if(drained == 0) {
+                    if(powerUpdatePending) {
+                        // wake up for the power update unless an edge arrives before
+                        long remainingMillis = lastPowerUpdateMillis + powerUpdateIntervalMillis - nowMillis;
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 1)));
+                    }
+                    else {
+                        // an edge added after the drain has already unparked this thread, so park returns immediately
+                        LockSupport.park(this);
+                    }
+                }
+            }
+            catch(Throwable e) {
+                logger.error("{}: Error processing S0 impulses", getApplianceId(), e);
+            }
+        }
+        logger.debug("{}: S0 impulse processing stopped: impulses={} droppedEdges={}", getApplianceId(),
+                impulseCount, droppedEdgeCount);
+    }
+
+    private void handleEdge(long edge) {
+        boolean pulseStart = (edge & 1L) == 1L;
+        long timestampMillis = baseMillis + TimeUnit.NANOSECONDS.toMillis((edge >> 1) - baseNanos);
+        handlePulseEdge(pulseStart, timestampMillis);
+    }
+
+    protected void handleEvent(GpioPin pin, PinState state, PinPullResistance pinPullResistance, Long timestamp) {
+        handlePulseEdge(isPulseStart(state, pinPullResistance), timestamp);
     }
 
-    protected synchronized void handleEvent(GpioPin pin, PinState state, PinPullResistance pinPullResistance, Long timestamp) {
-        if((pinPullResistance == PinPullResistance.PULL_DOWN && state == PinState.HIGH)
-                || (pinPullResistance == PinPullResistance.PULL_UP && state == PinState.LOW)) {
+    /**
+     * Debounces edges and counts impulses. Called by the consumer thread only.
+     */
+    private void handlePulseEdge(boolean pulseStart, long timestamp) {
+        if(pulseStart) {
             pulseTimestamp = timestamp;
         }
         else if (pulseTimestamp != null && (timestamp - pulseTimestamp) > getMinPulseDuration()) {
-            logger.debug("{}: S0 impulse detected on GPIO {}", getApplianceId(), pin.getPin().getAddress());
+            logger.trace("{}: S0 impulse detected", getApplianceId());
             pulsePowerMeter.addTimestamp(pulseTimestamp);
             pulseEnergyMeter.increasePulseCounter();
-            int averagePower = getAveragePower();
-            logger.debug("{}: power: {}W", getApplianceId(), averagePower);
-            powerMeterListeners.forEach(listener -> listener.onPowerUpdate(averagePower));
+            impulseCount++;
+            powerUpdatePending = true;
             pulseTimestamp = null;
         }
     }
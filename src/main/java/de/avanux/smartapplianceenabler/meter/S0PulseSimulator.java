@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generates S0 pulse edges for a {@link S0ElectricityMeter} without GPIO hardware,
+ * e.g. to load-test impulse processing at high pulse frequencies.
+ * It is enabled by setting the system property <code>sae.s0.simulate</code> to the pulse frequency in Hz.
+ * <p>
+ * Pulses are twice as long as the minimum pulse duration of the meter unless the period requires shorter pulses.
+ * They are never shorter than required to pass the debouncing of the meter, which limits the frequency
+ * (about 55 Hz for the default minimum pulse duration of 15ms).
+ */
+public class S0PulseSimulator {
+    private transient Logger logger = LoggerFactory.getLogger(S0PulseSimulator.class);
+    // the meter compares timestamps truncated to milliseconds and requires pulses longer than the minimum duration
+    private static final int DEBOUNCE_MARGIN_MILLIS = 2;
+    private static final int MIN_PAUSE_MILLIS = 1;
+    private S0ElectricityMeter meter;
+    private long periodNanos;
+    private long pulseDurationNanos;
+    private volatile Thread thread;
+    private volatile long pulseCount;
+
+    /**
+     * @param meter
+     * @param frequency pulses per second
+     * @param minPulseDurationMillis minimum pulse duration of the meter
+     * @throws IllegalArgumentException if the frequency is too high for pulses passing the debouncing of the meter
+     */
+    public S0PulseSimulator(S0ElectricityMeter meter, double frequency, int minPulseDurationMillis) {
+        double maxFrequency = getMaxFrequency(minPulseDurationMillis);
+        if(! (frequency > 0 && frequency <= maxFrequency)) {
+            throw new IllegalArgumentException("Frequency " + frequency + "Hz not within (0, " + maxFrequency
+                    + "Hz] for minimum pulse duration " + minPulseDurationMillis + "ms");
+        }
+        this.meter = meter;
+        this.periodNanos = (long) (TimeUnit.SECONDS.toNanos(1) / frequency);
+        long debouncedPulseDurationNanos = TimeUnit.MILLISECONDS.toNanos(minPulseDurationMillis + DEBOUNCE_MARGIN_MILLIS);
+        this.pulseDurationNanos = Math.max(debouncedPulseDurationNanos,
+                Math.min(TimeUnit.MILLISECONDS.toNanos(minPulseDurationMillis * 2L), this.periodNanos / 2));
+    }
+
+    /**
+     * Returns the highest frequency of pulses passing the debouncing of the meter.
+     * @param minPulseDurationMillis minimum pulse duration of the meter
+     * @return frequency in Hz
+     */
+    public static double getMaxFrequency(int minPulseDurationMillis) {
+        return 1000.0 / (minPulseDurationMillis + DEBOUNCE_MARGIN_MILLIS + MIN_PAUSE_MILLIS);
+    }
+
+    public synchronized void start() {
+        if(thread == null) {
+            logger.info("Simulating S0 impulses: period={}ms pulseDuration={}ms",
+                    TimeUnit.NANOSECONDS.toMillis(periodNanos), TimeUnit.NANOSECONDS.toMillis(pulseDurationNanos));
+            thread = new Thread(this::run, "s0-simulator");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public synchronized void stop() {
+        Thread current = thread;
+        thread = null;
+        if(current != null) {
+            LockSupport.unpark(current);
+        }
+    }
+
+    public long getPulseCount() {
+        return pulseCount;
+    }
+
+    private void run() {
+        Thread currentThread = Thread.currentThread();
+        long pulseStart = System.nanoTime();
+        while(true) {
+            parkUntil(pulseStart, true);
+            if(thread != currentThread) {
+                break;
+            }
+            long pulseStartNanos = System.nanoTime();
+            meter.onEdge(true, pulseStartNanos);
+            // the pulse duration is relative to the actual start since waking up may be delayed
+            parkUntil(pulseStartNanos + pulseDurationNanos, false);
+            meter.onEdge(false, System.nanoTime());
+            pulseCount++;
+            pulseStart += periodNanos;
+        }
+    }
+
+    private void parkUntil(long nanos, boolean abortOnStop) {
+        long remaining;
+        while((remaining = nanos - System.nanoTime()) > 0 && !(abortOnStop && thread == null)) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+}
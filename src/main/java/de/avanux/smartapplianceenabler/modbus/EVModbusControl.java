@@ -69,6 +69,19 @@ public class EVModbusControl extends ModbusSlave implements EVChargerControl {
         this.notificationHandler = notificationHandler;
     }
 
+    @Override
+    protected NotificationHandler getNotificationHandler() {
+        return notificationHandler;
+    }
+
+    /**
+     * Vehicle state reads are executed before background polls of other slaves since charging control depends on them.
+     */
+    @Override
+    protected ModbusRequestScheduler.Priority getRequestPriority(ModbusTransactionExecutor modbusTransactionExecutor) {
+        return ModbusRequestScheduler.Priority.HIGH;
+    }
+
     public void setPollInterval(Integer pollInterval) {
         this.pollInterval = pollInterval;
     }
@@ -83,6 +96,7 @@ public class EVModbusControl extends ModbusSlave implements EVChargerControl {
 
     @Override
     public void init() {
+        clearExecutors();
         int cacheMaxAgeSeconds = this.pollInterval - 1;
         this.requestCache = new RequestCache<>(getApplianceId(), cacheMaxAgeSeconds);
 
@@ -137,42 +151,33 @@ public class EVModbusControl extends ModbusSlave implements EVChargerControl {
             for (ParentWithChild<ModbusRead, ModbusReadValue> read : reads) {
                 ModbusRead registerRead = read.parent();
                 try {
-                    Object registerAddress = null;
-                    boolean fromCache = false;
-                    ModbusReadTransactionExecutor executor = this.requestCache.get(registerRead);
+                    ModbusReadTransactionExecutor executor = getCachedReadExecutor(registerRead);
+                    boolean fromCache = executor != null;
                     if (executor == null) {
-                        registerAddress = registerRead.getAddress();
-                        executor = ModbusExecutorFactory.getReadExecutor(getApplianceId(),
-                                registerRead.getAddress(), registerRead.getType(), registerRead.getValueType(), registerRead.getWords());
-                        executeTransaction(executor, true);
-                        this.requestCache.put(registerRead, executor);
-                    }
-                    else {
-                        if(executor instanceof BaseTransactionExecutor) {
-                            BaseTransactionExecutor readInputRegisterExecutor = (BaseTransactionExecutor) executor;
-                            registerAddress = readInputRegisterExecutor.getAddress();
-                            fromCache = true;
-                        }
+                        executor = executeWithPermit(ModbusRequestScheduler.Priority.HIGH,
+                                () -> readStatusRegister(registerRead));
                     }
 
                     Object value;
-                    if(executor instanceof ReadCoilExecutor) {
-                        match = ((ReadCoilExecutor) executor).getValue();
-                        value = match;
-                    }
-                    else if(executor instanceof ReadDiscreteInputExecutorImpl) {
-                        match = ((ReadDiscreteInputExecutorImpl) executor).getValue();
-                        value = match;
-                    }
-                    else {
-                        ValueTransformer<?> transformer = executor.getValueTransformer();
-                        String regex = read.child().getExtractionRegex();
-                        match = transformer.valueMatches(regex);
-                        value = transformer.getValue();
+                    synchronized (this) {
+                        if(executor instanceof ReadCoilExecutor) {
+                            match = Boolean.TRUE.equals(((ReadCoilExecutor) executor).getValue());
+                            value = match;
+                        }
+                        else if(executor instanceof ReadDiscreteInputExecutorImpl) {
+                            match = Boolean.TRUE.equals(((ReadDiscreteInputExecutorImpl) executor).getValue());
+                            value = match;
+                        }
+                        else {
+                            ValueTransformer<?> transformer = executor.getValueTransformer();
+                            String regex = read.child().getExtractionRegex();
+                            match = transformer.valueMatches(regex);
+                            value = transformer.getValue();
+                        }
                     }
 
                     logger.trace("{}: Read modbus register={} valueName={} value={} match={} fromCache={}",
-                            getApplianceId(), registerAddress != null ? registerAddress.toString() : null, valueName,
+                            getApplianceId(), registerRead.getAddress(), valueName,
                             value, match, fromCache);
                     if(match) {
                         break;
@@ -189,24 +194,49 @@ public class EVModbusControl extends ModbusSlave implements EVChargerControl {
         return false;
     }
 
+    private synchronized ModbusReadTransactionExecutor getCachedReadExecutor(ModbusRead registerRead) {
+        return this.requestCache.get(registerRead);
+    }
+
+    private synchronized ModbusReadTransactionExecutor readStatusRegister(ModbusRead registerRead) throws Exception {
+        // status registers are evaluated without byte order and factor
+        ModbusReadTransactionExecutor executor = getReadExecutor(registerRead, false);
+        executeTransaction(executor);
+        this.requestCache.put(registerRead, executor);
+        return executor;
+    }
+
+    /**
+     * Write the value to the register after the charger's cached responses have been discarded.
+     * @param registerWrite
+     * @param value
+     * @return true, if the value has been written
+     * @throws Exception
+     */
+    private synchronized boolean writeRegister(ModbusWrite registerWrite, Object value) throws Exception {
+        if(this.requestCache != null) {
+            // the next poll after write should return a fresh response from charger
+            this.requestCache.clear();
+        }
+        ModbusWriteTransactionExecutor executor = getWriteExecutor(registerWrite);
+        if(executor != null) {
+            executor.setValue(value);
+            executeTransaction(executor);
+            return true;
+        }
+        return false;
+    }
+
     @Override
-    public void setChargeCurrent(int current) {
+    public boolean setChargeCurrent(int current) {
         logger.debug("{}: Set charge current {}A", getApplianceId(), current);
         ParentWithChild<ModbusWrite, ModbusWriteValue> write = ModbusWrite.getFirstRegisterWrite(
                 EVWriteValueName.ChargingCurrent.name(), this.modbusWrites);
         if(write != null) {
-            if(this.requestCache != null) {
-                // the next poll after write should return a fresh response from charger
-                this.requestCache.clear();
-            }
             ModbusWrite registerWrite = write.parent();
             try {
-                ModbusWriteTransactionExecutor executor = ModbusExecutorFactory.getWriteExecutor(getApplianceId(),
-                        registerWrite.getType(), registerWrite.getValueType(), registerWrite.getAddress(), registerWrite.getFactorToValue());
-                if(executor != null) {
-                    executor.setValue(current);
-                    executeTransaction(executor, true);
-                }
+                return executeWithPermit(ModbusRequestScheduler.Priority.HIGH,
+                        () -> writeRegister(registerWrite, current));
             }
             catch(Exception e) {
                 logger.error("{}: Error setting charge current in register {}", getApplianceId(),
@@ -216,6 +246,7 @@ public class EVModbusControl extends ModbusSlave implements EVChargerControl {
                 }
             }
         }
+        return false;
     }
 
     @Override
@@ -234,26 +265,18 @@ public class EVModbusControl extends ModbusSlave implements EVChargerControl {
         ParentWithChild<ModbusWrite, ModbusWriteValue> write
                 = ModbusWrite.getFirstRegisterWrite(registerName.name(), this.modbusWrites);
         if(write != null) {
-            if(this.requestCache != null) {
-                // the next poll after write should return a fresh response from charger
-                this.requestCache.clear();
-            }
             ModbusWrite registerWrite = write.parent();
             try {
-                ModbusWriteTransactionExecutor executor = ModbusExecutorFactory.getWriteExecutor(getApplianceId(),
-                        registerWrite.getType(), registerWrite.getValueType(), registerWrite.getAddress(), registerWrite.getFactorToValue());
-                if(executor != null) {
-                    String stringValue = write.child().getValue();
-                    Object value = null;
-                    if(WriteRegisterType.Coil.equals(registerWrite.getType())) {
-                        value = "1".equals(stringValue);
-                    }
-                    else if(WriteRegisterType.Holding.equals(registerWrite.getType())) {
-                        value = Integer.valueOf(stringValue);
-                    }
-                    executor.setValue(value);
-                    executeTransaction(executor, true);
+                String stringValue = write.child().getValue();
+                Object value = null;
+                if(WriteRegisterType.Coil.equals(registerWrite.getType())) {
+                    value = "1".equals(stringValue);
+                }
+                else if(WriteRegisterType.Holding.equals(registerWrite.getType())) {
+                    value = Integer.valueOf(stringValue);
                 }
+                Object registerValue = value;
+                executeWithPermit(ModbusRequestScheduler.Priority.HIGH, () -> writeRegister(registerWrite, registerValue));
             }
             catch(Exception e) {
                 logger.error("{}: Error enable/disable charging process in register {}", getApplianceId(),
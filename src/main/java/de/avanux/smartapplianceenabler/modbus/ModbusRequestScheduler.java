@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the requests of all slaves accessed through the same Modbus TCP.
+ * <p>
+ * Requests are granted in order of their priority and within the same priority in order of arrival.
+ * Since a slave issues one request at a time only, slaves polling at the same rate are served in turn.
+ * The number of requests executed at the same time is limited (1 unless pipelining is enabled).
+ * Optionally the start of requests is limited to a maximum rate and separated by a gap after the previous frame.
+ * <p>
+ * Timing is based on {@link System#nanoTime()} since it has to be real time.
+ */
+public class ModbusRequestScheduler {
+    private Logger logger = LoggerFactory.getLogger(ModbusRequestScheduler.class);
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 10000;
+
+    public enum Priority {
+        /**
+         * Writes and reads of state which has to be current, e.g. the vehicle state of a wallbox.
+         */
+        HIGH,
+        /**
+         * Background polling, e.g. of meters.
+         */
+        LOW
+    }
+
+    private String id;
+    private long minStartIntervalNanos;
+    private long interFrameGapNanos;
+    private int maxConcurrentRequests;
+    private PriorityQueue<Ticket> queue = new PriorityQueue<>(
+            Comparator.comparing((Ticket ticket) -> ticket.priority).thenComparingLong(ticket -> ticket.sequence));
+    private long sequence;
+    private int activeRequests;
+    private boolean started;
+    private long lastStartNanos;
+    private long lastEndNanos;
+    private long requestCount;
+    private long timeoutCount;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+
+    /**
+     * @param id identifies the scheduler in log messages
+     * @param maxRequestsPerSecond the maximum rate of requests or null, if not limited
+     * @param interFrameGapMillis the minimum time between the previous frame and the next request or null
+     * @param maxConcurrentRequests the number of requests executed at the same time
+     */
+    public ModbusRequestScheduler(String id, Double maxRequestsPerSecond, Integer interFrameGapMillis,
+                                  int maxConcurrentRequests) {
+        this.id = id;
+        this.minStartIntervalNanos = maxRequestsPerSecond != null && maxRequestsPerSecond > 0
+                ? (long) (1_000_000_000L / maxRequestsPerSecond) : 0;
+        this.interFrameGapNanos = interFrameGapMillis != null && interFrameGapMillis > 0
+                ? TimeUnit.MILLISECONDS.toNanos(interFrameGapMillis) : 0;
+        this.maxConcurrentRequests = Math.max(maxConcurrentRequests, 1);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Wait until the request may be executed. Each successful acquire has to be followed by {@link #release()}.
+     * @param priority
+     * @param timeoutMillis
+     * @return true, if the request may be executed; false, if the timeout elapsed before
+     * @throws InterruptedException
+     */
+    public synchronized boolean acquire(Priority priority, long timeoutMillis) throws InterruptedException {
+        long arrivalNanos = System.nanoTime();
+        long deadlineNanos = arrivalNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Ticket ticket = new Ticket(priority, sequence++);
+        queue.add(ticket);
+        try {
+            while(true) {
+                long nowNanos = System.nanoTime();
+                long waitNanos = deadlineNanos - nowNanos;
+                if(queue.peek() == ticket && activeRequests < maxConcurrentRequests) {
+                    long delayNanos = getEarliestStartNanos() - nowNanos;
+                    if(! started || delayNanos <= 0) {
+                        queue.poll();
+                        activeRequests++;
+                        started = true;
+                        lastStartNanos = nowNanos;
+                        recordWait(nowNanos - arrivalNanos);
+                        // the next ticket may be granted as well if concurrent requests are allowed
+                        notifyAll();
+                        return true;
+                    }
+                    waitNanos = Math.min(waitNanos, delayNanos);
+                }
+                if(nowNanos - deadlineNanos >= 0) {
+                    queue.remove(ticket);
+                    timeoutCount++;
+                    logger.warn("{}: Request not scheduled within {}ms queueDepth={}", id, timeoutMillis,
+                            queue.size());
+                    notifyAll();
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, waitNanos);
+            }
+        }
+        catch(InterruptedException e) {
+            queue.remove(ticket);
+            notifyAll();
+            throw e;
+        }
+    }
+
+    /**
+     * Signal completion of a request granted by {@link #acquire(Priority, long)}.
+     */
+    public synchronized void release() {
+        if(activeRequests > 0) {
+            activeRequests--;
+        }
+        lastEndNanos = System.nanoTime();
+        notifyAll();
+    }
+
+    private long getEarliestStartNanos() {
+        long earliestNanos = lastStartNanos + minStartIntervalNanos;
+        if(interFrameGapNanos > 0) {
+            long lastFrameNanos = lastEndNanos - lastStartNanos > 0 ? lastEndNanos : lastStartNanos;
+            earliestNanos = Math.max(earliestNanos, lastFrameNanos + interFrameGapNanos);
+        }
+        return earliestNanos;
+    }
+
+    private void recordWait(long waitNanos) {
+        requestCount++;
+        totalWaitNanos += waitNanos;
+        maxWaitNanos = Math.max(maxWaitNanos, waitNanos);
+    }
+
+    /**
+     * Returns the number of requests waiting to be executed.
+     * @return
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    public synchronized int getActiveRequests() {
+        return activeRequests;
+    }
+
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public synchronized double getAverageWaitMillis() {
+        return requestCount > 0 ? totalWaitNanos / (double) requestCount / 1_000_000.0 : 0.0;
+    }
+
+    public synchronized double getMaxWaitMillis() {
+        return maxWaitNanos / 1_000_000.0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return id + " queueDepth=" + queue.size() + " active=" + activeRequests + " requests=" + requestCount
+                + " timeouts=" + timeoutCount + " avgWait=" + String.format("%.1f", getAverageWaitMillis())
+                + "ms maxWait=" + String.format("%.1f", getMaxWaitMillis()) + "ms";
+    }
+
+    private static class Ticket {
+        private Priority priority;
+        private long sequence;
+
+        Ticket(Priority priority, long sequence) {
+            this.priority = priority;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -17,10 +17,20 @@
  */
 package de.avanux.smartapplianceenabler.modbus;
 
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
 import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.modbus.executor.BaseTransactionExecutor;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusExecutorFactory;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusReadTransactionExecutor;
 import de.avanux.smartapplianceenabler.modbus.executor.ModbusTestingExecutor;
 import de.avanux.smartapplianceenabler.modbus.executor.ModbusTransactionExecutor;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusWriteTransactionExecutor;
+import de.avanux.smartapplianceenabler.notification.NotificationHandler;
+import de.avanux.smartapplianceenabler.notification.NotificationType;
+import de.avanux.smartapplianceenabler.util.CircuitBreaker;
+import de.avanux.smartapplianceenabler.util.CircuitBreakerRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,21 +38,38 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlTransient;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 /**
  * Base class for ModBus slaves.
+ * <p>
+ * Executors are created once per {@link ModbusRead} or {@link ModbusWrite} and reused for every transaction.
+ * They are confined to the slave: creation and execution happen while holding the slave's monitor, so callers
+ * evaluating the result of an executor have to synchronize on the slave as well.
+ * Callers acquire the permit of the request scheduler of the {@link ModbusTcp} before synchronizing on the slave
+ * (see {@link #executeWithPermit(ModbusRequestScheduler.Priority, Callable)}), so that a thread waiting for a busy
+ * Modbus TCP does not block other threads using the slave.
+ * Transactions are executed using the connection of the {@link ModbusTcp} shared with other slaves. It is kept open
+ * between transactions and closed after I/O errors only.
+ * If pipelining is enabled for the Modbus TCP, transactions are executed using its {@link ModbusTcpPipeline}
+ * instead.
  */
 @XmlTransient
 @XmlAccessorType(XmlAccessType.FIELD)
 abstract public class ModbusSlave implements ApplianceIdConsumer {
     private transient Logger logger = LoggerFactory.getLogger(ModbusSlave.class);
+    private static final ThreadLocal<ModbusRequestScheduler> heldPermit = new ThreadLocal<>();
     @XmlAttribute
     private String idref;
     @XmlAttribute
     private int slaveAddress;
     private transient String applianceId;
     private transient ModbusTcp modbusTcp;
-    private transient TCPMasterConnection connection;
+    private transient Map<ModbusRead, ModbusReadTransactionExecutor> readExecutors = new IdentityHashMap<>();
+    private transient Map<ModbusWrite, ModbusReadTransactionExecutor> readBackExecutors = new IdentityHashMap<>();
+    private transient Map<ModbusWrite, ModbusWriteTransactionExecutor<?>> writeExecutors = new IdentityHashMap<>();
 
     @Override
     public void setApplianceId(String applianceId) {
@@ -69,27 +96,223 @@ abstract public class ModbusSlave implements ApplianceIdConsumer {
         this.idref = idref;
     }
 
+    public int getSlaveAddress() {
+        return slaveAddress;
+    }
+
+    public void setSlaveAddress(int slaveAddress) {
+        this.slaveAddress = slaveAddress;
+    }
+
+    /**
+     * Returns the notification handler used to notify about an unreachable device.
+     * @return
+     */
+    protected NotificationHandler getNotificationHandler() {
+        return null;
+    }
+
+    /**
+     * Returns the executor reading the register given. It is created on first use and reused afterwards.
+     * @param read
+     * @return
+     */
+    protected ModbusReadTransactionExecutor getReadExecutor(ModbusRead read) {
+        return getReadExecutor(read, true);
+    }
+
+    /**
+     * Returns the executor reading the register given. It is created on first use and reused afterwards.
+     * @param read
+     * @param applyByteOrderAndFactor if false, byte order and factor of the read are ignored, i.e. the value
+     *                                is read as big endian and not scaled
+     * @return
+     */
+    protected synchronized ModbusReadTransactionExecutor getReadExecutor(ModbusRead read,
+                                                                         boolean applyByteOrderAndFactor) {
+        return readExecutors.computeIfAbsent(read, key -> applyByteOrderAndFactor
+                ? ModbusExecutorFactory.getReadExecutor(applianceId, read.getAddress(), read.getType(),
+                    read.getValueType(), read.getWords(), read.getByteOrder(), read.getFactorToValue())
+                : ModbusExecutorFactory.getReadExecutor(applianceId, read.getAddress(), read.getType(),
+                    read.getValueType(), read.getWords()));
+    }
+
+    /**
+     * Returns the executor reading back the register written by the write given.
+     * It is created on first use and reused afterwards.
+     * @param write
+     * @param valueType
+     * @return
+     */
+    protected synchronized ModbusReadTransactionExecutor getReadExecutor(ModbusWrite write,
+                                                                         RegisterValueType valueType) {
+        return readBackExecutors.computeIfAbsent(write, key -> ModbusExecutorFactory.getReadExecutor(applianceId,
+                write.getAddress(), write.getReadRegisterType(), valueType));
+    }
+
+    /**
+     * Returns the executor writing the register given. It is created on first use and reused afterwards.
+     * @param write
+     * @return
+     */
+    protected synchronized ModbusWriteTransactionExecutor<?> getWriteExecutor(ModbusWrite write) {
+        return writeExecutors.computeIfAbsent(write, key -> ModbusExecutorFactory.getWriteExecutor(applianceId,
+                write.getType(), write.getValueType(), write.getAddress(), write.getFactorToValue()));
+    }
+
+    /**
+     * Discard executors so that they are created again on next use, e.g. after the configuration has changed.
+     */
+    protected synchronized void clearExecutors() {
+        readExecutors.clear();
+        readBackExecutors.clear();
+        writeExecutors.clear();
+    }
+
+    /**
+     * Execute the transaction using a persistent connection.
+     * @param modbusTransactionExecutor
+     * @throws Exception
+     */
+    protected void executeTransaction(ModbusTransactionExecutor modbusTransactionExecutor) throws Exception {
+        executeTransaction(modbusTransactionExecutor, false);
+    }
+
+    /**
+     * Execute an action containing one transaction while holding a permit of the request scheduler of the Modbus TCP.
+     * The permit is acquired before the action synchronizes on the slave.
+     * @param priority
+     * @param action
+     * @return the result of the action
+     * @throws ModbusIOException if the request has not been scheduled in time
+     * @throws Exception
+     */
+    protected <T> T executeWithPermit(ModbusRequestScheduler.Priority priority, Callable<T> action) throws Exception {
+        ModbusTcp modbusTcp = getModbusTcp();
+        if(modbusTcp == null || heldPermit.get() != null) {
+            return action.call();
+        }
+        ModbusRequestScheduler scheduler = modbusTcp.getScheduler();
+        if(! scheduler.acquire(priority, ModbusRequestScheduler.DEFAULT_MAX_WAIT_MILLIS)) {
+            throw new ModbusIOException("Request to modbus " + idref + " not scheduled in time");
+        }
+        heldPermit.set(scheduler);
+        try {
+            return action.call();
+        }
+        finally {
+            heldPermit.remove();
+            scheduler.release();
+        }
+    }
+
+    /**
+     * Execute the transaction unless the Modbus TCP is considered unreachable by its circuit breaker.
+     * Only I/O errors and timeouts count as failures of the endpoint. An exception response proves that
+     * the slave is reachable.
+     * @param modbusTransactionExecutor
+     * @param closeConnection
+     * @throws ModbusIOException if the Modbus TCP is unreachable or the transaction failed due to I/O errors
+     * @throws Exception
+     */
     protected synchronized void executeTransaction(ModbusTransactionExecutor modbusTransactionExecutor, boolean closeConnection) throws Exception {
-        if(! (modbusTransactionExecutor instanceof ModbusTestingExecutor)) {
-            ModbusTcp modbusTcp = getModbusTcp();
-            if(modbusTcp != null) {
-                if(connection == null) {
-                    logger.debug("{}: Connecting to modbus {}", applianceId, modbusTcp.toString());
-                    connection = modbusTcp.getConnection();
+        if(modbusTransactionExecutor instanceof ModbusTestingExecutor) {
+            return;
+        }
+        ModbusTcp modbusTcp = getModbusTcp();
+        if(modbusTcp == null) {
+            throw new ModbusIOException("Modbus " + idref + " not found");
+        }
+        CircuitBreaker circuitBreaker = CircuitBreakerRegistry.getInstance().getCircuitBreaker(applianceId,
+                modbusTcp.toString());
+        if(! circuitBreaker.allowRequest()) {
+            logger.debug("{}: Skipping transaction since modbus {} is unreachable", applianceId, idref);
+            throw new ModbusIOException("Modbus " + idref + " is unreachable");
+        }
+        // null, if the request did not reach the endpoint; the probe permit has to be released in that case
+        Boolean reachable = null;
+        TCPMasterConnection connection = null;
+        try {
+            ModbusRequestScheduler scheduler = modbusTcp.getScheduler();
+            boolean permitHeld = heldPermit.get() == scheduler;
+            if(! permitHeld && ! scheduler.acquire(getRequestPriority(modbusTransactionExecutor),
+                    ModbusRequestScheduler.DEFAULT_MAX_WAIT_MILLIS)) {
+                throw new ModbusIOException("Request to modbus " + idref + " not scheduled in time");
+            }
+            try {
+                ModbusTcpPipeline pipeline = modbusTcp.getPipeline();
+                if(pipeline != null && modbusTransactionExecutor instanceof BaseTransactionExecutor) {
+                    ((BaseTransactionExecutor<?>) modbusTransactionExecutor).setPipeline(pipeline);
+                }
+                else {
+                    pipeline = null;
+                    try {
+                        connection = modbusTcp.getSharedConnection();
+                    }
+                    catch(Exception e) {
+                        logger.error("{}: Cannot connect to modbus {}", applianceId, idref);
+                        reachable = false;
+                        throw e;
+                    }
+                }
+                try {
+                    modbusTransactionExecutor.execute(connection, slaveAddress);
+                    reachable = true;
+                }
+                catch(ModbusSlaveException e) {
+                    reachable = true;
+                    throw e;
+                }
+                catch(ModbusIOException e) {
+                    reachable = false;
+                    throw e;
                 }
-                if(! connection.isConnected()) {
-                    connection.connect();
+                catch(Exception e) {
+                    // the connection may be in an undefined state, e.g. with a pending response
+                    closeConnection = true;
+                    throw e;
+                }
+                finally {
+                    if(pipeline == null && (closeConnection || reachable == Boolean.FALSE)) {
+                        modbusTcp.closeSharedConnection();
+                    }
                 }
             }
-            if(connection != null && connection.isConnected()) {
-                modbusTransactionExecutor.execute(connection, slaveAddress);
-                if(closeConnection) {
-                    connection.close();
-                    connection = null;
+            finally {
+                if(! permitHeld) {
+                    scheduler.release();
                 }
             }
+        }
+        finally {
+            if(reachable == null) {
+                circuitBreaker.releaseProbe();
+            }
+            else if(reachable) {
+                circuitBreaker.recordSuccess();
+            }
             else {
-                logger.error("{}: Cannot connect to modbus {}", applianceId, idref);
+                recordFailure(circuitBreaker);
+            }
+        }
+    }
+
+    /**
+     * Returns the priority of the transaction relative to transactions of other slaves using the same Modbus TCP.
+     * Writes are executed before reads by default.
+     * @param modbusTransactionExecutor
+     * @return
+     */
+    protected ModbusRequestScheduler.Priority getRequestPriority(ModbusTransactionExecutor modbusTransactionExecutor) {
+        return modbusTransactionExecutor instanceof ModbusWriteTransactionExecutor
+                ? ModbusRequestScheduler.Priority.HIGH : ModbusRequestScheduler.Priority.LOW;
+    }
+
+    private void recordFailure(CircuitBreaker circuitBreaker) {
+        if(circuitBreaker != null && circuitBreaker.recordFailure()) {
+            NotificationHandler notificationHandler = getNotificationHandler();
+            if(notificationHandler != null) {
+                notificationHandler.sendNotification(NotificationType.DEVICE_UNREACHABLE);
             }
         }
     }
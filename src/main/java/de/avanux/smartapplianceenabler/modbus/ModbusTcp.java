@@ -40,6 +40,15 @@ public class ModbusTcp {
     public transient static final int DEFAULT_PORT = 502;
     @XmlAttribute
     private Integer port;
+    @XmlAttribute
+    private Integer maxPendingRequests;
+    @XmlAttribute
+    private Double maxRequestsPerSecond;
+    @XmlAttribute
+    private Integer interFrameGapMillis;
+    private transient ModbusTcpPipeline pipeline;
+    private transient ModbusRequestScheduler scheduler;
+    private transient TCPMasterConnection connection;
 
 
     public String getId() {
@@ -74,6 +83,102 @@ public class ModbusTcp {
         this.port = port;
     }
 
+    public Integer getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    /**
+     * Set the maximum number of requests outstanding at the same time. Values greater than 1 enable pipelining.
+     * @param maxPendingRequests
+     */
+    public void setMaxPendingRequests(Integer maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests;
+    }
+
+    public Double getMaxRequestsPerSecond() {
+        return maxRequestsPerSecond;
+    }
+
+    /**
+     * Set the maximum number of requests per second sent to this Modbus TCP by all slaves.
+     * @param maxRequestsPerSecond
+     */
+    public void setMaxRequestsPerSecond(Double maxRequestsPerSecond) {
+        this.maxRequestsPerSecond = maxRequestsPerSecond;
+    }
+
+    public Integer getInterFrameGapMillis() {
+        return interFrameGapMillis;
+    }
+
+    /**
+     * Set the minimum time between the end of a transaction and the start of the next one.
+     * @param interFrameGapMillis
+     */
+    public void setInterFrameGapMillis(Integer interFrameGapMillis) {
+        this.interFrameGapMillis = interFrameGapMillis;
+    }
+
+    /**
+     * Returns the pipeline shared by all slaves accessed through this Modbus TCP if pipelining is enabled.
+     * @return the pipeline or null, if requests have to be executed one after the other using a connection
+     */
+    public synchronized ModbusTcpPipeline getPipeline() {
+        if(pipeline == null && maxPendingRequests != null && maxPendingRequests > 1) {
+            pipeline = new ModbusTcpPipeline(toString(), getResolvedHost(), getResolvedPort(), maxPendingRequests);
+        }
+        return pipeline;
+    }
+
+    /**
+     * Returns the scheduler shared by all slaves accessed through this Modbus TCP.
+     * @return
+     */
+    public synchronized ModbusRequestScheduler getScheduler() {
+        if(scheduler == null) {
+            int maxConcurrentRequests = getPipeline() != null ? maxPendingRequests : 1;
+            scheduler = new ModbusRequestScheduler(toString(), maxRequestsPerSecond, interFrameGapMillis,
+                    maxConcurrentRequests);
+        }
+        return scheduler;
+    }
+
+    /**
+     * Returns the connection shared by all slaves accessed through this Modbus TCP, opening it if necessary.
+     * Transactions using it have to hold a permit of the {@link #getScheduler() scheduler} which permits
+     * one request at a time if pipelining is disabled.
+     * @return
+     * @throws Exception if the connection cannot be opened
+     */
+    public synchronized TCPMasterConnection getSharedConnection() throws Exception {
+        if(connection == null) {
+            connection = getConnection();
+        }
+        if(! connection.isConnected()) {
+            connection.connect();
+        }
+        return connection;
+    }
+
+    /**
+     * Close the shared connection if open. It will be re-opened by the next transaction.
+     */
+    public synchronized void closeSharedConnection() {
+        if(connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    public synchronized void stop() {
+        if(pipeline != null) {
+            pipeline.close();
+            pipeline = null;
+        }
+        closeSharedConnection();
+        scheduler = null;
+    }
+
     public TCPMasterConnection getConnection() throws UnknownHostException {
         InetAddress address = InetAddress.getByName(getResolvedHost());
         TCPMasterConnection connection = new TCPMasterConnection(address);
@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ExceptionResponse;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.msg.ModbusResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A Modbus TCP connection allowing several requests to be outstanding at the same time. Responses are matched to
+ * requests by the transaction identifier of the MBAP header, so that slaves behind a gateway with high latency
+ * can be accessed concurrently instead of one after the other.
+ * <p>
+ * Devices not able to handle more than one outstanding request usually either queue requests, drop them or mix up
+ * responses. If a request times out while other requests were outstanding, or a response does not match its request,
+ * the pipeline falls back to strict serial mode (one outstanding request) for the rest of its lifetime.
+ */
+public class ModbusTcpPipeline {
+    private Logger logger = LoggerFactory.getLogger(ModbusTcpPipeline.class);
+    public static final int DEFAULT_TIMEOUT_MILLIS = 3000;
+    private static final int MBAP_HEADER_LENGTH = 7;
+    // the MBAP length field covers unit id and PDU: function code plus at least one byte, at most 253 bytes PDU
+    private static final int MIN_MBAP_LENGTH = 2;
+    private static final int MAX_MBAP_LENGTH = 254;
+    private final String id;
+    private final String host;
+    private final int port;
+    private final int maxPendingRequests;
+    private int timeoutMillis = DEFAULT_TIMEOUT_MILLIS;
+    private boolean serial;
+    private Socket socket;
+    private OutputStream out;
+    private final Map<Integer, PendingRequest> pendingRequests = new HashMap<>();
+    private int lastTransactionId;
+
+    public ModbusTcpPipeline(String id, String host, int port, int maxPendingRequests) {
+        this.id = id;
+        this.host = host;
+        this.port = port;
+        this.maxPendingRequests = Math.max(maxPendingRequests, 1);
+        this.serial = this.maxPendingRequests == 1;
+    }
+
+    public void setTimeoutMillis(int timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public int getMaxPendingRequests() {
+        return maxPendingRequests;
+    }
+
+    public synchronized boolean isSerial() {
+        return serial;
+    }
+
+    public synchronized int getPendingRequestCount() {
+        return pendingRequests.size();
+    }
+
+    /**
+     * Send the request and wait for its response. Other threads may send requests while waiting.
+     * @param request the request with unit id set
+     * @return the response
+     * @throws ModbusSlaveException if the slave responded with an exception
+     * @throws ModbusIOException if the connection failed or no response was received in time
+     */
+    public ModbusResponse execute(ModbusRequest request) throws ModbusException {
+        PendingRequest pendingRequest;
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        synchronized (this) {
+            while(pendingRequests.size() >= (serial ? 1 : maxPendingRequests)) {
+                long remainingMillis = deadline - System.currentTimeMillis();
+                if(remainingMillis <= 0) {
+                    throw new ModbusIOException("Timeout waiting for pending requests to complete at " + id);
+                }
+                try {
+                    wait(remainingMillis);
+                }
+                catch(InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ModbusIOException("Interrupted", e);
+                }
+            }
+            connect();
+            int transactionId = nextTransactionId();
+            pendingRequest = new PendingRequest(transactionId, request.getUnitID(), request.getFunctionCode(),
+                    pendingRequests.size() > 0);
+            pendingRequests.put(transactionId, pendingRequest);
+            try {
+                out.write(encode(request, transactionId));
+                out.flush();
+            }
+            catch(IOException e) {
+                disconnect(e);
+                throw new ModbusIOException("Error sending request to " + id, e);
+            }
+        }
+        return await(pendingRequest, deadline);
+    }
+
+    private ModbusResponse await(PendingRequest pendingRequest, long deadline) throws ModbusException {
+        ModbusResponse response;
+        try {
+            response = pendingRequest.future.get(Math.max(deadline - System.currentTimeMillis(), 1),
+                    TimeUnit.MILLISECONDS);
+        }
+        catch(TimeoutException e) {
+            synchronized (this) {
+                if(pendingRequests.remove(pendingRequest.transactionId) != null) {
+                    notifyAll();
+                }
+                if(pendingRequest.concurrent) {
+                    fallbackToSerial("request timed out while other requests were pending");
+                }
+            }
+            throw new ModbusIOException("No response received from " + id + " within " + timeoutMillis + "ms");
+        }
+        catch(ExecutionException e) {
+            throw new ModbusIOException("Error receiving response from " + id, e.getCause());
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ModbusIOException("Interrupted", e);
+        }
+        if(response instanceof ExceptionResponse) {
+            throw new ModbusSlaveException(((ExceptionResponse) response).getExceptionCode());
+        }
+        return response;
+    }
+
+    /**
+     * Close the connection. Pending requests fail.
+     */
+    public synchronized void close() {
+        disconnect(new IOException("Connection closed"));
+    }
+
+    private void connect() throws ModbusIOException {
+        if(socket == null) {
+            try {
+                Socket socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+                this.socket = socket;
+                this.out = socket.getOutputStream();
+                Thread reader = new Thread(() -> read(socket), "modbus-" + id);
+                reader.setDaemon(true);
+                reader.start();
+                logger.debug("Connected to modbus {} maxPendingRequests={} serial={}", id, maxPendingRequests, serial);
+            }
+            catch(IOException e) {
+                throw new ModbusIOException("Error connecting to " + id, e);
+            }
+        }
+    }
+
+    private void disconnect(IOException cause) {
+        if(socket != null) {
+            try {
+                socket.close();
+            }
+            catch(IOException e) {
+                logger.trace("Error closing socket of {}", id, e);
+            }
+            socket = null;
+            out = null;
+        }
+        for(PendingRequest pendingRequest : new ArrayList<>(pendingRequests.values())) {
+            pendingRequest.future.completeExceptionally(cause);
+        }
+        if(pendingRequests.size() > 1) {
+            fallbackToSerial("connection closed while requests were pending");
+        }
+        pendingRequests.clear();
+        notifyAll();
+    }
+
+    private void fallbackToSerial(String reason) {
+        if(! serial) {
+            logger.warn("Modbus {}: Falling back to serial mode since {}", id, reason);
+            serial = true;
+        }
+    }
+
+    private int nextTransactionId() {
+        do {
+            lastTransactionId = (lastTransactionId + 1) & 0xFFFF;
+        }
+        while(pendingRequests.containsKey(lastTransactionId));
+        return lastTransactionId;
+    }
+
+    private byte[] encode(ModbusRequest request, int transactionId) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        request.writeData(new DataOutputStream(data));
+        ByteArrayOutputStream adu = new ByteArrayOutputStream(MBAP_HEADER_LENGTH + 1 + data.size());
+        DataOutputStream dos = new DataOutputStream(adu);
+        dos.writeShort(transactionId);
+        dos.writeShort(0);
+        dos.writeShort(data.size() + 2);
+        dos.writeByte(request.getUnitID());
+        dos.writeByte(request.getFunctionCode());
+        data.writeTo(dos);
+        return adu.toByteArray();
+    }
+
+    /**
+     * Read responses until the socket is closed. On malformed responses the connection is closed, so that the next
+     * request reconnects.
+     */
+    private void read(Socket socket) {
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            while(true) {
+                int transactionId = in.readUnsignedShort();
+                in.readUnsignedShort(); // protocol id
+                int length = in.readUnsignedShort();
+                int unitId = in.readUnsignedByte();
+                if(length < MIN_MBAP_LENGTH || length > MAX_MBAP_LENGTH) {
+                    throw new IOException("Invalid length " + length + " of response: transactionId=" + transactionId);
+                }
+                byte[] pdu = new byte[length - 1];
+                in.readFully(pdu);
+                received(transactionId, unitId, pdu);
+            }
+        }
+        catch(IOException | RuntimeException e) {
+            synchronized (this) {
+                if(this.socket == socket) {
+                    logger.debug("Connection to modbus {} closed: {}", id, e.toString());
+                    disconnect(e instanceof IOException ? (IOException) e : new IOException(e));
+                }
+            }
+        }
+    }
+
+    private void received(int transactionId, int unitId, byte[] pdu) throws IOException {
+        PendingRequest pendingRequest;
+        ModbusResponse response;
+        synchronized (this) {
+            pendingRequest = pendingRequests.get(transactionId);
+            if(pendingRequest == null) {
+                logger.debug("Modbus {}: Discarding response with unknown transaction id {}", id, transactionId);
+                return;
+            }
+            int functionCode = pdu[0] & 0x7F;
+            if(unitId != pendingRequest.unitId || functionCode != pendingRequest.functionCode) {
+                fallbackToSerial("response did not match request");
+                throw new IOException("Response does not match request: transactionId=" + transactionId);
+            }
+            // decoded before removing the request, so that it fails when disconnecting if the response is malformed
+            response = decode(transactionId, unitId, pdu);
+            pendingRequests.remove(transactionId);
+            notifyAll();
+        }
+        pendingRequest.future.complete(response);
+    }
+
+    private ModbusResponse decode(int transactionId, int unitId, byte[] pdu) throws IOException {
+        int functionCode = pdu[0] & 0xFF;
+        ModbusResponse response;
+        if((functionCode & 0x80) != 0) {
+            response = new ExceptionResponse(functionCode & 0x7F, pdu.length > 1 ? pdu[1] & 0xFF : 0);
+        }
+        else {
+            response = ModbusResponse.createModbusResponse(functionCode);
+            response.readData(new DataInputStream(new ByteArrayInputStream(pdu, 1, pdu.length - 1)));
+        }
+        response.setTransactionID(transactionId);
+        response.setUnitID(unitId);
+        return response;
+    }
+
+    @Override
+    public String toString() {
+        return id + " maxPendingRequests=" + maxPendingRequests + " serial=" + serial;
+    }
+
+    private static class PendingRequest {
+        private final int transactionId;
+        private final int unitId;
+        private final int functionCode;
+        private final boolean concurrent;
+        private final CompletableFuture<ModbusResponse> future = new CompletableFuture<>();
+
+        PendingRequest(int transactionId, int unitId, int functionCode, boolean concurrent) {
+            this.transactionId = transactionId;
+            this.unitId = unitId;
+            this.functionCode = functionCode;
+            this.concurrent = concurrent;
+        }
+    }
+}
@@ -47,6 +47,10 @@ public class ModbusWrite {
         return address;
     }
 
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
     public WriteRegisterType getType() {
         return WriteRegisterType.valueOf(this.type);
     }
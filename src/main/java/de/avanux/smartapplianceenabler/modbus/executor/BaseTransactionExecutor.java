@@ -18,15 +18,27 @@
 
 package de.avanux.smartapplianceenabler.modbus.executor;
 
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import com.ghgande.j2mod.modbus.msg.ModbusRequest;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.modbus.ModbusTcpPipeline;
 import de.avanux.smartapplianceenabler.modbus.transformer.ValueTransformer;
 
+/**
+ * Base class of executors. Executors are meant to be created once per register and executed repeatedly:
+ * the address is parsed once, and request and transaction are reused across executions.
+ * Executors are not thread-safe; they are confined to the {@link de.avanux.smartapplianceenabler.modbus.ModbusSlave}
+ * executing them.
+ */
 abstract public class BaseTransactionExecutor<T> implements ApplianceIdConsumer {
 
     private String applianceId;
     private final Integer address;
     private final int requestWords;
     private final ValueTransformer<T> transformer;
+    private ModbusTCPTransaction transaction;
+    private ModbusTcpPipeline pipeline;
 
     public BaseTransactionExecutor(String address, ValueTransformer<T> transformer) {
         this(address, 1, transformer);
@@ -64,4 +76,33 @@ abstract public class BaseTransactionExecutor<T> implements ApplianceIdConsumer
     public ValueTransformer<T> getValueTransformer() {
         return transformer;
     }
+
+    /**
+     * Execute transactions using the pipeline given instead of the connection passed to execute().
+     * @param pipeline the pipeline or null to use the connection
+     */
+    public void setPipeline(ModbusTcpPipeline pipeline) {
+        if(this.pipeline != pipeline) {
+            this.pipeline = pipeline;
+            this.transaction = null;
+        }
+    }
+
+    /**
+     * Returns the transaction of this executor prepared for the request and connection given.
+     * @param con
+     * @param request
+     * @return
+     */
+    protected ModbusTCPTransaction getTransaction(TCPMasterConnection con, ModbusRequest request) {
+        if(transaction == null) {
+            transaction = pipeline != null ? new PipelinedTransaction(pipeline) : new ModbusTCPTransaction(con);
+        }
+        else if(pipeline == null) {
+            // the transport changes whenever the connection is re-opened
+            transaction.setConnection(con);
+        }
+        transaction.setRequest(request);
+        return transaction;
+    }
 }
@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus.executor;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.io.ModbusTCPTransaction;
+import de.avanux.smartapplianceenabler.modbus.ModbusTcpPipeline;
+
+/**
+ * A transaction executed using a {@link ModbusTcpPipeline} instead of the connection of j2mod,
+ * so that executors can be used unchanged in pipelined mode.
+ */
+public class PipelinedTransaction extends ModbusTCPTransaction {
+    private ModbusTcpPipeline pipeline;
+
+    public PipelinedTransaction(ModbusTcpPipeline pipeline) {
+        this.pipeline = pipeline;
+    }
+
+    public ModbusTcpPipeline getPipeline() {
+        return pipeline;
+    }
+
+    @Override
+    public synchronized void execute() throws ModbusException {
+        response = null;
+        response = pipeline.execute(request);
+    }
+}
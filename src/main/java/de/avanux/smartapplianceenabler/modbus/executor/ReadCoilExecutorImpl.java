@@ -34,7 +34,8 @@ public class ReadCoilExecutorImpl extends BaseTransactionExecutor
         implements ModbusReadTransactionExecutor, ReadCoilExecutor {
     
     private Logger logger = LoggerFactory.getLogger(ReadCoilExecutorImpl.class);
-    private boolean coil;
+    private Boolean coil;
+    private ReadCoilsRequest req;
 
     public ReadCoilExecutorImpl(String registerAddress) {
         super(registerAddress, 1, null);
@@ -43,11 +44,13 @@ public class ReadCoilExecutorImpl extends BaseTransactionExecutor
     @Override
     public void execute(TCPMasterConnection con, int slaveAddress) throws ModbusException {
         logger.trace("{}: Reading coil register={}", getApplianceId(), getAddress());
-        ReadCoilsRequest req = new ReadCoilsRequest(getAddress(), 1);
+        if(req == null) {
+            req = new ReadCoilsRequest(getAddress(), 1);
+        }
         req.setUnitID(slaveAddress);
         
-        ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
-        trans.setRequest(req);
+        coil = null;
+        ModbusTCPTransaction trans = getTransaction(con, req);
         trans.execute();
         
         ReadCoilsResponse res = (ReadCoilsResponse) trans.getResponse();
@@ -31,7 +31,8 @@ public class ReadDiscreteInputExecutorImpl extends BaseTransactionExecutor
         implements ModbusReadTransactionExecutor, ReadDiscreteInputExecutor {
 
     private Logger logger = LoggerFactory.getLogger(ReadCoilExecutorImpl.class);
-    private boolean discrete;
+    private Boolean discrete;
+    private ReadInputDiscretesRequest req;
 
     public ReadDiscreteInputExecutorImpl(String registerAddress) {
         super(registerAddress, 1, null);
@@ -40,11 +41,13 @@ public class ReadDiscreteInputExecutorImpl extends BaseTransactionExecutor
     @Override
     public void execute(TCPMasterConnection con, int slaveAddress) throws ModbusException {
         logger.trace("{}: Reading discrete input register={}", getApplianceId(), getAddress());
-        ReadInputDiscretesRequest req = new ReadInputDiscretesRequest(getAddress(), 1);
+        if(req == null) {
+            req = new ReadInputDiscretesRequest(getAddress(), 1);
+        }
         req.setUnitID(slaveAddress);
 
-        ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
-        trans.setRequest(req);
+        discrete = null;
+        ModbusTCPTransaction trans = getTransaction(con, req);
         trans.execute();
 
         ReadInputDiscretesResponse res = (ReadInputDiscretesResponse) trans.getResponse();
@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 
 public class ReadHoldingRegisterExecutor extends BaseTransactionExecutor implements ModbusReadTransactionExecutor {
     private Logger logger = LoggerFactory.getLogger(ReadHoldingRegisterExecutor.class);
+    private ReadMultipleRegistersRequest req;
 
     public ReadHoldingRegisterExecutor(String address, int requestWords, ValueTransformer transformer) {
         super(address, requestWords, transformer);
@@ -36,11 +37,13 @@ public class ReadHoldingRegisterExecutor extends BaseTransactionExecutor impleme
     @Override
     public void execute(TCPMasterConnection con, int slaveAddress) throws ModbusException {
         logger.trace("{}: Reading holding register={} requestWords={}", getApplianceId(), getAddress(), getRequestWords());
-        ReadMultipleRegistersRequest req = new ReadMultipleRegistersRequest(getAddress(), getRequestWords());
+        if(req == null) {
+            req = new ReadMultipleRegistersRequest(getAddress(), getRequestWords());
+        }
         req.setUnitID(slaveAddress);
 
-        ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
-        trans.setRequest(req);
+        getValueTransformer().clearValue();
+        ModbusTCPTransaction trans = getTransaction(con, req);
         trans.execute();
 
         ReadMultipleRegistersResponse res = (ReadMultipleRegistersResponse) trans.getResponse();
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
  */
 public class ReadInputRegisterExecutor extends BaseTransactionExecutor implements ModbusReadTransactionExecutor {
     private Logger logger = LoggerFactory.getLogger(ReadInputRegisterExecutor.class);
+    private ReadInputRegistersRequest req;
 
     public ReadInputRegisterExecutor(String address, int requestWords, ValueTransformer transformer) {
         super(address, requestWords, transformer);
@@ -40,11 +41,13 @@ public class ReadInputRegisterExecutor extends BaseTransactionExecutor implement
     @Override
     public void execute(TCPMasterConnection con, int slaveAddress) throws ModbusException {
         logger.trace("{}: Reading input register={} requestWords={}", getApplianceId(), getAddress(), getRequestWords());
-        ReadInputRegistersRequest req = new ReadInputRegistersRequest(getAddress(), getRequestWords());
+        if(req == null) {
+            req = new ReadInputRegistersRequest(getAddress(), getRequestWords());
+        }
         req.setUnitID(slaveAddress);
 
-        ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
-        trans.setRequest(req);
+        getValueTransformer().clearValue();
+        ModbusTCPTransaction trans = getTransaction(con, req);
         trans.execute();
 
         ReadInputRegistersResponse res = (ReadInputRegistersResponse) trans.getResponse();
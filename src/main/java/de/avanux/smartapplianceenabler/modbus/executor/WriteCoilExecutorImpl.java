@@ -35,6 +35,7 @@ public class WriteCoilExecutorImpl extends BaseTransactionExecutor
     private Logger logger = LoggerFactory.getLogger(WriteCoilExecutorImpl.class);
     private boolean value;
     private Boolean result;
+    private WriteCoilRequest req;
     
     public WriteCoilExecutorImpl(String address) {
         super(address, 1, null);
@@ -52,11 +53,14 @@ public class WriteCoilExecutorImpl extends BaseTransactionExecutor
 
     @Override
     public void execute(TCPMasterConnection con, int slaveAddress) throws ModbusException {
-        WriteCoilRequest req = new WriteCoilRequest(getAddress(), value);
+        if(req == null) {
+            req = new WriteCoilRequest(getAddress(), value);
+        }
+        req.setCoil(value);
         req.setUnitID(slaveAddress);
         
-        ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
-        trans.setRequest(req);
+        result = null;
+        ModbusTCPTransaction trans = getTransaction(con, req);
         trans.execute();
         
         WriteCoilResponse res = (WriteCoilResponse) trans.getResponse();
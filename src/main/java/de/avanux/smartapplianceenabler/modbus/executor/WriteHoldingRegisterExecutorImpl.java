@@ -46,6 +46,7 @@ public class WriteHoldingRegisterExecutorImpl extends BaseTransactionExecutor
     private RegisterValueType registerValueType;
     private Integer result;
     private Double factorToValue;
+    private WriteSingleRegisterRequest singleRegisterRequest;
 
     public WriteHoldingRegisterExecutorImpl(String address, RegisterValueType registerValueType, Double factorToValue, ValueTransformer<?> transformer) {
         super(address, 1, transformer);
@@ -67,6 +68,7 @@ public class WriteHoldingRegisterExecutorImpl extends BaseTransactionExecutor
     public void execute(TCPMasterConnection con, int slaveAddress) throws ModbusException {
         Integer factoredValue = factorToValue != null ? Double.valueOf(this.value * this.factorToValue).intValue() : this.value;
         logger.debug("{}: Write holding register={} value={} factoredValue={}", getApplianceId(), getAddress(), this.value, factoredValue);
+        this.result = null;
         if(registerValueType == RegisterValueType.Integer32 || registerValueType == RegisterValueType.Float || registerValueType == RegisterValueType.Float64) {
             writeMultipleRegisters(con, slaveAddress, factoredValue);
         } else {
@@ -75,13 +77,14 @@ public class WriteHoldingRegisterExecutorImpl extends BaseTransactionExecutor
     }
 
     public void writeSingleRegister(TCPMasterConnection con, int slaveAddress, Integer factoredValue) throws ModbusException {
-        SimpleRegister register = new SimpleRegister(factoredValue);
-
-        WriteSingleRegisterRequest req = new WriteSingleRegisterRequest(getAddress(), register);
+        if(singleRegisterRequest == null) {
+            singleRegisterRequest = new WriteSingleRegisterRequest(getAddress(), new SimpleRegister(factoredValue));
+        }
+        WriteSingleRegisterRequest req = singleRegisterRequest;
+        req.getRegister().setValue(factoredValue);
         req.setUnitID(slaveAddress);
 
-        ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
-        trans.setRequest(req);
+        ModbusTCPTransaction trans = getTransaction(con, req);
         trans.execute();
 
         WriteSingleRegisterResponse res = (WriteSingleRegisterResponse) trans.getResponse();
@@ -118,8 +121,7 @@ public class WriteHoldingRegisterExecutorImpl extends BaseTransactionExecutor
         WriteMultipleRegistersRequest req = new WriteMultipleRegistersRequest(getAddress(), registers.toArray(Register[]::new));
         req.setUnitID(slaveAddress);
 
-        ModbusTCPTransaction trans = new ModbusTCPTransaction(con);
-        trans.setRequest(req);
+        ModbusTCPTransaction trans = getTransaction(con, req);
         trans.execute();
 
         WriteMultipleRegistersResponse res = (WriteMultipleRegistersResponse) trans.getResponse();
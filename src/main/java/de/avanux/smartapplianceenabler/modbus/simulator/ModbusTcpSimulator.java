@@ -0,0 +1,511 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus.simulator;
+
+import com.owlike.genson.Genson;
+import com.owlike.genson.GensonBuilder;
+import com.owlike.genson.reflect.VisibilityFilter;
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import de.avanux.smartapplianceenabler.appliance.Appliances;
+import de.avanux.smartapplianceenabler.control.Control;
+import de.avanux.smartapplianceenabler.control.ModbusSwitch;
+import de.avanux.smartapplianceenabler.control.StartingCurrentSwitch;
+import de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger;
+import de.avanux.smartapplianceenabler.meter.ModbusElectricityMeter;
+import de.avanux.smartapplianceenabler.modbus.EVModbusControl;
+import de.avanux.smartapplianceenabler.modbus.ModbusTcp;
+import de.avanux.smartapplianceenabler.util.FileHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulator of Modbus TCP devices for integration and load testing without real hardware.
+ * <p>
+ * Any number of {@link SimulatedModbusSlave}s can be served on any number of ports: a port may be shared by several
+ * slaves distinguished by unit identifier like a Modbus gateway does. All connections are handled by a single
+ * selector thread so that hundreds of slaves can be simulated without hundreds of threads. Latency is simulated
+ * by delaying responses without blocking the thread.
+ * <p>
+ * Slaves can be created from the Modbus configuration of Appliances.xml ({@link #addSlaves(Appliances)}) or from the
+ * EV charger templates ({@link #loadEVChargerTemplates(String)}). Run {@link #main(String[])} to serve the Modbus
+ * slaves of Appliances.xml located in the SAE home directory.
+ */
+public class ModbusTcpSimulator {
+    private Logger logger = LoggerFactory.getLogger(ModbusTcpSimulator.class);
+    private static final int MBAP_HEADER_LENGTH = 7;
+    private static final int MAX_ADU_LENGTH = 260;
+    private static final int GATEWAY_TARGET_DEVICE_FAILED_TO_RESPOND = 0x0B;
+    private Selector selector;
+    private Thread thread;
+    private volatile boolean running;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<DelayedResponse> delayedResponses = new PriorityQueue<>();
+    private final Map<Integer, Port> ports = new ConcurrentHashMap<>();
+    private long responseSequence;
+    private final AtomicLong acceptedConnectionCount = new AtomicLong();
+
+    /**
+     * Start the selector thread.
+     * @throws IOException
+     */
+    public synchronized void start() throws IOException {
+        if(running) {
+            return;
+        }
+        selector = Selector.open();
+        running = true;
+        thread = new Thread(this::run, "modbus-simulator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the selector thread and close all channels.
+     */
+    public synchronized void stop() {
+        if(! running) {
+            return;
+        }
+        running = false;
+        selector.wakeup();
+        try {
+            thread.join(5000);
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Returns the number of connections accepted since start.
+     * @return
+     */
+    public long getAcceptedConnectionCount() {
+        return acceptedConnectionCount.get();
+    }
+
+    /**
+     * Serve a slave on the given port.
+     * @param port the port to listen on; 0 selects an ephemeral port
+     * @param unitId the unit identifier of the slave; null matches any unit identifier not assigned to another slave
+     * @param slave
+     * @return the port the slave is served on
+     * @throws IOException if the port cannot be bound
+     */
+    public int addSlave(int port, Integer unitId, SimulatedModbusSlave slave) throws IOException {
+        if(! running) {
+            start();
+        }
+        if(port != 0) {
+            Port existing = ports.get(port);
+            if(existing != null) {
+                existing.put(unitId, slave);
+                return port;
+            }
+        }
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(new InetSocketAddress(port));
+        int boundPort = ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+        Port attachment = new Port(boundPort);
+        attachment.put(unitId, slave);
+        ports.put(boundPort, attachment);
+        execute(() -> {
+            try {
+                serverChannel.register(selector, SelectionKey.OP_ACCEPT, attachment);
+            }
+            catch(IOException e) {
+                logger.error("Error registering port {}", boundPort, e);
+            }
+        });
+        logger.debug("Serving simulated Modbus slave on port {} with unit id {}", boundPort, unitId);
+        return boundPort;
+    }
+
+    /**
+     * Serve slaves for all Modbus meters, switches and EV charger controls of the appliances.
+     * Slaves are served on the port of the Modbus TCP configuration they refer to. Registers of slaves with the same
+     * port and slave address are merged into one slave.
+     * @param appliances
+     * @return the slaves by appliance id
+     * @throws IOException
+     */
+    public Map<String, List<SimulatedModbusSlave>> addSlaves(Appliances appliances) throws IOException {
+        Map<String, Integer> modbusIdWithPort = new HashMap<>();
+        if(appliances.getConnectivity() != null && appliances.getConnectivity().getModbusTCPs() != null) {
+            for(ModbusTcp modbusTcp : appliances.getConnectivity().getModbusTCPs()) {
+                modbusIdWithPort.put(modbusTcp.getId(), modbusTcp.getPort());
+            }
+        }
+        Map<String, SimulatedModbusSlave> slaveForPortAndUnitId = new HashMap<>();
+        Map<String, List<SimulatedModbusSlave>> applianceIdWithSlaves = new LinkedHashMap<>();
+        if(appliances.getAppliances() != null) {
+            for(Appliance appliance : appliances.getAppliances()) {
+                List<SimulatedModbusSlave> slaves = new ArrayList<>();
+                if(appliance.getMeter() instanceof ModbusElectricityMeter) {
+                    ModbusElectricityMeter meter = (ModbusElectricityMeter) appliance.getMeter();
+                    SimulatedModbusSlave slave = getSlave(slaveForPortAndUnitId, modbusIdWithPort, meter.getIdref(),
+                            meter.getSlaveAddress());
+                    slave.addReads(meter.getModbusReads());
+                    slaves.add(slave);
+                }
+                Control control = appliance.getControl();
+                if(control instanceof StartingCurrentSwitch) {
+                    control = ((StartingCurrentSwitch) control).getControl();
+                }
+                if(control instanceof ModbusSwitch) {
+                    ModbusSwitch modbusSwitch = (ModbusSwitch) control;
+                    SimulatedModbusSlave slave = getSlave(slaveForPortAndUnitId, modbusIdWithPort,
+                            modbusSwitch.getIdref(), modbusSwitch.getSlaveAddress());
+                    slave.addWrites(modbusSwitch.getModbusWrites());
+                    slaves.add(slave);
+                }
+                else if(control instanceof ElectricVehicleCharger
+                        && ((ElectricVehicleCharger) control).getControl() instanceof EVModbusControl) {
+                    EVModbusControl evControl = (EVModbusControl) ((ElectricVehicleCharger) control).getControl();
+                    SimulatedModbusSlave slave = getSlave(slaveForPortAndUnitId, modbusIdWithPort,
+                            evControl.getIdref(), evControl.getSlaveAddress());
+                    slave.addReads(evControl.getModbusReads());
+                    slave.addWrites(evControl.getModbusWrites());
+                    slaves.add(slave);
+                }
+                if(slaves.size() > 0) {
+                    applianceIdWithSlaves.put(appliance.getId(), slaves);
+                }
+            }
+        }
+        for(Map.Entry<String, SimulatedModbusSlave> entry : slaveForPortAndUnitId.entrySet()) {
+            String[] portAndUnitId = entry.getKey().split(":");
+            addSlave(Integer.parseInt(portAndUnitId[0]), Integer.parseInt(portAndUnitId[1]), entry.getValue());
+        }
+        return applianceIdWithSlaves;
+    }
+
+    private SimulatedModbusSlave getSlave(Map<String, SimulatedModbusSlave> slaveForPortAndUnitId,
+                                          Map<String, Integer> modbusIdWithPort, String modbusId, int slaveAddress) {
+        Integer port = modbusIdWithPort.get(modbusId);
+        String key = (port != null ? port : ModbusTcp.DEFAULT_PORT) + ":" + slaveAddress;
+        return slaveForPortAndUnitId.computeIfAbsent(key, k -> new SimulatedModbusSlave());
+    }
+
+    /**
+     * Returns the Modbus controls of the EV charger templates by template name.
+     * @param evChargerTemplates the content of evcharger-templates.json
+     * @return
+     */
+    public static Map<String, EVModbusControl> loadEVChargerTemplates(String evChargerTemplates) {
+        Genson treeGenson = new GensonBuilder().useClassMetadata(false).create();
+        Genson genson = new GensonBuilder()
+                .useFields(true, VisibilityFilter.PRIVATE)
+                .useMethods(false)
+                .useClassMetadata(true)
+                .useRuntimeType(true)
+                .create();
+        Map<String, EVModbusControl> nameWithControl = new LinkedHashMap<>();
+        List<?> templates = treeGenson.deserialize(evChargerTemplates, List.class);
+        for(Object template : templates) {
+            Map<?, ?> nameAndTemplate = (Map<?, ?>) template;
+            Map<?, ?> evCharger = (Map<?, ?>) nameAndTemplate.get("template");
+            Object modbusControl = evCharger != null ? evCharger.get("modbusControl") : null;
+            if(modbusControl != null) {
+                EVModbusControl control = genson.deserialize(treeGenson.serialize(modbusControl),
+                        EVModbusControl.class);
+                nameWithControl.put((String) nameAndTemplate.get("name"), control);
+            }
+        }
+        return nameWithControl;
+    }
+
+    private void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    private void run() {
+        logger.info("Modbus simulator started");
+        while(running) {
+            try {
+                Runnable task;
+                while((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                long timeout = sendDueResponses();
+                selector.select(timeout);
+                for(SelectionKey key : selector.selectedKeys()) {
+                    if(! key.isValid()) {
+                        continue;
+                    }
+                    if(key.isAcceptable()) {
+                        accept(key);
+                    }
+                    else {
+                        if(key.isReadable()) {
+                            read(key);
+                        }
+                        if(key.isValid() && key.isWritable()) {
+                            write((SocketChannel) key.channel(), (Connection) key.attachment());
+                        }
+                    }
+                }
+                selector.selectedKeys().clear();
+            }
+            catch(Exception e) {
+                logger.error("Error in Modbus simulator", e);
+            }
+        }
+        for(SelectionKey key : selector.keys()) {
+            close(key.channel());
+        }
+        ports.clear();
+        delayedResponses.clear();
+        close(selector);
+        logger.info("Modbus simulator stopped");
+    }
+
+    private void accept(SelectionKey key) throws IOException {
+        SocketChannel channel = ((ServerSocketChannel) key.channel()).accept();
+        if(channel != null) {
+            acceptedConnectionCount.incrementAndGet();
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Connection((Port) key.attachment()));
+        }
+    }
+
+    private void read(SelectionKey key) {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        ByteBuffer in = connection.in;
+        int count;
+        try {
+            count = channel.read(in);
+        }
+        catch(IOException e) {
+            count = -1;
+        }
+        if(count < 0) {
+            close(channel);
+            return;
+        }
+        in.flip();
+        while(in.remaining() >= MBAP_HEADER_LENGTH) {
+            int start = in.position();
+            int length = in.getShort(start + 4) & 0xFFFF;
+            if(length < 2 || length > MAX_ADU_LENGTH - 6) {
+                close(channel);
+                return;
+            }
+            if(in.remaining() < 6 + length) {
+                break;
+            }
+            int transactionId = in.getShort(start) & 0xFFFF;
+            int protocolId = in.getShort(start + 2) & 0xFFFF;
+            int unitId = in.get(start + 6) & 0xFF;
+            ByteBuffer pdu = in.duplicate();
+            pdu.position(start + MBAP_HEADER_LENGTH).limit(start + 6 + length);
+            in.position(start + 6 + length);
+            if(protocolId == 0 && ! process(channel, connection, transactionId, unitId, pdu)) {
+                return;
+            }
+        }
+        in.compact();
+    }
+
+    /**
+     * Process a request.
+     * @return false, if the connection has been dropped
+     */
+    private boolean process(SocketChannel channel, Connection connection, int transactionId, int unitId,
+                            ByteBuffer pdu) {
+        SimulatedModbusSlave slave = connection.port.get(unitId);
+        ByteBuffer response = ByteBuffer.allocate(MAX_ADU_LENGTH);
+        response.position(MBAP_HEADER_LENGTH);
+        ByteBuffer responsePdu = response.slice();
+        int latencyMillis = 0;
+        if(slave != null) {
+            if(slave.isConnectionToBeDropped()) {
+                logger.debug("Dropping connection on port {}", connection.port.port);
+                close(channel);
+                return false;
+            }
+            slave.process(pdu, responsePdu);
+            latencyMillis = slave.getLatencyMillis();
+        }
+        else {
+            responsePdu.put((byte) (pdu.get() | 0x80));
+            responsePdu.put((byte) GATEWAY_TARGET_DEVICE_FAILED_TO_RESPOND);
+        }
+        response.putShort(0, (short) transactionId);
+        response.putShort(2, (short) 0);
+        response.putShort(4, (short) (responsePdu.position() + 1));
+        response.put(6, (byte) unitId);
+        response.position(0).limit(MBAP_HEADER_LENGTH + responsePdu.position());
+        if(latencyMillis > 0) {
+            delayedResponses.add(new DelayedResponse(System.nanoTime() + latencyMillis * 1000000L,
+                    responseSequence++, channel, connection, response));
+        }
+        else {
+            send(channel, connection, response);
+        }
+        return true;
+    }
+
+    /**
+     * Send delayed responses which are due.
+     * @return the time in milliseconds until the next delayed response is due, 0 if there is none
+     */
+    private long sendDueResponses() {
+        DelayedResponse delayedResponse;
+        while((delayedResponse = delayedResponses.peek()) != null) {
+            long remainingNanos = delayedResponse.dueNanos - System.nanoTime();
+            if(remainingNanos > 0) {
+                return Math.max(1L, remainingNanos / 1000000L);
+            }
+            delayedResponses.poll();
+            if(delayedResponse.channel.isOpen()) {
+                send(delayedResponse.channel, delayedResponse.connection, delayedResponse.response);
+            }
+        }
+        return 0L;
+    }
+
+    private void send(SocketChannel channel, Connection connection, ByteBuffer response) {
+        connection.out.add(response);
+        write(channel, connection);
+    }
+
+    private void write(SocketChannel channel, Connection connection) {
+        try {
+            while(! connection.out.isEmpty()) {
+                ByteBuffer response = connection.out.peek();
+                channel.write(response);
+                if(response.hasRemaining()) {
+                    channel.keyFor(selector).interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                connection.out.poll();
+            }
+            channel.keyFor(selector).interestOps(SelectionKey.OP_READ);
+        }
+        catch(IOException e) {
+            close(channel);
+        }
+    }
+
+    private void close(Closeable closeable) {
+        try {
+            closeable.close();
+        }
+        catch(IOException e) {
+            logger.trace("Error closing {}", closeable, e);
+        }
+    }
+
+    /**
+     * The slaves served on a port by unit id.
+     */
+    private static class Port {
+        private final int port;
+        private final Map<Integer, SimulatedModbusSlave> slaves = new HashMap<>();
+        private volatile SimulatedModbusSlave anySlave;
+
+        Port(int port) {
+            this.port = port;
+        }
+
+        synchronized void put(Integer unitId, SimulatedModbusSlave slave) {
+            if(unitId != null) {
+                slaves.put(unitId, slave);
+            }
+            else {
+                anySlave = slave;
+            }
+        }
+
+        synchronized SimulatedModbusSlave get(int unitId) {
+            SimulatedModbusSlave slave = slaves.get(unitId);
+            return slave != null ? slave : anySlave;
+        }
+    }
+
+    private static class Connection {
+        private final Port port;
+        private final ByteBuffer in = ByteBuffer.allocate(MAX_ADU_LENGTH * 4);
+        private final Queue<ByteBuffer> out = new LinkedList<>();
+
+        Connection(Port port) {
+            this.port = port;
+        }
+    }
+
+    private static class DelayedResponse implements Comparable<DelayedResponse> {
+        private final long dueNanos;
+        private final long sequence;
+        private final SocketChannel channel;
+        private final Connection connection;
+        private final ByteBuffer response;
+
+        DelayedResponse(long dueNanos, long sequence, SocketChannel channel, Connection connection,
+                        ByteBuffer response) {
+            this.dueNanos = dueNanos;
+            this.sequence = sequence;
+            this.channel = channel;
+            this.connection = connection;
+            this.response = response;
+        }
+
+        @Override
+        public int compareTo(DelayedResponse other) {
+            int result = Long.compare(dueNanos, other.dueNanos);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Appliances appliances = new FileHandler().load(Appliances.class, null);
+        if(appliances == null) {
+            System.err.println("Appliances.xml not found in " + System.getProperty(FileHandler.SAE_HOME));
+            System.exit(1);
+        }
+        ModbusTcpSimulator simulator = new ModbusTcpSimulator();
+        Map<String, List<SimulatedModbusSlave>> slaves = simulator.addSlaves(appliances);
+        System.out.println("Simulating Modbus slaves of " + slaves.keySet() + ". Press Ctrl-C to stop.");
+        Thread.currentThread().join();
+    }
+}
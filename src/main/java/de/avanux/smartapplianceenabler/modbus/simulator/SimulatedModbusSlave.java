@@ -0,0 +1,571 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus.simulator;
+
+import de.avanux.smartapplianceenabler.modbus.ByteOrder;
+import de.avanux.smartapplianceenabler.modbus.ModbusRead;
+import de.avanux.smartapplianceenabler.modbus.ModbusReadValue;
+import de.avanux.smartapplianceenabler.modbus.ModbusWrite;
+import de.avanux.smartapplianceenabler.modbus.ModbusWriteValue;
+import de.avanux.smartapplianceenabler.modbus.ReadRegisterType;
+import de.avanux.smartapplianceenabler.modbus.RegisterValueType;
+import de.avanux.smartapplianceenabler.modbus.WriteRegisterType;
+import de.avanux.smartapplianceenabler.util.ParentWithChild;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.DoubleSupplier;
+
+/**
+ * The process image of a simulated Modbus slave: coils, discrete inputs, holding and input registers.
+ * <p>
+ * Registers are created from the {@link ModbusRead}s and {@link ModbusWrite}s of the configuration so that values
+ * can be set by name and encoded the same way the client decodes them. Values can also be supplied by scripts
+ * evaluated on each read request. Reading registers which have not been created results in an
+ * "illegal data address" exception response; writing creates them.
+ * <p>
+ * Faults can be injected: latency of responses, dropped connections and exception responses.
+ */
+public class SimulatedModbusSlave {
+    public static final int ILLEGAL_FUNCTION = 1;
+    public static final int ILLEGAL_DATA_ADDRESS = 2;
+    public static final int ILLEGAL_DATA_VALUE = 3;
+    public static final int SLAVE_DEVICE_FAILURE = 4;
+    public static final int SLAVE_DEVICE_BUSY = 6;
+    private static final int MAX_READ_BITS = 2000;
+    private static final int MAX_READ_REGISTERS = 125;
+    private final Map<Integer, Boolean> coils = new HashMap<>();
+    private final Map<Integer, Boolean> discreteInputs = new HashMap<>();
+    private final Map<Integer, Integer> holdingRegisters = new HashMap<>();
+    private final Map<Integer, Integer> inputRegisters = new HashMap<>();
+    private final Map<String, ParentWithChild<ModbusRead, ModbusReadValue>> readValues = new LinkedHashMap<>();
+    private final Map<String, ParentWithChild<ModbusWrite, ModbusWriteValue>> writeValues = new LinkedHashMap<>();
+    private final Map<String, DoubleSupplier> valueScripts = new LinkedHashMap<>();
+    private final Map<Integer, Integer> exceptionCodeForAddress = new HashMap<>();
+    private Random random = new Random(1L);
+    private int latencyMillis;
+    private double dropConnectionProbability;
+    private double exceptionProbability;
+    private int exceptionCode = SLAVE_DEVICE_BUSY;
+    private long requestCount;
+    private long exceptionCount;
+
+    public SimulatedModbusSlave() {
+    }
+
+    public SimulatedModbusSlave(List<ModbusRead> reads, List<ModbusWrite> writes) {
+        addReads(reads);
+        addWrites(writes);
+    }
+
+    /**
+     * Create the registers read by the client. Registers are initialized with 0 unless they exist already.
+     * @param reads
+     */
+    public synchronized void addReads(List<ModbusRead> reads) {
+        if(reads != null) {
+            for(ModbusRead read : reads) {
+                int address = parseAddress(read.getAddress());
+                int words = getWords(read.getType(), read.getValueType(), read.getWords());
+                for(int i=0; i<words; i++) {
+                    switch(read.getType()) {
+                        case Coil:
+                            coils.putIfAbsent(address + i, false);
+                            break;
+                        case Discrete:
+                            discreteInputs.putIfAbsent(address + i, false);
+                            break;
+                        case Holding:
+                            holdingRegisters.putIfAbsent(address + i, 0);
+                            break;
+                        case Input:
+                            inputRegisters.putIfAbsent(address + i, 0);
+                            break;
+                    }
+                }
+                if(read.getReadValues() != null) {
+                    for(ModbusReadValue readValue : read.getReadValues()) {
+                        readValues.putIfAbsent(readValue.getName(), new ParentWithChild<>(read, readValue));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Create the registers written by the client so that they can be read back.
+     * @param writes
+     */
+    public synchronized void addWrites(List<ModbusWrite> writes) {
+        if(writes != null) {
+            for(ModbusWrite write : writes) {
+                int address = parseAddress(write.getAddress());
+                if(write.getType() == WriteRegisterType.Coil) {
+                    coils.putIfAbsent(address, false);
+                }
+                else {
+                    int words = getWords(ReadRegisterType.Holding, write.getValueType(), null);
+                    for(int i=0; i<words; i++) {
+                        holdingRegisters.putIfAbsent(address + i, 0);
+                    }
+                }
+                if(write.getWriteValues() != null) {
+                    for(ModbusWriteValue writeValue : write.getWriteValues()) {
+                        writeValues.putIfAbsent(writeValue.getName(), new ParentWithChild<>(write, writeValue));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Set the register(s) of the read value with the given name to a numeric value encoded according to value type,
+     * byte order and factor of the read.
+     * @param name
+     * @param value
+     */
+    public synchronized void setValue(String name, double value) {
+        ModbusRead read = getRead(name);
+        int address = parseAddress(read.getAddress());
+        ReadRegisterType type = read.getType();
+        if(type == ReadRegisterType.Coil || type == ReadRegisterType.Discrete) {
+            (type == ReadRegisterType.Coil ? coils : discreteInputs).put(address, value != 0.0);
+            return;
+        }
+        RegisterValueType valueType = read.getValueType() != null ? read.getValueType() : RegisterValueType.Integer;
+        int words = getWords(type, valueType, read.getWords());
+        double factorToValue = read.getFactorToValue() != null ? read.getFactorToValue() : 1.0;
+        int[] registers = new int[words];
+        switch(valueType) {
+            case Float:
+                putInt(registers, Float.floatToIntBits((float) (value / factorToValue)));
+                break;
+            case Float64:
+                long bits = Double.doubleToLongBits(value / factorToValue);
+                putInt(registers, (int) (bits >>> 32));
+                registers[2] = (int) (bits >>> 16) & 0xFFFF;
+                registers[3] = (int) bits & 0xFFFF;
+                break;
+            case Integer2Float:
+                putInt(registers, (int) Math.round(value / factorToValue));
+                if(read.getByteOrder() == ByteOrder.LittleEndian) {
+                    int first = registers[0];
+                    registers[0] = registers[1];
+                    registers[1] = first;
+                }
+                break;
+            case String:
+                setString(name, String.valueOf(value));
+                return;
+            default:
+                long integerValue = Math.round(value);
+                if(words == 1) {
+                    registers[0] = (int) integerValue & 0xFFFF;
+                }
+                else {
+                    putInt(registers, (int) integerValue);
+                }
+        }
+        setRegisters(type, address, registers);
+    }
+
+    /**
+     * Set the register(s) of the read value with the given name to a string, two characters per register.
+     * @param name
+     * @param value
+     */
+    public synchronized void setString(String name, String value) {
+        ModbusRead read = getRead(name);
+        int words = Math.max(getWords(read.getType(), RegisterValueType.String, read.getWords()),
+                (value.length() + 1) / 2);
+        int[] registers = new int[words];
+        for(int i=0; i<value.length(); i++) {
+            registers[i / 2] |= (value.charAt(i) & 0xFF) << (i % 2 == 0 ? 8 : 0);
+        }
+        setRegisters(read.getType(), parseAddress(read.getAddress()), registers);
+    }
+
+    /**
+     * Set the register(s) of the read value with the given name to a value matching its extraction regex,
+     * e.g. to simulate the state "Charging" of an EV charger.
+     * @param name
+     */
+    public synchronized void setMatchingValue(String name) {
+        ParentWithChild<ModbusRead, ModbusReadValue> readValue = readValues.get(name);
+        if(readValue == null) {
+            throw new IllegalArgumentException("No read value named " + name);
+        }
+        String regex = readValue.child().getExtractionRegex();
+        ReadRegisterType type = readValue.parent().getType();
+        if(type == ReadRegisterType.Coil || type == ReadRegisterType.Discrete || regex == null) {
+            setValue(name, 1.0);
+            return;
+        }
+        if(readValue.parent().getValueType() == RegisterValueType.String) {
+            for(char candidate = ' '; candidate <= '~'; candidate++) {
+                if(String.valueOf(candidate).matches(regex)) {
+                    setString(name, String.valueOf(candidate));
+                    return;
+                }
+            }
+        }
+        else {
+            for(int candidate = 0; candidate <= 0xFFFF; candidate++) {
+                if(Integer.toString(candidate).matches(regex)) {
+                    setValue(name, candidate);
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("No value found matching " + regex);
+    }
+
+    /**
+     * Evaluate the script on each read request and set the value with the given name to the result.
+     * @param name
+     * @param script
+     */
+    public synchronized void setValueScript(String name, DoubleSupplier script) {
+        getRead(name);
+        if(script != null) {
+            valueScripts.put(name, script);
+        }
+        else {
+            valueScripts.remove(name);
+        }
+    }
+
+    /**
+     * Returns the value last written by the client for the write value with the given name,
+     * i.e. the register value divided by the factor of the write.
+     * @param name
+     * @return
+     */
+    public synchronized Double getWrittenValue(String name) {
+        ParentWithChild<ModbusWrite, ModbusWriteValue> writeValue = writeValues.get(name);
+        if(writeValue == null) {
+            throw new IllegalArgumentException("No write value named " + name);
+        }
+        ModbusWrite write = writeValue.parent();
+        int address = parseAddress(write.getAddress());
+        if(write.getType() == WriteRegisterType.Coil) {
+            return coils.get(address) ? 1.0 : 0.0;
+        }
+        RegisterValueType valueType = write.getValueType();
+        double value;
+        if(valueType == RegisterValueType.Integer32 || valueType == RegisterValueType.Float
+                || valueType == RegisterValueType.Float64) {
+            // the client writes integer values to two registers
+            value = holdingRegisters.get(address) << 16 | holdingRegisters.get(address + 1);
+        }
+        else {
+            value = (short) holdingRegisters.get(address).intValue();
+        }
+        return write.getFactorToValue() != null ? value / write.getFactorToValue() : value;
+    }
+
+    public synchronized void setCoil(int address, boolean value) {
+        coils.put(address, value);
+    }
+
+    public synchronized Boolean getCoil(int address) {
+        return coils.get(address);
+    }
+
+    public synchronized void setDiscreteInput(int address, boolean value) {
+        discreteInputs.put(address, value);
+    }
+
+    public synchronized void setHoldingRegisters(int address, int... values) {
+        setRegisters(ReadRegisterType.Holding, address, values);
+    }
+
+    public synchronized Integer getHoldingRegister(int address) {
+        return holdingRegisters.get(address);
+    }
+
+    public synchronized void setInputRegisters(int address, int... values) {
+        setRegisters(ReadRegisterType.Input, address, values);
+    }
+
+    public synchronized Integer getInputRegister(int address) {
+        return inputRegisters.get(address);
+    }
+
+    public synchronized void setSeed(long seed) {
+        this.random = new Random(seed);
+    }
+
+    public int getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    /**
+     * Delay each response by the given time.
+     * @param latencyMillis
+     */
+    public void setLatencyMillis(int latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * Close the connection instead of responding with the given probability.
+     * @param dropConnectionProbability
+     */
+    public void setDropConnectionProbability(double dropConnectionProbability) {
+        this.dropConnectionProbability = dropConnectionProbability;
+    }
+
+    /**
+     * Respond with an exception with the given probability.
+     * @param exceptionProbability
+     * @param exceptionCode
+     */
+    public void setExceptionProbability(double exceptionProbability, int exceptionCode) {
+        this.exceptionProbability = exceptionProbability;
+        this.exceptionCode = exceptionCode;
+    }
+
+    /**
+     * Respond to every request accessing the given address with the exception code given. Null removes the
+     * exception.
+     * @param address
+     * @param exceptionCode
+     */
+    public synchronized void setExceptionCode(int address, Integer exceptionCode) {
+        if(exceptionCode != null) {
+            exceptionCodeForAddress.put(address, exceptionCode);
+        }
+        else {
+            exceptionCodeForAddress.remove(address);
+        }
+    }
+
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized long getExceptionCount() {
+        return exceptionCount;
+    }
+
+    synchronized boolean isConnectionToBeDropped() {
+        return dropConnectionProbability > 0.0 && random.nextDouble() < dropConnectionProbability;
+    }
+
+    /**
+     * Process the PDU of a request and put the PDU of the response into the given buffer.
+     * @param request the request PDU starting with the function code
+     * @param response
+     */
+    synchronized void process(ByteBuffer request, ByteBuffer response) {
+        requestCount++;
+        int functionCode = request.get() & 0xFF;
+        int result;
+        try {
+            if(exceptionProbability > 0.0 && random.nextDouble() < exceptionProbability) {
+                result = exceptionCode;
+            }
+            else {
+                result = process(functionCode, request, response);
+            }
+        }
+        catch(RuntimeException e) {
+            // BufferUnderflowException etc. caused by malformed requests
+            result = ILLEGAL_DATA_VALUE;
+        }
+        if(result != 0) {
+            exceptionCount++;
+            response.clear();
+            response.put((byte) (functionCode | 0x80));
+            response.put((byte) result);
+        }
+    }
+
+    private int process(int functionCode, ByteBuffer request, ByteBuffer response) {
+        int address = request.getShort() & 0xFFFF;
+        switch(functionCode) {
+            case 1:
+            case 2: {
+                int quantity = request.getShort() & 0xFFFF;
+                Map<Integer, Boolean> bits = functionCode == 1 ? coils : discreteInputs;
+                int result = check(bits, address, quantity, MAX_READ_BITS);
+                if(result != 0) {
+                    return result;
+                }
+                response.put((byte) functionCode);
+                response.put((byte) ((quantity + 7) / 8));
+                for(int i=0; i<quantity; i+=8) {
+                    int packed = 0;
+                    for(int bit=0; bit<8 && i + bit < quantity; bit++) {
+                        if(bits.get(address + i + bit)) {
+                            packed |= 1 << bit;
+                        }
+                    }
+                    response.put((byte) packed);
+                }
+                return 0;
+            }
+            case 3:
+            case 4: {
+                int quantity = request.getShort() & 0xFFFF;
+                applyValueScripts();
+                Map<Integer, Integer> registers = functionCode == 3 ? holdingRegisters : inputRegisters;
+                int result = check(registers, address, quantity, MAX_READ_REGISTERS);
+                if(result != 0) {
+                    return result;
+                }
+                response.put((byte) functionCode);
+                response.put((byte) (quantity * 2));
+                for(int i=0; i<quantity; i++) {
+                    response.putShort(registers.get(address + i).shortValue());
+                }
+                return 0;
+            }
+            case 5: {
+                int value = request.getShort() & 0xFFFF;
+                if(value != 0xFF00 && value != 0x0000) {
+                    return ILLEGAL_DATA_VALUE;
+                }
+                Integer exception = exceptionCodeForAddress.get(address);
+                if(exception != null) {
+                    return exception;
+                }
+                coils.put(address, value == 0xFF00);
+                response.put((byte) functionCode).putShort((short) address).putShort((short) value);
+                return 0;
+            }
+            case 6: {
+                int value = request.getShort() & 0xFFFF;
+                Integer exception = exceptionCodeForAddress.get(address);
+                if(exception != null) {
+                    return exception;
+                }
+                holdingRegisters.put(address, value);
+                response.put((byte) functionCode).putShort((short) address).putShort((short) value);
+                return 0;
+            }
+            case 15: {
+                int quantity = request.getShort() & 0xFFFF;
+                request.get(); // byte count
+                int result = checkException(address, quantity);
+                if(result != 0) {
+                    return result;
+                }
+                int packed = 0;
+                for(int i=0; i<quantity; i++) {
+                    if(i % 8 == 0) {
+                        packed = request.get();
+                    }
+                    coils.put(address + i, (packed & (1 << (i % 8))) != 0);
+                }
+                response.put((byte) functionCode).putShort((short) address).putShort((short) quantity);
+                return 0;
+            }
+            case 16: {
+                int quantity = request.getShort() & 0xFFFF;
+                request.get(); // byte count
+                int result = checkException(address, quantity);
+                if(result != 0) {
+                    return result;
+                }
+                for(int i=0; i<quantity; i++) {
+                    holdingRegisters.put(address + i, request.getShort() & 0xFFFF);
+                }
+                response.put((byte) functionCode).putShort((short) address).putShort((short) quantity);
+                return 0;
+            }
+            default:
+                return ILLEGAL_FUNCTION;
+        }
+    }
+
+    private int check(Map<Integer, ?> values, int address, int quantity, int maxQuantity) {
+        if(quantity < 1 || quantity > maxQuantity) {
+            return ILLEGAL_DATA_VALUE;
+        }
+        for(int i=0; i<quantity; i++) {
+            if(! values.containsKey(address + i)) {
+                return ILLEGAL_DATA_ADDRESS;
+            }
+        }
+        return checkException(address, quantity);
+    }
+
+    private int checkException(int address, int quantity) {
+        for(int i=0; i<quantity; i++) {
+            Integer exception = exceptionCodeForAddress.get(address + i);
+            if(exception != null) {
+                return exception;
+            }
+        }
+        return 0;
+    }
+
+    private void applyValueScripts() {
+        for(Map.Entry<String, DoubleSupplier> entry : valueScripts.entrySet()) {
+            setValue(entry.getKey(), entry.getValue().getAsDouble());
+        }
+    }
+
+    private ModbusRead getRead(String name) {
+        ParentWithChild<ModbusRead, ModbusReadValue> readValue = readValues.get(name);
+        if(readValue == null) {
+            throw new IllegalArgumentException("No read value named " + name);
+        }
+        return readValue.parent();
+    }
+
+    private void setRegisters(ReadRegisterType type, int address, int[] values) {
+        Map<Integer, Integer> registers = type == ReadRegisterType.Input ? inputRegisters : holdingRegisters;
+        for(int i=0; i<values.length; i++) {
+            registers.put(address + i, values[i] & 0xFFFF);
+        }
+    }
+
+    private static void putInt(int[] registers, int value) {
+        registers[0] = (value >>> 16) & 0xFFFF;
+        registers[1] = value & 0xFFFF;
+    }
+
+    private static int getWords(ReadRegisterType type, RegisterValueType valueType, Integer configuredWords) {
+        int words = configuredWords != null ? configuredWords : 1;
+        if(type == ReadRegisterType.Coil || type == ReadRegisterType.Discrete || valueType == null) {
+            return words;
+        }
+        switch(valueType) {
+            case Float:
+            case Integer32:
+            case Integer2Float:
+                return Math.max(words, 2);
+            case Float64:
+                return Math.max(words, 4);
+            default:
+                return words;
+        }
+    }
+
+    static int parseAddress(String address) {
+        return address.startsWith("0x") ? Integer.parseInt(address.substring(2), 16) : Integer.parseInt(address);
+    }
+}
@@ -100,6 +100,12 @@ public class FloatValueTransformer extends ValueTransformerBase implements Value
         }
     }
 
+    @Override
+    public void clearValue() {
+        this.value = null;
+        this.byteValues = null;
+    }
+
     @Override
     public boolean valueMatches(String regex) {
         Double value = getValue();
@@ -67,6 +67,12 @@ public class Integer2FloatValueTransformer extends ValueTransformerBase implemen
         logger.error("{}: {}.setValue() has not yet been implemented.", applianceId, getClass().getSimpleName());
     }
 
+    @Override
+    public void clearValue() {
+        this.value = null;
+        this.byteValues = null;
+    }
+
     @Override
     public boolean valueMatches(String regex) {
         Double value = getValue();
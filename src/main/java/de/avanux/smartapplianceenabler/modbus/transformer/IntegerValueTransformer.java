@@ -74,6 +74,12 @@ public class IntegerValueTransformer extends ValueTransformerBase implements Val
         }
     }
 
+    @Override
+    public void clearValue() {
+        this.value = null;
+        this.byteValues = null;
+    }
+
     @Override
     public boolean valueMatches(String regex) {
         Integer value = getValue();
@@ -54,6 +54,12 @@ public class StringValueTransformer extends ValueTransformerBase implements Valu
         logger.error("{}: {}.setValue() has not yet been implemented.", applianceId, getClass().getSimpleName());
     }
 
+    @Override
+    public void clearValue() {
+        this.value = null;
+        this.byteValues = null;
+    }
+
     @Override
     public boolean valueMatches(String regex) {
         String value = getValue();
@@ -29,5 +29,11 @@ public interface ValueTransformer<T> extends ApplianceIdConsumer {
 
     T getValue();
 
+    /**
+     * Discard value and byte values, e.g. before a new value is read, so that no value from a previous read
+     * is returned if the read fails.
+     */
+    void clearValue();
+
     boolean valueMatches(String regex);
 }
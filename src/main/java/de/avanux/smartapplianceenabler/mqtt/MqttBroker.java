@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.mqtt;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+
+/**
+ * Represents an MQTT broker and provides a client connection to it shared by all meters and controls using it.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MqttBroker {
+    @XmlAttribute
+    private String id;
+    public transient static final String DEFAULT_HOST = "127.0.0.1";
+    @XmlAttribute
+    private String host;
+    public transient static final int DEFAULT_PORT = 1883;
+    @XmlAttribute
+    private Integer port;
+    @XmlAttribute
+    private String username;
+    @XmlAttribute
+    private String password;
+    public transient static final int DEFAULT_KEEP_ALIVE = 60;
+    @XmlAttribute
+    private Integer keepAlive; // seconds
+    private transient MqttClient client;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public void setHost(String host) {
+        this.host = host;
+    }
+
+    private String getResolvedHost() {
+        return host != null ? host : DEFAULT_HOST;
+    }
+
+    public Integer getPort() {
+        return port;
+    }
+
+    public void setPort(Integer port) {
+        this.port = port;
+    }
+
+    private int getResolvedPort() {
+        return port != null ? port : DEFAULT_PORT;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public int getKeepAlive() {
+        return keepAlive != null ? keepAlive : DEFAULT_KEEP_ALIVE;
+    }
+
+    public void setKeepAlive(Integer keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    /**
+     * Returns the client connected to the broker. The connection is established on first use
+     * and re-established automatically if it is lost.
+     * @return
+     */
+    public synchronized MqttClient getClient() {
+        if(client == null) {
+            client = new MqttClient("SmartApplianceEnabler-" + id, getResolvedHost(), getResolvedPort(),
+                    username, password, getKeepAlive());
+            client.start();
+        }
+        return client;
+    }
+
+    public synchronized void stop() {
+        if(client != null) {
+            client.stop();
+            client = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return id + "@" + getResolvedHost() + ":" + getResolvedPort();
+    }
+}
@@ -0,0 +1,516 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.mqtt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal MQTT 3.1.1 client supporting subscriptions with QoS 0 and publishing with QoS 0 or 1.
+ * A single thread connects to the broker, receives messages and dispatches them to the listeners of all
+ * matching subscriptions. If the connection is lost, it is re-established with increasing delay and all
+ * subscriptions are renewed.
+ * PINGREQ is sent whenever the client has not sent a packet for half the keep alive interval, no matter how many
+ * messages it receives, so that the broker does not disconnect a client that is subscribing only.
+ * <p>
+ * The client is implemented here instead of using a library like Eclipse Paho since only this small subset of the
+ * protocol is needed (no TLS, no QoS 2, no persistent sessions or offline buffering) and all meters and switches of
+ * a broker share a single connection and thread. This keeps the footprint on a Raspberry Pi small and avoids another
+ * dependency with its own threads and message persistence.
+ */
+public class MqttClient {
+    private transient Logger logger = LoggerFactory.getLogger(MqttClient.class);
+    private static final int CONNECT = 0x10;
+    private static final int CONNACK = 0x20;
+    private static final int PUBLISH = 0x30;
+    private static final int PUBACK = 0x40;
+    private static final int SUBSCRIBE = 0x82;
+    private static final int SUBACK = 0x90;
+    private static final int UNSUBSCRIBE = 0xA2;
+    private static final int UNSUBACK = 0xB0;
+    private static final int PINGREQ = 0xC0;
+    private static final int PINGRESP = 0xD0;
+    private static final int DISCONNECT = 0xE0;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5000;
+    private static final long MIN_RECONNECT_DELAY_MILLIS = 1000;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 60000;
+    /**
+     * Packets exceeding this length are discarded instead of being buffered.
+     */
+    static final int MAX_PACKET_LENGTH = 1024 * 1024;
+    private final String clientId;
+    private final String host;
+    private final int port;
+    private final String username;
+    private final String password;
+    private final int keepAliveSeconds;
+    private final Map<String, List<MqttMessageListener>> subscriptions = new ConcurrentHashMap<>();
+    private final Map<Integer, CountDownLatch> pendingPubacks = new ConcurrentHashMap<>();
+    private volatile Thread thread;
+    private volatile Socket socket;
+    private volatile OutputStream out;
+    private volatile boolean connected;
+    private int packetId;
+    private long lastReceivedMillis;
+    private volatile long lastSentMillis;
+
+    public MqttClient(String clientId, String host, int port, String username, String password, int keepAliveSeconds) {
+        this.clientId = clientId;
+        this.host = host;
+        this.port = port;
+        this.username = username;
+        this.password = password;
+        this.keepAliveSeconds = keepAliveSeconds;
+    }
+
+    public synchronized void start() {
+        if(thread == null) {
+            thread = new Thread(this::run, "mqtt-" + clientId);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+            thread = null;
+        }
+        if(current != null) {
+            if(connected) {
+                try {
+                    send(DISCONNECT, new byte[0]);
+                }
+                catch(IOException e) {
+                    logger.debug("{}: Error sending disconnect", clientId, e);
+                }
+            }
+            closeSocket();
+            current.interrupt();
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Subscribe to a topic filter which may contain wildcards (+ and #).
+     * @param topicFilter
+     * @param listener
+     */
+    public void subscribe(String topicFilter, MqttMessageListener listener) {
+        boolean newTopicFilter = subscriptions.computeIfAbsent(topicFilter, key -> new CopyOnWriteArrayList<>()).isEmpty();
+        subscriptions.get(topicFilter).add(listener);
+        if(newTopicFilter && connected) {
+            try {
+                sendSubscribe(topicFilter);
+            }
+            catch(IOException e) {
+                logger.warn("{}: Error subscribing to {}", clientId, topicFilter, e);
+                closeSocket();
+            }
+        }
+    }
+
+    public void unsubscribe(String topicFilter, MqttMessageListener listener) {
+        List<MqttMessageListener> listeners = subscriptions.get(topicFilter);
+        if(listeners != null) {
+            listeners.remove(listener);
+            if(listeners.isEmpty()) {
+                subscriptions.remove(topicFilter);
+                if(connected) {
+                    try {
+                        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+                        writeShort(packet, nextPacketId());
+                        writeString(packet, topicFilter);
+                        send(UNSUBSCRIBE, packet.toByteArray());
+                    }
+                    catch(IOException e) {
+                        logger.warn("{}: Error unsubscribing from {}", clientId, topicFilter, e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Publish a message with QoS 0.
+     * @param topic
+     * @param payload
+     * @param retain
+     * @return true, if the message was sent to the broker
+     */
+    public boolean publish(String topic, String payload, boolean retain) {
+        return publish(topic, payload, retain, false);
+    }
+
+    /**
+     * Publish a message with QoS 1 and wait for the broker to acknowledge it with PUBACK.
+     * The message is not retransmitted if the acknowledgement is missing, i.e. the caller has to decide whether
+     * to publish it again.
+     * Must not be called from a {@link MqttMessageListener} since the acknowledgement is received by the same thread.
+     * @param topic
+     * @param payload
+     * @param retain
+     * @return true, if the broker acknowledged the message
+     */
+    public boolean publishAcknowledged(String topic, String payload, boolean retain) {
+        return publish(topic, payload, retain, true);
+    }
+
+    private boolean publish(String topic, String payload, boolean retain, boolean acknowledged) {
+        if(! connected) {
+            logger.warn("{}: Not connected - cannot publish to {}", clientId, topic);
+            return false;
+        }
+        Integer id = null;
+        CountDownLatch puback = null;
+        try {
+            ByteArrayOutputStream packet = new ByteArrayOutputStream();
+            writeString(packet, topic);
+            if(acknowledged) {
+                id = nextPacketId();
+                puback = new CountDownLatch(1);
+                pendingPubacks.put(id, puback);
+                writeShort(packet, id);
+            }
+            packet.write(payload.getBytes(StandardCharsets.UTF_8));
+            send(PUBLISH | (acknowledged ? 0x02 : 0x00) | (retain ? 0x01 : 0x00), packet.toByteArray());
+            if(acknowledged && ! puback.await(CONNECT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                logger.warn("{}: No acknowledgement from broker for message published to {}", clientId, topic);
+                return false;
+            }
+            logger.debug("{}: Published to {}: {}", clientId, topic, payload);
+            return true;
+        }
+        catch(IOException e) {
+            logger.warn("{}: Error publishing to {}", clientId, topic, e);
+            closeSocket();
+            return false;
+        }
+        catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        finally {
+            if(id != null) {
+                pendingPubacks.remove(id);
+            }
+        }
+    }
+
+    private void run() {
+        Thread currentThread = Thread.currentThread();
+        long reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+        while(thread == currentThread) {
+            try {
+                InputStream in = connect();
+                reconnectDelayMillis = MIN_RECONNECT_DELAY_MILLIS;
+                receive(in, currentThread);
+            }
+            catch(IOException | RuntimeException e) {
+                if(thread == currentThread) {
+                    logger.warn("{}: Connection to {}:{} failed: {}", clientId, host, port, e.toString());
+                }
+            }
+            finally {
+                connected = false;
+                closeSocket();
+            }
+            if(thread == currentThread) {
+                logger.debug("{}: Reconnecting in {}ms", clientId, reconnectDelayMillis);
+                try {
+                    Thread.sleep(reconnectDelayMillis);
+                }
+                catch(InterruptedException e) {
+                    break;
+                }
+                reconnectDelayMillis = Math.min(reconnectDelayMillis * 2, MAX_RECONNECT_DELAY_MILLIS);
+            }
+        }
+        logger.debug("{}: Stopped", clientId);
+    }
+
+    private InputStream connect() throws IOException {
+        logger.debug("{}: Connecting to {}:{}", clientId, host, port);
+        Socket socket = new Socket();
+        this.socket = socket;
+        socket.setTcpNoDelay(true);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        socket.setSoTimeout(CONNECT_TIMEOUT_MILLIS);
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        writeString(packet, "MQTT");
+        packet.write(4); // protocol level 3.1.1
+        int flags = 0x02; // clean session
+        if(username != null) {
+            flags |= 0x80;
+            if(password != null) {
+                flags |= 0x40;
+            }
+        }
+        packet.write(flags);
+        writeShort(packet, keepAliveSeconds);
+        writeString(packet, clientId);
+        if(username != null) {
+            writeString(packet, username);
+            if(password != null) {
+                writeString(packet, password);
+            }
+        }
+        send(CONNECT, packet.toByteArray());
+
+        int type = in.read();
+        if(type != CONNACK) {
+            throw new IOException("Unexpected response to CONNECT: " + type);
+        }
+        byte[] connack = readPayload(in);
+        if(connack == null || connack.length < 2 || connack[1] != 0) {
+            throw new IOException("Connection refused: return code="
+                    + (connack != null && connack.length > 1 ? connack[1] : -1));
+        }
+        socket.setSoTimeout(getPingIntervalMillis());
+        this.connected = true;
+        this.lastReceivedMillis = System.currentTimeMillis();
+        logger.info("{}: Connected to {}:{}", clientId, host, port);
+        for(String topicFilter : subscriptions.keySet()) {
+            sendSubscribe(topicFilter);
+        }
+        return in;
+    }
+
+    private void receive(InputStream in, Thread currentThread) throws IOException {
+        while(thread == currentThread) {
+            int header;
+            try {
+                header = in.read();
+            }
+            catch(SocketTimeoutException e) {
+                if(System.currentTimeMillis() - lastReceivedMillis > TimeUnit.SECONDS.toMillis(keepAliveSeconds) * 3 / 2) {
+                    throw new IOException("No response from broker within keep alive interval");
+                }
+                sendPingIfRequired();
+                continue;
+            }
+            if(header < 0) {
+                throw new EOFException("Connection closed by broker");
+            }
+            byte[] payload = readPayload(in);
+            lastReceivedMillis = System.currentTimeMillis();
+            int type = header & 0xF0;
+            if(payload == null) {
+                logger.warn("{}: Discarded packet of type {} exceeding {} bytes", clientId, type, MAX_PACKET_LENGTH);
+            }
+            else if(type == PUBLISH) {
+                onPublish(header, payload);
+            }
+            else if(type == PUBACK) {
+                onPuback(payload);
+            }
+            else if(type != SUBACK && type != UNSUBACK && type != PINGRESP) {
+                logger.debug("{}: Ignoring packet type {}", clientId, type);
+            }
+            sendPingIfRequired();
+        }
+    }
+
+    private int getPingIntervalMillis() {
+        return keepAliveSeconds * 1000 / 2;
+    }
+
+    private void sendPingIfRequired() throws IOException {
+        if(keepAliveSeconds > 0 && System.currentTimeMillis() - lastSentMillis >= getPingIntervalMillis()) {
+            send(PINGREQ, new byte[0]);
+        }
+    }
+
+    private void onPublish(int header, byte[] packet) throws IOException {
+        int qos = (header >> 1) & 0x03;
+        int topicLength = ((packet[0] & 0xFF) << 8) | (packet[1] & 0xFF);
+        String topic = new String(packet, 2, topicLength, StandardCharsets.UTF_8);
+        int offset = 2 + topicLength;
+        if(qos > 0) {
+            int id = ((packet[offset] & 0xFF) << 8) | (packet[offset + 1] & 0xFF);
+            offset += 2;
+            if(qos == 1) {
+                ByteArrayOutputStream puback = new ByteArrayOutputStream();
+                writeShort(puback, id);
+                send(PUBACK, puback.toByteArray());
+            }
+        }
+        String payload = new String(packet, offset, packet.length - offset, StandardCharsets.UTF_8);
+        logger.trace("{}: Received from {}: {}", clientId, topic, payload);
+        for(Map.Entry<String, List<MqttMessageListener>> subscription : subscriptions.entrySet()) {
+            if(matches(subscription.getKey(), topic)) {
+                for(MqttMessageListener listener : subscription.getValue()) {
+                    try {
+                        listener.onMessage(topic, payload);
+                    }
+                    catch(Throwable e) {
+                        logger.error("{}: Error processing message from {}", clientId, topic, e);
+                    }
+                }
+            }
+        }
+    }
+
+    private void onPuback(byte[] packet) {
+        if(packet.length >= 2) {
+            CountDownLatch puback = pendingPubacks.get(((packet[0] & 0xFF) << 8) | (packet[1] & 0xFF));
+            if(puback != null) {
+                puback.countDown();
+            }
+        }
+    }
+
+    /**
+     * Returns true, if the topic matches the topic filter.
+     * @param topicFilter topic filter which may contain wildcards (+ and #)
+     * @param topic
+     * @return
+     */
+    public static boolean matches(String topicFilter, String topic) {
+        String[] filterLevels = topicFilter.split("/", -1);
+        String[] topicLevels = topic.split("/", -1);
+        for(int i=0; i<filterLevels.length; i++) {
+            if(filterLevels[i].equals("#")) {
+                return true;
+            }
+            if(i >= topicLevels.length) {
+                return false;
+            }
+            if(! filterLevels[i].equals("+") && ! filterLevels[i].equals(topicLevels[i])) {
+                return false;
+            }
+        }
+        return filterLevels.length == topicLevels.length;
+    }
+
+    private void sendSubscribe(String topicFilter) throws IOException {
+        ByteArrayOutputStream packet = new ByteArrayOutputStream();
+        writeShort(packet, nextPacketId());
+        writeString(packet, topicFilter);
+        packet.write(0); // QoS 0
+        send(SUBSCRIBE, packet.toByteArray());
+        logger.debug("{}: Subscribed to {}", clientId, topicFilter);
+    }
+
+    private synchronized int nextPacketId() {
+        packetId = packetId % 0xFFFF + 1;
+        return packetId;
+    }
+
+    private void send(int header, byte[] payload) throws IOException {
+        OutputStream out = this.out;
+        if(out == null) {
+            throw new IOException("Not connected");
+        }
+        synchronized (out) {
+            out.write(header);
+            int remaining = payload.length;
+            do {
+                int digit = remaining % 128;
+                remaining /= 128;
+                out.write(remaining > 0 ? digit | 0x80 : digit);
+            }
+            while(remaining > 0);
+            out.write(payload);
+            out.flush();
+            lastSentMillis = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Read the remaining part of a packet.
+     * @param in
+     * @return the packet or null, if it has been discarded since it exceeds {@link #MAX_PACKET_LENGTH}
+     * @throws IOException
+     */
+    private static byte[] readPayload(InputStream in) throws IOException {
+        int length = 0;
+        int multiplier = 1;
+        int digit;
+        int digits = 0;
+        do {
+            digit = in.read();
+            if(digit < 0) {
+                throw new EOFException();
+            }
+            if(++digits > 4) {
+                throw new IOException("Malformed remaining length");
+            }
+            length += (digit & 0x7F) * multiplier;
+            multiplier *= 128;
+        }
+        while((digit & 0x80) != 0);
+        DataInputStream dataIn = new DataInputStream(in);
+        if(length > MAX_PACKET_LENGTH) {
+            byte[] buffer = new byte[8192];
+            while(length > 0) {
+                int chunk = Math.min(length, buffer.length);
+                dataIn.readFully(buffer, 0, chunk);
+                length -= chunk;
+            }
+            return null;
+        }
+        byte[] payload = new byte[length];
+        dataIn.readFully(payload);
+        return payload;
+    }
+
+    private static void writeShort(ByteArrayOutputStream packet, int value) {
+        packet.write((value >> 8) & 0xFF);
+        packet.write(value & 0xFF);
+    }
+
+    private static void writeString(ByteArrayOutputStream packet, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeShort(packet, bytes.length);
+        packet.write(bytes);
+    }
+
+    private void closeSocket() {
+        connected = false;
+        Socket socket = this.socket;
+        if(socket != null) {
+            try {
+                socket.close();
+            }
+            catch(IOException e) {
+                logger.trace("{}: Error closing socket", clientId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.mqtt;
+
+import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.protocol.ContentProtocolHandler;
+import de.avanux.smartapplianceenabler.util.RegexUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Extracts values from MQTT message payloads the same way {@link de.avanux.smartapplianceenabler.http.HttpHandler}
+ * does from HTTP responses: the path selects a value using the content protocol handler, the extraction regex
+ * is applied to the payload or the selected value and the factor to value is applied to numeric values.
+ */
+public class MqttHandler implements ApplianceIdConsumer {
+    private transient Logger logger = LoggerFactory.getLogger(MqttHandler.class);
+    private String applianceId;
+
+    @Override
+    public void setApplianceId(String applianceId) {
+        this.applianceId = applianceId;
+    }
+
+    public Double getDoubleValue(MqttReadValue readValue, String payload, ContentProtocolHandler contentProtocolHandler) {
+        String protocolHandlerValue = extractValue(readValue, payload, contentProtocolHandler);
+        if(protocolHandlerValue != null) {
+            String valueExtractionRegex = readValue.getExtractionRegex();
+            String extractedValue = protocolHandlerValue;
+            if(valueExtractionRegex != null) {
+                extractedValue = RegexUtil.getMatchingGroup1(protocolHandlerValue, valueExtractionRegex);
+                if(extractedValue == null) {
+                    return null;
+                }
+            }
+            String parsableString = extractedValue.trim().replace(',', '.');
+            Double factorToValue = readValue.getFactorToValue();
+            try {
+                double value = Double.parseDouble(parsableString);
+                value = factorToValue != null ? value * factorToValue : value;
+                logger.debug("{}: value={} extractedValue={} factorToValue={}",
+                        applianceId, value, extractedValue, factorToValue);
+                return value;
+            }
+            catch(NumberFormatException e) {
+                logger.warn("{}: Cannot parse value: {}", applianceId, extractedValue);
+            }
+        }
+        return null;
+    }
+
+    public boolean getBooleanValue(MqttReadValue readValue, String payload, ContentProtocolHandler contentProtocolHandler) {
+        String protocolHandlerValue = extractValue(readValue, payload, contentProtocolHandler);
+        if(protocolHandlerValue != null) {
+            String valueExtractionRegex = readValue.getExtractionRegex();
+            boolean match = RegexUtil.isMatch(protocolHandlerValue, valueExtractionRegex);
+            logger.debug("{}: match={} protocolHandlerValue={} valueExtractionRegex={}",
+                    applianceId, match, protocolHandlerValue, valueExtractionRegex);
+            return match;
+        }
+        return false;
+    }
+
+    /**
+     * Synchronized since the content protocol handler keeps the parsed payload as state.
+     */
+    private synchronized String extractValue(MqttReadValue readValue, String payload,
+                                             ContentProtocolHandler contentProtocolHandler) {
+        if(payload != null) {
+            String path = readValue.getPath();
+            if(contentProtocolHandler != null && path != null) {
+                try {
+                    contentProtocolHandler.parse(payload);
+                    return contentProtocolHandler.readValue(path);
+                }
+                catch(RuntimeException e) {
+                    logger.warn("{}: Cannot read {} from payload: {}", applianceId, path, payload);
+                    return null;
+                }
+            }
+            return payload;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.mqtt;
+
+import de.avanux.smartapplianceenabler.util.ParentWithChild;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import java.util.List;
+
+/**
+ * Topic to subscribe to and the values to be extracted from messages published to it.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MqttRead {
+    @XmlAttribute
+    private String topic;
+    @XmlElement(name = "MqttReadValue")
+    private List<MqttReadValue> readValues;
+
+    public MqttRead() {
+    }
+
+    public MqttRead(String topic) {
+        this.topic = topic;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public List<MqttReadValue> getReadValues() {
+        return readValues;
+    }
+
+    public void setReadValues(List<MqttReadValue> readValues) {
+        this.readValues = readValues;
+    }
+
+    public static ParentWithChild<MqttRead, MqttReadValue> getFirstMqttRead(String valueName, List<MqttRead> reads) {
+        if(reads != null) {
+            for(MqttRead read: reads) {
+                if(read.getReadValues() != null) {
+                    for(MqttReadValue readValue: read.getReadValues()) {
+                        if(readValue.getName().equals(valueName)) {
+                            return new ParentWithChild<>(read, readValue);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.mqtt;
+
+import de.avanux.smartapplianceenabler.util.ParentWithChild;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import java.util.List;
+
+/**
+ * Topic to publish to and the payloads for the values to be written.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class MqttWrite {
+    @XmlAttribute
+    private String topic;
+    @XmlAttribute
+    private Boolean retain;
+    @XmlElement(name = "MqttWriteValue")
+    private List<MqttWriteValue> writeValues;
+
+    public MqttWrite() {
+    }
+
+    public MqttWrite(String topic) {
+        this.topic = topic;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public boolean isRetain() {
+        return retain != null && retain;
+    }
+
+    public List<MqttWriteValue> getWriteValues() {
+        return writeValues;
+    }
+
+    public void setWriteValues(List<MqttWriteValue> writeValues) {
+        this.writeValues = writeValues;
+    }
+
+    public static ParentWithChild<MqttWrite, MqttWriteValue> getFirstMqttWrite(String valueName, List<MqttWrite> writes) {
+        if(writes != null) {
+            for(MqttWrite write: writes) {
+                if(write.getWriteValues() != null) {
+                    for(MqttWriteValue writeValue: write.getWriteValues()) {
+                        if(writeValue.getName().equals(valueName)) {
+                            return new ParentWithChild<>(write, writeValue);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -22,6 +22,7 @@ public enum NotificationType {
     CONTROL_ON,
     CONTROL_OFF,
     COMMUNICATION_ERROR,
+    DEVICE_UNREACHABLE,
     EVCHARGER_VEHICLE_NOT_CONNECTED,
     EVCHARGER_VEHICLE_CONNECTED,
     EVCHARGER_CHARGING,
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.persistence;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Binary checkpoint of the runtime state of all appliances (e.g. queued timeframe intervals, runtimes,
+ * state of ev chargers) which allows to resume operation after a restart.
+ * <p>
+ * The checkpoint contains one opaque section per appliance and is only valid for the configuration it has been
+ * created with. It is written to a temporary file first which replaces the checkpoint afterwards, i.e. a crash
+ * while writing leaves the previous checkpoint intact. A CRC32 checksum covers the whole file.
+ */
+public class RuntimeCheckpoint {
+    private Logger logger = LoggerFactory.getLogger(RuntimeCheckpoint.class);
+    public static final String CONFIGURATION_KEY_INTERVAL = "RuntimeCheckpoint.Interval";
+    public static final String CONFIGURATION_KEY_MAX_AGE = "RuntimeCheckpoint.MaxAge";
+    public static final int DEFAULT_INTERVAL_SECONDS = 60;
+    public static final int DEFAULT_MAX_AGE_SECONDS = 900;
+    private static final int MAGIC = 0x53414543;
+    private static final int VERSION = 1;
+    private File file;
+    private long writeCount;
+
+    public RuntimeCheckpoint(File file) {
+        this.file = file;
+    }
+
+    public long getWriteCount() {
+        return writeCount;
+    }
+
+    /**
+     * Write the checkpoint.
+     * @param configurationChecksum checksum of the configuration the state belongs to
+     * @param timestamp epoch millis
+     * @param sections the state per appliance id
+     * @throws IOException
+     */
+    public synchronized void write(long configurationChecksum, long timestamp, Map<String, byte[]> sections)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(configurationChecksum);
+        out.writeLong(timestamp);
+        out.writeInt(sections.size());
+        for(Map.Entry<String, byte[]> section : sections.entrySet()) {
+            out.writeUTF(section.getKey());
+            out.writeInt(section.getValue().length);
+            out.write(section.getValue());
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+
+        File tmpFile = new File(file.getPath() + ".tmp");
+        try(FileOutputStream fileOut = new FileOutputStream(tmpFile)) {
+            bytes.writeTo(fileOut);
+            fileOut.getFD().sync();
+        }
+        Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        writeCount++;
+        logger.debug("Checkpoint written: appliances={} size={}", sections.size(), bytes.size());
+    }
+
+    /**
+     * Read the checkpoint.
+     * @param configurationChecksum checksum of the current configuration
+     * @param now epoch millis
+     * @param maxAgeSeconds checkpoints older than this are ignored
+     * @return the state per appliance id or an empty map if no valid checkpoint exists
+     */
+    public synchronized Map<String, byte[]> read(long configurationChecksum, long now, int maxAgeSeconds) {
+        if(! file.exists()) {
+            logger.debug("No checkpoint found");
+            return Collections.emptyMap();
+        }
+        try {
+            byte[] content = Files.readAllBytes(file.toPath());
+            if(content.length < 4) {
+                logger.warn("Ignoring truncated checkpoint");
+                return Collections.emptyMap();
+            }
+            CRC32 crc = new CRC32();
+            crc.update(content, 0, content.length - 4);
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+            in.skipBytes(content.length - 4);
+            if(in.readInt() != (int) crc.getValue()) {
+                logger.warn("Ignoring checkpoint with invalid checksum");
+                return Collections.emptyMap();
+            }
+            in = new DataInputStream(new ByteArrayInputStream(content));
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                logger.warn("Ignoring checkpoint of unknown format");
+                return Collections.emptyMap();
+            }
+            if(in.readLong() != configurationChecksum) {
+                logger.info("Ignoring checkpoint since configuration has changed");
+                return Collections.emptyMap();
+            }
+            long timestamp = in.readLong();
+            if(now - timestamp > maxAgeSeconds * 1000L) {
+                logger.info("Ignoring checkpoint older than {}s", maxAgeSeconds);
+                return Collections.emptyMap();
+            }
+            Map<String, byte[]> sections = new LinkedHashMap<>();
+            int count = in.readInt();
+            for(int i=0; i<count; i++) {
+                String id = in.readUTF();
+                byte[] section = new byte[in.readInt()];
+                in.readFully(section);
+                sections.put(id, section);
+            }
+            logger.info("Checkpoint read: appliances={} age={}s", sections.size(), (now - timestamp) / 1000);
+            return sections;
+        }
+        catch(IOException e) {
+            logger.error("Error reading checkpoint", e);
+        }
+        return Collections.emptyMap();
+    }
+
+    public static byte[] toBytes(LocalDateTime now, Checkpointable checkpointable) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        checkpointable.writeCheckpoint(now, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    public static void fromBytes(LocalDateTime now, Checkpointable checkpointable, byte[] bytes) throws IOException {
+        checkpointable.readCheckpoint(now, new DataInputStream(new ByteArrayInputStream(bytes)));
+    }
+
+    public static void writeNullableInt(DataOutput out, Integer value) throws IOException {
+        out.writeBoolean(value != null);
+        if(value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    public static Integer readNullableInt(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+
+    public static void writeNullableBoolean(DataOutput out, Boolean value) throws IOException {
+        out.writeByte(value == null ? -1 : (value ? 1 : 0));
+    }
+
+    public static Boolean readNullableBoolean(DataInput in) throws IOException {
+        byte value = in.readByte();
+        return value < 0 ? null : value == 1;
+    }
+
+    /**
+     * Local date times are stored as seconds since epoch of the local time line, i.e. independent of time zone.
+     */
+    public static void writeNullableLocalDateTime(DataOutput out, LocalDateTime value) throws IOException {
+        out.writeBoolean(value != null);
+        if(value != null) {
+            out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    public static LocalDateTime readNullableLocalDateTime(DataInput in) throws IOException {
+        return in.readBoolean() ? LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC) : null;
+    }
+}
@@ -0,0 +1,694 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.persistence;
+
+import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of small records stored in memory-mapped segment files of fixed size.
+ * <p>
+ * Two kinds of records exist: state records (e.g. energy counters) of which only the latest value per key is
+ * relevant and sample records (e.g. power values) which are retained for a configurable period.
+ * <p>
+ * Records are written to the mapped segment immediately so that they survive a crash of the process.
+ * Forcing them to the storage device is deferred to {@link #flush()} which is called periodically
+ * (group commit), i.e. a power loss may lose the records of the last flush interval, but the SD card is
+ * not written for every record. Each record carries a CRC32 checksum. On {@link #open()} all segments are scanned,
+ * the state is restored and the log is truncated behind the last valid record (e.g. a torn write).
+ * <p>
+ * Once the number of segments exceeds the maximum, the log is compacted: the latest state per key and samples
+ * within the retention period are copied into new segments. The header of the last new segment confirms
+ * the compaction; unconfirmed segments of an interrupted compaction are discarded on {@link #open()}.
+ * Compaction runs on a background thread so that appending records (e.g. on the S0 pulse consumer thread)
+ * is not delayed by it: the sequences of the compaction segments are reserved in advance and records appended
+ * in the meantime go to append segments behind them.
+ */
+public class SegmentLog {
+    private Logger logger = LoggerFactory.getLogger(SegmentLog.class);
+    public static final String CONFIGURATION_KEY_FLUSH_INTERVAL = "SegmentLog.FlushInterval";
+    public static final int DEFAULT_SEGMENT_SIZE = 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 16;
+    public static final int DEFAULT_FLUSH_INTERVAL_SECONDS = 10;
+    public static final long DEFAULT_SAMPLE_RETENTION_MILLIS = 2 * 86_400_000L;
+    private static final int MAGIC = 0x5341454c;
+    private static final int VERSION = 1;
+    // magic, version, segment type, start of confirmed compaction
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+    private static final int CONFIRMATION_OFFSET = 12;
+    // length, crc
+    private static final int RECORD_HEADER_SIZE = 4 + 4;
+    // type, timestamp, value, key length
+    private static final int RECORD_FIXED_SIZE = 1 + 8 + 8 + 2;
+    private static final int SEGMENT_TYPE_APPEND = 1;
+    private static final int SEGMENT_TYPE_COMPACTION = 2;
+    private static final byte RECORD_TYPE_STATE = 1;
+    private static final byte RECORD_TYPE_SAMPLE = 2;
+    private static final byte RECORD_TYPE_REMOVE = 3;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static SegmentLog instance;
+    private static ExecutorService defaultCompactionExecutor;
+    private File directory;
+    private int segmentSize;
+    private int maxSegments;
+    private long sampleRetentionMillis;
+    private TreeMap<Long, File> segments = new TreeMap<>();
+    private long activeSequence;
+    private FileChannel activeChannel;
+    private MappedByteBuffer activeBuffer;
+    private boolean dirty;
+    private long lastSampleTimestamp;
+    private Map<String, Entry> keyWithEntry = new HashMap<>();
+    private CRC32 crc = new CRC32();
+    private GuardedTimerTask flushTimerTask;
+    private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_SECONDS * 1000L;
+    private Executor compactionExecutor;
+    private Compaction compaction;
+    private long flushCount;
+    private int recoveredRecordCount;
+    private int discardedRecordCount;
+
+    public interface SampleConsumer {
+        void accept(String key, long timestamp, double value);
+    }
+
+    private static class Entry {
+        private long timestamp;
+        private double value;
+
+        Entry(long timestamp, double value) {
+            this.timestamp = timestamp;
+            this.value = value;
+        }
+    }
+
+    public SegmentLog(File directory) {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS, DEFAULT_SAMPLE_RETENTION_MILLIS);
+    }
+
+    public SegmentLog(File directory, int segmentSize, int maxSegments, long sampleRetentionMillis) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(maxSegments, 2);
+        this.sampleRetentionMillis = sampleRetentionMillis;
+    }
+
+    /**
+     * Returns the log used by the application.
+     * @return the log or null, if persistence is not enabled
+     */
+    public static SegmentLog getInstance() {
+        return instance;
+    }
+
+    public static void setInstance(SegmentLog instance) {
+        SegmentLog.instance = instance;
+    }
+
+    private static synchronized ExecutorService getDefaultCompactionExecutor() {
+        if(defaultCompactionExecutor == null) {
+            defaultCompactionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "segment-log-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return defaultCompactionExecutor;
+    }
+
+    /**
+     * Set the executor running compactions triggered by appending records.
+     * @param compactionExecutor the executor; by default a single background thread shared by all logs
+     */
+    public synchronized void setCompactionExecutor(Executor compactionExecutor) {
+        this.compactionExecutor = compactionExecutor;
+    }
+
+    /**
+     * Open the log restoring the state from existing segments.
+     * @throws IOException
+     */
+    public synchronized void open() throws IOException {
+        if(! directory.exists() && ! directory.mkdirs()) {
+            throw new IOException("Cannot create directory " + directory);
+        }
+        long startNanos = System.nanoTime();
+        TreeMap<Long, File> files = new TreeMap<>();
+        File[] segmentFiles = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX)
+                && name.endsWith(SEGMENT_SUFFIX));
+        if(segmentFiles != null) {
+            for(File file : segmentFiles) {
+                String name = file.getName();
+                try {
+                    files.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length())), file);
+                }
+                catch(NumberFormatException e) {
+                    logger.warn("Ignoring file {}", file);
+                }
+            }
+        }
+
+        // compaction segments are valid only within a range confirmed by the header of the last segment of
+        // the compaction; all segments before the latest confirmed compaction have been superseded
+        long validFromSequence = 0;
+        Map<Long, Integer> sequenceWithType = new HashMap<>();
+        TreeMap<Long, Long> confirmedRanges = new TreeMap<>();
+        for(Map.Entry<Long, File> segment : files.entrySet()) {
+            try(FileChannel channel = FileChannel.open(segment.getValue().toPath())) {
+                if(channel.size() < HEADER_SIZE) {
+                    continue;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+                if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                    continue;
+                }
+                sequenceWithType.put(segment.getKey(), buffer.getInt(8));
+                long confirmedFromSequence = buffer.getLong(CONFIRMATION_OFFSET);
+                if(confirmedFromSequence > 0) {
+                    confirmedRanges.put(confirmedFromSequence, segment.getKey());
+                    validFromSequence = Math.max(validFromSequence, confirmedFromSequence);
+                }
+            }
+        }
+        for(Map.Entry<Long, File> segment : files.entrySet()) {
+            long sequence = segment.getKey();
+            Integer type = sequenceWithType.get(sequence);
+            Map.Entry<Long, Long> confirmedRange = confirmedRanges.floorEntry(sequence);
+            boolean valid = type != null && sequence >= validFromSequence
+                    && (type == SEGMENT_TYPE_APPEND || confirmedRange != null && sequence <= confirmedRange.getValue());
+            if(valid) {
+                segments.put(sequence, segment.getValue());
+            }
+            else {
+                logger.debug("Deleting invalid or superseded segment {}", segment.getValue());
+                delete(segment.getValue());
+            }
+        }
+
+        keyWithEntry.clear();
+        recoveredRecordCount = 0;
+        discardedRecordCount = 0;
+        int lastPosition = HEADER_SIZE;
+        for(Map.Entry<Long, File> segment : segments.entrySet()) {
+            lastPosition = scan(segment.getValue(), (type, key, timestamp, value) -> {
+                recoveredRecordCount++;
+                apply(type, key, timestamp, value);
+            });
+        }
+        if(segments.isEmpty()) {
+            createSegment(1, SEGMENT_TYPE_APPEND);
+        }
+        else {
+            activeSequence = segments.lastKey();
+            mapActiveSegment(lastPosition);
+        }
+        logger.info("Opened segment log {}: segments={} records={} discarded={} keys={} duration={}ms",
+                directory, segments.size(), recoveredRecordCount, discardedRecordCount, keyWithEntry.size(),
+                (System.nanoTime() - startNanos) / 1_000_000);
+    }
+
+    private interface RecordConsumer {
+        void accept(byte type, String key, long timestamp, double value) throws IOException;
+    }
+
+    /**
+     * Read all valid records of a segment.
+     * @return the position behind the last valid record
+     */
+    private int scan(File file, RecordConsumer consumer) throws IOException {
+        try(FileChannel channel = FileChannel.open(file.toPath())) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            // segments are also scanned by the compaction outside the lock
+            CRC32 crc = new CRC32();
+            int position = HEADER_SIZE;
+            byte[] keyBytes = new byte[256];
+            while(position + RECORD_HEADER_SIZE + RECORD_FIXED_SIZE <= buffer.limit()) {
+                int length = buffer.getInt(position);
+                if(length == 0) {
+                    break;
+                }
+                if(length < RECORD_FIXED_SIZE || position + RECORD_HEADER_SIZE + length > buffer.limit()) {
+                    logger.warn("Invalid record length {} at position {} of segment {}", length, position, file);
+                    discardedRecordCount++;
+                    break;
+                }
+                int checksum = buffer.getInt(position + 4);
+                int payload = position + RECORD_HEADER_SIZE;
+                if(checksum(crc, buffer, payload, length) != checksum) {
+                    logger.warn("Invalid checksum at position {} of segment {}", position, file);
+                    discardedRecordCount++;
+                    break;
+                }
+                byte type = buffer.get(payload);
+                long timestamp = buffer.getLong(payload + 1);
+                double value = buffer.getDouble(payload + 9);
+                int keyLength = buffer.getShort(payload + 17);
+                if(keyLength > keyBytes.length) {
+                    keyBytes = new byte[keyLength];
+                }
+                for(int i=0; i<keyLength; i++) {
+                    keyBytes[i] = buffer.get(payload + RECORD_FIXED_SIZE + i);
+                }
+                consumer.accept(type, new String(keyBytes, 0, keyLength, StandardCharsets.UTF_8), timestamp, value);
+                position = payload + length;
+            }
+            return position;
+        }
+    }
+
+    private static int checksum(CRC32 crc, MappedByteBuffer buffer, int offset, int length) {
+        crc.reset();
+        for(int i=0; i<length; i++) {
+            crc.update(buffer.get(offset + i));
+        }
+        return (int) crc.getValue();
+    }
+
+    private void apply(byte type, String key, long timestamp, double value) {
+        if(type == RECORD_TYPE_STATE) {
+            keyWithEntry.put(key, new Entry(timestamp, value));
+        }
+        else if(type == RECORD_TYPE_REMOVE) {
+            keyWithEntry.remove(key);
+        }
+        else if(type == RECORD_TYPE_SAMPLE) {
+            lastSampleTimestamp = Math.max(lastSampleTimestamp, timestamp);
+        }
+    }
+
+    /**
+     * Schedule periodic flushes.
+     * @param timer
+     * @param flushIntervalSeconds
+     */
+    public void startFlushTimer(Timer timer, int flushIntervalSeconds) {
+        this.flushIntervalMillis = flushIntervalSeconds * 1000L;
+        this.flushTimerTask = new GuardedTimerTask(null, "SegmentLogFlush", flushIntervalSeconds * 1000L) {
+            @Override
+            public void runTask() {
+                flush();
+            }
+        };
+        timer.schedule(this.flushTimerTask, this.flushTimerTask.getPeriod(), this.flushTimerTask.getPeriod());
+    }
+
+    /**
+     * Returns the interval in which records are forced to the storage device.
+     * Writers of frequently changing values may use it to limit the number of records appended.
+     * @return the interval in milliseconds
+     */
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * Set the latest value of a key.
+     * @param key
+     * @param timestamp epoch millis
+     * @param value
+     */
+    public synchronized void put(String key, long timestamp, double value) {
+        append(RECORD_TYPE_STATE, key, timestamp, value);
+    }
+
+    /**
+     * Remove the value of a key.
+     * @param key
+     */
+    public synchronized void remove(String key) {
+        if(keyWithEntry.containsKey(key)) {
+            append(RECORD_TYPE_REMOVE, key, 0, 0.0);
+        }
+    }
+
+    /**
+     * Returns the latest value of a key.
+     * @param key
+     * @return the value or null, if no value exists
+     */
+    public synchronized Double get(String key) {
+        Entry entry = keyWithEntry.get(key);
+        return entry != null ? entry.value : null;
+    }
+
+    /**
+     * Add a sample retained for the sample retention period.
+     * @param key
+     * @param timestamp epoch millis
+     * @param value
+     */
+    public synchronized void addSample(String key, long timestamp, double value) {
+        append(RECORD_TYPE_SAMPLE, key, timestamp, value);
+    }
+
+    /**
+     * Pass all samples retained to the consumer in the order they have been added.
+     * @param consumer
+     * @throws IOException
+     */
+    public synchronized void replaySamples(SampleConsumer consumer) throws IOException {
+        for(File file : segments.values()) {
+            scan(file, (type, key, timestamp, value) -> {
+                if(type == RECORD_TYPE_SAMPLE) {
+                    consumer.accept(key, timestamp, value);
+                }
+            });
+        }
+    }
+
+    private void append(byte type, String key, long timestamp, double value) {
+        if(activeBuffer == null) {
+            logger.warn("Segment log not open - dropping record for key {}", key);
+            return;
+        }
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        int length = RECORD_FIXED_SIZE + keyBytes.length;
+        if(RECORD_HEADER_SIZE + length > segmentSize - HEADER_SIZE) {
+            throw new IllegalArgumentException("Key too long: " + key);
+        }
+        try {
+            if(activeBuffer.position() + RECORD_HEADER_SIZE + length > activeBuffer.limit()) {
+                rollSegment();
+            }
+            write(activeBuffer, crc, type, keyBytes, timestamp, value);
+            dirty = true;
+            apply(type, key, timestamp, value);
+        }
+        catch(IOException e) {
+            logger.error("Error appending record for key " + key, e);
+        }
+    }
+
+    private static void write(MappedByteBuffer buffer, CRC32 crc, byte type, byte[] keyBytes, long timestamp,
+                              double value) {
+        int position = buffer.position();
+        int payload = position + RECORD_HEADER_SIZE;
+        int length = RECORD_FIXED_SIZE + keyBytes.length;
+        buffer.put(payload, type);
+        buffer.putLong(payload + 1, timestamp);
+        buffer.putDouble(payload + 9, value);
+        buffer.putShort(payload + 17, (short) keyBytes.length);
+        for(int i=0; i<keyBytes.length; i++) {
+            buffer.put(payload + RECORD_FIXED_SIZE + i, keyBytes[i]);
+        }
+        buffer.putInt(position + 4, checksum(crc, buffer, payload, length));
+        // the length is written last so that a record is not visible before it is complete
+        buffer.putInt(position, length);
+        buffer.position(payload + length);
+    }
+
+    private void rollSegment() throws IOException {
+        if(segments.size() >= maxSegments && compaction == null) {
+            Executor executor = compactionExecutor != null ? compactionExecutor : getDefaultCompactionExecutor();
+            executor.execute(startCompaction()::run);
+        }
+        else {
+            activeBuffer.force();
+            closeActiveSegment();
+            createSegment(activeSequence + 1, SEGMENT_TYPE_APPEND);
+        }
+    }
+
+    /**
+     * Copy the latest state and samples within the retention period into new segments and delete the old segments.
+     * Waits for a compaction running in the background before.
+     * @throws IOException
+     */
+    public synchronized void compact() throws IOException {
+        awaitCompaction();
+        startCompaction().run();
+    }
+
+    /**
+     * Close the active segment and reserve the sequences of the compaction segments. Appending continues
+     * in a new segment behind the reserved sequences.
+     */
+    private Compaction startCompaction() throws IOException {
+        if(activeBuffer != null) {
+            activeBuffer.force();
+            closeActiveSegment();
+        }
+        // the compacted records cannot occupy more segments than the records they have been copied from
+        // (plus the unused rest of the last segment)
+        List<File> oldSegments = new ArrayList<>(segments.values());
+        compaction = new Compaction(activeSequence + 1, activeSequence + 1 + oldSegments.size() + 1,
+                oldSegments, new LinkedHashMap<>(keyWithEntry), lastSampleTimestamp - sampleRetentionMillis);
+        createSegment(compaction.endSequence, SEGMENT_TYPE_APPEND);
+        return compaction;
+    }
+
+    private synchronized void awaitCompaction() {
+        while(compaction != null) {
+            try {
+                wait();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Writes the compaction segments without holding the lock of the log. Only confirming the compaction and
+     * replacing the old segments requires the lock.
+     */
+    private class Compaction {
+        private final long firstSequence;
+        private final long endSequence;
+        private final List<File> oldSegments;
+        private final Map<String, Entry> keyWithEntry;
+        private final long minSampleTimestamp;
+        private final CRC32 crc = new CRC32();
+        private final TreeMap<Long, File> newSegments = new TreeMap<>();
+        private MappedByteBuffer buffer;
+        private int states;
+        private int samples;
+
+        Compaction(long firstSequence, long endSequence, List<File> oldSegments, Map<String, Entry> keyWithEntry,
+                   long minSampleTimestamp) {
+            this.firstSequence = firstSequence;
+            this.endSequence = endSequence;
+            this.oldSegments = oldSegments;
+            this.keyWithEntry = keyWithEntry;
+            this.minSampleTimestamp = minSampleTimestamp;
+        }
+
+        void run() {
+            long startNanos = System.nanoTime();
+            try {
+                writeSegments();
+                synchronized(SegmentLog.this) {
+                    confirm();
+                    logger.info("Compacted segment log {}: segments={} states={} samples={} duration={}ms",
+                            directory, segments.size(), states, samples, (System.nanoTime() - startNanos) / 1_000_000);
+                }
+            }
+            catch(Exception e) {
+                logger.error("Error compacting segment log " + directory, e);
+                newSegments.values().forEach(SegmentLog.this::delete);
+            }
+            finally {
+                synchronized(SegmentLog.this) {
+                    compaction = null;
+                    SegmentLog.this.notifyAll();
+                }
+            }
+        }
+
+        private void writeSegments() throws IOException {
+            nextSegment();
+            for(Map.Entry<String, Entry> entry : keyWithEntry.entrySet()) {
+                write(RECORD_TYPE_STATE, entry.getKey(), entry.getValue().timestamp, entry.getValue().value);
+                states++;
+            }
+            for(File file : oldSegments) {
+                scan(file, (type, key, timestamp, value) -> {
+                    if(type == RECORD_TYPE_SAMPLE && timestamp >= minSampleTimestamp) {
+                        write(type, key, timestamp, value);
+                        samples++;
+                    }
+                });
+            }
+            buffer.force();
+        }
+
+        private void write(byte type, String key, long timestamp, double value) throws IOException {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            if(buffer.position() + RECORD_HEADER_SIZE + RECORD_FIXED_SIZE + keyBytes.length > buffer.limit()) {
+                buffer.force();
+                nextSegment();
+            }
+            SegmentLog.write(buffer, crc, type, keyBytes, timestamp, value);
+        }
+
+        private void nextSegment() throws IOException {
+            long sequence = newSegments.isEmpty() ? firstSequence : newSegments.lastKey() + 1;
+            if(sequence >= endSequence) {
+                throw new IOException("Compaction exceeds the reserved segments");
+            }
+            File file = getSegmentFile(sequence);
+            newSegments.put(sequence, file);
+            try(FileChannel channel = allocateSegment(file)) {
+                // the mapping remains valid after the channel has been closed
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            }
+            writeHeader(buffer, SEGMENT_TYPE_COMPACTION);
+        }
+
+        private void confirm() {
+            // confirm compaction which supersedes all previous segments
+            buffer.putLong(CONFIRMATION_OFFSET, firstSequence);
+            buffer.force();
+            for(File file : oldSegments) {
+                segments.values().remove(file);
+                delete(file);
+            }
+            segments.putAll(newSegments);
+            if(newSegments.size() >= maxSegments) {
+                logger.warn("Segment log {} still exceeds {} segments after compaction - consider a shorter retention",
+                        directory, maxSegments);
+            }
+        }
+    }
+
+    private File getSegmentFile(long sequence) {
+        return new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, sequence, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel allocateSegment(File file) throws IOException {
+        try(RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(segmentSize);
+        }
+        return FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private static void writeHeader(MappedByteBuffer buffer, int segmentType) {
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, segmentType);
+        buffer.putLong(CONFIRMATION_OFFSET, 0);
+        buffer.position(HEADER_SIZE);
+        buffer.force();
+    }
+
+    private void createSegment(long sequence, int segmentType) throws IOException {
+        File file = getSegmentFile(sequence);
+        activeChannel = allocateSegment(file);
+        segments.put(sequence, file);
+        activeSequence = sequence;
+        activeBuffer = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        writeHeader(activeBuffer, segmentType);
+    }
+
+    private void mapActiveSegment(int position) throws IOException {
+        File file = segments.get(activeSequence);
+        activeChannel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        activeBuffer = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, activeChannel.size());
+        // clear remainders of a torn write so that they cannot be mistaken for records later on
+        // (only non-zero bytes are written in order to not dirty the pages of the unused part)
+        for(int i=position; i<activeBuffer.limit(); i++) {
+            if(activeBuffer.get(i) != 0) {
+                activeBuffer.put(i, (byte) 0);
+            }
+        }
+        activeBuffer.position(Math.min(position, activeBuffer.limit()));
+    }
+
+    private void closeActiveSegment() throws IOException {
+        activeBuffer = null;
+        if(activeChannel != null) {
+            activeChannel.close();
+            activeChannel = null;
+        }
+    }
+
+    private void delete(File file) {
+        if(! file.delete()) {
+            logger.warn("Cannot delete segment {}", file);
+        }
+    }
+
+    /**
+     * Force records written since the previous flush to the storage device.
+     */
+    public synchronized void flush() {
+        if(dirty && activeBuffer != null) {
+            activeBuffer.force();
+            dirty = false;
+            flushCount++;
+        }
+    }
+
+    /**
+     * Close the log after a compaction running in the background has been completed.
+     */
+    public synchronized void close() {
+        awaitCompaction();
+        if(flushTimerTask != null) {
+            flushTimerTask.cancel();
+            flushTimerTask = null;
+        }
+        flush();
+        try {
+            closeActiveSegment();
+        }
+        catch(IOException e) {
+            logger.error("Error closing segment log", e);
+        }
+    }
+
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    public synchronized int getRecoveredRecordCount() {
+        return recoveredRecordCount;
+    }
+
+    public synchronized int getDiscardedRecordCount() {
+        return discardedRecordCount;
+    }
+}
@@ -24,6 +24,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.xml.bind.annotation.XmlTransient;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
 
 @XmlTransient
@@ -48,6 +51,18 @@ abstract public class AbstractEnergyRequest extends AbstractRequest {
         return updateTimeframeIntervalEnd;
     }
 
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        super.writeCheckpoint(now, out);
+        out.writeBoolean(updateTimeframeIntervalEnd);
+    }
+
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        super.readCheckpoint(now, in);
+        updateTimeframeIntervalEnd = in.readBoolean();
+    }
+
     @Override
     public void onEVChargerStateChanged(LocalDateTime now, EVChargerState previousState, EVChargerState newState,
                                         ElectricVehicle ev) {
@@ -23,9 +23,14 @@ import de.avanux.smartapplianceenabler.control.ev.EVChargerState;
 import de.avanux.smartapplianceenabler.control.ev.ElectricVehicle;
 import de.avanux.smartapplianceenabler.control.ev.SocValues;
 import de.avanux.smartapplianceenabler.meter.Meter;
+import de.avanux.smartapplianceenabler.persistence.Checkpointable;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import org.slf4j.Logger;
@@ -34,7 +39,7 @@ import org.slf4j.LoggerFactory;
 import javax.xml.bind.annotation.XmlTransient;
 
 @XmlTransient
-abstract public class AbstractRequest implements Request {
+abstract public class AbstractRequest implements Request, Checkpointable {
     private transient String applianceId;
     private transient Meter meter;
     private transient Control control;
@@ -216,6 +221,30 @@ abstract public class AbstractRequest implements Request {
     public void onEVChargerSocChanged(LocalDateTime now, SocValues socValues) {
     }
 
+    /**
+     * The runtime until now is saved as runtime until last status change: after restore the runtime continues
+     * when the control is switched on again.
+     */
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        out.writeBoolean(next);
+        out.writeBoolean(enabled);
+        out.writeBoolean(enabledBefore);
+        out.writeInt(runtimeUntilLastStatusChange
+                + (control != null && control.isOn() ? getSecondsSinceStatusChange(now) : 0));
+        RuntimeCheckpoint.writeNullableBoolean(out, acceptControlRecommendations);
+    }
+
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        next = in.readBoolean();
+        enabled = in.readBoolean();
+        enabledBefore = in.readBoolean();
+        runtimeUntilLastStatusChange = in.readInt();
+        controlStatusChangedAt = null;
+        acceptControlRecommendations = RuntimeCheckpoint.readNullableBoolean(in);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -18,6 +18,8 @@
 
 package de.avanux.smartapplianceenabler.schedule;
 
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
+import de.avanux.smartapplianceenabler.util.Clock;
 import java.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +28,9 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlType;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 @XmlType(propOrder = { "min", "max" })
@@ -79,9 +84,23 @@ public class EnergyRequest extends AbstractEnergyRequest implements Request {
         this.max = max;
     }
 
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        super.writeCheckpoint(now, out);
+        RuntimeCheckpoint.writeNullableInt(out, min);
+        RuntimeCheckpoint.writeNullableInt(out, max);
+    }
+
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        super.readCheckpoint(now, in);
+        min = RuntimeCheckpoint.readNullableInt(in);
+        max = RuntimeCheckpoint.readNullableInt(in);
+    }
+
     @Override
     public String toString() {
-        return toString(LocalDateTime.now());
+        return toString(Clock.now());
     }
 
     @Override
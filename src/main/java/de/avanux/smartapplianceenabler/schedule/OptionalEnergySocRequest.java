@@ -18,6 +18,7 @@
 
 package de.avanux.smartapplianceenabler.schedule;
 
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,7 +70,7 @@ public class OptionalEnergySocRequest extends SocRequest {
 
     @Override
     public String toString() {
-        return toString(LocalDateTime.now());
+        return toString(Clock.now());
     }
 
     @Override
@@ -21,6 +21,8 @@ package de.avanux.smartapplianceenabler.schedule;
 import de.avanux.smartapplianceenabler.control.Control;
 import de.avanux.smartapplianceenabler.control.StartingCurrentSwitch;
 import de.avanux.smartapplianceenabler.control.StartingCurrentSwitchListener;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -28,6 +30,9 @@ import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
 import javax.xml.bind.annotation.XmlType;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
 
 @XmlAccessorType(XmlAccessType.FIELD)
@@ -122,9 +127,23 @@ public class RuntimeRequest extends AbstractRequest implements StartingCurrentSw
         }
     }
 
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        super.writeCheckpoint(now, out);
+        RuntimeCheckpoint.writeNullableInt(out, min);
+        out.writeInt(max);
+    }
+
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        super.readCheckpoint(now, in);
+        min = RuntimeCheckpoint.readNullableInt(in);
+        max = in.readInt();
+    }
+
     @Override
     public String toString() {
-        return toString(LocalDateTime.now());
+        return toString(Clock.now());
     }
 
     @Override
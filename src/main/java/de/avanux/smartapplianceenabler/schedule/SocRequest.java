@@ -19,6 +19,8 @@
 package de.avanux.smartapplianceenabler.schedule;
 
 import de.avanux.smartapplianceenabler.control.ev.SocValues;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import java.time.LocalDateTime;
@@ -28,6 +30,9 @@ import org.slf4j.LoggerFactory;
 import javax.xml.bind.annotation.XmlAccessType;
 import javax.xml.bind.annotation.XmlAccessorType;
 import javax.xml.bind.annotation.XmlAttribute;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 @XmlAccessorType(XmlAccessType.FIELD)
 public class SocRequest extends AbstractEnergyRequest implements Request {
@@ -157,6 +162,29 @@ public class SocRequest extends AbstractEnergyRequest implements Request {
         update();
     }
 
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        super.writeCheckpoint(now, out);
+        RuntimeCheckpoint.writeNullableInt(out, soc);
+        RuntimeCheckpoint.writeNullableInt(out, evId);
+        RuntimeCheckpoint.writeNullableInt(out, energy);
+        out.writeBoolean(socValues != null);
+        if(socValues != null) {
+            socValues.writeCheckpoint(out);
+        }
+        out.writeBoolean(forceEnergyCalculation);
+    }
+
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        super.readCheckpoint(now, in);
+        soc = RuntimeCheckpoint.readNullableInt(in);
+        evId = RuntimeCheckpoint.readNullableInt(in);
+        energy = RuntimeCheckpoint.readNullableInt(in);
+        socValues = in.readBoolean() ? SocValues.readCheckpoint(in) : null;
+        forceEnergyCalculation = in.readBoolean();
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -185,7 +213,7 @@ public class SocRequest extends AbstractEnergyRequest implements Request {
 
     @Override
     public String toString() {
-        return toString(LocalDateTime.now());
+        return toString(Clock.now());
     }
 
     @Override
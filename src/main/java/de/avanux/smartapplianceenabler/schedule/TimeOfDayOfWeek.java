@@ -17,6 +17,7 @@
  */
 package de.avanux.smartapplianceenabler.schedule;
 
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import java.time.LocalDateTime;
@@ -47,11 +48,11 @@ public class TimeOfDayOfWeek extends TimeOfDay {
     }
 
     public LocalDateTime toLocalDateTime() {
-        return toNextOccurrence(LocalDateTime.now());
+        return toNextOccurrence(Clock.now());
     }
 
     public LocalDateTime toNextOccurrence() {
-        return toNextOccurrence(LocalDateTime.now());
+        return toNextOccurrence(Clock.now());
     }
 
     public LocalDateTime toNextOccurrence(LocalDateTime now) {
@@ -19,6 +19,7 @@ package de.avanux.smartapplianceenabler.schedule;
 
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
 import de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 
@@ -27,6 +28,8 @@ import java.time.LocalDateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Vector;
 
 /**
@@ -78,6 +81,10 @@ public class TimeframeInterval implements ApplianceIdConsumer, TimeframeInterval
         this.stateHistory.add(state);
     }
 
+    public List<TimeframeIntervalState> getStateHistory() {
+        return new ArrayList<>(stateHistory);
+    }
+
     @Override
     public TimeframeIntervalState getState() {
         return stateHistory.lastElement();
@@ -204,7 +211,7 @@ public class TimeframeInterval implements ApplianceIdConsumer, TimeframeInterval
 
     @Override
     public String toString() {
-        return toString(LocalDateTime.now());
+        return toString(Clock.now());
     }
 
     public String toString(LocalDateTime now) {
@@ -19,6 +19,7 @@
 package de.avanux.smartapplianceenabler.schedule;
 
 import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.appliance.ApplianceMailbox;
 import de.avanux.smartapplianceenabler.appliance.TimeframeIntervalChangedListener;
 import de.avanux.smartapplianceenabler.control.Control;
 import de.avanux.smartapplianceenabler.control.ControlStateChangedListener;
@@ -27,27 +28,41 @@ import de.avanux.smartapplianceenabler.control.ev.EVChargerState;
 import de.avanux.smartapplianceenabler.control.ev.ElectricVehicle;
 import de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger;
 import de.avanux.smartapplianceenabler.control.ev.SocValues;
+import de.avanux.smartapplianceenabler.persistence.Checkpointable;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
+import de.avanux.smartapplianceenabler.util.Clock;
 import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
 import de.avanux.smartapplianceenabler.util.Holder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CopyOnWriteArraySet;
 
-public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlStateChangedListener {
+public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlStateChangedListener, Checkpointable {
 
     private Logger logger = LoggerFactory.getLogger(TimeframeIntervalHandler.class);
     public static final int CONSIDERATION_INTERVAL_DAYS = 2;
     public static final int FILL_QUEUE_INTERVAL_SECONDS = 3600;
     public static final int UPDATE_QUEUE_INTERVAL_SECONDS = 30;
+    private static final byte CHECKPOINT_RUNTIME_REQUEST = 1;
+    private static final byte CHECKPOINT_ENERGY_REQUEST = 2;
+    private static final byte CHECKPOINT_SOC_REQUEST = 3;
+    private static final byte CHECKPOINT_OPTIONAL_ENERGY_SOC_REQUEST = 4;
     private String applianceId;
     private List<Schedule> schedules;
     private GuardedTimerTask fillQueueTimerTask;
     private GuardedTimerTask updateQueueTimerTask;
-    private LinkedList<TimeframeInterval> queue = new LinkedList<>();
-    private Set<TimeframeIntervalChangedListener> timeframeIntervalChangedListeners = new HashSet<>();
+    // changed in the mailbox of the appliance only; copy-on-write allows reading without waiting for the mailbox
+    private List<TimeframeInterval> queue = new CopyOnWriteArrayList<>();
+    private Set<TimeframeIntervalChangedListener> timeframeIntervalChangedListeners = new CopyOnWriteArraySet<>();
     private Control control;
+    private ApplianceMailbox mailbox;
 
     public TimeframeIntervalHandler(List<Schedule> schedules, Control control) {
         this.schedules = schedules;
@@ -74,13 +89,21 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
         this.timeframeIntervalChangedListeners.remove(listener);
     }
 
+    /**
+     * Set the mailbox of the appliance which executes the timer tasks changing the queue.
+     * @param mailbox
+     */
+    public void setMailbox(ApplianceMailbox mailbox) {
+        this.mailbox = mailbox;
+    }
+
     public void setTimer(Timer timer) {
         if(control != null) {
             this.fillQueueTimerTask = new GuardedTimerTask(this.applianceId, "FillQueueTimerTask",
-                    FILL_QUEUE_INTERVAL_SECONDS * 1000) {
+                    FILL_QUEUE_INTERVAL_SECONDS * 1000, mailbox) {
                 @Override
                 public void runTask() {
-                    fillQueue(LocalDateTime.now());
+                    fillQueue(Clock.now());
                 }
             };
             if (timer != null) {
@@ -88,10 +111,10 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
             }
 
             this.updateQueueTimerTask = new GuardedTimerTask(this.applianceId,
-                    "UpdateActiveTimeframeInterval", UPDATE_QUEUE_INTERVAL_SECONDS * 1000) {
+                    "UpdateActiveTimeframeInterval", UPDATE_QUEUE_INTERVAL_SECONDS * 1000, mailbox) {
                 @Override
                 public void runTask() {
-                    updateQueue(LocalDateTime.now(), false);
+                    updateQueue(Clock.now(), false);
                 }
             };
             if (timer != null) {
@@ -122,7 +145,7 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
     public void fillQueue(LocalDateTime now) {
         logger.debug("{}: Starting to fill queue", applianceId);
         Interval considerationInterval = new Interval(now, now.plusDays(CONSIDERATION_INTERVAL_DAYS));
-        TimeframeInterval lastTimeframeInterval = queue.peekLast();
+        TimeframeInterval lastTimeframeInterval = queue.isEmpty() ? null : queue.get(queue.size() - 1);
         List<TimeframeInterval> timeframeIntervals = findTimeframeIntervals(now, considerationInterval);
         timeframeIntervals.stream()
                 .filter(timeframeInterval -> (lastTimeframeInterval == null
@@ -273,9 +296,7 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
     public void addTimeframeInterval(LocalDateTime now, TimeframeInterval timeframeInterval, boolean asFirst, boolean updateQueue) {
         logger.debug("{}: Adding timeframeInterval to queue: {}", applianceId, timeframeInterval.toString(now));
 
-        addTimeframeIntervalChangedListener(timeframeInterval.getRequest());
-        timeframeIntervalChangedListeners.forEach(
-                listener -> listener.timeframeIntervalCreated(now, timeframeInterval));
+        registerTimeframeInterval(now, timeframeInterval);
 
         if (asFirst) {
             TimeframeInterval activeTimeframeInterval = getActiveTimeframeInterval();
@@ -290,7 +311,7 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
                     activeTimeframeInterval.setInterval(firstIntervalAdjusted);
                 }
             }
-            queue.addFirst(timeframeInterval);
+            queue.add(0, timeframeInterval);
         } else {
             queue.add(timeframeInterval);
         }
@@ -300,6 +321,12 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
         }
     }
 
+    private void registerTimeframeInterval(LocalDateTime now, TimeframeInterval timeframeInterval) {
+        addTimeframeIntervalChangedListener(timeframeInterval.getRequest());
+        timeframeIntervalChangedListeners.forEach(
+                listener -> listener.timeframeIntervalCreated(now, timeframeInterval));
+    }
+
     private void activateTimeframeInterval(LocalDateTime now, TimeframeInterval timeframeInterval) {
         logger.debug("{}: Activate timeframe interval: {}", applianceId, timeframeInterval.toString(now));
         timeframeInterval.stateTransitionTo(now, TimeframeIntervalState.ACTIVE);
@@ -338,10 +365,7 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
                     .filter(timeframeInterval -> Arrays.stream(states).anyMatch(state -> state == timeframeInterval.getState()))
                     .findFirst().orElse(null);
         }
-        if(queue.size() > 0) {
-            return queue.get(0);
-        }
-        return null;
+        return queue.stream().findFirst().orElse(null);
     }
 
     /**
@@ -542,7 +566,7 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
     }
 
     public Integer suggestRuntime() {
-        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime now = Clock.now();
         if(queue.size() > 0) {
             TimeframeInterval timeframeInterval = queue.get(0);
             return timeframeInterval.getRequest().getMax(now);
@@ -579,6 +603,109 @@ public class TimeframeIntervalHandler implements ApplianceIdConsumer, ControlSta
         }
     }
 
+    /**
+     * Saves the queue including state history and request state of each timeframe interval.
+     */
+    @Override
+    public void writeCheckpoint(LocalDateTime now, DataOutput out) throws IOException {
+        List<TimeframeInterval> timeframeIntervals = new ArrayList<>();
+        for(TimeframeInterval timeframeInterval : queue) {
+            if(getCheckpointRequestType(timeframeInterval.getRequest()) > 0) {
+                timeframeIntervals.add(timeframeInterval);
+            }
+            else {
+                logger.warn("{}: Request not supported by checkpoint: {}", applianceId,
+                        timeframeInterval.getRequest().getClass().getSimpleName());
+            }
+        }
+        out.writeInt(timeframeIntervals.size());
+        for(TimeframeInterval timeframeInterval : timeframeIntervals) {
+            Request request = timeframeInterval.getRequest();
+            out.writeByte(getCheckpointRequestType(request));
+            RuntimeCheckpoint.writeNullableLocalDateTime(out, timeframeInterval.getInterval().getStart());
+            RuntimeCheckpoint.writeNullableLocalDateTime(out, timeframeInterval.getInterval().getEnd());
+            List<TimeframeIntervalState> stateHistory = timeframeInterval.getStateHistory();
+            out.writeShort(stateHistory.size());
+            for(TimeframeIntervalState state : stateHistory) {
+                out.writeByte(state.ordinal());
+            }
+            ((AbstractRequest) request).writeCheckpoint(now, out);
+        }
+    }
+
+    /**
+     * Replaces the queue with the timeframe intervals of the checkpoint. The queue is completely read before
+     * it is replaced, i.e. the queue remains unchanged if the checkpoint is invalid.
+     */
+    @Override
+    public void readCheckpoint(LocalDateTime now, DataInput in) throws IOException {
+        List<TimeframeInterval> timeframeIntervals = new ArrayList<>();
+        int size = in.readInt();
+        TimeframeIntervalState[] states = TimeframeIntervalState.values();
+        for(int i=0; i<size; i++) {
+            AbstractRequest request = createCheckpointRequest(in.readByte());
+            LocalDateTime start = RuntimeCheckpoint.readNullableLocalDateTime(in);
+            LocalDateTime end = RuntimeCheckpoint.readNullableLocalDateTime(in);
+            int stateCount = in.readShort();
+            List<TimeframeIntervalState> stateHistory = new ArrayList<>();
+            for(int j=0; j<stateCount; j++) {
+                int ordinal = in.readByte();
+                if(ordinal < 0 || ordinal >= states.length) {
+                    throw new IOException("Invalid timeframe interval state " + ordinal);
+                }
+                stateHistory.add(states[ordinal]);
+            }
+            if(start == null || end == null || stateHistory.isEmpty()) {
+                throw new IOException("Incomplete timeframe interval");
+            }
+            request.readCheckpoint(now, in);
+            TimeframeInterval timeframeInterval = new TimeframeInterval(stateHistory.get(0), new Interval(start, end),
+                    request);
+            stateHistory.subList(1, stateHistory.size())
+                    .forEach(state -> timeframeInterval.stateTransitionTo(now, state));
+            timeframeIntervals.add(timeframeInterval);
+        }
+
+        clearQueue();
+        for(TimeframeInterval timeframeInterval : timeframeIntervals) {
+            registerTimeframeInterval(now, timeframeInterval);
+            queue.add(timeframeInterval);
+        }
+        logger.debug("{}: Restored queue{}", applianceId, queue.size() > 0 ? ":" : " is empty");
+        logQueue(now);
+    }
+
+    private byte getCheckpointRequestType(Request request) {
+        if(request instanceof OptionalEnergySocRequest) {
+            return CHECKPOINT_OPTIONAL_ENERGY_SOC_REQUEST;
+        }
+        if(request instanceof SocRequest) {
+            return CHECKPOINT_SOC_REQUEST;
+        }
+        if(request instanceof EnergyRequest) {
+            return CHECKPOINT_ENERGY_REQUEST;
+        }
+        if(request instanceof RuntimeRequest) {
+            return CHECKPOINT_RUNTIME_REQUEST;
+        }
+        return 0;
+    }
+
+    private AbstractRequest createCheckpointRequest(byte requestType) throws IOException {
+        switch(requestType) {
+            case CHECKPOINT_RUNTIME_REQUEST:
+                return new RuntimeRequest();
+            case CHECKPOINT_ENERGY_REQUEST:
+                return new EnergyRequest();
+            case CHECKPOINT_SOC_REQUEST:
+                return new SocRequest();
+            case CHECKPOINT_OPTIONAL_ENERGY_SOC_REQUEST:
+                return new OptionalEnergySocRequest(null);
+            default:
+                throw new IOException("Unknown request type " + requestType);
+        }
+    }
+
     @Override
     public String toString() {
         return "";
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.semp.discovery;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Captures startup time, thread count and resident set size around the start of a discovery implementation
+ * so that the implementations can be compared on the target hardware.
+ */
+class DiscoveryStartupMetrics {
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private long startNanos;
+    private int threadsBefore;
+    private long rssKbBefore;
+
+    DiscoveryStartupMetrics() {
+        this.startNanos = System.nanoTime();
+        this.threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+        this.rssKbBefore = getRssKb();
+    }
+
+    void log(Logger logger, String implementation) {
+        long millis = (System.nanoTime() - startNanos) / 1000000;
+        int threads = ManagementFactory.getThreadMXBean().getThreadCount();
+        long rssKb = getRssKb();
+        logger.info("SEMP discovery ({}) started in {}ms: threads {} -> {} RSS {}kB -> {}kB",
+                implementation, millis, threadsBefore, threads, rssKbBefore, rssKb);
+    }
+
+    /**
+     * Returns the resident set size of the process in kB or -1 if it cannot be determined (non-Linux systems).
+     * @return
+     */
+    static long getRssKb() {
+        try {
+            List<String> lines = Files.readAllLines(PROC_STATUS);
+            for(String line: lines) {
+                if(line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        }
+        catch(IOException | NumberFormatException e) {
+            // not available
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.semp.discovery;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the UPnP device description announced by {@link SsdpResponder}.
+ */
+@RestController
+public class SempDeviceDescriptionController {
+
+    private Logger logger = LoggerFactory.getLogger(SempDeviceDescriptionController.class);
+
+    @RequestMapping(value = SsdpResponder.DESCRIPTION_PATH, method = RequestMethod.GET, produces = "text/xml")
+    public String description(HttpServletResponse response) {
+        try {
+            SsdpResponder ssdpResponder = SsdpResponder.getInstance();
+            if(ssdpResponder != null) {
+                return ssdpResponder.getDescription();
+            }
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+        }
+        catch (Throwable e) {
+            logger.error("Error in " + getClass().getSimpleName(), e);
+            response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        }
+        return null;
+    }
+}
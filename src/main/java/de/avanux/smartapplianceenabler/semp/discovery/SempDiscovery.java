@@ -37,8 +37,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.net.SocketException;
 import java.net.URI;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -51,7 +55,7 @@ public class SempDiscovery implements Runnable {
 
     public SempDiscovery() {
         serviceConfiguration = createServiceConfiguration();
-        String listenAddress = resolveListenAddress();
+        String listenAddress = resolveListenAddress(serviceConfiguration);
         String listenPort = resolveListenPort();
         System.setProperty("org.fourthline.cling.network.useAddresses", listenAddress);
         sempServerUrl = "http://" + listenAddress + ":" + listenPort;
@@ -59,6 +63,7 @@ public class SempDiscovery implements Runnable {
     }
 
     public void run() {
+        DiscoveryStartupMetrics metrics = new DiscoveryStartupMetrics();
         try {
             final ExecutorService executorService = Executors.newSingleThreadExecutor();
             final UpnpService upnpService = new UpnpServiceImpl(serviceConfiguration);
@@ -76,6 +81,7 @@ public class SempDiscovery implements Runnable {
 
             // Add the bound local device to the registry
             upnpService.getRegistry().addDevice(createDevice());
+            metrics.log(logger, "cling");
         }
         catch (Throwable e) {
             logger.error("Error running SEMP discovery", e);
@@ -134,7 +140,13 @@ public class SempDiscovery implements Runnable {
         return new LocalDevice(identity, type, details, (Icon) null, (LocalService) null);
     }
 
-    private String resolveListenAddress() {
+    /**
+     * Resolves the address announced for SEMP.
+     * @param serviceConfiguration the Cling configuration used to determine the bind address; if null the address
+     *                             of the first network interface being up is used
+     * @return
+     */
+    static String resolveListenAddress(UpnpServiceConfiguration serviceConfiguration) {
         String sempGatewayAddress = System.getProperty("semp.gateway.address");
         if(sempGatewayAddress != null) {
             return sempGatewayAddress;
@@ -143,15 +155,33 @@ public class SempDiscovery implements Runnable {
         if(serverAddress != null) {
             return serverAddress;
         }
-        NetworkAddressFactory networkAddressFactory = this.serviceConfiguration.createNetworkAddressFactory();
-        Iterator<InetAddress> bindAddresses = networkAddressFactory.getBindAddresses();
-        while(bindAddresses.hasNext()) {
-            return bindAddresses.next().toString().substring(1); // strip leading /
+        if(serviceConfiguration != null) {
+            NetworkAddressFactory networkAddressFactory = serviceConfiguration.createNetworkAddressFactory();
+            Iterator<InetAddress> bindAddresses = networkAddressFactory.getBindAddresses();
+            while(bindAddresses.hasNext()) {
+                return bindAddresses.next().toString().substring(1); // strip leading /
+            }
+        }
+        else {
+            try {
+                for(NetworkInterface networkInterface: Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                    if(networkInterface.isUp() && !networkInterface.isLoopback() && !networkInterface.isVirtual()) {
+                        for(InetAddress address: Collections.list(networkInterface.getInetAddresses())) {
+                            if(address instanceof Inet4Address) {
+                                return address.getHostAddress();
+                            }
+                        }
+                    }
+                }
+            }
+            catch(SocketException e) {
+                LoggerFactory.getLogger(SempDiscovery.class).error("Error resolving network interfaces", e);
+            }
         }
         return "127.0.0.1";
     }
 
-    private String resolveListenPort() {
+    static String resolveListenPort() {
         return System.getProperty("server.port", "8080"); // Spring Boot Property for embedded Tomcat
     }
 }
@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.semp.discovery;
+
+import de.avanux.smartapplianceenabler.SmartApplianceEnabler;
+import org.fourthline.cling.model.types.UDN;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Minimal SSDP implementation announcing the SEMP gateway device without the Cling UPnP stack:
+ * a single non-blocking multicast channel answers M-SEARCH requests and sends NOTIFY messages.
+ * The device description is served by {@link SempDeviceDescriptionController}.
+ * <p>
+ * Only failures while joining the multicast group on startup terminate the application. Errors afterwards are
+ * logged and the channel is re-opened. On shutdown ssdp:byebye is sent before the application exits.
+ * <p>
+ * The UDN is the same as the one generated by Cling so that the energy manager recognizes the gateway
+ * regardless of the discovery implementation being used.
+ */
+public class SsdpResponder implements Runnable {
+
+    public static final String DESCRIPTION_PATH = "/upnp/description.xml";
+    private static final String MULTICAST_ADDRESS = "239.255.255.250";
+    private static final int MULTICAST_PORT = 1900;
+    private static final int MAX_AGE_SECONDS = 1800;
+    private static final int NOTIFY_INTERVAL_SECONDS = MAX_AGE_SECONDS / 3;
+    private static final int MAX_MX_SECONDS = 5;
+    private static final String ROOT_DEVICE = "upnp:rootdevice";
+    private static final String SSDP_ALL = "ssdp:all";
+    private static final String CRLF = "\r\n";
+    private static final int REOPEN_DELAY_SECONDS = 10;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 2000;
+    private static volatile SsdpResponder instance;
+    private Logger logger = LoggerFactory.getLogger(SsdpResponder.class);
+    private String listenAddress;
+    private String location;
+    private String udn;
+    private String deviceType;
+    private String server;
+    private String description;
+    private final InetSocketAddress group = new InetSocketAddress(MULTICAST_ADDRESS, MULTICAST_PORT);
+    private Queue<PendingResponse> pendingResponses = new PriorityQueue<>();
+    private volatile DatagramChannel channel;
+    private volatile Selector selector;
+    private final Object shutdownMonitor = new Object();
+    private volatile boolean running;
+
+    public SsdpResponder() {
+        this(SempDiscovery.resolveListenAddress(null), SempDiscovery.resolveListenPort(),
+                UDN.uniqueSystemIdentifier(SmartApplianceEnabler.class.getSimpleName()).toString());
+        instance = this;
+    }
+
+    SsdpResponder(String listenAddress, String listenPort, String udn) {
+        this.listenAddress = listenAddress;
+        this.udn = udn;
+        this.deviceType = new SmartApplianceEnablerDeviceType().toString();
+        String sempServerUrl = "http://" + listenAddress + ":" + listenPort;
+        this.location = sempServerUrl + DESCRIPTION_PATH;
+        this.server = System.getProperty("os.name") + "/" + System.getProperty("os.version")
+                + " UPnP/1.0 " + SmartApplianceEnabler.class.getSimpleName() + "/" + SmartApplianceEnabler.VERSION;
+        this.description = createDescription(sempServerUrl);
+        logger.info("SEMP UPnP will redirect to " + sempServerUrl);
+    }
+
+    /**
+     * Returns the running instance or null if SSDP discovery has not been selected.
+     * @return
+     */
+    public static SsdpResponder getInstance() {
+        return instance;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void run() {
+        DiscoveryStartupMetrics metrics = new DiscoveryStartupMetrics();
+        try {
+            open();
+        }
+        catch (Throwable e) {
+            logger.error("Error starting SEMP discovery", e);
+            System.exit(1);
+        }
+        this.running = true;
+        Thread loopThread = Thread.currentThread();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> shutdown(loopThread)));
+        metrics.log(logger, "ssdp");
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(2048);
+        long nextNotifyMillis = 0;
+        while(running) {
+            try {
+                if(this.channel == null) {
+                    open();
+                    logger.info("SEMP discovery channel re-opened");
+                    nextNotifyMillis = 0;
+                }
+                long nowMillis = System.currentTimeMillis();
+                if(nowMillis >= nextNotifyMillis) {
+                    send(this.channel, group, createNotifyMessages(true));
+                    nextNotifyMillis = nowMillis + NOTIFY_INTERVAL_SECONDS * 1000L;
+                }
+                sendPendingResponses(this.channel, nowMillis);
+
+                long timeoutMillis = nextNotifyMillis - nowMillis;
+                PendingResponse nextResponse = pendingResponses.peek();
+                if(nextResponse != null) {
+                    timeoutMillis = Math.min(timeoutMillis, nextResponse.dueMillis - nowMillis);
+                }
+                this.selector.select(Math.max(timeoutMillis, 1));
+                this.selector.selectedKeys().clear();
+
+                SocketAddress sender;
+                while((sender = receive(this.channel, buffer)) != null) {
+                    handleMessage(sender, buffer);
+                }
+            }
+            catch (Exception e) {
+                logger.error("Error running SEMP discovery - re-opening channel in {}s", REOPEN_DELAY_SECONDS, e);
+                close();
+                waitForReopen();
+            }
+        }
+        if(this.channel != null) {
+            try {
+                send(this.channel, group, createNotifyMessages(false));
+            }
+            catch (IOException e) {
+                logger.warn("Error sending ssdp:byebye", e);
+            }
+        }
+        close();
+    }
+
+    /**
+     * Opens the channel, binds it to the SSDP port and joins the multicast group.
+     * @throws IOException
+     */
+    private void open() throws IOException {
+        DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        Selector selector = null;
+        try {
+            selector = Selector.open();
+            NetworkInterface networkInterface = NetworkInterface.getByInetAddress(InetAddress.getByName(listenAddress));
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(MULTICAST_PORT));
+            if(networkInterface != null) {
+                channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+                channel.join(group.getAddress(), networkInterface);
+            }
+            else {
+                logger.warn("No network interface found for " + listenAddress + " - joining SSDP group on all interfaces");
+                for(NetworkInterface ni: Collections.list(NetworkInterface.getNetworkInterfaces())) {
+                    if(ni.isUp() && ni.supportsMulticast() && !ni.isLoopback()) {
+                        channel.join(group.getAddress(), ni);
+                    }
+                }
+            }
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+        }
+        catch (IOException | RuntimeException e) {
+            channel.close();
+            if(selector != null) {
+                selector.close();
+            }
+            throw e;
+        }
+        this.channel = channel;
+        this.selector = selector;
+    }
+
+    private void close() {
+        try {
+            if(this.selector != null) {
+                this.selector.close();
+            }
+            if(this.channel != null) {
+                this.channel.close();
+            }
+        }
+        catch (IOException e) {
+            logger.warn("Error closing SEMP discovery channel", e);
+        }
+        this.selector = null;
+        this.channel = null;
+    }
+
+    private void waitForReopen() {
+        synchronized (this.shutdownMonitor) {
+            if(running) {
+                try {
+                    this.shutdownMonitor.wait(REOPEN_DELAY_SECONDS * 1000L);
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the loop and waits for ssdp:byebye being sent. Called by the shutdown hook.
+     * @param loopThread
+     */
+    private void shutdown(Thread loopThread) {
+        synchronized (this.shutdownMonitor) {
+            running = false;
+            this.shutdownMonitor.notifyAll();
+        }
+        Selector selector = this.selector;
+        if(selector != null) {
+            selector.wakeup();
+        }
+        try {
+            loopThread.join(SHUTDOWN_TIMEOUT_MILLIS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if(loopThread.isAlive()) {
+            logger.warn("SEMP discovery did not stop within {}ms", SHUTDOWN_TIMEOUT_MILLIS);
+        }
+    }
+
+    private SocketAddress receive(DatagramChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        SocketAddress sender = channel.receive(buffer);
+        buffer.flip();
+        return sender;
+    }
+
+    private void handleMessage(SocketAddress sender, ByteBuffer buffer) {
+        String message = StandardCharsets.UTF_8.decode(buffer).toString();
+        if(! message.startsWith("M-SEARCH")) {
+            return;
+        }
+        Map<String, String> headers = parseHeaders(message);
+        if(! "\"ssdp:discover\"".equals(headers.get("MAN"))) {
+            return;
+        }
+        List<String> searchTargets = getMatchingSearchTargets(headers.get("ST"));
+        if(searchTargets.isEmpty()) {
+            return;
+        }
+        logger.debug("M-SEARCH from {} for {}", sender, headers.get("ST"));
+        long dueMillis = System.currentTimeMillis() + getResponseDelayMillis(headers.get("MX"));
+        for(String searchTarget: searchTargets) {
+            pendingResponses.add(new PendingResponse(dueMillis, sender, searchTarget));
+        }
+    }
+
+    /**
+     * Responses are delayed by a random time up to MX seconds in order to spread the load of control points.
+     */
+    private long getResponseDelayMillis(String mx) {
+        int mxSeconds = 1;
+        if(mx != null) {
+            try {
+                mxSeconds = Math.max(Math.min(Integer.parseInt(mx.trim()), MAX_MX_SECONDS), 0);
+            }
+            catch(NumberFormatException e) {
+                // keep default
+            }
+        }
+        return mxSeconds > 0 ? ThreadLocalRandom.current().nextLong(mxSeconds * 1000L) : 0;
+    }
+
+    private void sendPendingResponses(DatagramChannel channel, long nowMillis) throws IOException {
+        PendingResponse response;
+        while((response = pendingResponses.peek()) != null && response.dueMillis <= nowMillis) {
+            pendingResponses.poll();
+            send(channel, response.recipient, Collections.singletonList(createSearchResponse(response.searchTarget)));
+        }
+    }
+
+    private void send(DatagramChannel channel, SocketAddress recipient, List<String> messages) throws IOException {
+        for(String message: messages) {
+            channel.send(StandardCharsets.UTF_8.encode(message), recipient);
+        }
+    }
+
+    static Map<String, String> parseHeaders(String message) {
+        Map<String, String> headers = new HashMap<>();
+        String[] lines = message.split("\r?\n");
+        for(int i=1; i<lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if(colon > 0) {
+                headers.put(lines[i].substring(0, colon).trim().toUpperCase(), lines[i].substring(colon + 1).trim());
+            }
+        }
+        return headers;
+    }
+
+    /**
+     * Returns the search targets to be answered for the search target requested.
+     * @param searchTarget the ST header of the M-SEARCH request
+     * @return
+     */
+    List<String> getMatchingSearchTargets(String searchTarget) {
+        if(SSDP_ALL.equals(searchTarget)) {
+            return Arrays.asList(ROOT_DEVICE, udn, deviceType);
+        }
+        if(ROOT_DEVICE.equals(searchTarget) || udn.equals(searchTarget) || deviceType.equals(searchTarget)) {
+            return Collections.singletonList(searchTarget);
+        }
+        return Collections.emptyList();
+    }
+
+    String createSearchResponse(String searchTarget) {
+        return "HTTP/1.1 200 OK" + CRLF
+                + "CACHE-CONTROL: max-age=" + MAX_AGE_SECONDS + CRLF
+                + "DATE: " + DateTimeFormatter.RFC_1123_DATE_TIME.format(ZonedDateTime.now(ZoneOffset.UTC)) + CRLF
+                + "EXT:" + CRLF
+                + "LOCATION: " + location + CRLF
+                + "SERVER: " + server + CRLF
+                + "ST: " + searchTarget + CRLF
+                + "USN: " + getUsn(searchTarget) + CRLF
+                + CRLF;
+    }
+
+    List<String> createNotifyMessages(boolean alive) {
+        List<String> messages = new ArrayList<>();
+        for(String notificationType: Arrays.asList(ROOT_DEVICE, udn, deviceType)) {
+            StringBuilder message = new StringBuilder("NOTIFY * HTTP/1.1").append(CRLF)
+                    .append("HOST: ").append(MULTICAST_ADDRESS).append(':').append(MULTICAST_PORT).append(CRLF);
+            if(alive) {
+                message.append("CACHE-CONTROL: max-age=").append(MAX_AGE_SECONDS).append(CRLF)
+                        .append("LOCATION: ").append(location).append(CRLF)
+                        .append("SERVER: ").append(server).append(CRLF);
+            }
+            message.append("NT: ").append(notificationType).append(CRLF)
+                    .append("NTS: ").append(alive ? "ssdp:alive" : "ssdp:byebye").append(CRLF)
+                    .append("USN: ").append(getUsn(notificationType)).append(CRLF)
+                    .append(CRLF);
+            messages.add(message.toString());
+        }
+        return messages;
+    }
+
+    private String getUsn(String target) {
+        return udn.equals(target) ? udn : udn + "::" + target;
+    }
+
+    private String createDescription(String sempServerUrl) {
+        String sempService = "urn:" + Semp.NAMESPACE + ":service-1-0";
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<root xmlns=\"urn:schemas-upnp-org:device-1-0\">"
+                + "<specVersion><major>1</major><minor>0</minor></specVersion>"
+                + "<device>"
+                + "<deviceType>" + deviceType + "</deviceType>"
+                + "<friendlyName>" + SmartApplianceEnabler.class.getSimpleName() + "</friendlyName>"
+                + "<manufacturer>" + SmartApplianceEnabler.MANUFACTURER_NAME + "</manufacturer>"
+                + "<manufacturerURL>" + SmartApplianceEnabler.MANUFACTURER_URI + "</manufacturerURL>"
+                + "<modelDescription>" + SmartApplianceEnabler.DESCRIPTION + "</modelDescription>"
+                + "<modelName>" + SmartApplianceEnabler.class.getSimpleName() + "</modelName>"
+                + "<modelNumber>" + SmartApplianceEnabler.VERSION + "</modelNumber>"
+                + "<modelURL>" + SmartApplianceEnabler.MODEL_URI + "</modelURL>"
+                + "<UDN>" + udn + "</UDN>"
+                + "<" + Semp.prefixed(Semp.ELEMENT.X_SEMPSERVICE) + " xmlns:" + Semp.PREFIX + "=\"" + sempService + "\">"
+                + element(Semp.ELEMENT.server, sempServerUrl)
+                + element(Semp.ELEMENT.basePath, "/semp")
+                + element(Semp.ELEMENT.transport, "HTTP/Pull")
+                + element(Semp.ELEMENT.exchangeFormat, "XML")
+                + element(Semp.ELEMENT.wsVersion, Semp.XSD_VERSION)
+                + "</" + Semp.prefixed(Semp.ELEMENT.X_SEMPSERVICE) + ">"
+                + "</device>"
+                + "</root>";
+    }
+
+    private String element(Semp.ELEMENT element, String value) {
+        return "<" + Semp.prefixed(element) + ">" + value + "</" + Semp.prefixed(element) + ">";
+    }
+
+    private static class PendingResponse implements Comparable<PendingResponse> {
+        private long dueMillis;
+        private SocketAddress recipient;
+        private String searchTarget;
+
+        PendingResponse(long dueMillis, SocketAddress recipient, String searchTarget) {
+            this.dueMillis = dueMillis;
+            this.recipient = recipient;
+            this.searchTarget = searchTarget;
+        }
+
+        @Override
+        public int compareTo(PendingResponse other) {
+            return Long.compare(dueMillis, other.dueMillis);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.semp.webservice;
+
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queue of control requests received from the energy manager.
+ * Requests are accepted without waiting for the device: only the latest pending request of a device is kept
+ * and applied in the mailbox of the appliance. Requests replaced by a newer one before being applied are dropped.
+ * The latency between receiving a request and having it applied is tracked per device.
+ */
+public class DeviceControlQueue {
+    private static DeviceControlQueue instance;
+    private transient Logger logger = LoggerFactory.getLogger(DeviceControlQueue.class);
+    private final DeviceControlHandler handler;
+    private final Map<String, PendingDeviceControl> pendingDeviceControls = new ConcurrentHashMap<>();
+    private final Map<String, Metrics> metricsByDeviceId = new ConcurrentHashMap<>();
+
+    public interface DeviceControlHandler {
+        void apply(LocalDateTime now, Appliance appliance, DeviceControl deviceControl);
+    }
+
+    private static class PendingDeviceControl {
+        private final DeviceControl deviceControl;
+        private final LocalDateTime receivedAt;
+        private final long receivedNanos;
+
+        PendingDeviceControl(DeviceControl deviceControl, LocalDateTime receivedAt) {
+            this.deviceControl = deviceControl;
+            this.receivedAt = receivedAt;
+            this.receivedNanos = System.nanoTime();
+        }
+    }
+
+    public DeviceControlQueue(DeviceControlHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Returns the queue used by the SEMP interface.
+     * @return the queue or null, if the SEMP interface has not been created yet
+     */
+    public static DeviceControlQueue getInstance() {
+        return instance;
+    }
+
+    public static void setInstance(DeviceControlQueue instance) {
+        DeviceControlQueue.instance = instance;
+    }
+
+    /**
+     * Queue a control request for an appliance replacing a request still pending for it.
+     * @param now
+     * @param appliance
+     * @param deviceControl
+     */
+    public void submit(LocalDateTime now, Appliance appliance, DeviceControl deviceControl) {
+        String deviceId = appliance.getId();
+        PendingDeviceControl replaced = pendingDeviceControls.put(deviceId, new PendingDeviceControl(deviceControl, now));
+        if(replaced != null) {
+            getMetrics(deviceId).collapsed();
+            logger.debug("{}: Replacing pending control request: {}", deviceId, replaced.deviceControl);
+        }
+        else {
+            appliance.getMailbox().execute(() -> apply(appliance));
+        }
+    }
+
+    private void apply(Appliance appliance) {
+        String deviceId = appliance.getId();
+        PendingDeviceControl pending = pendingDeviceControls.remove(deviceId);
+        if(pending != null) {
+            try {
+                handler.apply(pending.receivedAt, appliance, pending.deviceControl);
+            }
+            catch(Throwable e) {
+                logger.error("{}: Error applying control request", deviceId, e);
+            }
+            long latencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pending.receivedNanos);
+            getMetrics(deviceId).applied(latencyMillis);
+            logger.debug("{}: Control request applied: latency={}ms", deviceId, latencyMillis);
+        }
+    }
+
+    /**
+     * Returns true, if a control request is waiting to be applied to the device.
+     * @param deviceId
+     * @return
+     */
+    public boolean isPending(String deviceId) {
+        return pendingDeviceControls.containsKey(deviceId);
+    }
+
+    public Metrics getMetrics(String deviceId) {
+        return metricsByDeviceId.computeIfAbsent(deviceId, key -> new Metrics());
+    }
+
+    /**
+     * Returns the metrics of all devices for which control requests have been received.
+     * @return
+     */
+    public Map<String, Metrics> getMetricsByDeviceId() {
+        return new HashMap<>(metricsByDeviceId);
+    }
+
+    public static class Metrics {
+        private long appliedCount;
+        private long collapsedCount;
+        private long lastLatencyMillis;
+        private long maxLatencyMillis;
+        private long totalLatencyMillis;
+
+        synchronized void applied(long latencyMillis) {
+            appliedCount++;
+            lastLatencyMillis = latencyMillis;
+            maxLatencyMillis = Math.max(maxLatencyMillis, latencyMillis);
+            totalLatencyMillis += latencyMillis;
+        }
+
+        synchronized void collapsed() {
+            collapsedCount++;
+        }
+
+        public synchronized long getAppliedCount() {
+            return appliedCount;
+        }
+
+        /**
+         * Returns the number of requests replaced by a newer request before being applied.
+         * @return
+         */
+        public synchronized long getCollapsedCount() {
+            return collapsedCount;
+        }
+
+        public synchronized long getLastLatencyMillis() {
+            return lastLatencyMillis;
+        }
+
+        public synchronized long getMaxLatencyMillis() {
+            return maxLatencyMillis;
+        }
+
+        public synchronized long getAverageLatencyMillis() {
+            return appliedCount > 0 ? totalLatencyMillis / appliedCount : 0L;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return "applied=" + appliedCount + " collapsed=" + collapsedCount + " lastLatency=" + lastLatencyMillis
+                    + "ms maxLatency=" + maxLatencyMillis + "ms";
+        }
+    }
+}
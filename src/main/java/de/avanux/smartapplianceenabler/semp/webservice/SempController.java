@@ -25,6 +25,7 @@ import de.avanux.smartapplianceenabler.meter.Meter;
 import de.avanux.smartapplianceenabler.schedule.AbstractEnergyRequest;
 import de.avanux.smartapplianceenabler.schedule.TimeframeInterval;
 import de.avanux.smartapplianceenabler.schedule.TimeframeIntervalHandler;
+import de.avanux.smartapplianceenabler.util.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
@@ -48,6 +49,7 @@ public class SempController {
     public static final String SCHEMA_LOCATION = "http://www.sma.de/communication/schema/SEMP/v1";
     private Logger logger = LoggerFactory.getLogger(SempController.class);
     private JAXBContext jaxbContext;
+    private DeviceControlQueue deviceControlQueue = new DeviceControlQueue(this::applyDeviceControl);
 
     public SempController() {
         try {
@@ -55,15 +57,16 @@ public class SempController {
         } catch (Throwable e) {
             logger.error("Error in JAXBContext", e);
         }
+        DeviceControlQueue.setInstance(deviceControlQueue);
         logger.info("SEMP controller created.");
     }
 
     @RequestMapping(value = BASE_URL, method = RequestMethod.GET, produces = "application/xml")
     public String device2EM(HttpServletResponse response) {
-        if(ApplianceManager.getInstance().isInitializationCompleted()) {
+        if(isAvailable()) {
             try {
                 logger.debug("Device info/status/planning requested.");
-                return marshall(createDevice2EM(LocalDateTime.now()));
+                return marshall(createDevice2EM(Clock.now()));
             } catch (Throwable e) {
                 logger.error("Error in " + getClass().getSimpleName(), e);
             }
@@ -75,8 +78,8 @@ public class SempController {
     public Device2EM createDevice2EM(LocalDateTime now) {
         List<DeviceStatus> deviceStatuses = new ArrayList<DeviceStatus>();
         List<PlanningRequest> planningRequests = new ArrayList<PlanningRequest>();
-        if(ApplianceManager.getInstance().isInitializationCompleted()) {
-            List<Appliance> appliances = ApplianceManager.getInstance().getAppliances();
+        if(isAvailable()) {
+            List<Appliance> appliances = ApplianceManager.getInstance().getReadyAppliances();
             for (Appliance appliance : appliances) {
                 DeviceStatus deviceStatus = createDeviceStatus(appliance);
                 deviceStatuses.add(deviceStatus);
@@ -95,16 +98,16 @@ public class SempController {
 
     @RequestMapping(value = BASE_URL + "/DeviceInfo", method = RequestMethod.GET, produces = "application/xml")
     public String deviceInfo(HttpServletResponse response, @RequestParam(value = "DeviceId", required = false) String deviceId) {
-        if(ApplianceManager.getInstance().isInitializationCompleted()) {
+        if(isAvailable(deviceId)) {
             try {
-                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime now = Clock.now();
                 List<DeviceInfo> deviceInfos = new ArrayList<>();
                 if (deviceId != null) {
                     logger.debug("{}: Device info requested", deviceId);
                     deviceInfos.add(createDeviceInfo(now, deviceId));
                 } else {
                     logger.debug("Device info requested of all devices");
-                    List<Appliance> appliances = ApplianceManager.getInstance().getAppliances();
+                    List<Appliance> appliances = ApplianceManager.getInstance().getReadyAppliances();
                     for (Appliance appliance : appliances) {
                         deviceInfos.add(createDeviceInfo(now, appliance.getId()));
                     }
@@ -133,7 +136,7 @@ public class SempController {
 
     private List<DeviceInfo> createDeviceInfo(LocalDateTime now) {
         List<DeviceInfo> deviceInfos = new ArrayList<DeviceInfo>();
-        List<Appliance> appliances = ApplianceManager.getInstance().getAppliances();
+        List<Appliance> appliances = ApplianceManager.getInstance().getReadyAppliances();
         for (Appliance appliance : appliances) {
             DeviceInfo deviceInfo = ApplianceManager.getInstance().getDeviceInfo(appliance.getId());
             deviceInfo.setCapabilities(createCapabilities(deviceInfo, appliance.getMeter() != null,
@@ -160,7 +163,7 @@ public class SempController {
 
     @RequestMapping(value = BASE_URL + "/DeviceStatus", method = RequestMethod.GET, produces = "application/xml")
     public String deviceStatus(HttpServletResponse response, @RequestParam(value = "DeviceId", required = false) String deviceId) {
-        if(ApplianceManager.getInstance().isInitializationCompleted()) {
+        if(isAvailable(deviceId)) {
             try {
                 List<DeviceStatus> deviceStatuses = new ArrayList<DeviceStatus>();
                 if (deviceId != null) {
@@ -170,7 +173,7 @@ public class SempController {
                     deviceStatuses.add(deviceStatus);
                 } else {
                     logger.debug("Device status requested of all devices");
-                    List<Appliance> appliances = ApplianceManager.getInstance().getAppliances();
+                    List<Appliance> appliances = ApplianceManager.getInstance().getReadyAppliances();
                     for (Appliance appliance : appliances) {
                         DeviceStatus deviceStatus = createDeviceStatus(appliance);
                         deviceStatuses.add(deviceStatus);
@@ -189,9 +192,9 @@ public class SempController {
 
     @RequestMapping(value = BASE_URL + "/PlanningRequest", method = RequestMethod.GET, produces = "application/xml")
     public String planningRequest(HttpServletResponse response, @RequestParam(value = "DeviceId", required = false) String deviceId) {
-        if(ApplianceManager.getInstance().isInitializationCompleted()) {
+        if(isAvailable(deviceId)) {
             try {
-                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime now = Clock.now();
                 List<PlanningRequest> planningRequests = new ArrayList<PlanningRequest>();
                 if (deviceId != null) {
                     logger.debug("{}: Planning request requested", deviceId);
@@ -200,7 +203,7 @@ public class SempController {
                     addPlanningRequest(planningRequests, planningRequest);
                 } else {
                     logger.debug("Planning request requested of all devices");
-                    List<Appliance> appliances = ApplianceManager.getInstance().getAppliances();
+                    List<Appliance> appliances = ApplianceManager.getInstance().getReadyAppliances();
                     for (Appliance appliance : appliances) {
                         PlanningRequest planningRequest = createPlanningRequest(now, appliance);
                         addPlanningRequest(planningRequests, planningRequest);
@@ -219,48 +222,85 @@ public class SempController {
         return null;
     }
 
+    /**
+     * Appliances are reported as soon as they are ready, i.e. before all appliances have been started.
+     */
+    private boolean isAvailable() {
+        ApplianceManager applianceManager = ApplianceManager.getInstance();
+        return applianceManager.isInitializationCompleted() || applianceManager.getReadyAppliances().size() > 0;
+    }
+
+    private boolean isAvailable(String deviceId) {
+        if(deviceId != null) {
+            Appliance appliance = ApplianceManager.getInstance().findAppliance(deviceId);
+            return appliance != null && appliance.isReady();
+        }
+        return isAvailable();
+    }
+
     private void addPlanningRequest(List<PlanningRequest> planningRequests, PlanningRequest planningRequest) {
         if (planningRequest != null) {
             planningRequests.add(planningRequest);
         }
     }
 
+    /**
+     * Control requests are queued and applied asynchronously in order to respond to the energy manager immediately.
+     */
     @RequestMapping(value = BASE_URL, method = RequestMethod.POST, consumes = "application/xml")
     @CrossOrigin(origins = CROSS_ORIGIN_URL)
     public void em2Device(@RequestBody EM2Device em2Device) {
         try {
-            em2Device(LocalDateTime.now(), em2Device);
+            LocalDateTime now = Clock.now();
+            for (DeviceControl deviceControl : em2Device.getDeviceControl()) {
+                logger.debug("{}: Received control request: {}", deviceControl.getDeviceId(), deviceControl);
+                Appliance appliance = ApplianceManager.getInstance().findAppliance(deviceControl.getDeviceId());
+                if (appliance != null) {
+                    deviceControlQueue.submit(now, appliance, deviceControl);
+                } else {
+                    logger.warn("{}: No appliance configured for device id", deviceControl.getDeviceId());
+                }
+            }
         } catch (Throwable e) {
             logger.error("Error in " + getClass().getSimpleName(), e);
         }
     }
 
+    /**
+     * Apply control requests and wait until they have been applied.
+     * @param now
+     * @param em2Device
+     */
     public void em2Device(LocalDateTime now, EM2Device em2Device) {
         List<DeviceControl> deviceControls = em2Device.getDeviceControl();
         for (DeviceControl deviceControl : deviceControls) {
             logger.debug("{}: Received control request: {}", deviceControl.getDeviceId(), deviceControl);
             Appliance appliance = ApplianceManager.getInstance().findAppliance(deviceControl.getDeviceId());
             if (appliance != null) {
-                // Work-around: if SHM sends switch-on command before timeframe interval start we have
-                // to force activation of timeframe interval
-                if(deviceControl.isOn()) {
-                    TimeframeIntervalHandler timeframeIntervalHandler = appliance.getTimeframeIntervalHandler();
-                    if(timeframeIntervalHandler != null) {
-                        TimeframeInterval activeTimeframeInterval = timeframeIntervalHandler.getActiveTimeframeInterval();
-                        if(activeTimeframeInterval == null) {
-                            timeframeIntervalHandler.updateQueue(now, true);
-                        }
-                    }
-                }
-                appliance.setApplianceState(now, deviceControl.isOn(),
-                        deviceControl.getRecommendedPowerConsumption(),
-                        "Setting appliance state to " + (deviceControl.isOn() ? "ON" : "OFF"));
+                appliance.getMailbox().run(() -> applyDeviceControl(now, appliance, deviceControl));
             } else {
                 logger.warn("{}: No appliance configured for device id", deviceControl.getDeviceId());
             }
         }
     }
 
+    private void applyDeviceControl(LocalDateTime now, Appliance appliance, DeviceControl deviceControl) {
+        // Work-around: if SHM sends switch-on command before timeframe interval start we have
+        // to force activation of timeframe interval
+        if(deviceControl.isOn()) {
+            TimeframeIntervalHandler timeframeIntervalHandler = appliance.getTimeframeIntervalHandler();
+            if(timeframeIntervalHandler != null) {
+                TimeframeInterval activeTimeframeInterval = timeframeIntervalHandler.getActiveTimeframeInterval();
+                if(activeTimeframeInterval == null) {
+                    timeframeIntervalHandler.updateQueue(now, true);
+                }
+            }
+        }
+        appliance.setApplianceState(now, deviceControl.isOn(),
+                deviceControl.getRecommendedPowerConsumption(),
+                "Setting appliance state to " + (deviceControl.isOn() ? "ON" : "OFF"));
+    }
+
     private DeviceStatus createDeviceStatus(Appliance appliance) {
         DeviceStatus deviceStatus = new DeviceStatus();
         deviceStatus.setDeviceId(appliance.getId());
@@ -285,9 +325,9 @@ public class SempController {
         if (meter != null) {
             logger.debug("{}: Reporting power info from meter.", appliance.getId());
             powerInfo.setAveragePower(meter.getAveragePower());
-//            powerInfo.setMinPower(meter.getMinPower());
-//            powerInfo.setMaxPower(meter.getMaxPower());
-            powerInfo.setAveragingInterval(60); // always report 60 for SEMP regardless of real averaging interval
+            powerInfo.setMinPower(meter.getMinPower());
+            powerInfo.setMaxPower(meter.getMaxPower());
+            powerInfo.setAveragingInterval(meter.getAveragingInterval());
         } else {
             logger.debug("{}: Reporting power info from device characteristics.", appliance.getId());
             DeviceInfo deviceInfo = ApplianceManager.getInstance().getDeviceInfo(appliance.getId());
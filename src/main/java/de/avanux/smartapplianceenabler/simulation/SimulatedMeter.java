@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.simulation;
+
+import de.avanux.smartapplianceenabler.appliance.ApplianceIdConsumer;
+import de.avanux.smartapplianceenabler.control.ControlStateChangedListener;
+import de.avanux.smartapplianceenabler.control.ev.EVChargerState;
+import de.avanux.smartapplianceenabler.control.ev.ElectricVehicle;
+import de.avanux.smartapplianceenabler.control.ev.SocValues;
+import de.avanux.smartapplianceenabler.meter.Meter;
+import de.avanux.smartapplianceenabler.meter.PowerUpdateListener;
+import de.avanux.smartapplianceenabler.util.Clock;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+
+/**
+ * A meter reporting the nominal power of the appliance while its control is switched on.
+ * It has to be registered as listener of the control in order to follow its state.
+ */
+public class SimulatedMeter implements Meter, ApplianceIdConsumer, ControlStateChangedListener {
+    private transient String applianceId;
+    private transient int nominalPower;
+    private transient boolean on;
+    private transient boolean counting;
+    private transient long lastUpdateMillis;
+    private transient double energyWs;
+    private transient List<PowerUpdateListener> powerUpdateListeners = new ArrayList<>();
+
+    public SimulatedMeter(int nominalPower) {
+        this.nominalPower = nominalPower;
+    }
+
+    @Override
+    public void setApplianceId(String applianceId) {
+        this.applianceId = applianceId;
+    }
+
+    public int getNominalPower() {
+        return nominalPower;
+    }
+
+    @Override
+    public void init() {
+    }
+
+    @Override
+    public void start(LocalDateTime now, Timer timer) {
+    }
+
+    @Override
+    public void stop(LocalDateTime now) {
+    }
+
+    @Override
+    public int getAveragePower() {
+        return on ? nominalPower : 0;
+    }
+
+    @Override
+    public int getMinPower() {
+        return getAveragePower();
+    }
+
+    @Override
+    public int getMaxPower() {
+        return getAveragePower();
+    }
+
+    @Override
+    public int getAveragingInterval() {
+        return Meter.averagingInterval;
+    }
+
+    @Override
+    public synchronized float getEnergy() {
+        update(Clock.currentTimeMillis());
+        return (float) (energyWs / 3600000.0);
+    }
+
+    @Override
+    public synchronized void startEnergyMeter() {
+        update(Clock.currentTimeMillis());
+        counting = true;
+    }
+
+    @Override
+    public synchronized void stopEnergyMeter() {
+        update(Clock.currentTimeMillis());
+        counting = false;
+    }
+
+    @Override
+    public synchronized void resetEnergyMeter() {
+        update(Clock.currentTimeMillis());
+        energyWs = 0.0;
+    }
+
+    @Override
+    public void addPowerUpdateListener(PowerUpdateListener listener) {
+        powerUpdateListeners.add(listener);
+    }
+
+    @Override
+    public synchronized void controlStateChanged(LocalDateTime now, boolean switchOn) {
+        update(Clock.currentTimeMillis());
+        on = switchOn;
+        int averagePower = getAveragePower();
+        powerUpdateListeners.forEach(listener -> listener.onPowerUpdate(averagePower));
+    }
+
+    @Override
+    public void onEVChargerStateChanged(LocalDateTime now, EVChargerState previousState, EVChargerState newState,
+                                        ElectricVehicle ev) {
+    }
+
+    @Override
+    public void onEVChargerSocChanged(LocalDateTime now, SocValues socValues) {
+    }
+
+    private void update(long nowMillis) {
+        if(counting && on && nowMillis > lastUpdateMillis) {
+            energyWs += nominalPower * (nowMillis - lastUpdateMillis) / 1000.0;
+        }
+        lastUpdateMillis = nowMillis;
+    }
+
+    @Override
+    public String toString() {
+        return applianceId + ": nominalPower=" + nominalPower + " on=" + on;
+    }
+}
@@ -0,0 +1,385 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.simulation;
+
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import de.avanux.smartapplianceenabler.appliance.ApplianceMailbox;
+import de.avanux.smartapplianceenabler.appliance.ApplianceManager;
+import de.avanux.smartapplianceenabler.appliance.Appliances;
+import de.avanux.smartapplianceenabler.control.MockSwitch;
+import de.avanux.smartapplianceenabler.schedule.Schedule;
+import de.avanux.smartapplianceenabler.schedule.TimeOfDay;
+import de.avanux.smartapplianceenabler.semp.webservice.*;
+import de.avanux.smartapplianceenabler.util.Clock;
+import de.avanux.smartapplianceenabler.util.DateTimeProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays a day of PV surplus for a number of simulated appliances in virtual time. The appliances use the
+ * regular scheduling (timeframe interval handler) and SEMP interface while timer tasks are executed by a
+ * {@link VirtualTimer} and mailbox tasks are executed directly by the simulation thread, so that runs with the
+ * same parameters are deterministic.
+ * <p>
+ * The Sunny Home Manager is replaced by a simple energy manager polling the SEMP interface once per interval:
+ * it switches on an appliance if the surplus covers its power consumption or if the latest start is reached.
+ * Switching off is left to the appliances once their runtime is reached and only reported.
+ */
+public class Simulation {
+    private transient Logger logger = LoggerFactory.getLogger(Simulation.class);
+    private static final int BASE_LOAD = 300;
+    private int applianceCount = 10;
+    private double speedFactor;
+    private LocalDate day = LocalDate.of(2020, 6, 21);
+    private Integer peakSurplus;
+    private int energyManagerIntervalSeconds = 60;
+    private long seed = 1L;
+    private List<Decision> decisions = new ArrayList<>();
+    private Map<String, Status> previousStatusByDeviceId = new HashMap<>();
+    private Map<String, Timing> timings = new LinkedHashMap<>();
+    private double surplusEnergyWh;
+    private double usedSurplusEnergyWh;
+    private double gridEnergyWh;
+    private long wallClockMillis;
+
+    /**
+     * A switch command sent by the energy manager.
+     */
+    public static class Decision {
+        private final LocalDateTime time;
+        private final String applianceId;
+        private final boolean on;
+        private final String reason;
+        private final int surplus;
+
+        public Decision(LocalDateTime time, String applianceId, boolean on, String reason, int surplus) {
+            this.time = time;
+            this.applianceId = applianceId;
+            this.on = on;
+            this.reason = reason;
+            this.surplus = surplus;
+        }
+
+        public LocalDateTime getTime() {
+            return time;
+        }
+
+        public String getApplianceId() {
+            return applianceId;
+        }
+
+        public boolean isOn() {
+            return on;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+
+        public int getSurplus() {
+            return surplus;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(o == null || getClass() != o.getClass()) return false;
+            Decision decision = (Decision) o;
+            return on == decision.on && surplus == decision.surplus && time.equals(decision.time)
+                    && applianceId.equals(decision.applianceId) && reason.equals(decision.reason);
+        }
+
+        @Override
+        public int hashCode() {
+            return time.hashCode() * 31 + applianceId.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return time.toLocalTime() + " " + applianceId + " " + (on ? "ON " : "OFF") + " " + reason
+                    + " surplus=" + surplus + "W";
+        }
+    }
+
+    public void setApplianceCount(int applianceCount) {
+        this.applianceCount = applianceCount;
+    }
+
+    /**
+     * Set the ratio of virtual time to wall clock time. 0 runs the simulation as fast as possible.
+     * @param speedFactor
+     */
+    public void setSpeedFactor(double speedFactor) {
+        this.speedFactor = speedFactor;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public void setPeakSurplus(Integer peakSurplus) {
+        this.peakSurplus = peakSurplus;
+    }
+
+    public void setEnergyManagerIntervalSeconds(int energyManagerIntervalSeconds) {
+        this.energyManagerIntervalSeconds = energyManagerIntervalSeconds;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public List<Decision> getDecisions() {
+        return decisions;
+    }
+
+    public Map<String, Timing> getTimings() {
+        return timings;
+    }
+
+    public double getSurplusEnergyWh() {
+        return surplusEnergyWh;
+    }
+
+    public double getUsedSurplusEnergyWh() {
+        return usedSurplusEnergyWh;
+    }
+
+    public double getGridEnergyWh() {
+        return gridEnergyWh;
+    }
+
+    public void run() {
+        DateTimeProvider previousDateTimeProvider = Clock.getDateTimeProvider();
+        boolean previousDirect = ApplianceMailbox.isDirect();
+        VirtualClock clock = new VirtualClock(day.atStartOfDay());
+        VirtualTimer timer = new VirtualTimer(clock);
+        Clock.setDateTimeProvider(clock);
+        ApplianceMailbox.setDirect(true);
+        List<Appliance> appliances = new ArrayList<>();
+        try {
+            Map<String, SimulatedMeter> meters = new HashMap<>();
+            Device2EM device2EM = new Device2EM();
+            device2EM.setDeviceInfo(new ArrayList<>());
+            for(int i=0; i<applianceCount; i++) {
+                SimulatedMeter meter = new SimulatedMeter(400 + 300 * (i % 5));
+                Appliance appliance = createAppliance(i, meter);
+                appliances.add(appliance);
+                meters.put(appliance.getId(), meter);
+                device2EM.getDeviceInfo().add(createDeviceInfo(appliance.getId(), meter.getNominalPower()));
+            }
+            Appliances root = new Appliances();
+            root.setAppliances(appliances);
+            ApplianceManager applianceManager = ApplianceManager.getInstanceWithoutTimer();
+            applianceManager.setTimer(timer);
+            applianceManager.setAppliances(root);
+            applianceManager.setDevice2EM(device2EM);
+            applianceManager.init();
+
+            SempController sempController = new SempController();
+            int peak = peakSurplus != null ? peakSurplus : applianceCount * 800;
+            Random random = new Random(seed);
+            long startMillis = clock.currentTimeMillis();
+            long endMillis = clock.toMillis(day.plusDays(1).atStartOfDay());
+            long intervalMillis = energyManagerIntervalSeconds * 1000L;
+            long wallClockStart = System.currentTimeMillis();
+            for(long timeMillis = startMillis; timeMillis < endMillis; timeMillis += intervalMillis) {
+                timer.advanceTo(timeMillis);
+                LocalDateTime now = clock.now();
+                // clouds reduce the surplus by up to 20%
+                int pvSurplus = (int) (getPvPower(now, peak) * (0.8 + 0.2 * random.nextDouble())) - BASE_LOAD;
+                int consumption = meters.values().stream().mapToInt(SimulatedMeter::getAveragePower).sum();
+                int surplus = pvSurplus - consumption;
+                surplus = controlAppliances(sempController, now, surplus, meters);
+                account(pvSurplus, pvSurplus - surplus, intervalMillis);
+                if(speedFactor > 0) {
+                    sleepUntil(wallClockStart + (long) ((timeMillis - startMillis) / speedFactor));
+                }
+            }
+            timer.advanceTo(endMillis);
+            wallClockMillis = System.currentTimeMillis() - wallClockStart;
+            timings.putAll(timer.getTimings());
+        }
+        finally {
+            appliances.forEach(Appliance::stop);
+            timer.cancel();
+            ApplianceMailbox.setDirect(previousDirect);
+            Clock.setDateTimeProvider(previousDateTimeProvider);
+        }
+    }
+
+    private Appliance createAppliance(int index, SimulatedMeter meter) {
+        Appliance appliance = new Appliance();
+        appliance.setId(String.format("F-00000001-%012d-00", index + 1));
+        MockSwitch control = new MockSwitch();
+        control.addControlStateChangedListener(meter);
+        appliance.setControl(control);
+        appliance.setMeter(meter);
+        int startHour = 7 + index % 3;
+        int runtime = 1800 * (1 + index % 4);
+        Schedule schedule = new Schedule(runtime, runtime, new TimeOfDay(startHour, 0, 0),
+                new TimeOfDay(startHour + 10, 0, 0));
+        appliance.setSchedules(Collections.singletonList(schedule));
+        return appliance;
+    }
+
+    private DeviceInfo createDeviceInfo(String applianceId, int maxPowerConsumption) {
+        Identification identification = new Identification();
+        identification.setDeviceId(applianceId);
+        Characteristics characteristics = new Characteristics();
+        characteristics.setMaxPowerConsumption(maxPowerConsumption);
+        DeviceInfo deviceInfo = new DeviceInfo();
+        deviceInfo.setIdentification(identification);
+        deviceInfo.setCharacteristics(characteristics);
+        return deviceInfo;
+    }
+
+    /**
+     * PV power of a clear day peaking at 13:00.
+     */
+    private double getPvPower(LocalDateTime now, int peak) {
+        double hour = now.toLocalTime().toSecondOfDay() / 3600.0;
+        double power = peak * Math.exp(- Math.pow(hour - 13.0, 2) / (2 * 2.5 * 2.5));
+        return power > peak * 0.01 ? power : 0.0;
+    }
+
+    /**
+     * The energy manager: requests the SEMP status of all appliances and switches on appliances with an active
+     * timeframe either using surplus or if their latest start has been reached.
+     * @return the surplus remaining after switching
+     */
+    private int controlAppliances(SempController sempController, LocalDateTime now, int surplus,
+                                  Map<String, SimulatedMeter> meters) {
+        long startNanos = System.nanoTime();
+        Device2EM device2EM = sempController.createDevice2EM(now);
+        getTiming("createDevice2EM").add(System.nanoTime() - startNanos);
+
+        Map<String, Status> statusByDeviceId = new HashMap<>();
+        for(DeviceStatus deviceStatus : device2EM.getDeviceStatus()) {
+            String deviceId = deviceStatus.getDeviceId();
+            if(previousStatusByDeviceId.get(deviceId) == Status.On && deviceStatus.getStatus() == Status.Off) {
+                decisions.add(new Decision(now, deviceId, false, "switched off by appliance", surplus));
+            }
+            statusByDeviceId.put(deviceId, deviceStatus.getStatus());
+        }
+        List<Timeframe> candidates = new ArrayList<>();
+        for(PlanningRequest planningRequest : device2EM.getPlanningRequest()) {
+            for(Timeframe timeframe : planningRequest.getTimeframes()) {
+                if(timeframe.getEarliestStart() == 0 && statusByDeviceId.get(timeframe.getDeviceId()) == Status.Off) {
+                    candidates.add(timeframe);
+                }
+            }
+        }
+        // least slack first
+        candidates.sort(Comparator.comparingInt((Timeframe timeframe) -> timeframe.getLatestEnd()
+                - timeframe.getMaxRunningTime()).thenComparing(Timeframe::getDeviceId));
+
+        List<DeviceControl> deviceControls = new ArrayList<>();
+        for(Timeframe timeframe : candidates) {
+            int power = meters.get(timeframe.getDeviceId()).getNominalPower();
+            String reason = null;
+            if(timeframe.getLatestEnd() - timeframe.getMaxRunningTime() <= energyManagerIntervalSeconds) {
+                reason = "latest start";
+            }
+            else if(surplus >= power) {
+                reason = "surplus";
+            }
+            if(reason != null) {
+                DeviceControl deviceControl = new DeviceControl();
+                deviceControl.setDeviceId(timeframe.getDeviceId());
+                deviceControl.setOn(true);
+                deviceControls.add(deviceControl);
+                decisions.add(new Decision(now, timeframe.getDeviceId(), true, reason, surplus));
+                statusByDeviceId.put(timeframe.getDeviceId(), Status.On);
+                surplus -= power;
+            }
+        }
+        if(deviceControls.size() > 0) {
+            EM2Device em2Device = new EM2Device();
+            em2Device.setDeviceControl(deviceControls);
+            startNanos = System.nanoTime();
+            sempController.em2Device(now, em2Device);
+            getTiming("em2Device").add(System.nanoTime() - startNanos);
+        }
+        previousStatusByDeviceId = statusByDeviceId;
+        return surplus;
+    }
+
+    private void account(int pvSurplus, int consumption, long intervalMillis) {
+        double hours = intervalMillis / 3600000.0;
+        if(pvSurplus > 0) {
+            surplusEnergyWh += pvSurplus * hours;
+            usedSurplusEnergyWh += Math.min(pvSurplus, consumption) * hours;
+        }
+        gridEnergyWh += Math.max(0, consumption - Math.max(0, pvSurplus)) * hours;
+    }
+
+    private Timing getTiming(String name) {
+        return timings.computeIfAbsent(name, Timing::new);
+    }
+
+    private void sleepUntil(long wallClockMillis) {
+        long sleepMillis = wallClockMillis - System.currentTimeMillis();
+        if(sleepMillis > 0) {
+            try {
+                Thread.sleep(sleepMillis);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public void printReport(PrintStream out) {
+        out.println("Simulated " + day + " with " + applianceCount + " appliances in " + wallClockMillis + "ms");
+        out.println();
+        out.println("Decisions:");
+        decisions.forEach(decision -> out.println("  " + decision));
+        out.println();
+        out.println(String.format("Surplus energy: %.0fWh used: %.0fWh from grid: %.0fWh",
+                surplusEnergyWh, usedSurplusEnergyWh, gridEnergyWh));
+        out.println();
+        out.println("Timings:");
+        timings.values().forEach(timing -> out.println("  " + timing));
+    }
+
+    /**
+     * Usage: Simulation [applianceCount] [speedFactor]
+     * @param args
+     */
+    public static void main(String[] args) {
+        Simulation simulation = new Simulation();
+        simulation.setApplianceCount(args.length > 0 ? Integer.parseInt(args[0]) : 10);
+        simulation.setSpeedFactor(args.length > 1 ? Double.parseDouble(args[1]) : 1000.0);
+        simulation.run();
+        simulation.printReport(System.out);
+    }
+}
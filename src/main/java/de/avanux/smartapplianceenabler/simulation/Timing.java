@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.simulation;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Count, average and maximum of the wall clock execution times of an operation.
+ */
+public class Timing {
+    private final String name;
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public Timing(String name) {
+        this.name = name;
+    }
+
+    public void add(long nanos) {
+        count++;
+        totalNanos += nanos;
+        if(nanos > maxNanos) {
+            maxNanos = nanos;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getAverageNanos() {
+        return count > 0 ? totalNanos / count : 0L;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-32s count=%8d avg=%8.1fus max=%8.1fus", name, count,
+                getAverageNanos() / 1000.0, maxNanos / 1000.0);
+    }
+}
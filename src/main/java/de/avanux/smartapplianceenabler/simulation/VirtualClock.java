@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.simulation;
+
+import de.avanux.smartapplianceenabler.util.DateTimeProvider;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * A clock which only advances if told so. Installed with {@link de.avanux.smartapplianceenabler.util.Clock}
+ * it replaces the system clock for all scheduling and control decisions.
+ */
+public class VirtualClock implements DateTimeProvider {
+    private final ZoneId zoneId = ZoneId.systemDefault();
+    private volatile long currentTimeMillis;
+
+    public VirtualClock(LocalDateTime start) {
+        this.currentTimeMillis = toMillis(start);
+    }
+
+    @Override
+    public LocalDateTime now() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(currentTimeMillis), zoneId);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return currentTimeMillis;
+    }
+
+    /**
+     * Advance the clock to the given time. The clock never goes backwards.
+     * @param timeMillis
+     */
+    public void advanceTo(long timeMillis) {
+        if(timeMillis > currentTimeMillis) {
+            currentTimeMillis = timeMillis;
+        }
+    }
+
+    public long toMillis(LocalDateTime dateTime) {
+        return dateTime.atZone(zoneId).toInstant().toEpochMilli();
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.simulation;
+
+import de.avanux.smartapplianceenabler.util.GuardedTimerTask;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * A timer executing its tasks in virtual time: tasks are queued by their due time and run by the thread calling
+ * {@link #advanceTo(long)} after the {@link VirtualClock} has been set to the due time.
+ * Fixed-delay and fixed-rate scheduling are identical since tasks do not consume virtual time.
+ * <p>
+ * Only {@link GuardedTimerTask}s are simulated since their cancellation can be detected; other tasks
+ * (e.g. downloaders) are dropped. The execution time of each task is recorded by task name.
+ */
+public class VirtualTimer extends Timer {
+    private transient Logger logger = LoggerFactory.getLogger(VirtualTimer.class);
+    private final VirtualClock clock;
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final Map<String, Timing> timings = new LinkedHashMap<>();
+    private long sequence;
+    private boolean cancelled;
+
+    private static class Entry implements Comparable<Entry> {
+        private final GuardedTimerTask task;
+        private final long timeMillis;
+        private final long period;
+        private final long sequence;
+
+        Entry(GuardedTimerTask task, long timeMillis, long period, long sequence) {
+            this.task = task;
+            this.timeMillis = timeMillis;
+            this.period = period;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public int compareTo(Entry other) {
+            int result = Long.compare(timeMillis, other.timeMillis);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    public VirtualTimer(VirtualClock clock) {
+        super(true);
+        // the thread of the real timer is not needed
+        super.cancel();
+        this.clock = clock;
+    }
+
+    @Override
+    public void schedule(TimerTask task, long delay) {
+        add(task, clock.currentTimeMillis() + delay, 0);
+    }
+
+    @Override
+    public void schedule(TimerTask task, Date time) {
+        add(task, time.getTime(), 0);
+    }
+
+    @Override
+    public void schedule(TimerTask task, long delay, long period) {
+        add(task, clock.currentTimeMillis() + delay, period);
+    }
+
+    @Override
+    public void schedule(TimerTask task, Date firstTime, long period) {
+        add(task, firstTime.getTime(), period);
+    }
+
+    @Override
+    public void scheduleAtFixedRate(TimerTask task, long delay, long period) {
+        add(task, clock.currentTimeMillis() + delay, period);
+    }
+
+    @Override
+    public void scheduleAtFixedRate(TimerTask task, Date firstTime, long period) {
+        add(task, firstTime.getTime(), period);
+    }
+
+    private synchronized void add(TimerTask task, long timeMillis, long period) {
+        if(cancelled) {
+            throw new IllegalStateException("Timer already cancelled.");
+        }
+        if(task instanceof GuardedTimerTask) {
+            queue.add(new Entry((GuardedTimerTask) task, Math.max(timeMillis, clock.currentTimeMillis()), period,
+                    sequence++));
+        }
+        else {
+            logger.debug("Dropping task not supported by virtual timer: {}", task.getClass().getName());
+        }
+    }
+
+    /**
+     * Run all tasks due until the given time in the order of their due times.
+     * @param timeMillis
+     * @return the number of tasks executed
+     */
+    public int advanceTo(long timeMillis) {
+        int executed = 0;
+        Entry entry;
+        while((entry = pollDue(timeMillis)) != null) {
+            if(entry.task.isCancelled()) {
+                continue;
+            }
+            clock.advanceTo(entry.timeMillis);
+            long startNanos = System.nanoTime();
+            entry.task.run();
+            getTiming(entry.task.getTaskName()).add(System.nanoTime() - startNanos);
+            executed++;
+            if(entry.period > 0 && ! entry.task.isCancelled()) {
+                synchronized(this) {
+                    queue.add(new Entry(entry.task, entry.timeMillis + entry.period, entry.period, sequence++));
+                }
+            }
+        }
+        clock.advanceTo(timeMillis);
+        return executed;
+    }
+
+    private synchronized Entry pollDue(long timeMillis) {
+        Entry entry = queue.peek();
+        return entry != null && entry.timeMillis <= timeMillis ? queue.poll() : null;
+    }
+
+    /**
+     * Returns the due time of the next task or null if there is none.
+     * @return
+     */
+    public synchronized Long getNextTimeMillis() {
+        Entry entry = queue.peek();
+        return entry != null ? entry.timeMillis : null;
+    }
+
+    public synchronized int size() {
+        return queue.size();
+    }
+
+    public synchronized Timing getTiming(String name) {
+        return timings.computeIfAbsent(name, Timing::new);
+    }
+
+    public synchronized Map<String, Timing> getTimings() {
+        return new LinkedHashMap<>(timings);
+    }
+
+    @Override
+    public synchronized void cancel() {
+        cancelled = true;
+        queue.clear();
+    }
+
+    @Override
+    public synchronized int purge() {
+        int size = queue.size();
+        queue.removeIf(entry -> entry.task.isCancelled());
+        return size - queue.size();
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.speedwire;
+
+import de.avanux.smartapplianceenabler.meter.GridPowerListener;
+import de.avanux.smartapplianceenabler.meter.GridPowerSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
+/**
+ * Receives the telegrams multicast by an SMA Energy Meter (or Sunny Home Manager) via Speedwire
+ * and provides the grid power measured by it.
+ * <p>
+ * Telegrams are received into a single direct buffer and parsed in place. Since the meter sends its telegrams
+ * about once a second receiving them does not allocate memory: the sender address is cached by the channel
+ * and listeners are kept in an array which is only replaced when listeners are added or removed.
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+public class SmaEnergyMeter implements GridPowerSource {
+    private transient Logger logger = LoggerFactory.getLogger(SmaEnergyMeter.class);
+    public transient static final String DEFAULT_MULTICAST_ADDRESS = "239.12.255.254";
+    public transient static final int DEFAULT_PORT = 9522;
+    private transient static final int BUFFER_SIZE = 2048;
+    @XmlAttribute
+    private Long serial;
+    @XmlAttribute
+    private String multicastAddress;
+    @XmlAttribute
+    private Integer port;
+    @XmlAttribute
+    private String networkInterface;
+    private transient final SpeedwireTelegram receivedTelegram = new SpeedwireTelegram();
+    private transient final SpeedwireTelegram telegram = new SpeedwireTelegram();
+    private transient volatile GridPowerListener[] listeners = new GridPowerListener[0];
+    private transient volatile long lastUpdateMillis;
+    private transient volatile long acceptedSerial;
+    private transient volatile long telegramCount;
+    private transient volatile DatagramChannel channel;
+    private transient volatile Thread thread;
+
+    public Long getSerial() {
+        return serial;
+    }
+
+    public void setSerial(Long serial) {
+        this.serial = serial;
+    }
+
+    public String getMulticastAddress() {
+        return multicastAddress;
+    }
+
+    public void setMulticastAddress(String multicastAddress) {
+        this.multicastAddress = multicastAddress;
+    }
+
+    public Integer getPort() {
+        return port;
+    }
+
+    public void setPort(Integer port) {
+        this.port = port;
+    }
+
+    public String getNetworkInterface() {
+        return networkInterface;
+    }
+
+    public void setNetworkInterface(String networkInterface) {
+        this.networkInterface = networkInterface;
+    }
+
+    /**
+     * Returns the local port telegrams are received on, which differs from the configured port
+     * only if port 0 has been configured.
+     * @return
+     */
+    public int getLocalPort() {
+        try {
+            DatagramChannel channel = this.channel;
+            if(channel != null) {
+                return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+            }
+        }
+        catch(IOException e) {
+            logger.debug("Error getting local port", e);
+        }
+        return -1;
+    }
+
+    public synchronized void start() throws IOException {
+        if(thread != null) {
+            return;
+        }
+        int resolvedPort = port != null ? port : DEFAULT_PORT;
+        InetAddress group = InetAddress.getByName(multicastAddress != null ? multicastAddress : DEFAULT_MULTICAST_ADDRESS);
+        channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(resolvedPort));
+        int joined = 0;
+        for(NetworkInterface ni : getMulticastInterfaces()) {
+            try {
+                channel.join(group, ni);
+                logger.debug("Joined Speedwire multicast group {} on {}", group.getHostAddress(), ni.getName());
+                joined++;
+            }
+            catch(IOException e) {
+                logger.warn("Error joining Speedwire multicast group on " + ni.getName(), e);
+            }
+        }
+        if(joined == 0) {
+            logger.warn("Speedwire multicast group not joined. Only unicast telegrams will be received.");
+        }
+        logger.info("Receiving SMA energy meter telegrams on port {} serial={}", getLocalPort(), serial);
+        thread = new Thread(this::run, "speedwire");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void stop() {
+        Thread current;
+        synchronized (this) {
+            current = thread;
+            thread = null;
+        }
+        if(current != null) {
+            try {
+                channel.close();
+            }
+            catch(IOException e) {
+                logger.debug("Error closing channel", e);
+            }
+            current.interrupt();
+        }
+    }
+
+    private Iterable<NetworkInterface> getMulticastInterfaces() throws IOException {
+        if(networkInterface != null) {
+            NetworkInterface ni = NetworkInterface.getByName(networkInterface);
+            if(ni == null) {
+                logger.warn("Network interface {} not found", networkInterface);
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(ni);
+        }
+        List<NetworkInterface> interfaces = new ArrayList<>();
+        Enumeration<NetworkInterface> enumeration = NetworkInterface.getNetworkInterfaces();
+        while(enumeration != null && enumeration.hasMoreElements()) {
+            NetworkInterface ni = enumeration.nextElement();
+            if(ni.isUp() && ni.supportsMulticast() && ! ni.isLoopback()
+                    && ni.inetAddresses().anyMatch(address -> address.getAddress().length == 4)) {
+                interfaces.add(ni);
+            }
+        }
+        return interfaces;
+    }
+
+    private void run() {
+        Thread currentThread = Thread.currentThread();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        while(thread == currentThread) {
+            try {
+                buffer.clear();
+                channel.receive(buffer);
+                buffer.flip();
+                onTelegram(buffer, System.currentTimeMillis());
+            }
+            catch(ClosedChannelException e) {
+                break;
+            }
+            catch(Exception e) {
+                logger.error("Error receiving Speedwire telegram", e);
+            }
+        }
+        logger.debug("Speedwire receiver stopped");
+    }
+
+    /**
+     * Process a telegram contained in the buffer.
+     * @param buffer the buffer containing the telegram between position and limit
+     * @param timestampMillis the time of receipt
+     * @return true, if the telegram was accepted
+     */
+    protected boolean onTelegram(ByteBuffer buffer, long timestampMillis) {
+        if(! receivedTelegram.parse(buffer)) {
+            return false;
+        }
+        long receivedSerial = receivedTelegram.getSerial();
+        if(serial != null) {
+            if(receivedSerial != serial) {
+                return false;
+            }
+        }
+        else if(acceptedSerial == 0) {
+            logger.info("Using SMA energy meter with serial {}", receivedSerial);
+            acceptedSerial = receivedSerial;
+        }
+        else if(receivedSerial != acceptedSerial) {
+            return false;
+        }
+        synchronized (telegram) {
+            telegram.copyFrom(receivedTelegram);
+        }
+        lastUpdateMillis = timestampMillis;
+        telegramCount++;
+        if(logger.isTraceEnabled()) {
+            logger.trace("Telegram received: {}", receivedTelegram);
+        }
+        int gridPower = receivedTelegram.getGridPower();
+        for(GridPowerListener listener : listeners) {
+            try {
+                listener.onGridPowerUpdate(timestampMillis, gridPower);
+            }
+            catch(Exception e) {
+                logger.error("Error notifying grid power listener", e);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a copy of the most recent telegram.
+     * @return
+     */
+    public SpeedwireTelegram getTelegram() {
+        SpeedwireTelegram copy = new SpeedwireTelegram();
+        synchronized (telegram) {
+            copy.copyFrom(telegram);
+        }
+        return copy;
+    }
+
+    @Override
+    public int getGridPower() {
+        synchronized (telegram) {
+            return telegram.getGridPower();
+        }
+    }
+
+    @Override
+    public Integer getPhaseGridPower(int phase) {
+        synchronized (telegram) {
+            return telegram.getPhaseImportPower(phase) - telegram.getPhaseExportPower(phase);
+        }
+    }
+
+    @Override
+    public long getLastUpdateMillis() {
+        return lastUpdateMillis;
+    }
+
+    public long getTelegramCount() {
+        return telegramCount;
+    }
+
+    @Override
+    public synchronized void addGridPowerListener(GridPowerListener listener) {
+        GridPowerListener[] newListeners = Arrays.copyOf(listeners, listeners.length + 1);
+        newListeners[listeners.length] = listener;
+        listeners = newListeners;
+    }
+
+    @Override
+    public synchronized void removeGridPowerListener(GridPowerListener listener) {
+        listeners = Arrays.stream(listeners).filter(l -> l != listener).toArray(GridPowerListener[]::new);
+    }
+
+    @Override
+    public String toString() {
+        return (multicastAddress != null ? multicastAddress : DEFAULT_MULTICAST_ADDRESS)
+                + ":" + (port != null ? port : DEFAULT_PORT)
+                + (serial != null ? " serial=" + serial : "");
+    }
+}
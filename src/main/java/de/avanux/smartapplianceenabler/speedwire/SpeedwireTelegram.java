@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.speedwire;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Values of an SMA Energy Meter telegram received via Speedwire multicast.
+ * <p>
+ * A telegram consists of the Speedwire header followed by OBIS records. Each record starts with
+ * channel, index, type and tariff bytes. Type 4 denotes an actual value (4 bytes), type 8 a counter (8 bytes).
+ * Powers are transmitted in 0.1 W, counters in Ws.
+ * <p>
+ * Instances are meant to be reused: {@link #parse(ByteBuffer)} reads the buffer with absolute gets only
+ * and does not allocate.
+ */
+public class SpeedwireTelegram {
+    public static final int SMA_SIGNATURE = 0x534D4100; // "SMA\0"
+    public static final int TAG_SMA_NET_2 = 0x0010;
+    public static final int PROTOCOL_ENERGY_METER = 0x6069;
+    public static final int PHASES = 3;
+    private static final int OFFSET_DATA_LENGTH = 12;
+    private static final int OFFSET_TAG = 14;
+    private static final int OFFSET_PROTOCOL = 16;
+    private static final int OFFSET_SUSY_ID = 18;
+    private static final int OFFSET_SERIAL = 20;
+    private static final int OFFSET_TICKER = 24;
+    private static final int OFFSET_RECORDS = 28;
+    private static final int CHANNEL_VERSION = 144;
+    private static final int INDEX_IMPORT = 1;
+    private static final int INDEX_EXPORT = 2;
+    private static final int INDEX_PHASE_OFFSET = 20;
+    private static final int TYPE_ACTUAL = 4;
+    private static final int TYPE_COUNTER = 8;
+    private int susyId;
+    private long serial;
+    private long ticker;
+    private int importPower;
+    private int exportPower;
+    private long importEnergy;
+    private long exportEnergy;
+    private final int[] phaseImportPower = new int[PHASES];
+    private final int[] phaseExportPower = new int[PHASES];
+
+    /**
+     * Parse the telegram contained in the buffer between position and limit.
+     * The position of the buffer is not changed.
+     * @param buffer
+     * @return true, if the buffer contained an energy meter telegram; false otherwise
+     */
+    public boolean parse(ByteBuffer buffer) {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        if(limit - start < OFFSET_RECORDS
+                || buffer.getInt(start) != SMA_SIGNATURE
+                || (buffer.getShort(start + OFFSET_TAG) & 0xFFFF) != TAG_SMA_NET_2
+                || (buffer.getShort(start + OFFSET_PROTOCOL) & 0xFFFF) != PROTOCOL_ENERGY_METER) {
+            return false;
+        }
+        int end = Math.min(limit, start + OFFSET_PROTOCOL + (buffer.getShort(start + OFFSET_DATA_LENGTH) & 0xFFFF));
+        clear();
+        susyId = buffer.getShort(start + OFFSET_SUSY_ID) & 0xFFFF;
+        serial = buffer.getInt(start + OFFSET_SERIAL) & 0xFFFFFFFFL;
+        ticker = buffer.getInt(start + OFFSET_TICKER) & 0xFFFFFFFFL;
+
+        int offset = start + OFFSET_RECORDS;
+        while(offset + 4 <= end) {
+            int channel = buffer.get(offset) & 0xFF;
+            int index = buffer.get(offset + 1) & 0xFF;
+            int type = buffer.get(offset + 2) & 0xFF;
+            offset += 4;
+            if(channel == CHANNEL_VERSION) {
+                offset += 4;
+            }
+            else if(type == TYPE_ACTUAL && offset + 4 <= end) {
+                setActual(index, buffer.getInt(offset) & 0xFFFFFFFFL);
+                offset += 4;
+            }
+            else if(type == TYPE_COUNTER && offset + 8 <= end) {
+                setCounter(index, buffer.getLong(offset));
+                offset += 8;
+            }
+            else {
+                // end marker or unknown record type
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void setActual(int index, long value) {
+        int power = (int) (value / 10);
+        if(index == INDEX_IMPORT) {
+            importPower = power;
+        }
+        else if(index == INDEX_EXPORT) {
+            exportPower = power;
+        }
+        else {
+            int phase = index / INDEX_PHASE_OFFSET - 1;
+            int phaseIndex = index % INDEX_PHASE_OFFSET;
+            if(phase >= 0 && phase < PHASES) {
+                if(phaseIndex == INDEX_IMPORT) {
+                    phaseImportPower[phase] = power;
+                }
+                else if(phaseIndex == INDEX_EXPORT) {
+                    phaseExportPower[phase] = power;
+                }
+            }
+        }
+    }
+
+    private void setCounter(int index, long value) {
+        if(index == INDEX_IMPORT) {
+            importEnergy = value;
+        }
+        else if(index == INDEX_EXPORT) {
+            exportEnergy = value;
+        }
+    }
+
+    public void clear() {
+        susyId = 0;
+        serial = 0;
+        ticker = 0;
+        importPower = 0;
+        exportPower = 0;
+        importEnergy = 0;
+        exportEnergy = 0;
+        for(int i=0; i<PHASES; i++) {
+            phaseImportPower[i] = 0;
+            phaseExportPower[i] = 0;
+        }
+    }
+
+    public void copyFrom(SpeedwireTelegram other) {
+        susyId = other.susyId;
+        serial = other.serial;
+        ticker = other.ticker;
+        importPower = other.importPower;
+        exportPower = other.exportPower;
+        importEnergy = other.importEnergy;
+        exportEnergy = other.exportEnergy;
+        System.arraycopy(other.phaseImportPower, 0, phaseImportPower, 0, PHASES);
+        System.arraycopy(other.phaseExportPower, 0, phaseExportPower, 0, PHASES);
+    }
+
+    public int getSusyId() {
+        return susyId;
+    }
+
+    public long getSerial() {
+        return serial;
+    }
+
+    /**
+     * Returns the meter's millisecond ticker which wraps around after 2^32 ms.
+     * @return
+     */
+    public long getTicker() {
+        return ticker;
+    }
+
+    /**
+     * Returns the power drawn from the grid in W.
+     * @return
+     */
+    public int getImportPower() {
+        return importPower;
+    }
+
+    /**
+     * Returns the power fed into the grid in W.
+     * @return
+     */
+    public int getExportPower() {
+        return exportPower;
+    }
+
+    /**
+     * Returns the grid power in W which is positive for import and negative for export.
+     * @return
+     */
+    public int getGridPower() {
+        return importPower - exportPower;
+    }
+
+    /**
+     * Returns the energy drawn from the grid in Ws.
+     * @return
+     */
+    public long getImportEnergy() {
+        return importEnergy;
+    }
+
+    /**
+     * Returns the energy fed into the grid in Ws.
+     * @return
+     */
+    public long getExportEnergy() {
+        return exportEnergy;
+    }
+
+    /**
+     * @param phase 1 .. 3
+     * @return
+     */
+    public int getPhaseImportPower(int phase) {
+        return phaseImportPower[phase - 1];
+    }
+
+    /**
+     * @param phase 1 .. 3
+     * @return
+     */
+    public int getPhaseExportPower(int phase) {
+        return phaseExportPower[phase - 1];
+    }
+
+    @Override
+    public String toString() {
+        return "serial=" + serial
+                + " import=" + importPower + "W"
+                + " export=" + exportPower + "W"
+                + " L1=" + (phaseImportPower[0] - phaseExportPower[0]) + "W"
+                + " L2=" + (phaseImportPower[1] - phaseExportPower[1]) + "W"
+                + " L3=" + (phaseImportPower[2] - phaseExportPower[2]) + "W";
+    }
+}
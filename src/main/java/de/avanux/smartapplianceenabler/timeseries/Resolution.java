@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * Resolution of time series data. Except for {@link #RAW} values are aggregated into buckets
+ * aligned to the local time zone, e.g. days start at local midnight.
+ */
+public enum Resolution {
+    RAW(0, 0),
+    MINUTE(60_000L, 1440),
+    QUARTER_HOUR(900_000L, 672),
+    HOUR(3_600_000L, 1488),
+    DAY(86_400_000L, 732);
+
+    private static final ZoneRules zoneRules = ZoneId.systemDefault().getRules();
+    private long bucketMillis;
+    private int capacity;
+
+    Resolution(long bucketMillis, int capacity) {
+        this.bucketMillis = bucketMillis;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Returns the length of a bucket in milliseconds; 0 for {@link #RAW}.
+     * @return
+     */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /**
+     * Returns the number of buckets retained.
+     * @return
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the start of the bucket containing the timestamp given.
+     * @param timestampMillis
+     * @return
+     */
+    public long getBucketStart(long timestampMillis) {
+        if(bucketMillis == 0) {
+            return timestampMillis;
+        }
+        long offsetMillis = zoneRules.getOffset(Instant.ofEpochMilli(timestampMillis)).getTotalSeconds() * 1000L;
+        return Math.floorDiv(timestampMillis + offsetMillis, bucketMillis) * bucketMillis - offsetMillis;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+import java.util.List;
+
+/**
+ * Aggregates of values per bucket of a {@link Resolution} kept in primitive ring buffers (one array per column).
+ * Once the capacity is reached, the oldest bucket is overwritten. The bucket currently being filled is kept
+ * separately and included in queries.
+ * <p>
+ * The rollup is not thread-safe; callers have to synchronize access.
+ */
+public class Rollup {
+    private Resolution resolution;
+    private long[] starts;
+    private int[] counts;
+    private double[] sums;
+    private double[] mins;
+    private double[] maxs;
+    private double[] energies;
+    private int head;
+    private int size;
+    private long openStart;
+    private int openCount;
+    private double openSum;
+    private double openMin;
+    private double openMax;
+    private double openEnergy;
+
+    public Rollup(Resolution resolution) {
+        this(resolution, resolution.getCapacity());
+    }
+
+    public Rollup(Resolution resolution, int capacity) {
+        this.resolution = resolution;
+        this.starts = new long[capacity];
+        this.counts = new int[capacity];
+        this.sums = new double[capacity];
+        this.mins = new double[capacity];
+        this.maxs = new double[capacity];
+        this.energies = new double[capacity];
+    }
+
+    public Resolution getResolution() {
+        return resolution;
+    }
+
+    /**
+     * Returns the number of buckets including the bucket currently being filled.
+     * @return
+     */
+    public int size() {
+        return size + (openCount > 0 ? 1 : 0);
+    }
+
+    /**
+     * Returns the start of the oldest bucket retained.
+     * @return epoch millis or null, if no values have been added
+     */
+    public Long getOldestTimestamp() {
+        if(size > 0) {
+            return starts[head];
+        }
+        return openCount > 0 ? openStart : null;
+    }
+
+    /**
+     * Add a value. Values are expected in ascending order of their timestamps.
+     * @param timestampMillis
+     * @param value
+     * @param energy energy since the previous value in Wh
+     */
+    public void add(long timestampMillis, double value, double energy) {
+        long start = resolution.getBucketStart(timestampMillis);
+        if(openCount > 0 && start > openStart) {
+            close();
+        }
+        if(openCount == 0) {
+            openStart = start;
+            openMin = value;
+            openMax = value;
+        }
+        openCount++;
+        openSum += value;
+        openMin = Math.min(openMin, value);
+        openMax = Math.max(openMax, value);
+        openEnergy += energy;
+    }
+
+    private void close() {
+        int index;
+        if(size == starts.length) {
+            index = head;
+            head = (head + 1) % starts.length;
+        }
+        else {
+            index = (head + size) % starts.length;
+            size++;
+        }
+        starts[index] = openStart;
+        counts[index] = openCount;
+        sums[index] = openSum;
+        mins[index] = openMin;
+        maxs[index] = openMax;
+        energies[index] = openEnergy;
+        openCount = 0;
+        openSum = 0.0;
+        openEnergy = 0.0;
+    }
+
+    /**
+     * Add the buckets starting within the given interval to the result.
+     * @param fromMillis inclusive
+     * @param toMillis exclusive
+     * @param result
+     */
+    public void query(long fromMillis, long toMillis, List<TimeSeriesPoint> result) {
+        long fromStart = resolution.getBucketStart(fromMillis);
+        for(int i=0; i<size; i++) {
+            int index = (head + i) % starts.length;
+            if(starts[index] >= fromStart && starts[index] < toMillis) {
+                result.add(new TimeSeriesPoint(starts[index], counts[index], sums[index] / counts[index],
+                        mins[index], maxs[index], energies[index]));
+            }
+        }
+        if(openCount > 0 && openStart >= fromStart && openStart < toMillis) {
+            result.add(new TimeSeriesPoint(openStart, openCount, openSum / openCount, openMin, openMax, openEnergy));
+        }
+    }
+
+    public int getSizeInBytes() {
+        return starts.length * (Long.BYTES + Integer.BYTES + 4 * Double.BYTES);
+    }
+}
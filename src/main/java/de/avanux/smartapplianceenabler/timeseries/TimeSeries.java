@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Power values of an appliance as compressed raw chunks and rollups for each {@link Resolution}.
+ * Memory is bounded: the oldest raw chunk is discarded once the maximum number of chunks is exceeded
+ * and rollups have a fixed capacity.
+ * <p>
+ * Energy is derived from the power values assuming each value is the average power since the previous value.
+ * Gaps longer than {@link #MAX_GAP_MILLIS} (e.g. while the meter was unreachable) are not counted.
+ */
+public class TimeSeries {
+    public static final int POINTS_PER_CHUNK = 256;
+    public static final int DEFAULT_MAX_CHUNKS = 48;
+    public static final long MAX_GAP_MILLIS = 300_000;
+    private int maxChunks;
+    private Deque<TimeSeriesChunk> chunks = new ArrayDeque<>();
+    private TimeSeriesChunk activeChunk;
+    private List<Rollup> rollups = new ArrayList<>();
+    private long lastTimestamp = Long.MIN_VALUE;
+
+    public TimeSeries() {
+        this(DEFAULT_MAX_CHUNKS);
+    }
+
+    public TimeSeries(int maxChunks) {
+        this.maxChunks = Math.max(maxChunks, 1);
+        for(Resolution resolution : Resolution.values()) {
+            if(resolution != Resolution.RAW) {
+                rollups.add(new Rollup(resolution));
+            }
+        }
+    }
+
+    /**
+     * Add a power value. Timestamps are expected in ascending order; an earlier timestamp is treated as if
+     * it was equal to the most recent one.
+     * @param timestampMillis
+     * @param power in watt
+     */
+    public synchronized void add(long timestampMillis, double power) {
+        double energy = 0.0;
+        if(lastTimestamp != Long.MIN_VALUE) {
+            timestampMillis = Math.max(timestampMillis, lastTimestamp);
+            energy = power * Math.min(timestampMillis - lastTimestamp, MAX_GAP_MILLIS) / 3_600_000.0;
+        }
+        lastTimestamp = timestampMillis;
+
+        if(activeChunk == null || activeChunk.isFull()) {
+            if(activeChunk != null) {
+                activeChunk.seal();
+            }
+            activeChunk = new TimeSeriesChunk(POINTS_PER_CHUNK);
+            chunks.addLast(activeChunk);
+            if(chunks.size() > maxChunks) {
+                chunks.removeFirst();
+            }
+        }
+        activeChunk.append(timestampMillis, power);
+
+        for(Rollup rollup : rollups) {
+            rollup.add(timestampMillis, power, energy);
+        }
+    }
+
+    /**
+     * Returns the values within the given interval.
+     * @param fromMillis inclusive
+     * @param toMillis exclusive
+     * @param resolution
+     * @return
+     */
+    public synchronized List<TimeSeriesPoint> query(long fromMillis, long toMillis, Resolution resolution) {
+        List<TimeSeriesPoint> result = new ArrayList<>();
+        if(resolution == Resolution.RAW) {
+            for(TimeSeriesChunk chunk : chunks) {
+                if(chunk.getLastTimestamp() >= fromMillis && chunk.getFirstTimestamp() < toMillis) {
+                    chunk.forEach((timestamp, value) -> {
+                        if(timestamp >= fromMillis && timestamp < toMillis) {
+                            result.add(new TimeSeriesPoint(timestamp, 1, value, value, value, 0.0));
+                        }
+                    });
+                }
+            }
+        }
+        else {
+            getRollup(resolution).query(fromMillis, toMillis, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the finest resolution providing values for the whole interval with at most maxPoints values.
+     * If no resolution covers the whole interval, the coarsest resolution is returned.
+     * @param fromMillis
+     * @param toMillis
+     * @param maxPoints
+     * @return
+     */
+    public synchronized Resolution selectResolution(long fromMillis, long toMillis, int maxPoints) {
+        for(Rollup rollup : rollups) {
+            Long oldestTimestamp = rollup.getOldestTimestamp();
+            boolean covered = oldestTimestamp == null
+                    || oldestTimestamp <= rollup.getResolution().getBucketStart(fromMillis)
+                    || rollup.size() < rollup.getResolution().getCapacity();
+            long points = (toMillis - fromMillis) / rollup.getResolution().getBucketMillis();
+            if(covered && points <= maxPoints) {
+                return rollup.getResolution();
+            }
+        }
+        return rollups.get(rollups.size() - 1).getResolution();
+    }
+
+    private Rollup getRollup(Resolution resolution) {
+        for(Rollup rollup : rollups) {
+            if(rollup.getResolution() == resolution) {
+                return rollup;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported resolution " + resolution);
+    }
+
+    /**
+     * Returns the number of raw values retained.
+     * @return
+     */
+    public synchronized int getRawSize() {
+        return chunks.stream().mapToInt(TimeSeriesChunk::size).sum();
+    }
+
+    public synchronized long getSizeInBytes() {
+        return chunks.stream().mapToLong(TimeSeriesChunk::getSizeInBytes).sum()
+                + rollups.stream().mapToLong(Rollup::getSizeInBytes).sum();
+    }
+}
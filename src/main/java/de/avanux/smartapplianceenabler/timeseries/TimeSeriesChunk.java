@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+import java.util.Arrays;
+
+/**
+ * A compressed chunk of (timestamp, value) pairs stored in a bit stream backed by a long array.
+ * <p>
+ * Timestamps are encoded as delta-of-delta, values as XOR with the previous value (as known from Facebook's
+ * Gorilla time series database). Regularly polled values with a constant or slowly changing power require
+ * a few bits per value instead of 16 bytes. Values are appended in ascending order of their timestamps.
+ * <p>
+ * The chunk is not thread-safe; callers have to synchronize access.
+ */
+public class TimeSeriesChunk {
+    private int maxSize;
+    private long[] words;
+    private int bitPosition;
+    private int size;
+    private long firstTimestamp;
+    private long lastTimestamp;
+    private long lastDelta;
+    private long lastValueBits;
+    private int lastLeadingZeros = -1;
+    private int lastTrailingZeros;
+
+    public interface PointConsumer {
+        void accept(long timestamp, double value);
+    }
+
+    public TimeSeriesChunk(int maxSize) {
+        this.maxSize = maxSize;
+        this.words = new long[Math.max(maxSize / 4, 4)];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size >= maxSize;
+    }
+
+    public long getFirstTimestamp() {
+        return firstTimestamp;
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public int getSizeInBytes() {
+        return words.length * Long.BYTES;
+    }
+
+    public void append(long timestamp, double value) {
+        long valueBits = Double.doubleToRawLongBits(value);
+        if(size == 0) {
+            firstTimestamp = timestamp;
+            writeBits(timestamp, 64);
+            writeBits(valueBits, 64);
+        }
+        else {
+            long delta = timestamp - lastTimestamp;
+            writeTimestamp(delta - lastDelta);
+            lastDelta = delta;
+            writeValue(valueBits);
+        }
+        lastTimestamp = timestamp;
+        lastValueBits = valueBits;
+        size++;
+    }
+
+    /**
+     * Release unused capacity once no more values will be appended.
+     */
+    public void seal() {
+        words = Arrays.copyOf(words, Math.max((bitPosition + 63) >>> 6, 1));
+    }
+
+    /**
+     * Decodes all values in the order they have been appended.
+     * @param consumer
+     */
+    public void forEach(PointConsumer consumer) {
+        Reader reader = new Reader();
+        long timestamp = 0;
+        long delta = 0;
+        long valueBits = 0;
+        int leadingZeros = 0;
+        int trailingZeros = 0;
+        for(int i=0; i<size; i++) {
+            if(i == 0) {
+                timestamp = reader.readBits(64);
+                valueBits = reader.readBits(64);
+            }
+            else {
+                delta += reader.readTimestamp();
+                timestamp += delta;
+                if(reader.readBit()) {
+                    if(reader.readBit()) {
+                        leadingZeros = (int) reader.readBits(5);
+                        int significantBits = (int) reader.readBits(6) + 1;
+                        trailingZeros = 64 - leadingZeros - significantBits;
+                    }
+                    valueBits ^= reader.readBits(64 - leadingZeros - trailingZeros) << trailingZeros;
+                }
+            }
+            consumer.accept(timestamp, Double.longBitsToDouble(valueBits));
+        }
+    }
+
+    private void writeTimestamp(long deltaOfDelta) {
+        if(deltaOfDelta == 0) {
+            writeBits(0b0, 1);
+        }
+        else if(deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+            writeBits(0b10, 2);
+            writeBits(deltaOfDelta, 7);
+        }
+        else if(deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+            writeBits(0b110, 3);
+            writeBits(deltaOfDelta, 9);
+        }
+        else if(deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+            writeBits(0b1110, 4);
+            writeBits(deltaOfDelta, 12);
+        }
+        else if(deltaOfDelta >= Integer.MIN_VALUE && deltaOfDelta <= Integer.MAX_VALUE) {
+            writeBits(0b11110, 5);
+            writeBits(deltaOfDelta, 32);
+        }
+        else {
+            writeBits(0b11111, 5);
+            writeBits(deltaOfDelta, 64);
+        }
+    }
+
+    private void writeValue(long valueBits) {
+        long xor = valueBits ^ lastValueBits;
+        if(xor == 0) {
+            writeBits(0b0, 1);
+            return;
+        }
+        writeBits(0b1, 1);
+        int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), 31);
+        int trailingZeros = Long.numberOfTrailingZeros(xor);
+        if(lastLeadingZeros >= 0 && leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+            // meaningful bits fit into the window of the previous value
+            writeBits(0b0, 1);
+            writeBits(xor >>> lastTrailingZeros, 64 - lastLeadingZeros - lastTrailingZeros);
+        }
+        else {
+            int significantBits = 64 - leadingZeros - trailingZeros;
+            writeBits(0b1, 1);
+            writeBits(leadingZeros, 5);
+            writeBits(significantBits - 1, 6);
+            writeBits(xor >>> trailingZeros, significantBits);
+            lastLeadingZeros = leadingZeros;
+            lastTrailingZeros = trailingZeros;
+        }
+    }
+
+    private void writeBits(long value, int bits) {
+        int requiredWords = (bitPosition + bits + 63) >>> 6;
+        if(requiredWords > words.length) {
+            words = Arrays.copyOf(words, Math.max(words.length * 2, requiredWords));
+        }
+        while(bits > 0) {
+            int bitOffset = bitPosition & 63;
+            int free = 64 - bitOffset;
+            int n = Math.min(free, bits);
+            long chunk = (value >>> (bits - n)) & mask(n);
+            words[bitPosition >>> 6] |= chunk << (free - n);
+            bitPosition += n;
+            bits -= n;
+        }
+    }
+
+    private static long mask(int bits) {
+        return bits == 64 ? -1L : (1L << bits) - 1;
+    }
+
+    private class Reader {
+        private int position;
+
+        boolean readBit() {
+            return readBits(1) == 1;
+        }
+
+        long readBits(int bits) {
+            long result = 0;
+            while(bits > 0) {
+                int bitOffset = position & 63;
+                int available = 64 - bitOffset;
+                int n = Math.min(available, bits);
+                long chunk = (words[position >>> 6] >>> (available - n)) & mask(n);
+                result = n == 64 ? chunk : (result << n) | chunk;
+                position += n;
+                bits -= n;
+            }
+            return result;
+        }
+
+        long readSigned(int bits) {
+            return (readBits(bits) << (64 - bits)) >> (64 - bits);
+        }
+
+        long readTimestamp() {
+            if(! readBit()) {
+                return 0;
+            }
+            if(! readBit()) {
+                return readSigned(7);
+            }
+            if(! readBit()) {
+                return readSigned(9);
+            }
+            if(! readBit()) {
+                return readSigned(12);
+            }
+            return readBit() ? readBits(64) : readSigned(32);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+/**
+ * A value of a time series: either a raw value or the aggregate of all values of a bucket.
+ */
+public class TimeSeriesPoint {
+    private long timestamp;
+    private int count;
+    private double average;
+    private double min;
+    private double max;
+    private double energy;
+
+    public TimeSeriesPoint(long timestamp, int count, double average, double min, double max, double energy) {
+        this.timestamp = timestamp;
+        this.count = count;
+        this.average = average;
+        this.min = min;
+        this.max = max;
+        this.energy = energy;
+    }
+
+    /**
+     * Returns the timestamp of a raw value or the start of the bucket.
+     * @return epoch millis
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Returns the number of raw values aggregated.
+     * @return
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the average power in watt.
+     * @return
+     */
+    public double getAverage() {
+        return average;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the energy consumed in Wh. Raw values do not contain energy.
+     * @return
+     */
+    public double getEnergy() {
+        return energy;
+    }
+
+    @Override
+    public String toString() {
+        return "TimeSeriesPoint{" +
+                "timestamp=" + timestamp +
+                ", count=" + count +
+                ", average=" + average +
+                ", min=" + min +
+                ", max=" + max +
+                ", energy=" + energy +
+                '}';
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+import de.avanux.smartapplianceenabler.persistence.SegmentLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the power history of each appliance in memory. Values are recorded whenever the meter of an appliance
+ * updates its average power. If the {@link SegmentLog} is enabled, values are added to it as samples and
+ * restored after a restart as far as they are retained by the log.
+ */
+public class TimeSeriesStore {
+    public static final int DEFAULT_MAX_POINTS = 500;
+    private static TimeSeriesStore instance = new TimeSeriesStore();
+    private Logger logger = LoggerFactory.getLogger(TimeSeriesStore.class);
+    private Map<String, TimeSeries> applianceIdWithTimeSeries = new ConcurrentHashMap<>();
+
+    public static TimeSeriesStore getInstance() {
+        return instance;
+    }
+
+    public void add(String applianceId, long timestampMillis, double power) {
+        SegmentLog segmentLog = SegmentLog.getInstance();
+        if(segmentLog != null) {
+            segmentLog.addSample(applianceId, timestampMillis, power);
+        }
+        addToTimeSeries(applianceId, timestampMillis, power);
+    }
+
+    /**
+     * Restore the history from the samples of the log.
+     * @param segmentLog
+     * @throws IOException
+     */
+    public void restore(SegmentLog segmentLog) throws IOException {
+        int[] count = new int[1];
+        segmentLog.replaySamples((applianceId, timestampMillis, power) -> {
+            addToTimeSeries(applianceId, timestampMillis, power);
+            count[0]++;
+        });
+        logger.debug("Restored {} values of {} appliance(s)", count[0], applianceIdWithTimeSeries.size());
+    }
+
+    private void addToTimeSeries(String applianceId, long timestampMillis, double power) {
+        TimeSeries timeSeries = applianceIdWithTimeSeries.computeIfAbsent(applianceId, id -> {
+            logger.debug("{}: Creating time series", id);
+            return new TimeSeries();
+        });
+        timeSeries.add(timestampMillis, power);
+    }
+
+    /**
+     * Returns the power history of an appliance.
+     * @param applianceId
+     * @param fromMillis inclusive
+     * @param toMillis exclusive
+     * @param resolution the resolution or null, if the resolution should be selected for at most
+     *                   {@link #DEFAULT_MAX_POINTS} values
+     * @return the values or null, if no history exists for the appliance
+     */
+    public List<TimeSeriesPoint> query(String applianceId, long fromMillis, long toMillis, Resolution resolution) {
+        TimeSeries timeSeries = applianceIdWithTimeSeries.get(applianceId);
+        if(timeSeries == null) {
+            return null;
+        }
+        if(resolution == null) {
+            resolution = timeSeries.selectResolution(fromMillis, toMillis, DEFAULT_MAX_POINTS);
+        }
+        return timeSeries.query(fromMillis, toMillis, resolution);
+    }
+
+    public void remove(String applianceId) {
+        applianceIdWithTimeSeries.remove(applianceId);
+    }
+
+    public void clear() {
+        applianceIdWithTimeSeries.clear();
+    }
+
+    public long getSizeInBytes() {
+        return applianceIdWithTimeSeries.values().stream().mapToLong(TimeSeries::getSizeInBytes).sum();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Circuit breaker for a device endpoint. After a number of consecutive failures the circuit is opened and requests
+ * fail fast without blocking the caller on connect/socket timeouts. Once the open interval has elapsed a single probe
+ * request is permitted (half-open). If the probe succeeds the circuit is closed again, otherwise it is re-opened with
+ * an exponentially increased open interval.
+ */
+public class CircuitBreaker {
+    private transient Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+    public static final int DEFAULT_INITIAL_OPEN_SECONDS = 10;
+    public static final int DEFAULT_MAX_OPEN_SECONDS = 300;
+    private String endpoint;
+    private int failureThreshold = DEFAULT_FAILURE_THRESHOLD;
+    private long initialOpenMillis = DEFAULT_INITIAL_OPEN_SECONDS * 1000L;
+    private long maxOpenMillis = DEFAULT_MAX_OPEN_SECONDS * 1000L;
+    private CircuitBreakerState state = CircuitBreakerState.CLOSED;
+    private int consecutiveFailures;
+    private long openMillis;
+    private long openedTimestamp;
+    private long unreachableSinceTimestamp;
+    private boolean probeInProgress;
+
+    public CircuitBreaker(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public void setInitialOpenSeconds(int initialOpenSeconds) {
+        this.initialOpenMillis = initialOpenSeconds * 1000L;
+    }
+
+    public void setMaxOpenSeconds(int maxOpenSeconds) {
+        this.maxOpenMillis = maxOpenSeconds * 1000L;
+    }
+
+    public synchronized CircuitBreakerState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the timestamp since which the endpoint is considered unreachable.
+     * @return epoch millis; null if the circuit is closed
+     */
+    public synchronized Long getUnreachableSinceTimestamp() {
+        return state != CircuitBreakerState.CLOSED ? unreachableSinceTimestamp : null;
+    }
+
+    public boolean allowRequest() {
+        return allowRequest(System.currentTimeMillis());
+    }
+
+    /**
+     * Returns true, if a request to the endpoint may be executed. If the circuit is open and the open interval
+     * has elapsed, the circuit becomes half-open and exactly one probe request is permitted.
+     * @param timestampNow
+     * @return
+     */
+    public synchronized boolean allowRequest(long timestampNow) {
+        if(state == CircuitBreakerState.CLOSED) {
+            return true;
+        }
+        if(state == CircuitBreakerState.OPEN && timestampNow - openedTimestamp >= openMillis) {
+            state = CircuitBreakerState.HALF_OPEN;
+            probeInProgress = false;
+            logger.debug("{}: Circuit half-open after {}ms", endpoint, openMillis);
+        }
+        if(state == CircuitBreakerState.HALF_OPEN && !probeInProgress) {
+            probeInProgress = true;
+            return true;
+        }
+        return false;
+    }
+
+    public synchronized void recordSuccess() {
+        if(state != CircuitBreakerState.CLOSED) {
+            logger.info("{}: Circuit closed - endpoint reachable again", endpoint);
+        }
+        state = CircuitBreakerState.CLOSED;
+        consecutiveFailures = 0;
+        openMillis = 0;
+        probeInProgress = false;
+    }
+
+    /**
+     * Release the probe permitted in half-open state without recording an outcome, e.g. because the request
+     * could not be sent at all. The next request will be permitted as probe instead.
+     */
+    public synchronized void releaseProbe() {
+        probeInProgress = false;
+    }
+
+    public boolean recordFailure() {
+        return recordFailure(System.currentTimeMillis());
+    }
+
+    /**
+     * Record a failed request.
+     * @param timestampNow
+     * @return true, if the circuit has been opened by this failure coming from the closed state
+     */
+    public synchronized boolean recordFailure(long timestampNow) {
+        consecutiveFailures++;
+        if(state == CircuitBreakerState.HALF_OPEN) {
+            open(timestampNow, Math.min(openMillis * 2, maxOpenMillis));
+        }
+        else if(state == CircuitBreakerState.CLOSED && consecutiveFailures >= failureThreshold) {
+            unreachableSinceTimestamp = timestampNow;
+            open(timestampNow, initialOpenMillis);
+            return true;
+        }
+        return false;
+    }
+
+    private void open(long timestampNow, long openMillis) {
+        this.state = CircuitBreakerState.OPEN;
+        this.openedTimestamp = timestampNow;
+        this.openMillis = openMillis;
+        this.probeInProgress = false;
+        logger.warn("{}: Circuit opened after {} consecutive failures - next probe in {}s",
+                endpoint, consecutiveFailures, openMillis / 1000);
+    }
+
+    @Override
+    public String toString() {
+        return endpoint + "[" + state + "]";
+    }
+}
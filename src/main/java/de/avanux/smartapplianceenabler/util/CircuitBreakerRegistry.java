@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import java.util.*;
+
+/**
+ * Provides one {@link CircuitBreaker} per device endpoint, shared by all appliances accessing that endpoint,
+ * and keeps track of the endpoints used by each appliance in order to report its device health.
+ */
+public class CircuitBreakerRegistry {
+    private static CircuitBreakerRegistry instance = new CircuitBreakerRegistry();
+    private Map<String, CircuitBreaker> endpointWithCircuitBreaker = new HashMap<>();
+    private Map<String, Set<String>> applianceIdWithEndpoints = new HashMap<>();
+
+    public static CircuitBreakerRegistry getInstance() {
+        return instance;
+    }
+
+    public synchronized CircuitBreaker getCircuitBreaker(String applianceId, String endpoint) {
+        CircuitBreaker circuitBreaker = endpointWithCircuitBreaker.computeIfAbsent(endpoint, CircuitBreaker::new);
+        if(applianceId != null) {
+            applianceIdWithEndpoints.computeIfAbsent(applianceId, id -> new HashSet<>()).add(endpoint);
+        }
+        return circuitBreaker;
+    }
+
+    public synchronized List<CircuitBreaker> getCircuitBreakers(String applianceId) {
+        List<CircuitBreaker> circuitBreakers = new ArrayList<>();
+        Set<String> endpoints = applianceIdWithEndpoints.get(applianceId);
+        if(endpoints != null) {
+            endpoints.forEach(endpoint -> circuitBreakers.add(endpointWithCircuitBreaker.get(endpoint)));
+        }
+        return circuitBreakers;
+    }
+
+    /**
+     * Returns whether all endpoints used by the appliance are reachable.
+     * @param applianceId
+     * @return null if the appliance has not accessed any endpoint yet
+     */
+    public Boolean isReachable(String applianceId) {
+        List<CircuitBreaker> circuitBreakers = getCircuitBreakers(applianceId);
+        if(circuitBreakers.isEmpty()) {
+            return null;
+        }
+        return circuitBreakers.stream().allMatch(circuitBreaker -> circuitBreaker.getState() == CircuitBreakerState.CLOSED);
+    }
+
+    /**
+     * Returns the earliest timestamp since which any endpoint used by the appliance is unreachable.
+     * @param applianceId
+     * @return epoch millis; null if all endpoints are reachable
+     */
+    public Long getUnreachableSinceTimestamp(String applianceId) {
+        return getCircuitBreakers(applianceId).stream()
+                .map(CircuitBreaker::getUnreachableSinceTimestamp)
+                .filter(Objects::nonNull)
+                .min(Long::compare)
+                .orElse(null);
+    }
+
+    public synchronized void clear() {
+        endpointWithCircuitBreaker.clear();
+        applianceIdWithEndpoints.clear();
+    }
+}
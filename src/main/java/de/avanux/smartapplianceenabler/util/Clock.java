@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import java.time.LocalDateTime;
+
+/**
+ * Source of the current time for scheduling and control. By default the system clock is used;
+ * a simulation may replace it by a virtual clock.
+ */
+public final class Clock {
+    private static final DateTimeProvider SYSTEM = new DateTimeProviderImpl();
+    private static volatile DateTimeProvider dateTimeProvider = SYSTEM;
+
+    private Clock() {
+    }
+
+    public static LocalDateTime now() {
+        return dateTimeProvider.now();
+    }
+
+    public static long currentTimeMillis() {
+        return dateTimeProvider.currentTimeMillis();
+    }
+
+    public static DateTimeProvider getDateTimeProvider() {
+        return dateTimeProvider;
+    }
+
+    public static void setDateTimeProvider(DateTimeProvider dateTimeProvider) {
+        Clock.dateTimeProvider = dateTimeProvider != null ? dateTimeProvider : SYSTEM;
+    }
+
+    /**
+     * Returns to the system clock.
+     */
+    public static void reset() {
+        Clock.dateTimeProvider = SYSTEM;
+    }
+}
@@ -19,9 +19,13 @@
 package de.avanux.smartapplianceenabler.util;
 
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 
 public interface DateTimeProvider {
 
     LocalDateTime now();
 
+    default long currentTimeMillis() {
+        return now().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
 }
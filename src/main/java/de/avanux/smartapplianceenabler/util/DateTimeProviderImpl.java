@@ -26,4 +26,9 @@ public class DateTimeProviderImpl implements DateTimeProvider {
         return LocalDateTime.now();
     }
 
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
 }
@@ -35,6 +35,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 
 public class FileHandler {
@@ -184,6 +185,43 @@ public class FileHandler {
         }
     }
 
+    /**
+     * Returns the directory containing the segments of the log used to persist counters and history.
+     * @return
+     */
+    public File getSegmentLogDirectory() {
+        return new File(getHomeDir(), "log");
+    }
+
+    /**
+     * Returns the file containing the checkpoint of the runtime state of the appliances.
+     * @return
+     */
+    public File getRuntimeCheckpointFile() {
+        return new File(getHomeDir(), "RuntimeCheckpoint.bin");
+    }
+
+    /**
+     * Returns a checksum of the files containing the given root elements. Missing files are ignored.
+     * @param rootElementTypes
+     * @return
+     */
+    public long getChecksum(Class<?>... rootElementTypes) {
+        CRC32 crc = new CRC32();
+        for(Class<?> rootElementType : rootElementTypes) {
+            File file = getFile(rootElementType);
+            if(file.exists()) {
+                try {
+                    crc.update(Files.readAllBytes(file.toPath()));
+                }
+                catch(IOException e) {
+                    logger.error("Error reading file " + file, e);
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
     private String getEVChargerTemplatesFilePath() {
         return new File(getHomeDir(), "evcharger-templates.json").getAbsolutePath();
     }
@@ -22,21 +22,33 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.TimerTask;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * The GuardedTimerTask maintains parameters passed to the Timer as well as details to identify itself.
  * It also ensures, the errors during execution will be logged appropriately. Cancellation is logged as well.
+ * If an executor is given, the timer thread only hands the task over to the executor. An execution is skipped
+ * if the previous one has not been started by the executor yet.
  */
 abstract public class GuardedTimerTask extends TimerTask {
     private transient Logger logger = LoggerFactory.getLogger(GuardedTimerTask.class);
     private String applianceId;
     private String taskName;
     private long period;
+    private Executor executor;
+    private AtomicBoolean executionPending = new AtomicBoolean();
+    private volatile boolean cancelled;
 
     public GuardedTimerTask(String applianceId, String taskName, long period) {
+        this(applianceId, taskName, period, null);
+    }
+
+    public GuardedTimerTask(String applianceId, String taskName, long period, Executor executor) {
         this.applianceId = applianceId;
         this.taskName = taskName;
         this.period = period;
+        this.executor = executor;
         logger.trace("{}: Created timer task name={} period={}ms id={}", this.applianceId != null ? this.applianceId : "",
                 taskName, period, this.hashCode());
     }
@@ -51,6 +63,26 @@ abstract public class GuardedTimerTask extends TimerTask {
 
     @Override
     public void run() {
+        if(executor != null) {
+            if(executionPending.compareAndSet(false, true)) {
+                executor.execute(() -> {
+                    executionPending.set(false);
+                    if(! cancelled) {
+                        runGuarded();
+                    }
+                });
+            }
+            else {
+                logger.debug("{}: Skipping timer task since previous execution is still pending name={} id={}",
+                        this.applianceId != null ? this.applianceId : "", this.taskName, this.hashCode());
+            }
+        }
+        else {
+            runGuarded();
+        }
+    }
+
+    private void runGuarded() {
         logger.trace("{}: Executing timer task name={} id={}", this.applianceId != null ? this.applianceId : "",
                 this.taskName, this.hashCode());
         try  {
@@ -65,9 +97,14 @@ abstract public class GuardedTimerTask extends TimerTask {
     public boolean cancel() {
         logger.trace("{}: Cancel timer task name={} id={}", this.applianceId != null ? this.applianceId : "",
                 taskName, this.hashCode());
+        cancelled = true;
         return super.cancel();
     }
 
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
     /**
      * Override this method instead of #run().
      */
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongConsumer;
+
+/**
+ * Bounded lock-free ring buffer of primitive long values with a single consumer.
+ * Offering a value neither locks nor allocates memory. Producers claim slots by compare-and-set so that values may be
+ * offered from several threads; each slot carries a sequence number which publishes the value to the consumer.
+ */
+public class LongRingBuffer {
+    private final long[] values;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    // only accessed by the consumer
+    private long head;
+    private volatile long consumed;
+
+    /**
+     * @param capacity rounded up to the next power of two
+     */
+    public LongRingBuffer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        this.values = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        for(int i=0; i<size; i++) {
+            this.sequences.set(i, i);
+        }
+        this.mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Adds a value unless the buffer is full.
+     * @param value
+     * @return false, if the value was not added since the buffer is full
+     */
+    public boolean offer(long value) {
+        while(true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if(difference == 0) {
+                if(tail.compareAndSet(position, position + 1)) {
+                    values[index] = value;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            }
+            else if(difference < 0) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Passes up to limit values to the consumer in the order they have been offered. Must only be called by the
+     * consumer thread.
+     * @param consumer
+     * @param limit
+     * @return the number of values passed to the consumer
+     */
+    public int drain(LongConsumer consumer, int limit) {
+        int count = 0;
+        while(count < limit) {
+            long position = head;
+            int index = (int) (position & mask);
+            if(sequences.get(index) != position + 1) {
+                break;
+            }
+            long value = values[index];
+            sequences.lazySet(index, position + values.length);
+            head = position + 1;
+            count++;
+            consumer.accept(value);
+        }
+        if(count > 0) {
+            consumed = head;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of values offered but not drained yet.
+     * @return
+     */
+    public int size() {
+        return (int) Math.max(0, tail.get() - consumed);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+}
@@ -18,14 +18,14 @@
 
 package de.avanux.smartapplianceenabler.util;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class RegexUtil {
 
-    private static Map<String, Pattern> patterns = new HashMap<>();
+    private static Map<String, Pattern> patterns = new ConcurrentHashMap<>();
 
     public static boolean isMatch(String text, String regex) {
         if(regex == null) {
@@ -55,12 +55,12 @@ public class RegexUtil {
         return text;
     }
 
-    private static Pattern getPattern(String regex) {
-        Pattern pattern = patterns.get(regex);
-        if(pattern == null) {
-            pattern = Pattern.compile(regex, Pattern.DOTALL);
-            patterns.put(regex, pattern);
-        }
-        return pattern;
+    /**
+     * Returns the compiled pattern of a regular expression. Compiled patterns are cached.
+     * @param regex the regular expression
+     * @return the pattern compiled with DOTALL flag
+     */
+    public static Pattern getPattern(String regex) {
+        return patterns.computeIfAbsent(regex, key -> Pattern.compile(key, Pattern.DOTALL));
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+/**
+ * A time based window of double values backed by primitive ring buffers.
+ * Average, min and max are maintained incrementally (running sum and monotonic deques) so that neither adding
+ * a value nor querying the window allocates memory. The buffers only grow if more values than expected have
+ * to be kept within the window.
+ * <p>
+ * The window is not thread-safe; callers have to synchronize access.
+ */
+public class SlidingTimeWindow {
+    private long windowMillis;
+    private long[] timestamps;
+    private double[] values;
+    private int head;
+    private int size;
+    private double sum;
+    // ring indexes of values with increasing values (min) or decreasing values (max) ordered by time
+    private int[] minDeque;
+    private int minDequeHead;
+    private int minDequeSize;
+    private int[] maxDeque;
+    private int maxDequeHead;
+    private int maxDequeSize;
+    private double[] scratch;
+
+    public SlidingTimeWindow(int windowSeconds, int initialCapacity) {
+        this.windowMillis = windowSeconds * 1000L;
+        allocate(Math.max(initialCapacity, 2));
+    }
+
+    private void allocate(int capacity) {
+        this.timestamps = new long[capacity];
+        this.values = new double[capacity];
+        this.minDeque = new int[capacity];
+        this.maxDeque = new int[capacity];
+        this.scratch = new double[capacity];
+    }
+
+    public int getWindowSeconds() {
+        return (int) (windowMillis / 1000);
+    }
+
+    public void setWindowSeconds(int windowSeconds) {
+        this.windowMillis = windowSeconds * 1000L;
+    }
+
+    public int getCapacity() {
+        return values.length;
+    }
+
+    /**
+     * Add a value. Timestamps are expected in ascending order; an earlier timestamp is treated as if it was
+     * equal to the most recent one.
+     * @param timestampMillis
+     * @param value
+     */
+    public void add(long timestampMillis, double value) {
+        if(size > 0) {
+            timestampMillis = Math.max(timestampMillis, timestamps[index(size - 1)]);
+        }
+        expire(timestampMillis);
+        if(size == values.length) {
+            grow();
+        }
+        int index = index(size);
+        timestamps[index] = timestampMillis;
+        values[index] = value;
+        size++;
+        sum += value;
+
+        while(minDequeSize > 0 && values[minDeque[dequeIndex(minDequeHead, minDequeSize - 1)]] >= value) {
+            minDequeSize--;
+        }
+        minDeque[dequeIndex(minDequeHead, minDequeSize++)] = index;
+
+        while(maxDequeSize > 0 && values[maxDeque[dequeIndex(maxDequeHead, maxDequeSize - 1)]] <= value) {
+            maxDequeSize--;
+        }
+        maxDeque[dequeIndex(maxDequeHead, maxDequeSize++)] = index;
+    }
+
+    /**
+     * Remove all values older than the window length relative to the given timestamp.
+     * @param nowMillis
+     */
+    public void expire(long nowMillis) {
+        while(size > 0 && nowMillis - timestamps[head] > windowMillis) {
+            if(minDequeSize > 0 && minDeque[minDequeHead] == head) {
+                minDequeHead = (minDequeHead + 1) % minDeque.length;
+                minDequeSize--;
+            }
+            if(maxDequeSize > 0 && maxDeque[maxDequeHead] == head) {
+                maxDequeHead = (maxDequeHead + 1) % maxDeque.length;
+                maxDequeSize--;
+            }
+            sum -= values[head];
+            head = (head + 1) % values.length;
+            size--;
+        }
+        if(size == 0) {
+            // avoid accumulation of rounding errors
+            sum = 0.0;
+        }
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        sum = 0.0;
+        minDequeHead = 0;
+        minDequeSize = 0;
+        maxDequeHead = 0;
+        maxDequeSize = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public double getAverage() {
+        return size > 0 ? sum / size : 0.0;
+    }
+
+    public double getMin() {
+        return minDequeSize > 0 ? values[minDeque[minDequeHead]] : 0.0;
+    }
+
+    public double getMax() {
+        return maxDequeSize > 0 ? values[maxDeque[maxDequeHead]] : 0.0;
+    }
+
+    public double getLast() {
+        return size > 0 ? values[index(size - 1)] : 0.0;
+    }
+
+    public long getLastTimestamp() {
+        return size > 0 ? timestamps[index(size - 1)] : 0L;
+    }
+
+    /**
+     * Returns the median of the values using a preallocated scratch buffer.
+     * @return
+     */
+    public double getMedian() {
+        if(size == 0) {
+            return 0.0;
+        }
+        for(int i=0; i<size; i++) {
+            scratch[i] = values[index(i)];
+        }
+        int middle = size / 2;
+        double upper = select(scratch, size, middle);
+        if(size % 2 == 1) {
+            return upper;
+        }
+        double lower = scratch[0];
+        for(int i=1; i<middle; i++) {
+            if(scratch[i] > lower) {
+                lower = scratch[i];
+            }
+        }
+        return (lower + upper) / 2.0;
+    }
+
+    /**
+     * Quickselect: returns the k-th smallest of the first n values and partitions the array around it.
+     */
+    private static double select(double[] a, int n, int k) {
+        int left = 0;
+        int right = n - 1;
+        while(left < right) {
+            double pivot = a[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while(i <= j) {
+                while(a[i] < pivot) i++;
+                while(a[j] > pivot) j--;
+                if(i <= j) {
+                    double tmp = a[i];
+                    a[i] = a[j];
+                    a[j] = tmp;
+                    i++;
+                    j--;
+                }
+            }
+            if(k <= j) {
+                right = j;
+            }
+            else if(k >= i) {
+                left = i;
+            }
+            else {
+                break;
+            }
+        }
+        return a[k];
+    }
+
+    private int index(int offset) {
+        return (head + offset) % values.length;
+    }
+
+    private int dequeIndex(int dequeHead, int offset) {
+        return (dequeHead + offset) % minDeque.length;
+    }
+
+    private void grow() {
+        long[] oldTimestamps = this.timestamps;
+        double[] oldValues = this.values;
+        int oldHead = this.head;
+        int oldSize = this.size;
+        allocate(oldValues.length * 2);
+        clear();
+        for(int i=0; i<oldSize; i++) {
+            int oldIndex = (oldHead + i) % oldValues.length;
+            add(oldTimestamps[oldIndex], oldValues[oldIndex]);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "size=" + size + " capacity=" + values.length + " windowMillis=" + windowMillis;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.webservice;
+
+import de.avanux.smartapplianceenabler.control.Control;
+import de.avanux.smartapplianceenabler.meter.Meter;
+import de.avanux.smartapplianceenabler.schedule.Schedule;
+
+import java.util.List;
+
+/**
+ * The configuration of an appliance as read or written by the batch API.
+ * Only the sections being requested (read) or being changed (write) are set.
+ */
+public class ApplianceConfiguration {
+    public static final String FIELD_APPLIANCE = "appliance";
+    public static final String FIELD_CONTROL = "control";
+    public static final String FIELD_METER = "meter";
+    public static final String FIELD_SCHEDULES = "schedules";
+    private String id;
+    private ApplianceInfo appliance;
+    private Control control;
+    private Meter meter;
+    private List<Schedule> schedules;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public ApplianceInfo getAppliance() {
+        return appliance;
+    }
+
+    public void setAppliance(ApplianceInfo appliance) {
+        this.appliance = appliance;
+    }
+
+    public Control getControl() {
+        return control;
+    }
+
+    public void setControl(Control control) {
+        this.control = control;
+    }
+
+    public Meter getMeter() {
+        return meter;
+    }
+
+    public void setMeter(Meter meter) {
+        this.meter = meter;
+    }
+
+    public List<Schedule> getSchedules() {
+        return schedules;
+    }
+
+    public void setSchedules(List<Schedule> schedules) {
+        this.schedules = schedules;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplianceConfiguration{" +
+                "id='" + id + '\'' +
+                ", appliance=" + (appliance != null) +
+                ", control=" + control +
+                ", meter=" + meter +
+                ", schedules=" + (schedules != null ? schedules.size() : null) +
+                '}';
+    }
+}
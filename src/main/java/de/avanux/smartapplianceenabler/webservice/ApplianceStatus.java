@@ -45,6 +45,11 @@ public class ApplianceStatus {
     private Long socTimestamp;
     private Integer socInitial;
     private Long socInitialTimestamp;
+    private Boolean deviceReachable;
+    private Long deviceUnreachableSinceTimestamp;
+    private Integer mailboxDepth;
+    private Long mailboxAverageLatency; // milliseconds
+    private Long mailboxMaxLatency; // milliseconds
 
 
     public String getId() {
@@ -246,4 +251,44 @@ public class ApplianceStatus {
     public void setSocInitialTimestamp(Long socInitialTimestamp) {
         this.socInitialTimestamp = socInitialTimestamp;
     }
+
+    public Boolean getDeviceReachable() {
+        return deviceReachable;
+    }
+
+    public void setDeviceReachable(Boolean deviceReachable) {
+        this.deviceReachable = deviceReachable;
+    }
+
+    public Long getDeviceUnreachableSinceTimestamp() {
+        return deviceUnreachableSinceTimestamp;
+    }
+
+    public void setDeviceUnreachableSinceTimestamp(Long deviceUnreachableSinceTimestamp) {
+        this.deviceUnreachableSinceTimestamp = deviceUnreachableSinceTimestamp;
+    }
+
+    public Integer getMailboxDepth() {
+        return mailboxDepth;
+    }
+
+    public void setMailboxDepth(Integer mailboxDepth) {
+        this.mailboxDepth = mailboxDepth;
+    }
+
+    public Long getMailboxAverageLatency() {
+        return mailboxAverageLatency;
+    }
+
+    public void setMailboxAverageLatency(Long mailboxAverageLatency) {
+        this.mailboxAverageLatency = mailboxAverageLatency;
+    }
+
+    public Long getMailboxMaxLatency() {
+        return mailboxMaxLatency;
+    }
+
+    public void setMailboxMaxLatency(Long mailboxMaxLatency) {
+        this.mailboxMaxLatency = mailboxMaxLatency;
+    }
 }
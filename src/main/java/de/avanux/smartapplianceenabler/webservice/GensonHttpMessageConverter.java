@@ -51,7 +51,11 @@ public class GensonHttpMessageConverter implements HttpMessageConverter {
         this.supportedMediaTypes.add(MediaType.APPLICATION_JSON_UTF8);
         this.supportedMediaTypes.add(new MediaType("application", "*+json", DEFAULT_CHARSET));
 
-        this.genson = new GensonBuilder()
+        this.genson = createGenson();
+    }
+
+    public static Genson createGenson() {
+        return new GensonBuilder()
                 .useFields(true, VisibilityFilter.PRIVATE)
                 .useMethods(false)
                 .useClassMetadata(true)
@@ -22,6 +22,9 @@ public class ModbusSettings {
     String modbusTcpId;
     String modbusTcpHost;
     Integer modbusTcpPort;
+    Integer modbusTcpMaxPendingRequests;
+    Double modbusTcpMaxRequestsPerSecond;
+    Integer modbusTcpInterFrameGapMillis;
 
     public String getModbusTcpId() {
         return modbusTcpId;
@@ -47,12 +50,39 @@ public class ModbusSettings {
         this.modbusTcpPort = modbusTcpPort;
     }
 
+    public Integer getModbusTcpMaxPendingRequests() {
+        return modbusTcpMaxPendingRequests;
+    }
+
+    public void setModbusTcpMaxPendingRequests(Integer modbusTcpMaxPendingRequests) {
+        this.modbusTcpMaxPendingRequests = modbusTcpMaxPendingRequests;
+    }
+
+    public Double getModbusTcpMaxRequestsPerSecond() {
+        return modbusTcpMaxRequestsPerSecond;
+    }
+
+    public void setModbusTcpMaxRequestsPerSecond(Double modbusTcpMaxRequestsPerSecond) {
+        this.modbusTcpMaxRequestsPerSecond = modbusTcpMaxRequestsPerSecond;
+    }
+
+    public Integer getModbusTcpInterFrameGapMillis() {
+        return modbusTcpInterFrameGapMillis;
+    }
+
+    public void setModbusTcpInterFrameGapMillis(Integer modbusTcpInterFrameGapMillis) {
+        this.modbusTcpInterFrameGapMillis = modbusTcpInterFrameGapMillis;
+    }
+
     @Override
     public String toString() {
         return "ModbusSettings{" +
                 "modbusTcpId='" + modbusTcpId + '\'' +
                 ", modbusTcpHost='" + modbusTcpHost + '\'' +
                 ", modbusTcpPort=" + modbusTcpPort +
+                ", modbusTcpMaxPendingRequests=" + modbusTcpMaxPendingRequests +
+                ", modbusTcpMaxRequestsPerSecond=" + modbusTcpMaxRequestsPerSecond +
+                ", modbusTcpInterFrameGapMillis=" + modbusTcpInterFrameGapMillis +
                 '}';
     }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.webservice;
+
+/**
+ * Status of the request scheduler of a Modbus TCP.
+ */
+public class ModbusStatus {
+    String modbusTcpId;
+    int queueDepth;
+    int activeRequests;
+    long requestCount;
+    long timeoutCount;
+    double averageWaitMillis;
+    double maxWaitMillis;
+
+    public String getModbusTcpId() {
+        return modbusTcpId;
+    }
+
+    public void setModbusTcpId(String modbusTcpId) {
+        this.modbusTcpId = modbusTcpId;
+    }
+
+    public int getQueueDepth() {
+        return queueDepth;
+    }
+
+    public void setQueueDepth(int queueDepth) {
+        this.queueDepth = queueDepth;
+    }
+
+    public int getActiveRequests() {
+        return activeRequests;
+    }
+
+    public void setActiveRequests(int activeRequests) {
+        this.activeRequests = activeRequests;
+    }
+
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    public void setRequestCount(long requestCount) {
+        this.requestCount = requestCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public void setTimeoutCount(long timeoutCount) {
+        this.timeoutCount = timeoutCount;
+    }
+
+    public double getAverageWaitMillis() {
+        return averageWaitMillis;
+    }
+
+    public void setAverageWaitMillis(double averageWaitMillis) {
+        this.averageWaitMillis = averageWaitMillis;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    public void setMaxWaitMillis(double maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "ModbusStatus{" +
+                "modbusTcpId='" + modbusTcpId + '\'' +
+                ", queueDepth=" + queueDepth +
+                ", activeRequests=" + activeRequests +
+                ", requestCount=" + requestCount +
+                ", timeoutCount=" + timeoutCount +
+                ", averageWaitMillis=" + averageWaitMillis +
+                ", maxWaitMillis=" + maxWaitMillis +
+                '}';
+    }
+}
@@ -33,6 +33,7 @@ import de.avanux.smartapplianceenabler.meter.MeterDefaults;
 import de.avanux.smartapplianceenabler.meter.S0ElectricityMeterDefaults;
 import de.avanux.smartapplianceenabler.modbus.ModbusElectricityMeterDefaults;
 import de.avanux.smartapplianceenabler.modbus.ModbusReadDefaults;
+import de.avanux.smartapplianceenabler.modbus.ModbusRequestScheduler;
 import de.avanux.smartapplianceenabler.modbus.ModbusTcp;
 import de.avanux.smartapplianceenabler.notification.Notification;
 import de.avanux.smartapplianceenabler.notification.NotificationHandler;
@@ -43,17 +44,31 @@ import java.io.IOException;
 import java.time.Duration;
 import java.time.LocalDateTime;
 
+import de.avanux.smartapplianceenabler.timeseries.Resolution;
+import de.avanux.smartapplianceenabler.timeseries.TimeSeriesPoint;
+import de.avanux.smartapplianceenabler.timeseries.TimeSeriesStore;
+import de.avanux.smartapplianceenabler.util.CircuitBreakerRegistry;
+import de.avanux.smartapplianceenabler.util.Clock;
 import de.avanux.smartapplianceenabler.util.FileHandler;
+import com.owlike.genson.Genson;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 @RestController
 public class SaeController {
@@ -75,12 +90,18 @@ public class SaeController {
     private static final String EVCHARGER_TEMPLATES_URL = BASE_URL + "/evcharger-templates";
     private static final String FILE_URL = BASE_URL + "/file";
     private static final String INFO_URL = BASE_URL + "/info";
+    private static final String MODBUS_STATUS_URL = BASE_URL + "/modbusstatus";
+    private static final String SEMP_CONTROL_STATUS_URL = BASE_URL + "/sempcontrolstatus";
+    private static final String HISTORY_URL = BASE_URL + "/history";
+    private static final String BATCH_CONFIGURATION_URL = BASE_URL + "/batch/configuration";
+    private static final String BATCH_STATUS_URL = BASE_URL + "/batch/status";
     private static final String TASMOTA_COMMAND_URL = "/cm";
     // only required for development if running via "ng serve"
     private static final String CROSS_ORIGIN_URL = "http://localhost:4200";
     private Logger logger = LoggerFactory.getLogger(SaeController.class);
     // the lock ensures that no data is changed or read while appliances are restarted
     private final Object lock = new Object();
+    private final Genson genson = GensonHttpMessageConverter.createGenson();
 
     public SaeController() {
         logger.info("SAE controller created.");
@@ -220,31 +241,9 @@ public class SaeController {
         synchronized (lock) {
             try {
                 logger.debug("{}: Received request to set ApplianceInfo (create={}): {}", applianceId, create, applianceInfo);
-                LocalDateTime now = LocalDateTime.now();
-
-                Notification notification = null;
-                if(applianceInfo.getNotificationSenderId() != null) {
-                    notification = new Notification();
-                    notification.setSenderId(applianceInfo.getNotificationSenderId());
-                }
-
-                DeviceInfo deviceInfo = toDeviceInfo(applianceInfo);
-                if (create) {
-                    Appliance appliance = new Appliance();
-                    appliance.setId(applianceId);
-                    appliance.setNotification(notification);
-                    ApplianceManager.getInstance().addAppliance(appliance, deviceInfo);
-                } else {
-                    Appliance appliance = ApplianceManager.getInstance().getAppliance(applianceId);
-                    if (appliance != null) {
-                        deviceInfo.getCapabilities().setOptionalEnergy(appliance.canConsumeOptionalEnergy(now));
-                        appliance.setNotification(notification);
-                        ApplianceManager.getInstance().updateAppliance(appliance, deviceInfo);
-                    }
-                    else {
-                        logger.error("{}: Appliance not found.", applianceId);
-                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
-                    }
+                if (!setApplianceInfo(applianceId, create, applianceInfo)) {
+                    logger.error("{}: Appliance not found.", applianceId);
+                    response.setStatus(HttpServletResponse.SC_NOT_FOUND);
                 }
             } catch (Throwable e) {
                 logger.error("Error in " + getClass().getSimpleName(), e);
@@ -252,6 +251,37 @@ public class SaeController {
         }
     }
 
+    /**
+     * Create or update an appliance.
+     * @return false, if the appliance to be updated was not found
+     */
+    private boolean setApplianceInfo(String applianceId, boolean create, ApplianceInfo applianceInfo) {
+        LocalDateTime now = Clock.now();
+
+        Notification notification = null;
+        if(applianceInfo.getNotificationSenderId() != null) {
+            notification = new Notification();
+            notification.setSenderId(applianceInfo.getNotificationSenderId());
+        }
+
+        DeviceInfo deviceInfo = toDeviceInfo(applianceInfo);
+        if (create) {
+            Appliance appliance = new Appliance();
+            appliance.setId(applianceId);
+            appliance.setNotification(notification);
+            ApplianceManager.getInstance().addAppliance(appliance, deviceInfo);
+            return true;
+        }
+        Appliance appliance = ApplianceManager.getInstance().getAppliance(applianceId);
+        if (appliance != null) {
+            deviceInfo.getCapabilities().setOptionalEnergy(appliance.canConsumeOptionalEnergy(now));
+            appliance.setNotification(notification);
+            ApplianceManager.getInstance().updateAppliance(appliance, deviceInfo);
+            return true;
+        }
+        return false;
+    }
+
     @RequestMapping(value = APPLIANCE_URL, method = RequestMethod.DELETE)
     @CrossOrigin(origins = CROSS_ORIGIN_URL)
     public void deleteAppliance(HttpServletResponse response, @RequestParam(value = "id") String applianceId) {
@@ -446,16 +476,18 @@ public class SaeController {
                                   @RequestBody Schedules schedules) {
         synchronized (lock) {
             try {
-                LocalDateTime now = LocalDateTime.now();
+                LocalDateTime now = Clock.now();
                 List<Schedule> schedulesToSet = schedules.getSchedules();
                 logger.debug("{}: Received request to activate {} schedule(s)", applianceId,
                         (schedulesToSet != null ? schedulesToSet.size() : "0"));
                 Appliance appliance = ApplianceManager.getInstance().findAppliance(applianceId);
                 if (appliance != null) {
-                    if (appliance.getMeter() != null) {
-                        appliance.getMeter().resetEnergyMeter();
-                    }
-                    appliance.setSchedules(schedulesToSet);
+                    appliance.getMailbox().run(() -> {
+                        if (appliance.getMeter() != null) {
+                            appliance.getMeter().resetEnergyMeter();
+                        }
+                        appliance.setSchedules(schedulesToSet);
+                    });
                     return;
                 }
                 logger.error("{}: Appliance not found", applianceId);
@@ -480,10 +512,12 @@ public class SaeController {
                 if (appliance != null) {
                     TimeframeIntervalHandler timeframeIntervalHandler = appliance.getTimeframeIntervalHandler();
                     if(timeframeIntervalHandler != null) {
-                        TimeframeInterval activeTimeframeInterval = timeframeIntervalHandler.getActiveTimeframeInterval();
-                        if(activeTimeframeInterval != null) {
-                            activeTimeframeInterval.getRequest().setAcceptControlRecommendations(acceptControlRecommendations);
-                        }
+                        appliance.getMailbox().run(() -> {
+                            TimeframeInterval activeTimeframeInterval = timeframeIntervalHandler.getActiveTimeframeInterval();
+                            if(activeTimeframeInterval != null) {
+                                activeTimeframeInterval.getRequest().setAcceptControlRecommendations(acceptControlRecommendations);
+                            }
+                        });
                     }
                 } else {
                     logger.error("{}: Appliance not found", applianceId);
@@ -569,10 +603,10 @@ public class SaeController {
                                 applianceId, runtimeSeconds, latestEndSeconds);
                         Appliance appliance = ApplianceManager.getInstance().findAppliance(applianceId);
                         if(appliance != null) {
-                            LocalDateTime now = LocalDateTime.now();
+                            LocalDateTime now = Clock.now();
                             Control control = appliance.getControl();
                             if(control != null) {
-                                control.on(now, false);
+                                appliance.getMailbox().run(() -> control.on(now, false));
                             }
                             activateTimeframe(now, applianceId, runtimeSeconds, latestEndSeconds, true);
                         } else {
@@ -593,7 +627,7 @@ public class SaeController {
                                  @RequestParam(value = "runtime") Integer runtime) {
         synchronized (lock) {
             try {
-                if (!setRuntimeDemand(LocalDateTime.now(), applianceId, runtime, null)) {
+                if (!setRuntimeDemand(Clock.now(), applianceId, runtime, null)) {
                     response.setStatus(HttpServletResponse.SC_NOT_FOUND);
                 }
             } catch (Throwable e) {
@@ -678,7 +712,9 @@ public class SaeController {
                 }
                 Appliance appliance = ApplianceManager.getInstance().findAppliance(applianceId);
                 if (appliance != null) {
-                    appliance.setEnergyDemand(LocalDateTime.now(), evId, socCurrent, socRequested, chargeEnd);
+                    LocalDateTime finalChargeEnd = chargeEnd;
+                    appliance.getMailbox().run(() -> appliance.setEnergyDemand(Clock.now(), evId,
+                            socCurrent, socRequested, finalChargeEnd));
                 } else {
                     logger.error("{}: Appliance not found", applianceId);
                     response.setStatus(HttpServletResponse.SC_NOT_FOUND);
@@ -702,7 +738,7 @@ public class SaeController {
                         applianceId, socCurrent, socRequested);
                 Appliance appliance = ApplianceManager.getInstance().findAppliance(applianceId);
                 if (appliance != null) {
-                    appliance.updateSoc(LocalDateTime.now(), socCurrent, socRequested);
+                    appliance.getMailbox().run(() -> appliance.updateSoc(Clock.now(), socCurrent, socRequested));
                 } else {
                     logger.error("{}: Appliance not found", applianceId);
                     response.setStatus(HttpServletResponse.SC_NOT_FOUND);
@@ -752,7 +788,8 @@ public class SaeController {
                                      boolean acceptControlRecommendations) {
         Appliance appliance = ApplianceManager.getInstance().findAppliance(applianceId);
         if (appliance != null) {
-            appliance.getTimeframeIntervalHandler().setRuntimeDemand(now, runtime, latestEnd, acceptControlRecommendations);
+            appliance.getMailbox().run(() -> appliance.getTimeframeIntervalHandler()
+                    .setRuntimeDemand(now, runtime, latestEnd, acceptControlRecommendations));
             return true;
         }
         logger.error("{}: Appliance not found", applianceId);
@@ -789,6 +826,9 @@ public class SaeController {
                         modbusSettings.setModbusTcpId(modbusTcp.getId());
                         modbusSettings.setModbusTcpHost(modbusTcp.getHost());
                         modbusSettings.setModbusTcpPort(modbusTcp.getPort());
+                        modbusSettings.setModbusTcpMaxPendingRequests(modbusTcp.getMaxPendingRequests());
+                        modbusSettings.setModbusTcpMaxRequestsPerSecond(modbusTcp.getMaxRequestsPerSecond());
+                        modbusSettings.setModbusTcpInterFrameGapMillis(modbusTcp.getInterFrameGapMillis());
                         modbusSettingsList.add(modbusSettings);
                     }
                     settings.setModbusSettings(modbusSettingsList);
@@ -825,6 +865,9 @@ public class SaeController {
                     modbusTcp.setId(modbusSettings.getModbusTcpId());
                     modbusTcp.setHost(modbusSettings.getModbusTcpHost());
                     modbusTcp.setPort(modbusSettings.getModbusTcpPort());
+                    modbusTcp.setMaxPendingRequests(modbusSettings.getModbusTcpMaxPendingRequests());
+                    modbusTcp.setMaxRequestsPerSecond(modbusSettings.getModbusTcpMaxRequestsPerSecond());
+                    modbusTcp.setInterFrameGapMillis(modbusSettings.getModbusTcpInterFrameGapMillis());
                     modbusTCPs.add(modbusTcp);
                 }
             }
@@ -857,7 +900,7 @@ public class SaeController {
     public List<ApplianceStatus> getApplianceStatus(HttpServletResponse response) {
         synchronized (lock) {
             try {
-                return getApplianceStatus(LocalDateTime.now(), response);
+                return getApplianceStatus(Clock.now(), response);
             } catch (Throwable e) {
                 logger.error("Error in " + getClass().getSimpleName(), e);
             }
@@ -888,6 +931,14 @@ public class SaeController {
                 applianceStatus.setVendor(identification.getDeviceVendor());
                 applianceStatus.setType(identification.getDeviceType());
             }
+            CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.getInstance();
+            applianceStatus.setDeviceReachable(circuitBreakerRegistry.isReachable(appliance.getId()));
+            applianceStatus.setDeviceUnreachableSinceTimestamp(
+                    circuitBreakerRegistry.getUnreachableSinceTimestamp(appliance.getId()));
+            ApplianceMailbox mailbox = appliance.getMailbox();
+            applianceStatus.setMailboxDepth(mailbox.getDepth());
+            applianceStatus.setMailboxAverageLatency(mailbox.getAverageLatencyMillis());
+            applianceStatus.setMailboxMaxLatency(mailbox.getMaxLatencyMillis());
 
             if (appliance.isControllable()) {
                 applianceStatus.setControllable(true);
@@ -895,9 +946,7 @@ public class SaeController {
                 Meter meter = appliance.getMeter();
                 applianceStatus.setOn(control.isOn());
                 TimeframeInterval nextTimeframeInterval
-                        = appliance.getTimeframeIntervalHandler().getQueue().size() > 0
-                        ? appliance.getTimeframeIntervalHandler().getQueue().get(0)
-                        : null;
+                        = appliance.getTimeframeIntervalHandler().getFirstTimeframeInterval();
                 if (nextTimeframeInterval != null) {
                     applianceStatus.setPlanningRequested(true);
                     if(nextTimeframeInterval.getRequest().isEnabled()) {
@@ -991,4 +1040,268 @@ public class SaeController {
         }
         return null;
     }
+
+    @RequestMapping(value = MODBUS_STATUS_URL, method = RequestMethod.GET, produces = "application/json")
+    @CrossOrigin(origins = CROSS_ORIGIN_URL)
+    public List<ModbusStatus> getModbusStatus() {
+        try {
+            logger.debug("Received request for ModbusStatus");
+            List<ModbusStatus> modbusStatuses = new ArrayList<>();
+            Connectivity connectivity = ApplianceManager.getInstance().getAppliancesRoot().getConnectivity();
+            if (connectivity != null && connectivity.getModbusTCPs() != null) {
+                for (ModbusTcp modbusTcp : connectivity.getModbusTCPs()) {
+                    ModbusRequestScheduler scheduler = modbusTcp.getScheduler();
+                    ModbusStatus modbusStatus = new ModbusStatus();
+                    modbusStatus.setModbusTcpId(modbusTcp.getId());
+                    modbusStatus.setQueueDepth(scheduler.getQueueDepth());
+                    modbusStatus.setActiveRequests(scheduler.getActiveRequests());
+                    modbusStatus.setRequestCount(scheduler.getRequestCount());
+                    modbusStatus.setTimeoutCount(scheduler.getTimeoutCount());
+                    modbusStatus.setAverageWaitMillis(scheduler.getAverageWaitMillis());
+                    modbusStatus.setMaxWaitMillis(scheduler.getMaxWaitMillis());
+                    modbusStatuses.add(modbusStatus);
+                }
+            }
+            logger.debug("Returning ModbusStatus " + modbusStatuses);
+            return modbusStatuses;
+        } catch (Throwable e) {
+            logger.error("Error in " + getClass().getSimpleName(), e);
+        }
+        return null;
+    }
+
+    @RequestMapping(value = SEMP_CONTROL_STATUS_URL, method = RequestMethod.GET, produces = "application/json")
+    @CrossOrigin(origins = CROSS_ORIGIN_URL)
+    public List<SempControlStatus> getSempControlStatus() {
+        try {
+            logger.debug("Received request for SempControlStatus");
+            List<SempControlStatus> sempControlStatuses = new ArrayList<>();
+            DeviceControlQueue deviceControlQueue = DeviceControlQueue.getInstance();
+            if (deviceControlQueue != null) {
+                for (Map.Entry<String, DeviceControlQueue.Metrics> entry
+                        : new TreeMap<>(deviceControlQueue.getMetricsByDeviceId()).entrySet()) {
+                    DeviceControlQueue.Metrics metrics = entry.getValue();
+                    SempControlStatus sempControlStatus = new SempControlStatus();
+                    sempControlStatus.setApplianceId(entry.getKey());
+                    sempControlStatus.setPending(deviceControlQueue.isPending(entry.getKey()));
+                    sempControlStatus.setAppliedCount(metrics.getAppliedCount());
+                    sempControlStatus.setCollapsedCount(metrics.getCollapsedCount());
+                    sempControlStatus.setLastLatencyMillis(metrics.getLastLatencyMillis());
+                    sempControlStatus.setAverageLatencyMillis(metrics.getAverageLatencyMillis());
+                    sempControlStatus.setMaxLatencyMillis(metrics.getMaxLatencyMillis());
+                    sempControlStatuses.add(sempControlStatus);
+                }
+            }
+            logger.debug("Returning SempControlStatus " + sempControlStatuses);
+            return sempControlStatuses;
+        } catch (Throwable e) {
+            logger.error("Error in " + getClass().getSimpleName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the power history of an appliance for charts.
+     * @param response
+     * @param applianceId
+     * @param from epoch millis; defaults to 24 hours before to
+     * @param to epoch millis; defaults to now
+     * @param resolution one of {@link Resolution}; selected based on the interval if omitted
+     * @return
+     */
+    @RequestMapping(value = HISTORY_URL, method = RequestMethod.GET, produces = "application/json")
+    @CrossOrigin(origins = CROSS_ORIGIN_URL)
+    public List<TimeSeriesPoint> getHistory(HttpServletResponse response,
+                                            @RequestParam(value = "id") String applianceId,
+                                            @RequestParam(value = "from", required = false) Long from,
+                                            @RequestParam(value = "to", required = false) Long to,
+                                            @RequestParam(value = "resolution", required = false) Resolution resolution) {
+        try {
+            logger.debug("{}: Received request for history from={} to={} resolution={}", applianceId, from, to,
+                    resolution);
+            long toMillis = to != null ? to : Clock.currentTimeMillis();
+            long fromMillis = from != null ? from : toMillis - 86_400_000L;
+            List<TimeSeriesPoint> points = TimeSeriesStore.getInstance().query(applianceId, fromMillis, toMillis,
+                    resolution);
+            if(points == null) {
+                logger.debug("{}: No history found.", applianceId);
+                response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                return null;
+            }
+            logger.debug("{}: Returning {} history values", applianceId, points.size());
+            return points;
+        } catch (Throwable e) {
+            logger.error("Error in " + getClass().getSimpleName(), e);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the configuration of several appliances in one call.
+     * The ETag is derived from the saved configuration, i.e. it changes with every change of the configuration.
+     * @param applianceIds the ids of the appliances to be returned; all appliances if omitted
+     * @param fields the sections to be returned (appliance, control, meter, schedules); all sections if omitted
+     */
+    @RequestMapping(value = BATCH_CONFIGURATION_URL, method = RequestMethod.GET, produces = "application/json")
+    @CrossOrigin(origins = CROSS_ORIGIN_URL, exposedHeaders = HttpHeaders.ETAG)
+    public void getConfigurationBatch(HttpServletRequest request, HttpServletResponse response,
+                                      @RequestParam(value = "ids", required = false) List<String> applianceIds,
+                                      @RequestParam(value = "fields", required = false) List<String> fields) {
+        synchronized (lock) {
+            try {
+                logger.debug("Received batch request for configuration: ids={} fields={}", applianceIds, fields);
+                if (new ServletWebRequest(request, response).checkNotModified(getConfigurationEtag())) {
+                    return;
+                }
+                List<ApplianceConfiguration> configurations = new ArrayList<>();
+                for (Appliance appliance : ApplianceManager.getInstance().getAppliances()) {
+                    if (applianceIds != null && !applianceIds.contains(appliance.getId())) {
+                        continue;
+                    }
+                    ApplianceConfiguration configuration = new ApplianceConfiguration();
+                    configuration.setId(appliance.getId());
+                    if (isFieldSelected(fields, ApplianceConfiguration.FIELD_APPLIANCE)) {
+                        DeviceInfo deviceInfo = getDeviceInfo(appliance.getId());
+                        if (deviceInfo != null) {
+                            ApplianceInfo applianceInfo = toApplianceInfo(deviceInfo);
+                            if (appliance.getNotification() != null) {
+                                applianceInfo.setNotificationSenderId(appliance.getNotification().getSenderId());
+                            }
+                            configuration.setAppliance(applianceInfo);
+                        }
+                    }
+                    if (isFieldSelected(fields, ApplianceConfiguration.FIELD_CONTROL)) {
+                        configuration.setControl(appliance.getControl());
+                    }
+                    if (isFieldSelected(fields, ApplianceConfiguration.FIELD_METER)) {
+                        configuration.setMeter(appliance.getMeter());
+                    }
+                    if (isFieldSelected(fields, ApplianceConfiguration.FIELD_SCHEDULES)) {
+                        configuration.setSchedules(appliance.getSchedules());
+                    }
+                    configurations.add(configuration);
+                }
+                logger.debug("Returning configuration of {} appliance(s)", configurations.size());
+                writeJson(response, genson.serialize(configurations));
+            } catch (Throwable e) {
+                logger.error("Error in " + getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    /**
+     * Applies changes of the configuration of several appliances with a single save and restart.
+     * For each appliance only the sections set are changed; an appliance is created if ApplianceInfo is set
+     * and the appliance does not exist. Either all changes are applied or none.
+     * If the request contains an If-Match header, the changes are only applied if the configuration has not been
+     * changed since the ETag was obtained.
+     */
+    @RequestMapping(value = BATCH_CONFIGURATION_URL, method = RequestMethod.PUT, consumes = "application/json")
+    @CrossOrigin(origins = CROSS_ORIGIN_URL, exposedHeaders = HttpHeaders.ETAG)
+    public void setConfigurationBatch(HttpServletRequest request, HttpServletResponse response,
+                                      @RequestBody ApplianceConfiguration[] configurations) {
+        synchronized (lock) {
+            ApplianceManager applianceManager = ApplianceManager.getInstance();
+            try {
+                logger.debug("Received batch request to set configuration of {} appliance(s)", configurations.length);
+                String ifMatch = request.getHeader(HttpHeaders.IF_MATCH);
+                if (ifMatch != null && !"*".equals(ifMatch.trim()) && !ifMatch.contains(getConfigurationEtag())) {
+                    logger.warn("Configuration has been changed concurrently: If-Match={} ETag={}", ifMatch,
+                            getConfigurationEtag());
+                    response.setStatus(HttpServletResponse.SC_PRECONDITION_FAILED);
+                    return;
+                }
+                applianceManager.beginBatch();
+                for (ApplianceConfiguration configuration : configurations) {
+                    if (!setConfiguration(configuration)) {
+                        logger.error("{}: Appliance not found - discarding all changes", configuration.getId());
+                        applianceManager.rollbackBatch();
+                        response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                        return;
+                    }
+                }
+                applianceManager.commitBatch();
+                response.setHeader(HttpHeaders.ETAG, getConfigurationEtag());
+            } catch (Throwable e) {
+                logger.error("Error in " + getClass().getSimpleName() + " - discarding all changes", e);
+                applianceManager.rollbackBatch();
+                response.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            }
+        }
+    }
+
+    /**
+     * Apply the sections set in the configuration of an appliance.
+     * @return false, if the appliance was not found
+     */
+    private boolean setConfiguration(ApplianceConfiguration configuration) {
+        ApplianceManager applianceManager = ApplianceManager.getInstance();
+        String applianceId = configuration.getId();
+        logger.debug("{}: Set configuration {}", applianceId, configuration);
+        if (configuration.getAppliance() != null) {
+            boolean create = applianceManager.getAppliance(applianceId) == null;
+            if (!setApplianceInfo(applianceId, create, configuration.getAppliance())) {
+                return false;
+            }
+            // the appliance id might have been changed
+            if (configuration.getAppliance().getId() != null) {
+                applianceId = configuration.getAppliance().getId();
+            }
+        }
+        if (applianceManager.getAppliance(applianceId) == null) {
+            return false;
+        }
+        if (configuration.getControl() != null) {
+            applianceManager.setControl(applianceId, configuration.getControl());
+        }
+        if (configuration.getMeter() != null) {
+            applianceManager.setMeter(applianceId, configuration.getMeter());
+        }
+        if (configuration.getSchedules() != null) {
+            applianceManager.setSchedules(applianceId, configuration.getSchedules());
+        }
+        return true;
+    }
+
+    /**
+     * Returns the status of several appliances in one call.
+     * The ETag is derived from the content so that unchanged status is not transferred again.
+     * @param applianceIds the ids of the appliances to be returned; all appliances if omitted
+     */
+    @RequestMapping(value = BATCH_STATUS_URL, method = RequestMethod.GET, produces = "application/json")
+    @CrossOrigin(origins = CROSS_ORIGIN_URL, exposedHeaders = HttpHeaders.ETAG)
+    public void getStatusBatch(HttpServletRequest request, HttpServletResponse response,
+                               @RequestParam(value = "ids", required = false) List<String> applianceIds) {
+        synchronized (lock) {
+            try {
+                logger.debug("Received batch request for status: ids={}", applianceIds);
+                List<ApplianceStatus> applianceStatuses = getApplianceStatus(Clock.now(), response);
+                if (applianceIds != null) {
+                    applianceStatuses.removeIf(applianceStatus -> !applianceIds.contains(applianceStatus.getId()));
+                }
+                String json = genson.serialize(applianceStatuses);
+                String etag = "\"" + DigestUtils.md5DigestAsHex(json.getBytes(StandardCharsets.UTF_8)) + "\"";
+                if (new ServletWebRequest(request, response).checkNotModified(etag)) {
+                    return;
+                }
+                writeJson(response, json);
+            } catch (Throwable e) {
+                logger.error("Error in " + getClass().getSimpleName(), e);
+            }
+        }
+    }
+
+    private String getConfigurationEtag() {
+        return "\"" + Long.toHexString(ApplianceManager.getInstance().getConfigurationChecksum()) + "\"";
+    }
+
+    private boolean isFieldSelected(List<String> fields, String field) {
+        return fields == null || fields.contains(field);
+    }
+
+    private void writeJson(HttpServletResponse response, String json) throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getOutputStream().write(json.getBytes(StandardCharsets.UTF_8));
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.webservice;
+
+/**
+ * Status of the control requests of the energy manager for an appliance.
+ */
+public class SempControlStatus {
+    String applianceId;
+    boolean pending;
+    long appliedCount;
+    long collapsedCount;
+    long lastLatencyMillis;
+    long averageLatencyMillis;
+    long maxLatencyMillis;
+
+    public String getApplianceId() {
+        return applianceId;
+    }
+
+    public void setApplianceId(String applianceId) {
+        this.applianceId = applianceId;
+    }
+
+    public boolean isPending() {
+        return pending;
+    }
+
+    public void setPending(boolean pending) {
+        this.pending = pending;
+    }
+
+    public long getAppliedCount() {
+        return appliedCount;
+    }
+
+    public void setAppliedCount(long appliedCount) {
+        this.appliedCount = appliedCount;
+    }
+
+    public long getCollapsedCount() {
+        return collapsedCount;
+    }
+
+    public void setCollapsedCount(long collapsedCount) {
+        this.collapsedCount = collapsedCount;
+    }
+
+    public long getLastLatencyMillis() {
+        return lastLatencyMillis;
+    }
+
+    public void setLastLatencyMillis(long lastLatencyMillis) {
+        this.lastLatencyMillis = lastLatencyMillis;
+    }
+
+    public long getAverageLatencyMillis() {
+        return averageLatencyMillis;
+    }
+
+    public void setAverageLatencyMillis(long averageLatencyMillis) {
+        this.averageLatencyMillis = averageLatencyMillis;
+    }
+
+    public long getMaxLatencyMillis() {
+        return maxLatencyMillis;
+    }
+
+    public void setMaxLatencyMillis(long maxLatencyMillis) {
+        this.maxLatencyMillis = maxLatencyMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SempControlStatus{" +
+                "applianceId='" + applianceId + '\'' +
+                ", pending=" + pending +
+                ", appliedCount=" + appliedCount +
+                ", collapsedCount=" + collapsedCount +
+                ", lastLatencyMillis=" + lastLatencyMillis +
+                ", averageLatencyMillis=" + averageLatencyMillis +
+                ", maxLatencyMillis=" + maxLatencyMillis +
+                '}';
+    }
+}
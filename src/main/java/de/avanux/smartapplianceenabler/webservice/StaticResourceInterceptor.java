@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.webservice;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Sets the caching headers of the Angular artefacts:
+ * <ul>
+ *     <li>bundles with a content hash in their name (e.g. main.0a1b2c3d4e5f60718293.js) never change and are cached
+ *     for a year</li>
+ *     <li>index.html is revalidated on every request using ETag and Last-Modified</li>
+ *     <li>everything else has to be revalidated as well</li>
+ * </ul>
+ */
+public class StaticResourceInterceptor implements HandlerInterceptor {
+
+    private Logger logger = LoggerFactory.getLogger(StaticResourceInterceptor.class);
+    private static final Pattern FINGERPRINTED = Pattern.compile("[^/]+\\.[0-9a-f]{16,}\\.[a-z0-9]+");
+    private static final String INDEX = "index.html";
+    private static final String CACHE_CONTROL_IMMUTABLE
+            = CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+    private static final String CACHE_CONTROL_REVALIDATE = CacheControl.noCache().cachePublic().getHeaderValue();
+    private Resource index;
+    private volatile String indexEtag;
+
+    public StaticResourceInterceptor(Resource index) {
+        this.index = index;
+    }
+
+    public StaticResourceInterceptor() {
+        this(new ClassPathResource("static/" + INDEX));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if(! (handler instanceof ResourceHttpRequestHandler)) {
+            return true;
+        }
+        String uri = request.getRequestURI();
+        String filename = uri.substring(uri.lastIndexOf('/') + 1);
+        if(isFingerprinted(filename)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL_IMMUTABLE);
+            return true;
+        }
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL_REVALIDATE);
+        if(INDEX.equals(filename) || isIndexHandler((ResourceHttpRequestHandler) handler)) {
+            String etag = getIndexEtag();
+            // Last-Modified is checked and set by the resource handler
+            return etag == null || ! new ServletWebRequest(request, response).checkNotModified(etag);
+        }
+        return true;
+    }
+
+    static boolean isFingerprinted(String filename) {
+        return FINGERPRINTED.matcher(filename).matches();
+    }
+
+    private boolean isIndexHandler(ResourceHttpRequestHandler handler) {
+        for(Resource location: handler.getLocations()) {
+            if(INDEX.equals(location.getFilename())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a weak ETag derived from the content of index.html since the same ETag is used for compressed variants.
+     * @return the ETag or null if index.html does not exist
+     */
+    String getIndexEtag() {
+        if(indexEtag == null && index.exists()) {
+            try(InputStream in = index.getInputStream()) {
+                indexEtag = "W/\"" + DigestUtils.md5DigestAsHex(in) + "\"";
+            }
+            catch(IOException e) {
+                logger.error("Error reading " + index, e);
+            }
+        }
+        return indexEtag;
+    }
+}
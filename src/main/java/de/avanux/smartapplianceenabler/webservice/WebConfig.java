@@ -22,16 +22,22 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.http.HttpMessageConverters;
+import org.springframework.boot.web.server.Compression;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.boot.web.servlet.server.ConfigurableServletWebServerFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.io.Resource;
 import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
 import org.springframework.web.servlet.resource.PathResourceResolver;
 import org.springframework.web.servlet.view.InternalResourceViewResolver;
 
@@ -65,32 +71,56 @@ public class WebConfig implements WebMvcConfigurer {
         converters.addAll(this.messageConverters.getConverters());
     }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StaticResourceInterceptor());
+    }
+
+    /**
+     * Compress JSON responses of the REST API. Angular artefacts are not compressed on the fly since
+     * gzip and brotli variants are created at build time.
+     */
+    @Bean
+    public WebServerFactoryCustomizer<ConfigurableServletWebServerFactory> compressionCustomizer() {
+        return factory -> {
+            Compression compression = new Compression();
+            compression.setEnabled(true);
+            compression.setMimeTypes(new String[] { MediaType.APPLICATION_JSON_VALUE });
+            factory.setCompression(compression);
+        };
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         CacheControl noCache = CacheControl.noCache().cachePublic();
 
         /**
-         * Angular artefacts must not be mapped to index.html
+         * Angular artefacts must not be mapped to index.html.
+         * Cache headers are set by StaticResourceInterceptor depending on whether the name contains a content hash.
          */
         registry.addResourceHandler("*.js", "*.css", "*.map", "flags.*", "icons.*", "favicon.ico", "manifest.json")
                 .addResourceLocations("classpath:/static/")
-                .setCacheControl(noCache);
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
 
         registry.addResourceHandler("assets/**")
                 .addResourceLocations("classpath:/static/assets/")
-                .setCacheControl(noCache);
+                .setCacheControl(noCache)
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
 
         registry.addResourceHandler("/static/**")
                 .addResourceLocations("classpath:/static/")
-                .setCacheControl(noCache);
+                .resourceChain(true)
+                .addResolver(new EncodedResourceResolver());
 
         /**
          * For Angular all requests have to go to index.html
          */
         registry.addResourceHandler("/**")
                 .addResourceLocations("classpath:/static/index.html")
-                .setCacheControl(noCache)
                 .resourceChain(true)
+                .addResolver(new EncodedResourceResolver())
                 .addResolver(new PathResourceResolver() {
                     @Override
                     protected Resource getResource(String resourcePath, Resource location) throws IOException {
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.appliance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ApplianceMailboxTest {
+
+    private ApplianceMailbox mailbox = new ApplianceMailbox("F-001");
+
+    @Test
+    public void tasksAreExecutedInOrderAndNeverConcurrently() throws Exception {
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(100);
+        for(int i=0; i<100; i++) {
+            int task = i;
+            mailbox.execute(() -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                executed.add(task);
+                running.decrementAndGet();
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        assertEquals(IntStream.range(0, 100).boxed().collect(Collectors.toList()), executed);
+        assertEquals(100, mailbox.getProcessedCount());
+        assertEquals(0, mailbox.getDepth());
+    }
+
+    @Test
+    public void call_ReturnsResult() {
+        assertEquals("result", mailbox.call(() -> "result"));
+    }
+
+    @Test
+    public void call_FromMailboxIsExecutedImmediately() {
+        assertEquals(Integer.valueOf(2), mailbox.call(() -> mailbox.call(() -> 2)));
+    }
+
+    @Test
+    public void call_RethrowsException() {
+        assertThrows(IllegalArgumentException.class, () -> mailbox.call(() -> {
+            throw new IllegalArgumentException();
+        }));
+    }
+
+    @Test
+    public void depthAndLatency() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch blocker = new CountDownLatch(1);
+        mailbox.execute(() -> {
+            started.countDown();
+            try {
+                blocker.await(10, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Boolean> waiting = mailbox.submit(() -> true);
+        Thread.sleep(50);
+        assertEquals(1, mailbox.getDepth());
+        blocker.countDown();
+        assertTrue(waiting.get(10, TimeUnit.SECONDS));
+        assertTrue(mailbox.getMaxDepth() >= 1);
+        assertEquals(2, mailbox.getProcessedCount());
+        assertTrue(mailbox.getMaxLatencyMillis() >= 50);
+    }
+
+    @Test
+    public void hungDevicesDoNotDelayOtherAppliances() throws Exception {
+        // more appliances waiting for hung devices than threads kept by the pool
+        int hungAppliances = Math.max(2, Runtime.getRuntime().availableProcessors()) + 2;
+        CountDownLatch hung = new CountDownLatch(hungAppliances);
+        CountDownLatch device = new CountDownLatch(1);
+        try {
+            for(int i=0; i<hungAppliances; i++) {
+                new ApplianceMailbox("F-00" + i).execute(() -> {
+                    hung.countDown();
+                    try {
+                        device.await(30, TimeUnit.SECONDS);
+                    }
+                    catch(InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            assertTrue(hung.await(10, TimeUnit.SECONDS));
+            CompletableFuture<String> other = mailbox.submit(() -> "result");
+            assertEquals("result", other.get(1, TimeUnit.SECONDS));
+            assertTrue(ApplianceMailbox.getLargestPoolSize() > hungAppliances);
+        }
+        finally {
+            device.countDown();
+        }
+    }
+}
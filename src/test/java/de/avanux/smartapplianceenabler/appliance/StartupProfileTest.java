@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.appliance;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StartupProfileTest {
+
+    @Test
+    public void toReport() {
+        StartupProfile profile = new StartupProfile();
+        long phaseStart = profile.start();
+        profile.endPhase("connectivity", phaseStart);
+        profile.endAppliancePhase("F-00000001-000000000001-00", "init", profile.start());
+        profile.endAppliancePhase("F-00000001-000000000001-00", "start", profile.start());
+        profile.setApplianceResult("F-00000001-000000000001-00", "ready");
+        profile.endAppliancePhase("F-00000001-000000000002-00", "init", profile.start());
+        profile.setApplianceResult("F-00000001-000000000002-00", "timeout");
+        profile.complete();
+
+        List<String> report = profile.toReport();
+        assertEquals(4, report.size());
+        assertTrue(report.get(0).startsWith("Startup completed in "));
+        assertTrue(report.get(1).trim().startsWith("connectivity"));
+        assertTrue(report.get(2).matches("  F-00000001-000000000001-00: init=\\d+ms start=\\d+ms total=\\d+ms \\(ready\\)"));
+        assertTrue(report.get(3).endsWith("(timeout)"));
+        assertNotNull(profile.getTotalMillis());
+        assertEquals(2, profile.getAppliancePhaseMillis("F-00000001-000000000001-00").size());
+    }
+}
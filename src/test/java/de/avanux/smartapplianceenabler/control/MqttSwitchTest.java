@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.control;
+
+import de.avanux.smartapplianceenabler.control.ev.EVChargerState;
+import de.avanux.smartapplianceenabler.control.ev.ElectricVehicle;
+import de.avanux.smartapplianceenabler.control.ev.SocValues;
+import de.avanux.smartapplianceenabler.mqtt.*;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static de.avanux.smartapplianceenabler.mqtt.MqttClientTest.waitFor;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttSwitchTest {
+
+    private EmbeddedMqttBroker embeddedBroker = new EmbeddedMqttBroker();
+    private MqttBroker mqttBroker = new MqttBroker();
+    private MqttSwitch mqttSwitch = new MqttSwitch();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        embeddedBroker.start();
+        mqttBroker.setId("broker");
+        mqttBroker.setPort(embeddedBroker.getPort());
+
+        MqttWrite write = new MqttWrite("cmnd/plug/POWER");
+        write.setWriteValues(Arrays.asList(
+                new MqttWriteValue(ControlValueName.On.name(), "ON"),
+                new MqttWriteValue(ControlValueName.Off.name(), "OFF")));
+        MqttRead read = new MqttRead("stat/plug/POWER");
+        read.setReadValues(Collections.singletonList(new MqttReadValue(ControlValueName.On.name(), null, "ON", null)));
+        mqttSwitch.setApplianceId("F-001");
+        mqttSwitch.setIdref("broker");
+        mqttSwitch.setMqttWrites(Collections.singletonList(write));
+        mqttSwitch.setMqttRead(read);
+        mqttSwitch.setMqttBroker(mqttBroker);
+        mqttSwitch.validate();
+        mqttSwitch.init();
+        mqttSwitch.start(LocalDateTime.now(), null);
+        waitFor(() -> embeddedBroker.getSubscriptionCount() == 1);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        mqttSwitch.stop(LocalDateTime.now());
+        mqttBroker.stop();
+        embeddedBroker.stop();
+    }
+
+    @Test
+    public void on() throws Exception {
+        assertTrue(mqttSwitch.on(LocalDateTime.now(), true));
+        assertTrue(mqttSwitch.isOn());
+        assertTrue(mqttSwitch.on(LocalDateTime.now(), false));
+        waitFor(() -> embeddedBroker.getPublished().size() == 2);
+        assertEquals(Arrays.asList("cmnd/plug/POWER=ON", "cmnd/plug/POWER=OFF"), embeddedBroker.getPublished());
+    }
+
+    @Test
+    public void on_NotAcknowledged() throws Exception {
+        embeddedBroker.setPubackEnabled(false);
+        assertFalse(mqttSwitch.on(LocalDateTime.now(), true));
+        assertFalse(mqttSwitch.isOn());
+    }
+
+    @Test
+    public void isOn_StateReportedByDevice() throws Exception {
+        embeddedBroker.publish("stat/plug/POWER", "ON");
+        waitFor(mqttSwitch::isOn);
+        embeddedBroker.publish("stat/plug/POWER", "OFF");
+        waitFor(() -> ! mqttSwitch.isOn());
+    }
+
+    @Test
+    public void controlStateChanged_StateReportedByDevice() throws Exception {
+        List<Boolean> stateChanges = new CopyOnWriteArrayList<>();
+        mqttSwitch.addControlStateChangedListener(new ControlStateChangedListener() {
+            @Override
+            public void controlStateChanged(LocalDateTime now, boolean switchOn) {
+                stateChanges.add(switchOn);
+            }
+
+            @Override
+            public void onEVChargerStateChanged(LocalDateTime now, EVChargerState previousState,
+                                                EVChargerState newState, ElectricVehicle ev) {
+            }
+
+            @Override
+            public void onEVChargerSocChanged(LocalDateTime now, SocValues socValues) {
+            }
+        });
+        embeddedBroker.publish("stat/plug/POWER", "ON");
+        embeddedBroker.publish("stat/plug/POWER", "ON");
+        embeddedBroker.publish("stat/plug/POWER", "OFF");
+        waitFor(() -> stateChanges.size() == 2);
+        assertEquals(Arrays.asList(true, false), stateChanges);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.control.ev;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Timer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+public class ChargeCurrentActuatorTest {
+
+    private EVChargerControl control = mock(EVChargerControl.class);
+    private ChargeCurrentActuator actuator = new ChargeCurrentActuator("TEST", control);
+    private Timer timer = new Timer(true);
+
+    @BeforeEach
+    public void setUp() {
+        when(control.setChargeCurrent(anyInt())).thenReturn(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        actuator.reset();
+        timer.cancel();
+    }
+
+    @Test
+    public void setChargeCurrent_SameValueNotWrittenAgain() {
+        actuator.setChargeCurrent(6);
+        actuator.setChargeCurrent(6);
+        actuator.setChargeCurrent(7);
+        verify(control, times(1)).setChargeCurrent(6);
+        verify(control, times(1)).setChargeCurrent(7);
+        assertEquals(1, actuator.getSuppressedCount());
+        assertEquals(2, actuator.getWriteCount());
+    }
+
+    @Test
+    public void setChargeCurrent_WrittenAgainAfterReset() {
+        actuator.setChargeCurrent(6);
+        actuator.reset();
+        actuator.setChargeCurrent(6);
+        verify(control, times(2)).setChargeCurrent(6);
+    }
+
+    @Test
+    public void setChargeCurrent_ChangesWithinMinIntervalCoalesced() {
+        actuator.setMinIntervalMillis(200);
+        actuator.start(timer, null, null);
+        actuator.setChargeCurrent(6);
+        actuator.setChargeCurrent(7);
+        actuator.setChargeCurrent(8);
+        assertEquals(Integer.valueOf(8), actuator.getDeferredCurrent());
+        verify(control, timeout(2000)).setChargeCurrent(8);
+        verify(control, never()).setChargeCurrent(7);
+        assertEquals(1, actuator.getCoalescedCount());
+        assertEquals(Integer.valueOf(8), actuator.getWrittenCurrent());
+    }
+
+    @Test
+    public void setChargeCurrent_DeferredChangeRevertedToWrittenValue() throws Exception {
+        actuator.setMinIntervalMillis(200);
+        actuator.start(timer, null, null);
+        actuator.setChargeCurrent(6);
+        actuator.setChargeCurrent(7);
+        actuator.setChargeCurrent(6);
+        assertNull(actuator.getDeferredCurrent());
+        Thread.sleep(400);
+        verify(control, times(1)).setChargeCurrent(6);
+        verify(control, never()).setChargeCurrent(7);
+    }
+
+    @Test
+    public void repetition() {
+        actuator.start(timer, null, 1);
+        actuator.setChargeCurrent(6);
+        verify(control, timeout(3000).times(2)).setChargeCurrent(6);
+        assertTrue(actuator.getRepetitionCount() >= 1);
+        assertEquals(1, actuator.getWriteCount());
+    }
+
+    @Test
+    public void setChargeCurrent_WrittenAgainAfterFailedWrite() {
+        when(control.setChargeCurrent(6)).thenReturn(false, true);
+        actuator.setChargeCurrent(6);
+        assertNull(actuator.getWrittenCurrent());
+        actuator.setChargeCurrent(6);
+        verify(control, times(2)).setChargeCurrent(6);
+        assertEquals(Integer.valueOf(6), actuator.getWrittenCurrent());
+        assertEquals(1, actuator.getFailureCount());
+        assertEquals(1, actuator.getWriteCount());
+    }
+}
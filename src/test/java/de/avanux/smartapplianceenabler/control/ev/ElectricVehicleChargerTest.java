@@ -26,6 +26,8 @@ import java.util.regex.Matcher;
 
 import de.avanux.smartapplianceenabler.appliance.Appliance;
 import de.avanux.smartapplianceenabler.schedule.*;
+import de.avanux.smartapplianceenabler.util.Clock;
+import de.avanux.smartapplianceenabler.util.DateTimeProvider;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.slf4j.Logger;
@@ -403,4 +405,60 @@ public class ElectricVehicleChargerTest {
                 currentMillis,
                 currentMillis - (startChargingStateDetectionDelay + 1) * 1000));
     }
+
+    @Test
+    public void setCurrentLimit_Zero_PausesAndResumesCharging() {
+        configureMocks(false, true, true);
+        evCharger.startCharging();
+        Mockito.verify(evChargerControl).startCharging();
+
+        log("No current available from load management");
+        evCharger.setCurrentLimit(0);
+        Mockito.verify(evChargerControl).stopCharging();
+        Mockito.verify(evChargerControl, Mockito.never()).setChargeCurrent(0);
+        assertTrue(evCharger.isChargingPausedByLoadManagement());
+        assertTrue(evCharger.isOn());
+        assertFalse(evCharger.updateState(now));
+
+        log("Current available again");
+        evCharger.setCurrentLimit(10);
+        Mockito.verify(evChargerControl, Mockito.times(2)).startCharging();
+        assertFalse(evCharger.isChargingPausedByLoadManagement());
+    }
+
+    @Test
+    public void setCurrentLimit_OscillatingAroundMinCurrent_MinPauseDuration() {
+        DateTimeProvider dateTimeProvider = mock(DateTimeProvider.class);
+        long startMillis = 1_000_000L;
+        when(dateTimeProvider.now()).thenReturn(now);
+        when(dateTimeProvider.currentTimeMillis()).thenReturn(startMillis);
+        Clock.setDateTimeProvider(dateTimeProvider);
+        try {
+            configureMocks(false, true, true);
+            evCharger.setMinPauseDuration(300);
+            evCharger.startCharging();
+            evCharger.setCurrentLimit(6);
+
+            log("Budget oscillating around minimum current");
+            for(int i=0; i<7; i++) {
+                when(dateTimeProvider.currentTimeMillis()).thenReturn(startMillis + i * 40000L);
+                evCharger.setCurrentLimit(0);
+                when(dateTimeProvider.currentTimeMillis()).thenReturn(startMillis + i * 40000L + 20000L);
+                evCharger.setCurrentLimit(6);
+                assertFalse(evCharger.updateState(now));
+                assertTrue(evCharger.isChargingPausedByLoadManagement());
+            }
+            Mockito.verify(evChargerControl).stopCharging();
+            Mockito.verify(evChargerControl).startCharging();
+
+            log("Minimum pause duration elapsed");
+            when(dateTimeProvider.currentTimeMillis()).thenReturn(startMillis + 300000L);
+            evCharger.updateState(now);
+            assertFalse(evCharger.isChargingPausedByLoadManagement());
+            Mockito.verify(evChargerControl, Mockito.times(2)).startCharging();
+        }
+        finally {
+            Clock.reset();
+        }
+    }
 }
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.control.ev;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SurplusControlTest {
+
+    private static final int VOLTAGE = 230;
+    private SurplusControl surplusControl = new SurplusControl();
+    private long nowMillis = 1_000_000L;
+    private int chargeCurrent;
+
+    @BeforeEach
+    public void setUp() {
+        surplusControl.setApplianceId("F-001");
+        chargeCurrent = 6;
+        surplusControl.activate(chargeCurrent * VOLTAGE, chargeCurrent);
+    }
+
+    /**
+     * Simulates the control loop with the charger drawing the current set in the previous step.
+     * @param surplus power available without charging
+     * @param steps number of control intervals
+     * @param phases
+     * @param maxPower
+     * @return number of current changes
+     */
+    private int run(int surplus, int steps, int phases, Integer maxPower) {
+        int changes = 0;
+        for(int i=0; i<steps; i++) {
+            nowMillis += surplusControl.getInterval() * 1000L;
+            int gridPower = chargeCurrent * VOLTAGE * phases - surplus;
+            Integer current = surplusControl.computeChargeCurrent(nowMillis, gridPower, VOLTAGE, phases, maxPower);
+            if(current != null && current != chargeCurrent) {
+                chargeCurrent = current;
+                changes++;
+            }
+        }
+        return changes;
+    }
+
+    @Test
+    public void followsSurplus() {
+        run(3000, 30, 1, null);
+        assertEquals(13, chargeCurrent);
+        assertEquals(0, run(3000, 30, 1, null));
+    }
+
+    @Test
+    public void followsSurplus_ThreePhases() {
+        run(8500, 30, 3, null);
+        assertEquals(12, chargeCurrent);
+    }
+
+    @Test
+    public void passingCloud() {
+        run(3000, 30, 1, null);
+        run(800, 15, 1, null);
+        assertEquals(6, chargeCurrent);
+        run(3000, 30, 1, null);
+        assertEquals(13, chargeCurrent);
+    }
+
+    @Test
+    public void maxPowerOfVehicle() {
+        run(10000, 30, 1, null);
+        assertEquals(16, chargeCurrent);
+        run(10000, 10, 1, 2300);
+        assertEquals(10, chargeCurrent);
+    }
+
+    @Test
+    public void deadbandAndHysteresis() {
+        run(3000, 30, 1, null);
+        assertEquals(13, chargeCurrent);
+        int changes = 0;
+        for(int i=0; i<50; i++) {
+            changes += run(3000 + (i % 2 == 0 ? 120 : -40), 1, 1, null);
+        }
+        assertEquals(0, changes);
+    }
+
+    @Test
+    public void inactive() {
+        surplusControl.deactivate();
+        assertNull(surplusControl.computeChargeCurrent(nowMillis, -3000, VOLTAGE, 1, null));
+    }
+
+    @Test
+    public void measurement() {
+        assertNull(surplusControl.computeChargeCurrent(nowMillis, VOLTAGE, 1, null));
+        surplusControl.onGridPowerUpdate(nowMillis, -2000);
+        assertNotNull(surplusControl.computeChargeCurrent(nowMillis + 1000, VOLTAGE, 1, null));
+        // same measurement is used only once
+        assertNull(surplusControl.computeChargeCurrent(nowMillis + 2000, VOLTAGE, 1, null));
+        surplusControl.onGridPowerUpdate(nowMillis + 3000, -2000);
+        // outdated measurement
+        assertNull(surplusControl.computeChargeCurrent(nowMillis + 30000, VOLTAGE, 1, null));
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.http;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DigestAuthorizationTest {
+    private static final String NONCE = "7ypf/xlj9XXwfDPEoM4URrv/xwf94BcCAzFZH4GiTo0v";
+    private static final String OPAQUE = "FQhe/qaU925kfnzjCev0ciny7QMkPqMAFRtzCUYo5tdS";
+    private static final String CNONCE = "f2/wE4q74E6zIJEtWaHKaf5wv/H5QzzpXusqGemxURZJ";
+
+    @Test
+    public void create_MD5() {
+        String challenge = "Digest realm=\"http-auth@example.org\", qop=\"auth, auth-int\", algorithm=MD5, nonce=\""
+                + NONCE + "\", opaque=\"" + OPAQUE + "\"";
+        String authorization = DigestAuthorization.create(challenge, "GET", "/dir/index.html",
+                "Mufasa", "Circle of Life", CNONCE);
+        assertTrue(authorization.contains("response=\"8ca523f5e9506fed4657c9700eebdbec\""), authorization);
+        assertTrue(authorization.contains("opaque=\"" + OPAQUE + "\""), authorization);
+        assertTrue(authorization.contains("qop=auth, nc=00000001"), authorization);
+    }
+
+    @Test
+    public void create_SHA256() {
+        String challenge = "Digest realm=\"http-auth@example.org\", qop=\"auth, auth-int\", algorithm=SHA-256, nonce=\""
+                + NONCE + "\", opaque=\"" + OPAQUE + "\"";
+        String authorization = DigestAuthorization.create(challenge, "GET", "/dir/index.html",
+                "Mufasa", "Circle of Life", CNONCE);
+        assertTrue(authorization.contains(
+                "response=\"753927fa0e85d155564e2e272a28d1802ca10daf4496794697cf8db5856cb6c1\""), authorization);
+    }
+
+    @Test
+    public void create_NotDigest() {
+        assertNull(DigestAuthorization.create("Basic realm=\"test\"", "GET", "/", "user", "pass"));
+    }
+}
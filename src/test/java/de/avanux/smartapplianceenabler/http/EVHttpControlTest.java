@@ -26,8 +26,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -112,6 +114,19 @@ public class EVHttpControlTest {
         assertFalse(this.control.isInErrorState());
     }
 
+    @Test
+    public void isVehicleConnected_Async() {
+        Mockito.doReturn(true).when(executorMock).isAsync();
+        Mockito.doReturn(Duration.ofSeconds(1)).when(executorMock).getMaxAsyncDuration();
+        Mockito.doReturn(CompletableFuture.completedFuture("{ \"car\": \"3\" }"))
+                .when(executorMock).executeAsync(Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any(), Mockito.any());
+        assertTrue(this.control.isVehicleConnected());
+        assertFalse(this.control.isCharging());
+        Mockito.verify(executorMock, Mockito.times(1)).executeAsync(HttpMethod.GET, BASE_URL + "/status", null,
+                null, HttpRead.DEFAULT_MAX_BODY_SIZE);
+        Mockito.verify(executorMock, Mockito.never()).execute(Mockito.any(), Mockito.any(), Mockito.any());
+    }
+
     @Test
     public void startCharging() {
         Mockito.doReturn("this is the START CHARGING response").when(executorMock).execute(Mockito.any(), Mockito.any(), Mockito.any());
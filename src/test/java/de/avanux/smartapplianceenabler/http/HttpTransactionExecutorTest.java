@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.http;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HttpTransactionExecutorTest {
+    private static final String BASIC_AUTHORIZATION = "Basic dXNlcjpzZWNyZXQ=";
+    private HttpServer server;
+    private String url;
+    private String challenge;
+    private List<String> authorizations = new CopyOnWriteArrayList<>();
+    private HttpTransactionExecutor executor = new HttpTransactionExecutor();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/status", exchange -> {
+            String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+            authorizations.add(String.valueOf(authorization));
+            if(authorization == null) {
+                exchange.getResponseHeaders().add("WWW-Authenticate", challenge);
+                exchange.sendResponseHeaders(401, -1);
+            }
+            else {
+                byte[] body = "on".getBytes(StandardCharsets.ISO_8859_1);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/status";
+        executor.setApplianceId("F-001");
+        executor.setConfiguration(new HttpConfiguration(null, "user", "secret"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void executeAsync_BasicChallenge() throws Exception {
+        challenge = "Basic realm=\"device\"";
+        assertEquals("on", executor.executeAsync(HttpMethod.GET, url, null).get(5, TimeUnit.SECONDS));
+        assertEquals(2, authorizations.size());
+        assertEquals("null", authorizations.get(0));
+        assertEquals(BASIC_AUTHORIZATION, authorizations.get(1));
+    }
+
+    @Test
+    public void executeAsync_DigestChallenge() throws Exception {
+        challenge = "Digest realm=\"device\", qop=\"auth\", nonce=\"abc\"";
+        assertEquals("on", executor.executeAsync(HttpMethod.GET, url, null).get(5, TimeUnit.SECONDS));
+        assertEquals(2, authorizations.size());
+        assertEquals("null", authorizations.get(0));
+        assertTrue(authorizations.get(1).startsWith("Digest username=\"user\""), authorizations.get(1));
+    }
+
+    @Test
+    public void executeAsync_PreemptiveBasicAuth() throws Exception {
+        executor.setPreemptiveBasicAuth(true);
+        assertEquals("on", executor.executeAsync(HttpMethod.GET, url, null).get(5, TimeUnit.SECONDS));
+        assertEquals(1, authorizations.size());
+        assertEquals(BASIC_AUTHORIZATION, authorizations.get(0));
+    }
+}
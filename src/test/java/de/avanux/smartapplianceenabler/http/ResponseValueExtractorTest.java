@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.http;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ResponseValueExtractorTest {
+
+    private static final String BODY = "<html><p>Status</p><b>Power: 1234,5 W</b>"
+            + "x".repeat(50000) + "<b>Power: 99 W</b></html>";
+
+    private ResponseValueExtractor extract(String regex, Integer maxBodySize, String body, int chunkSize) {
+        ResponseValueExtractor extractor = new ResponseValueExtractor(regex, maxBodySize, StandardCharsets.UTF_8);
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        for(int i=0; i<bytes.length && ! extractor.isDone(); i+=chunkSize) {
+            extractor.onBytes(ByteBuffer.wrap(bytes, i, Math.min(chunkSize, bytes.length - i)));
+        }
+        if(! extractor.isDone()) {
+            extractor.onEndOfBody();
+        }
+        return extractor;
+    }
+
+    @Test
+    public void firstMatch_StopsReading() {
+        ResponseValueExtractor extractor = extract("Power: ([\\d,]+) W.*", null, BODY, 16);
+        assertEquals("1234,5", extractor.getValue());
+        assertTrue(extractor.getBytesRead() < 100);
+    }
+
+    @Test
+    public void firstMatch_NotCompletedAtChunkBoundary() {
+        ResponseValueExtractor extractor = extract("Power: (\\d+)", null, "Power: 1234 W", 9);
+        assertEquals("1234", extractor.getValue());
+    }
+
+    @Test
+    public void leadingGreedyWildcard_ReadsWholeBody() {
+        ResponseValueExtractor extractor = extract(".*Power: ([\\d,]+) W.*", null, BODY, 4096);
+        assertEquals("99", extractor.getValue());
+        assertEquals(BODY.length(), extractor.getBytesRead());
+    }
+
+    @Test
+    public void multiByteCharacterSplitAcrossChunks() {
+        ResponseValueExtractor extractor = extract("Temp: (\\S+) ", null, "Temp: 21°C ok", 1);
+        assertEquals("21°C", extractor.getValue());
+    }
+
+    @Test
+    public void noRegex_ReturnsBody() {
+        assertEquals("{\"power\": 42}", extract(null, null, "{\"power\": 42}", 3).getValue());
+    }
+
+    @Test
+    public void noMatch_ReturnsBody() {
+        assertEquals(BODY, extract("Energy: (\\d+)", null, BODY, 4096).getValue());
+        assertEquals("42", extract("Power: (\\d+)", null, "42", 4096).getValue());
+    }
+
+    @Test
+    public void matchLongerThanBufferCapacity() {
+        String value = "y".repeat(ResponseValueExtractor.BUFFER_CAPACITY * 2);
+        ResponseValueExtractor extractor = extract("<value>(.*?)</value>", null,
+                "x".repeat(1000) + "<value>" + value + "</value>" + "x".repeat(1000), 4096);
+        assertEquals(value, extractor.getValue());
+    }
+
+    @Test
+    public void maxBodySizeExceeded() {
+        ResponseValueExtractor extractor = extract(".*Power: ([\\d,]+) W.*", 10000, BODY, 4096);
+        assertTrue(extractor.isMaxBodySizeExceeded());
+        assertNull(extractor.getValue());
+    }
+
+    @Test
+    public void maxBodySizeExceeded_ValueInChunkCrossingLimit() {
+        String body = "x".repeat(100) + "Power: 42 W" + "x".repeat(1000);
+        ResponseValueExtractor extractor = extract("Power: (\\d+) W", 120, body, 4096);
+        assertTrue(extractor.isMaxBodySizeExceeded());
+        assertEquals("42", extractor.getValue());
+        assertNull(extract("Power: (\\d+) W", 105, body, 4096).getValue());
+    }
+
+    @Test
+    public void getStreamingRegex() {
+        assertEquals("Power: (\\d+)", ResponseValueExtractor.getStreamingRegex(".*?Power: (\\d+).*"));
+        assertEquals("Power: (\\d+)\\.*", ResponseValueExtractor.getStreamingRegex("Power: (\\d+)\\.*"));
+    }
+}
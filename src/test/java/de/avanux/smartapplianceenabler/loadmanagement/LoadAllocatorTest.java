@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.loadmanagement;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LoadAllocatorTest {
+
+    private static final int THREE_PHASES = LoadAllocator.phaseMask(3, 1);
+    private LoadAllocator allocator = new LoadAllocator();
+
+    private LoadAllocator.Consumer add(String id, int priority, int phaseMask, int demand) {
+        LoadAllocator.Consumer consumer = new LoadAllocator.Consumer(id, priority, phaseMask, 6);
+        consumer.setDemand(demand);
+        allocator.addConsumer(consumer);
+        return consumer;
+    }
+
+    private static double[] budget(double l1, double l2, double l3) {
+        return new double[] { l1, l2, l3 };
+    }
+
+    @Test
+    public void phaseMask() {
+        assertEquals(0b001, LoadAllocator.phaseMask(1, 1));
+        assertEquals(0b100, LoadAllocator.phaseMask(1, 3));
+        assertEquals(0b101, LoadAllocator.phaseMask(2, 3));
+        assertEquals(0b111, LoadAllocator.phaseMask(3, 2));
+    }
+
+    @Test
+    public void fairShare() {
+        LoadAllocator.Consumer charger1 = add("F-1", 0, THREE_PHASES, 32);
+        LoadAllocator.Consumer charger2 = add("F-2", 0, THREE_PHASES, 32);
+        assertEquals(2, allocator.allocate(budget(35, 35, 35)));
+        assertEquals(17, charger1.getAllocation());
+        assertEquals(17, charger2.getAllocation());
+        assertEquals(0, allocator.allocate(budget(35, 35, 35)));
+    }
+
+    @Test
+    public void fairShare_DemandSatisfied() {
+        LoadAllocator.Consumer charger1 = add("F-1", 0, THREE_PHASES, 10);
+        LoadAllocator.Consumer charger2 = add("F-2", 0, THREE_PHASES, 32);
+        allocator.allocate(budget(35, 35, 35));
+        assertEquals(10, charger1.getAllocation());
+        assertEquals(25, charger2.getAllocation());
+    }
+
+    @Test
+    public void priority() {
+        LoadAllocator.Consumer low = add("F-1", 0, THREE_PHASES, 32);
+        LoadAllocator.Consumer high = add("F-2", 1, THREE_PHASES, 32);
+        allocator.allocate(budget(35, 35, 35));
+        assertEquals(29, high.getAllocation());
+        assertEquals(6, low.getAllocation());
+    }
+
+    @Test
+    public void minimumCurrentNotAvailable() {
+        LoadAllocator.Consumer charger1 = add("F-1", 0, THREE_PHASES, 16);
+        LoadAllocator.Consumer charger2 = add("F-2", 0, THREE_PHASES, 16);
+        LoadAllocator.Consumer charger3 = add("F-3", 0, THREE_PHASES, 16);
+        allocator.allocate(budget(10, 35, 35));
+        assertEquals(10, charger1.getAllocation());
+        assertEquals(0, charger2.getAllocation());
+        assertEquals(0, charger3.getAllocation());
+    }
+
+    @Test
+    public void singlePhaseAndThreePhase() {
+        LoadAllocator.Consumer singlePhase = add("F-1", 0, LoadAllocator.phaseMask(1, 1), 16);
+        LoadAllocator.Consumer threePhase = add("F-2", 0, THREE_PHASES, 16);
+        allocator.allocate(budget(20, 35, 35));
+        assertEquals(10, singlePhase.getAllocation());
+        assertEquals(10, threePhase.getAllocation());
+    }
+
+    @Test
+    public void singlePhaseOnDifferentPhases() {
+        LoadAllocator.Consumer l1 = add("F-1", 0, LoadAllocator.phaseMask(1, 1), 16);
+        LoadAllocator.Consumer l2 = add("F-2", 0, LoadAllocator.phaseMask(1, 2), 16);
+        LoadAllocator.Consumer l3 = add("F-3", 0, LoadAllocator.phaseMask(1, 3), 16);
+        allocator.allocate(budget(8, 35, 12));
+        assertEquals(8, l1.getAllocation());
+        assertEquals(16, l2.getAllocation());
+        assertEquals(12, l3.getAllocation());
+    }
+
+    @Test
+    public void noDemand() {
+        LoadAllocator.Consumer charger1 = add("F-1", 0, THREE_PHASES, 0);
+        LoadAllocator.Consumer charger2 = add("F-2", 0, THREE_PHASES, 32);
+        allocator.allocate(budget(35, 35, 35));
+        assertEquals(0, charger1.getAllocation());
+        assertEquals(32, charger2.getAllocation());
+    }
+
+    @Test
+    public void negativeBudget() {
+        LoadAllocator.Consumer charger = add("F-1", 0, THREE_PHASES, 16);
+        allocator.allocate(budget(-3, 35, 35));
+        assertEquals(0, charger.getAllocation());
+    }
+
+    @Test
+    public void withinLimits_ManyChargers() {
+        for(int i=0; i<25; i++) {
+            add("F-" + i, i % 3, LoadAllocator.phaseMask(i % 2 == 0 ? 3 : 1, i % 3 + 1), 6 + i % 11);
+        }
+        double[] budget = budget(63, 50, 80);
+        allocator.allocate(budget);
+        for(int p=0; p<LoadAllocator.PHASES; p++) {
+            int sum = 0;
+            for(LoadAllocator.Consumer consumer : allocator.getConsumers()) {
+                assertTrue(consumer.getAllocation() == 0 || consumer.getAllocation() >= consumer.getMinCurrent());
+                assertTrue(consumer.getAllocation() <= consumer.getDemand());
+                if(consumer.isOnPhase(p)) {
+                    sum += consumer.getAllocation();
+                }
+            }
+            assertTrue(sum <= budget[p], "Phase " + (p + 1) + ": " + sum);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+import de.avanux.smartapplianceenabler.modbus.ModbusRead;
+import de.avanux.smartapplianceenabler.modbus.ModbusReadValue;
+import de.avanux.smartapplianceenabler.modbus.ModbusTcp;
+import de.avanux.smartapplianceenabler.modbus.ReadRegisterType;
+import de.avanux.smartapplianceenabler.modbus.RegisterValueType;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusExecutorFactory;
+import de.avanux.smartapplianceenabler.modbus.simulator.ModbusTcpSimulator;
+import de.avanux.smartapplianceenabler.modbus.simulator.SimulatedModbusSlave;
+import de.avanux.smartapplianceenabler.util.CircuitBreaker;
+import de.avanux.smartapplianceenabler.util.CircuitBreakerRegistry;
+import de.avanux.smartapplianceenabler.util.CircuitBreakerState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ModbusElectricityMeterTest {
+    private ModbusElectricityMeter meter;
+    private ModbusTcpSimulator simulator;
+    private SimulatedModbusSlave slave;
+    private ModbusTcp modbusTcp;
+    private String applianceId;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        ModbusExecutorFactory.setReadInputExecutor(null);
+
+        ModbusRead read = new ModbusRead();
+        read.setAddress("0x0C");
+        read.setType(ReadRegisterType.Input.name());
+        read.setValueType(RegisterValueType.Float.name());
+        read.setWords(2);
+        read.setReadValues(Collections.singletonList(new ModbusReadValue(MeterValueName.Power.name(), null)));
+
+        slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        simulator = new ModbusTcpSimulator();
+        modbusTcp = new ModbusTcp();
+        modbusTcp.setId("modbus");
+        modbusTcp.setPort(simulator.addSlave(0, 1, slave));
+
+        meter = new ModbusElectricityMeter();
+        applianceId = "F-" + System.nanoTime();
+        meter.setApplianceId(applianceId);
+        meter.setModbusReads(Collections.singletonList(read));
+        meter.setSlaveAddress(1);
+        meter.setModbusTcp(modbusTcp);
+        meter.init();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        meter.stop(null);
+        modbusTcp.stop();
+        simulator.stop();
+    }
+
+    @Test
+    public void pollPower_persistentConnection() {
+        slave.setValue(MeterValueName.Power.name(), 1234.5);
+        for(int i=0; i<3; i++) {
+            assertEquals(1234.5, meter.pollPower(), 0.01);
+        }
+        assertEquals(1, simulator.getAcceptedConnectionCount());
+        assertEquals(3, slave.getRequestCount());
+    }
+
+    @Test
+    public void pollPower_sharedConnection() {
+        ModbusElectricityMeter otherMeter = new ModbusElectricityMeter();
+        otherMeter.setApplianceId("F-" + System.nanoTime());
+        otherMeter.setModbusReads(meter.getModbusReads());
+        otherMeter.setSlaveAddress(1);
+        otherMeter.setModbusTcp(modbusTcp);
+        otherMeter.init();
+
+        slave.setValue(MeterValueName.Power.name(), 1234.5);
+        assertEquals(1234.5, meter.pollPower(), 0.01);
+        assertEquals(1234.5, otherMeter.pollPower(), 0.01);
+        assertEquals(1, simulator.getAcceptedConnectionCount());
+    }
+
+    @Test
+    public void pollPower_exceptionResponse() {
+        slave.setValue(MeterValueName.Power.name(), 1234.5);
+        slave.setExceptionCode(0x0C, SimulatedModbusSlave.SLAVE_DEVICE_FAILURE);
+        assertEquals(0.0, meter.pollPower(), 0.01);
+
+        slave.setExceptionCode(0x0C, null);
+        assertEquals(1234.5, meter.pollPower(), 0.01);
+        // the slave responded, i.e. neither the connection has to be re-opened nor is the device unreachable
+        assertEquals(1, simulator.getAcceptedConnectionCount());
+    }
+
+    @Test
+    public void pollPower_unreachable() {
+        slave.setValue(MeterValueName.Power.name(), 1234.5);
+        assertEquals(1234.5, meter.pollPower(), 0.01);
+        simulator.stop();
+
+        CircuitBreaker circuitBreaker = CircuitBreakerRegistry.getInstance().getCircuitBreaker(applianceId,
+                modbusTcp.toString());
+        for(int i=0; i<CircuitBreaker.DEFAULT_FAILURE_THRESHOLD; i++) {
+            assertEquals(0.0, meter.pollPower(), 0.01);
+        }
+        assertEquals(CircuitBreakerState.OPEN, circuitBreaker.getState());
+        assertEquals(0.0, meter.pollPower(), 0.01);
+    }
+
+    @Test
+    public void pollPower_pipelined() {
+        modbusTcp.setMaxPendingRequests(4);
+        slave.setValue(MeterValueName.Power.name(), 1234.5);
+        for(int i=0; i<3; i++) {
+            assertEquals(1234.5, meter.pollPower(), 0.01);
+        }
+        assertEquals(1, simulator.getAcceptedConnectionCount());
+        assertEquals(0, modbusTcp.getPipeline().getPendingRequestCount());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.meter;
+
+import de.avanux.smartapplianceenabler.mqtt.EmbeddedMqttBroker;
+import de.avanux.smartapplianceenabler.mqtt.MqttBroker;
+import de.avanux.smartapplianceenabler.mqtt.MqttRead;
+import de.avanux.smartapplianceenabler.mqtt.MqttReadValue;
+import de.avanux.smartapplianceenabler.protocol.ContentProtocolType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static de.avanux.smartapplianceenabler.mqtt.MqttClientTest.waitFor;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttElectricityMeterTest {
+
+    private EmbeddedMqttBroker embeddedBroker = new EmbeddedMqttBroker();
+    private MqttBroker mqttBroker = new MqttBroker();
+    private MqttElectricityMeter meter = new MqttElectricityMeter();
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        embeddedBroker.start();
+        mqttBroker.setId("broker");
+        mqttBroker.setPort(embeddedBroker.getPort());
+        meter.setApplianceId("F-001");
+        meter.setIdref("broker");
+        meter.setMqttBroker(mqttBroker);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        meter.stop(LocalDateTime.now());
+        mqttBroker.stop();
+        embeddedBroker.stop();
+    }
+
+    @Test
+    public void power_Json() throws Exception {
+        MqttRead read = new MqttRead("tele/plug/SENSOR");
+        read.setReadValues(Collections.singletonList(
+                new MqttReadValue(MeterValueName.Power.name(), "$.ENERGY.Power", null, null)));
+        meter.setMqttReads(Collections.singletonList(read));
+        meter.setContentProtocol(ContentProtocolType.JSON);
+        meter.validate();
+        meter.init();
+        List<Integer> powerUpdates = new CopyOnWriteArrayList<>();
+        meter.addPowerUpdateListener(powerUpdates::add);
+        meter.start(LocalDateTime.now(), null);
+        waitFor(() -> embeddedBroker.getSubscriptionCount() == 1);
+
+        embeddedBroker.publish("tele/plug/SENSOR", "{\"ENERGY\":{\"Total\":1.5,\"Power\":100}}");
+        embeddedBroker.publish("tele/plug/SENSOR", "{\"ENERGY\":{\"Total\":1.6,\"Power\":300}}");
+        waitFor(() -> powerUpdates.size() == 2);
+        assertEquals(Arrays.asList(100, 300), powerUpdates);
+        assertEquals(200, meter.getAveragePower());
+        assertEquals(100, meter.getMinPower());
+        assertEquals(300, meter.getMaxPower());
+    }
+
+    @Test
+    public void powerAndEnergy_SameTopic() throws Exception {
+        MqttRead powerRead = new MqttRead("tele/plug/SENSOR");
+        powerRead.setReadValues(Collections.singletonList(
+                new MqttReadValue(MeterValueName.Power.name(), "$.ENERGY.Power", null, null)));
+        MqttRead energyRead = new MqttRead("tele/plug/SENSOR");
+        energyRead.setReadValues(Collections.singletonList(
+                new MqttReadValue(MeterValueName.Energy.name(), "$.ENERGY.Total", null, null)));
+        meter.setMqttReads(Arrays.asList(powerRead, energyRead));
+        meter.setContentProtocol(ContentProtocolType.JSON);
+        meter.init();
+        meter.start(LocalDateTime.now(), null);
+        waitFor(() -> embeddedBroker.getSubscriptionCount() == 1);
+
+        embeddedBroker.publish("tele/plug/SENSOR", "{\"ENERGY\":{\"Total\":1.5,\"Power\":100}}");
+        waitFor(() -> Double.valueOf(1.5).equals(meter.pollEnergy(LocalDateTime.now())));
+        assertEquals(100, meter.getAveragePower());
+
+        meter.stop(LocalDateTime.now());
+        waitFor(() -> embeddedBroker.getSubscriptionCount() == 0);
+    }
+
+    @Test
+    public void energy_Regex() throws Exception {
+        MqttRead read = new MqttRead("openDTU/inverter/0/yieldtotal");
+        read.setReadValues(Collections.singletonList(
+                new MqttReadValue(MeterValueName.Energy.name(), null, "([\\d.]+) ?Wh", 0.001)));
+        meter.setMqttReads(Collections.singletonList(read));
+        meter.init();
+        meter.start(LocalDateTime.now(), null);
+        waitFor(() -> embeddedBroker.getSubscriptionCount() == 1);
+
+        embeddedBroker.publish("openDTU/inverter/0/yieldtotal", "1000 Wh");
+        waitFor(() -> Double.valueOf(1.0).equals(meter.pollEnergy(LocalDateTime.now())));
+        meter.startEnergyMeter();
+        embeddedBroker.publish("openDTU/inverter/0/yieldtotal", "1500 Wh");
+        waitFor(() -> Double.valueOf(1.5).equals(meter.pollEnergy(LocalDateTime.now())));
+        assertEquals(0.5f, meter.getEnergy(), 0.0001f);
+    }
+}
@@ -23,6 +23,11 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class PollPowerMeterTest {
     private PollPowerMeter cut;
@@ -34,68 +39,134 @@ public class PollPowerMeterTest {
         now = LocalDateTime.now();
     }
 
-//    @Test
-//    public void getAveragePower_4Values_3ValuesInInterval() {
-//        cut.addValue(now                , 2.0);
-//        cut.addValue(now.plusSeconds(20), 4.0);
-//        cut.addValue(now.plusSeconds(40), 2.0);
-//        cut.addValue(now.plusSeconds(60), 4.0);
-//        Assertions.assertEquals(3, getAveragePower(70));
-//    }
-//
-//    @Test
-//    public void getAveragePower_3Values_2ValuesInInterval() {
-//        cut.addValue(now                , 2.0);
-//        cut.addValue(now.plusSeconds(30), 4.0);
-//        cut.addValue(now.plusSeconds(60), 2.0);
-//        Assertions.assertEquals(3, getAveragePower(75));
-//    }
-//
-//    @Test
-//    public void getAveragePower_2Values_1ValueInInterval() {
-//        cut.addValue(now                , 2.0);
-//        cut.addValue(now.plusSeconds(30), 4.0);
-//        Assertions.assertEquals(4, getAveragePower(75));
-//    }
-//
-//    @Test
-//    public void getAveragePower_1Values_1ValueInInterval() {
-//        cut.addValue(now.plusSeconds(30), 4.0);
-//        Assertions.assertEquals(4, getAveragePower(75));
-//    }
-//
-//    @Test
-//    public void getAveragePower_1Values_0ValueInInterval() {
-//        cut.addValue(now, 2.0);
-//        Assertions.assertEquals(0, getAveragePower(75));
-//    }
-
-//    @Test
-//    public void getAveragePower_0Values_0ValueInInterval() {
-//        Assertions.assertEquals(0, getAveragePower(75));
-//    }
-
-//    private int getAveragePower(int secondsAfterNow) {
-//        return cut.getAveragePower(now.plusSeconds(secondsAfterNow));
-//    }
-
-//    @Test
-//    public void getMinPower() {
-//        cut.addValue(now                , 1.0);
-//        cut.addValue(now.plusSeconds(20), 3.0);
-//        cut.addValue(now.plusSeconds(40), 2.0);
-//        cut.addValue(now.plusSeconds(60), 4.0);
-//        int power = cut.getMinPower(now.plusSeconds(75));
-//        Assertions.assertEquals(2, power);
-//    }
-//
-//    @Test
-//    public void getMaxPower() {
-//        cut.addValue(now                , 8.0);
-//        cut.addValue(now.plusSeconds(20), 3.0);
-//        cut.addValue(now.plusSeconds(40), 4.0);
-//        cut.addValue(now.plusSeconds(60), 2.0);
-//        int power = cut.getMaxPower(now.plusSeconds(75));
-//        Assertions.assertEquals(4, power);
-//    }
+    @Test
+    public void getAveragePower_4Values_3ValuesInInterval() {
+        cut.addValue(now                , 2.0);
+        cut.addValue(now.plusSeconds(20), 4.0);
+        cut.addValue(now.plusSeconds(40), 2.0);
+        cut.addValue(now.plusSeconds(60), 4.0);
+        Assertions.assertEquals(3, getAveragePower(70));
+    }
+
+    @Test
+    public void getAveragePower_3Values_2ValuesInInterval() {
+        cut.addValue(now                , 2.0);
+        cut.addValue(now.plusSeconds(30), 4.0);
+        cut.addValue(now.plusSeconds(60), 2.0);
+        Assertions.assertEquals(3, getAveragePower(75));
+    }
+
+    @Test
+    public void getAveragePower_2Values_1ValueInInterval() {
+        cut.addValue(now                , 2.0);
+        cut.addValue(now.plusSeconds(30), 4.0);
+        Assertions.assertEquals(4, getAveragePower(75));
+    }
+
+    @Test
+    public void getAveragePower_1Values_1ValueInInterval() {
+        cut.addValue(now.plusSeconds(30), 4.0);
+        Assertions.assertEquals(4, getAveragePower(75));
+    }
+
+    @Test
+    public void getAveragePower_1Values_0ValueInInterval() {
+        cut.addValue(now, 2.0);
+        Assertions.assertEquals(0, getAveragePower(75));
+    }
+
+    @Test
+    public void getAveragePower_0Values_0ValueInInterval() {
+        Assertions.assertEquals(0, getAveragePower(75));
+    }
+
+    private int getAveragePower(int secondsAfterNow) {
+        return cut.getAveragePower(now.plusSeconds(secondsAfterNow));
+    }
+
+    @Test
+    public void getMinPower() {
+        cut.addValue(now                , 1.0);
+        cut.addValue(now.plusSeconds(20), 3.0);
+        cut.addValue(now.plusSeconds(40), 2.0);
+        cut.addValue(now.plusSeconds(60), 4.0);
+        int power = cut.getMinPower(now.plusSeconds(75));
+        Assertions.assertEquals(2, power);
+    }
+
+    @Test
+    public void getMaxPower() {
+        cut.addValue(now                , 8.0);
+        cut.addValue(now.plusSeconds(20), 3.0);
+        cut.addValue(now.plusSeconds(40), 4.0);
+        cut.addValue(now.plusSeconds(60), 2.0);
+        int power = cut.getMaxPower(now.plusSeconds(75));
+        Assertions.assertEquals(4, power);
+    }
+
+    @Test
+    public void getAveragePower_Median() {
+        cut.setPowerSmoothing(PowerSmoothing.MEDIAN);
+        cut.addValue(now                , 2.0);
+        cut.addValue(now.plusSeconds(10), 100.0);
+        cut.addValue(now.plusSeconds(20), 4.0);
+        cut.addValue(now.plusSeconds(30), 3.0);
+        Assertions.assertEquals(3, getAveragePower(40));
+    }
+
+    @Test
+    public void getAveragePower_Ewma() {
+        cut.setPowerSmoothing(PowerSmoothing.EWMA);
+        cut.addValue(now                , 1000.0);
+        cut.addValue(now.plusSeconds(60), 0.0);
+        // 1000 * exp(-1)
+        Assertions.assertEquals(367, getAveragePower(60));
+    }
+
+    @Test
+    public void getAveragingInterval_defaultsToMeterAveragingInterval() {
+        cut.configureWindow(10);
+        Assertions.assertEquals(Meter.averagingInterval, cut.getAveragingInterval());
+    }
+
+    @Test
+    public void getAveragingInterval_coversTwoPollIntervals() {
+        cut.configureWindow(60);
+        cut.addValue(now                , 2.0);
+        cut.addValue(now.plusSeconds(60), 4.0);
+        Assertions.assertEquals(120, cut.getAveragingInterval());
+        Assertions.assertEquals(3, getAveragePower(90));
+    }
+
+    @Test
+    public void poll_skippedWhilePreviousPollPending() {
+        CompletableFuture<Double> pendingPoll = new CompletableFuture<>();
+        AtomicInteger pollCount = new AtomicInteger();
+        PollPowerExecutor executor = new PollPowerExecutor() {
+            @Override
+            public Double pollPower() {
+                return null;
+            }
+
+            @Override
+            public CompletableFuture<Double> pollPowerAsync() {
+                pollCount.incrementAndGet();
+                return pendingPoll;
+            }
+        };
+        List<Integer> powerUpdates = new ArrayList<>();
+        cut.addPowerUpateListener(powerUpdates::add);
+
+        cut.poll(executor);
+        cut.poll(executor);
+        Assertions.assertEquals(1, pollCount.get());
+        Assertions.assertTrue(powerUpdates.isEmpty());
+
+        pendingPoll.complete(42.0);
+        Assertions.assertEquals(Collections.singletonList(42), powerUpdates);
+        Assertions.assertEquals(42, cut.getAveragePower(LocalDateTime.now()));
+
+        cut.poll(executor);
+        Assertions.assertEquals(2, pollCount.get());
+    }
 }
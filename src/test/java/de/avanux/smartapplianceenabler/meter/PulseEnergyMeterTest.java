@@ -18,7 +18,16 @@
 
 package de.avanux.smartapplianceenabler.meter;
 
+import de.avanux.smartapplianceenabler.persistence.SegmentLog;
+import de.avanux.smartapplianceenabler.util.Clock;
+import de.avanux.smartapplianceenabler.util.DateTimeProvider;
 import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Comparator;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
@@ -82,6 +91,38 @@ public class PulseEnergyMeterTest {
         assertEquals(0.01f, this.pulseEnergyMeter.getEnergy(), 0.0001f);
     }
 
+    @Test
+    public void increasePulseCounter_PersistedOncePerFlushInterval() throws IOException {
+        DateTimeProvider dateTimeProvider = Mockito.mock(DateTimeProvider.class);
+        Clock.setDateTimeProvider(dateTimeProvider);
+        File directory = Files.createTempDirectory("segmentlog").toFile();
+        SegmentLog segmentLog = new SegmentLog(directory);
+        SegmentLog.setInstance(segmentLog);
+        try {
+            segmentLog.open();
+            String key = getClass().getSimpleName() + ".PulseEnergyMeter.pulseCounter";
+            Mockito.when(dateTimeProvider.currentTimeMillis()).thenReturn(1_000_000L);
+            this.pulseEnergyMeter.startEnergyCounter();
+            increasePulseCounter(5);
+            assertEquals(0.0, segmentLog.get(key), 0.0);
+
+            Mockito.when(dateTimeProvider.currentTimeMillis()).thenReturn(1_000_000L
+                    + segmentLog.getFlushIntervalMillis());
+            increasePulseCounter(5);
+            assertEquals(6.0, segmentLog.get(key), 0.0);
+
+            this.pulseEnergyMeter.stopEnergyCounter();
+            assertEquals(10.0, segmentLog.get(key), 0.0);
+        }
+        finally {
+            SegmentLog.setInstance(null);
+            segmentLog.close();
+            Clock.reset();
+            Files.walk(directory.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile)
+                    .forEach(File::delete);
+        }
+    }
+
     void increasePulseCounter(int pulseCount) {
         for(int i=0; i<pulseCount; i++) {
             this.pulseEnergyMeter.increasePulseCounter();
@@ -24,6 +24,9 @@ import com.pi4j.io.gpio.PinPullResistance;
 import com.pi4j.io.gpio.PinState;
 import org.junit.jupiter.api.Test;
 
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 public class S0ElectricityMeterTest {
@@ -77,4 +80,92 @@ public class S0ElectricityMeterTest {
         verify(pulsePowerMeter, never()).addTimestamp(timestamp);
         verify(pulseEnergyMeter, never()).increasePulseCounter();
     }
+
+    @Test
+    public void simulatedPulses() throws Exception {
+        S0ElectricityMeter meter = new S0ElectricityMeter();
+        meter.setApplianceId(getClass().getSimpleName());
+        meter.setImpulsesPerKwh(1000);
+        meter.setMinPulseDuration(2);
+        meter.setPowerUpdateIntervalMillis(100);
+        meter.init();
+        meter.startEnergyMeter();
+        PowerUpdateListener listener = mock(PowerUpdateListener.class);
+        meter.addPowerUpdateListener(listener);
+
+        meter.startEdgeConsumer();
+        S0PulseSimulator simulator = new S0PulseSimulator(meter, 100.0, meter.getMinPulseDuration());
+        simulator.start();
+        Thread.sleep(1000);
+        simulator.stop();
+        Thread.sleep(200);
+        meter.stop(LocalDateTime.now());
+
+        assertTrue(simulator.getPulseCount() >= 50, "pulses=" + simulator.getPulseCount());
+        assertEquals(0, meter.getDroppedEdgeCount());
+        assertEquals(simulator.getPulseCount(), meter.getImpulseCount());
+        assertEquals(simulator.getPulseCount() / 1000.0f, meter.getEnergy(), 0.0001f);
+        verify(listener, atMost(12)).onPowerUpdate(anyInt());
+        verify(listener, atLeastOnce()).onPowerUpdate(intThat(power -> power > 300000));
+    }
+
+    @Test
+    public void simulatedPulses_DefaultMinPulseDuration() throws Exception {
+        S0ElectricityMeter meter = new S0ElectricityMeter();
+        meter.setApplianceId(getClass().getSimpleName() + "-default");
+        meter.setImpulsesPerKwh(1000);
+        meter.init();
+        meter.startEnergyMeter();
+
+        assertThrows(IllegalArgumentException.class, () -> new S0PulseSimulator(meter, 60.0,
+                meter.getMinPulseDuration()));
+        meter.startEdgeConsumer();
+        S0PulseSimulator simulator = new S0PulseSimulator(meter, 50.0, meter.getMinPulseDuration());
+        simulator.start();
+        Thread.sleep(1000);
+        simulator.stop();
+        Thread.sleep(200);
+        meter.stop(LocalDateTime.now());
+
+        assertTrue(simulator.getPulseCount() >= 25, "pulses=" + simulator.getPulseCount());
+        assertEquals(simulator.getPulseCount(), meter.getImpulseCount());
+    }
+
+    @Test
+    public void edgeConsumerParksUntilEdge() throws Exception {
+        S0ElectricityMeter meter = new S0ElectricityMeter();
+        meter.setApplianceId(getClass().getSimpleName() + "-idle");
+        meter.setImpulsesPerKwh(1000);
+        meter.setMinPulseDuration(2);
+        meter.init();
+        meter.startEnergyMeter();
+
+        meter.startEdgeConsumer();
+        Thread consumer = findThread("s0-" + getClass().getSimpleName() + "-idle");
+        waitForState(consumer, Thread.State.WAITING);
+
+        long nanos = System.nanoTime();
+        meter.onEdge(true, nanos);
+        meter.onEdge(false, nanos + 10_000_000L);
+        for(int i = 0; i < 100 && meter.getImpulseCount() == 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, meter.getImpulseCount());
+        waitForState(consumer, Thread.State.WAITING);
+        meter.stop(LocalDateTime.now());
+    }
+
+    private Thread findThread(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals(name))
+                .findFirst().orElseThrow(AssertionError::new);
+    }
+
+    private void waitForState(Thread thread, Thread.State state) throws InterruptedException {
+        // a pending power update lets the consumer park with a deadline for at most the power update interval
+        for(int i = 0; i < 300 && thread.getState() != state; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(state, thread.getState());
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModbusRequestSchedulerTest {
+    private static final long TIMEOUT_MILLIS = 5000;
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void setup() {
+        executorService = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executorService.shutdownNow();
+    }
+
+    @Test
+    public void acquire_Priority() throws Exception {
+        ModbusRequestScheduler scheduler = new ModbusRequestScheduler("test", null, null, 1);
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.LOW, TIMEOUT_MILLIS));
+
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        List<Future<?>> futures = new ArrayList<>();
+        futures.add(submit(scheduler, ModbusRequestScheduler.Priority.LOW, "meter1", order));
+        waitForQueueDepth(scheduler, 1);
+        futures.add(submit(scheduler, ModbusRequestScheduler.Priority.LOW, "meter2", order));
+        waitForQueueDepth(scheduler, 2);
+        futures.add(submit(scheduler, ModbusRequestScheduler.Priority.HIGH, "write", order));
+        waitForQueueDepth(scheduler, 3);
+        assertEquals(1, scheduler.getActiveRequests());
+
+        scheduler.release();
+        for(Future<?> future : futures) {
+            future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        }
+        assertEquals(List.of("write", "meter1", "meter2"), order);
+        assertEquals(4, scheduler.getRequestCount());
+        assertEquals(0, scheduler.getQueueDepth());
+        assertEquals(0, scheduler.getActiveRequests());
+        assertTrue(scheduler.getMaxWaitMillis() > 0.0);
+    }
+
+    @Test
+    public void acquire_MaxRequestsPerSecond() throws Exception {
+        ModbusRequestScheduler scheduler = new ModbusRequestScheduler("test", 20.0, null, 1);
+        long startNanos = System.nanoTime();
+        for(int i=0; i<5; i++) {
+            assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.LOW, TIMEOUT_MILLIS));
+            scheduler.release();
+        }
+        // 4 intervals of 50ms between 5 requests
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 200);
+    }
+
+    @Test
+    public void acquire_InterFrameGap() throws Exception {
+        ModbusRequestScheduler scheduler = new ModbusRequestScheduler("test", null, 100, 1);
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.LOW, TIMEOUT_MILLIS));
+        scheduler.release();
+        long startNanos = System.nanoTime();
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.HIGH, TIMEOUT_MILLIS));
+        scheduler.release();
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos) >= 90);
+    }
+
+    @Test
+    public void acquire_Concurrent() throws Exception {
+        ModbusRequestScheduler scheduler = new ModbusRequestScheduler("test", null, null, 2);
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.LOW, TIMEOUT_MILLIS));
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.LOW, TIMEOUT_MILLIS));
+        assertEquals(2, scheduler.getActiveRequests());
+        assertFalse(scheduler.acquire(ModbusRequestScheduler.Priority.HIGH, 100));
+        scheduler.release();
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.HIGH, TIMEOUT_MILLIS));
+    }
+
+    @Test
+    public void acquire_Timeout() throws Exception {
+        ModbusRequestScheduler scheduler = new ModbusRequestScheduler("test", null, null, 1);
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.LOW, TIMEOUT_MILLIS));
+        assertFalse(scheduler.acquire(ModbusRequestScheduler.Priority.HIGH, 100));
+        assertEquals(1, scheduler.getTimeoutCount());
+        assertEquals(0, scheduler.getQueueDepth());
+        scheduler.release();
+        assertTrue(scheduler.acquire(ModbusRequestScheduler.Priority.LOW, TIMEOUT_MILLIS));
+    }
+
+    private Future<?> submit(ModbusRequestScheduler scheduler, ModbusRequestScheduler.Priority priority,
+                             String name, List<String> order) {
+        return executorService.submit(() -> {
+            if(scheduler.acquire(priority, TIMEOUT_MILLIS)) {
+                order.add(name);
+                scheduler.release();
+            }
+            return null;
+        });
+    }
+
+    private void waitForQueueDepth(ModbusRequestScheduler scheduler, int queueDepth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while(scheduler.getQueueDepth() < queueDepth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(queueDepth, scheduler.getQueueDepth());
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus;
+
+import com.ghgande.j2mod.modbus.ModbusIOException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersRequest;
+import com.ghgande.j2mod.modbus.msg.ReadMultipleRegistersResponse;
+import de.avanux.smartapplianceenabler.modbus.simulator.ModbusTcpSimulator;
+import de.avanux.smartapplianceenabler.modbus.simulator.SimulatedModbusSlave;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModbusTcpPipelineTest {
+    private static final int REQUEST_COUNT = 8;
+    private static final int LATENCY_MILLIS = 100;
+    private ModbusTcpSimulator simulator;
+    private int port;
+    private ModbusTcpPipeline pipeline;
+    private ExecutorService executorService;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        simulator = new ModbusTcpSimulator();
+        for(int unitId=1; unitId<=REQUEST_COUNT; unitId++) {
+            SimulatedModbusSlave slave = new SimulatedModbusSlave();
+            slave.setHoldingRegisters(100, unitId * 10);
+            slave.setLatencyMillis(LATENCY_MILLIS);
+            port = simulator.addSlave(port, unitId, slave);
+        }
+        executorService = Executors.newFixedThreadPool(REQUEST_COUNT);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if(pipeline != null) {
+            pipeline.close();
+        }
+        executorService.shutdownNow();
+        simulator.stop();
+    }
+
+    @Test
+    public void execute_Pipelined() throws Exception {
+        pipeline = new ModbusTcpPipeline("test", "127.0.0.1", port, REQUEST_COUNT);
+        long start = System.currentTimeMillis();
+        List<Integer> values = readConcurrently();
+        long duration = System.currentTimeMillis() - start;
+
+        for(int unitId=1; unitId<=REQUEST_COUNT; unitId++) {
+            assertEquals(unitId * 10, values.get(unitId - 1).intValue());
+        }
+        assertTrue(duration < REQUEST_COUNT * LATENCY_MILLIS / 2, "duration=" + duration);
+        assertEquals(1, simulator.getAcceptedConnectionCount());
+        assertFalse(pipeline.isSerial());
+    }
+
+    @Test
+    public void execute_Serial() throws Exception {
+        pipeline = new ModbusTcpPipeline("test", "127.0.0.1", port, 1);
+        long start = System.currentTimeMillis();
+        List<Integer> values = readConcurrently();
+        long duration = System.currentTimeMillis() - start;
+
+        assertEquals(REQUEST_COUNT, values.size());
+        assertTrue(duration >= REQUEST_COUNT * LATENCY_MILLIS, "duration=" + duration);
+        assertTrue(pipeline.isSerial());
+    }
+
+    @Test
+    public void execute_ExceptionResponse() {
+        pipeline = new ModbusTcpPipeline("test", "127.0.0.1", port, REQUEST_COUNT);
+        ModbusSlaveException e = assertThrows(ModbusSlaveException.class, () -> pipeline.execute(request(1, 200)));
+        assertEquals(SimulatedModbusSlave.ILLEGAL_DATA_ADDRESS, e.getType());
+        assertEquals(0, pipeline.getPendingRequestCount());
+    }
+
+    @Test
+    public void execute_FallbackToSerial() throws Exception {
+        // device responding to the first request of a connection only, delayed
+        ServerSocket serverSocket = new ServerSocket(0);
+        Thread device = new Thread(() -> {
+            try (Socket socket = serverSocket.accept()) {
+                DataInputStream in = new DataInputStream(socket.getInputStream());
+                byte[] request = new byte[12];
+                in.readFully(request);
+                Thread.sleep(200);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.write(new byte[] {request[0], request[1], 0, 0, 0, 5, request[6], 3, 2, 0, 42});
+                out.flush();
+                while(in.read() != -1);
+            }
+            catch(Exception e) {
+                // test finished
+            }
+        });
+        device.setDaemon(true);
+        device.start();
+
+        pipeline = new ModbusTcpPipeline("test", "127.0.0.1", serverSocket.getLocalPort(), REQUEST_COUNT);
+        pipeline.setTimeoutMillis(500);
+        Future<ReadMultipleRegistersResponse> first = executorService.submit(
+                () -> (ReadMultipleRegistersResponse) pipeline.execute(request(1, 100)));
+        Thread.sleep(50);
+        assertThrows(ModbusIOException.class, () -> pipeline.execute(request(2, 100)));
+
+        assertEquals(42, first.get().getRegisterValue(0));
+        assertTrue(pipeline.isSerial());
+        serverSocket.close();
+    }
+
+    @Test
+    public void execute_InvalidLength_Reconnect() throws Exception {
+        assertReconnectAfterMalformedResponse(new byte[] {0, 0, 0, 0, 0, 0, 1});
+        assertReconnectAfterMalformedResponse(new byte[] {0, 0, 0, 0, 0, 1, 1});
+        assertReconnectAfterMalformedResponse(new byte[] {0, 0, 0, 0, 0, (byte) 255, 1});
+    }
+
+    @Test
+    public void execute_UndecodableResponse_Reconnect() throws Exception {
+        // byte count of read holding registers response exceeds the PDU
+        assertReconnectAfterMalformedResponse(new byte[] {0, 0, 0, 0, 0, 3, 1, 3, 100});
+    }
+
+    /**
+     * Asserts that a request receiving the malformed response given fails and the next request reconnects.
+     * The first two bytes of the response are replaced by the transaction id of the request.
+     */
+    private void assertReconnectAfterMalformedResponse(byte[] malformedResponse) throws Exception {
+        ServerSocket serverSocket = new ServerSocket(0);
+        Thread device = new Thread(() -> {
+            for(int connection=0; connection<2; connection++) {
+                try (Socket socket = serverSocket.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    byte[] request = new byte[12];
+                    in.readFully(request);
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    if(connection == 0) {
+                        malformedResponse[0] = request[0];
+                        malformedResponse[1] = request[1];
+                        out.write(malformedResponse);
+                    }
+                    else {
+                        out.write(new byte[] {request[0], request[1], 0, 0, 0, 5, request[6], 3, 2, 0, 42});
+                    }
+                    out.flush();
+                    while(in.read() != -1);
+                }
+                catch(Exception e) {
+                    // test finished
+                }
+            }
+        });
+        device.setDaemon(true);
+        device.start();
+
+        pipeline = new ModbusTcpPipeline("test", "127.0.0.1", serverSocket.getLocalPort(), REQUEST_COUNT);
+        pipeline.setTimeoutMillis(500);
+        assertThrows(ModbusIOException.class, () -> pipeline.execute(request(1, 100)));
+        ReadMultipleRegistersResponse response = (ReadMultipleRegistersResponse) pipeline.execute(request(1, 100));
+        assertEquals(42, response.getRegisterValue(0));
+        pipeline.close();
+        serverSocket.close();
+    }
+
+    private List<Integer> readConcurrently() throws Exception {
+        List<Future<ReadMultipleRegistersResponse>> futures = new ArrayList<>();
+        for(int unitId=1; unitId<=REQUEST_COUNT; unitId++) {
+            int requestUnitId = unitId;
+            futures.add(executorService.submit(
+                    () -> (ReadMultipleRegistersResponse) pipeline.execute(request(requestUnitId, 100))));
+        }
+        List<Integer> values = new ArrayList<>();
+        for(Future<ReadMultipleRegistersResponse> future : futures) {
+            values.add(future.get().getRegisterValue(0));
+        }
+        return values;
+    }
+
+    private ReadMultipleRegistersRequest request(int unitId, int address) {
+        ReadMultipleRegistersRequest request = new ReadMultipleRegistersRequest(address, 1);
+        request.setUnitID(unitId);
+        return request;
+    }
+}
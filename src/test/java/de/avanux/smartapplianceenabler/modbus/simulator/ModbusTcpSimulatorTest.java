@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.modbus.simulator;
+
+import com.ghgande.j2mod.modbus.ModbusException;
+import com.ghgande.j2mod.modbus.ModbusSlaveException;
+import com.ghgande.j2mod.modbus.net.TCPMasterConnection;
+import de.avanux.smartapplianceenabler.modbus.EVModbusControl;
+import de.avanux.smartapplianceenabler.modbus.ModbusRead;
+import de.avanux.smartapplianceenabler.modbus.ModbusReadValue;
+import de.avanux.smartapplianceenabler.modbus.ModbusWrite;
+import de.avanux.smartapplianceenabler.modbus.ModbusWriteValue;
+import de.avanux.smartapplianceenabler.modbus.ReadRegisterType;
+import de.avanux.smartapplianceenabler.modbus.RegisterValueType;
+import de.avanux.smartapplianceenabler.modbus.WriteRegisterType;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusExecutorFactory;
+import de.avanux.smartapplianceenabler.modbus.executor.ModbusReadTransactionExecutor;
+import de.avanux.smartapplianceenabler.modbus.executor.WriteHoldingRegisterExecutorImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetAddress;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ModbusTcpSimulatorTest {
+    private static final int SLAVE_ADDRESS = 1;
+    private ModbusTcpSimulator simulator;
+    private TCPMasterConnection connection;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        // use real executors even if other tests installed testing executors
+        ModbusExecutorFactory.setReadHoldingExecutor(null);
+        ModbusExecutorFactory.setReadInputExecutor(null);
+        ModbusExecutorFactory.setWriteHoldingExecutor(null);
+        simulator = new ModbusTcpSimulator();
+        simulator.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if(connection != null) {
+            connection.close();
+        }
+        simulator.stop();
+    }
+
+    @Test
+    public void read_Float() throws Exception {
+        ModbusRead read = modbusRead("0x0C", ReadRegisterType.Input, RegisterValueType.Float, null,
+                new ModbusReadValue("Power", null));
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave.setValue("Power", 2245.328);
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        assertEquals(2245.328, (Double) read(read), 0.001);
+    }
+
+    @Test
+    public void read_FactorToValue() throws Exception {
+        ModbusRead read = modbusRead("100", ReadRegisterType.Holding, RegisterValueType.Integer2Float, 0.1,
+                new ModbusReadValue("Power", null));
+        read.setByteOrder("LittleEndian");
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave.setValue("Power", 184.3);
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        assertEquals(184.3, (Double) read(read), 0.001);
+    }
+
+    @Test
+    public void read_ValueScript() throws Exception {
+        ModbusRead read = modbusRead("100", ReadRegisterType.Holding, RegisterValueType.Integer, null,
+                new ModbusReadValue("Power", null));
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        int[] counter = {0};
+        slave.setValueScript("Power", () -> ++counter[0] * 100);
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        assertEquals(100, read(read));
+        assertEquals(200, read(read));
+    }
+
+    @Test
+    public void read_UndefinedRegister() throws Exception {
+        ModbusRead read = modbusRead("100", ReadRegisterType.Holding, RegisterValueType.Integer, null);
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, new SimulatedModbusSlave()));
+
+        ModbusSlaveException e = assertThrows(ModbusSlaveException.class, () -> read(read));
+        assertEquals(SimulatedModbusSlave.ILLEGAL_DATA_ADDRESS, e.getType());
+    }
+
+    @Test
+    public void read_ExceptionCode() throws Exception {
+        ModbusRead read = modbusRead("100", ReadRegisterType.Holding, RegisterValueType.Integer, null);
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave.setExceptionCode(100, SimulatedModbusSlave.SLAVE_DEVICE_BUSY);
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        ModbusSlaveException e = assertThrows(ModbusSlaveException.class, () -> read(read));
+        assertEquals(SimulatedModbusSlave.SLAVE_DEVICE_BUSY, e.getType());
+        assertEquals(1, slave.getExceptionCount());
+    }
+
+    @Test
+    public void read_DroppedConnection() throws Exception {
+        ModbusRead read = modbusRead("100", ReadRegisterType.Holding, RegisterValueType.Integer, null);
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave.setDropConnectionProbability(1.0);
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        assertThrows(ModbusException.class, () -> read(read));
+    }
+
+    @Test
+    public void read_Latency() throws Exception {
+        ModbusRead read = modbusRead("100", ReadRegisterType.Holding, RegisterValueType.Integer, null);
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave.setLatencyMillis(200);
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        long start = System.currentTimeMillis();
+        read(read);
+        assertTrue(System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void read_SharedPort() throws Exception {
+        ModbusRead read = modbusRead("100", ReadRegisterType.Holding, RegisterValueType.Integer, null,
+                new ModbusReadValue("Power", null));
+        SimulatedModbusSlave slave1 = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave1.setValue("Power", 1);
+        SimulatedModbusSlave slave2 = new SimulatedModbusSlave(Collections.singletonList(read), null);
+        slave2.setValue("Power", 2);
+        int port = simulator.addSlave(0, 1, slave1);
+        assertEquals(port, simulator.addSlave(port, 2, slave2));
+        connect(port);
+
+        assertEquals(1, read(read, 1));
+        assertEquals(2, read(read, 2));
+    }
+
+    @Test
+    public void write_Holding() throws Exception {
+        ModbusWrite write = new ModbusWrite();
+        write.setAddress("5004");
+        write.setType(WriteRegisterType.Holding.name());
+        write.setValueType(RegisterValueType.Integer.name());
+        write.setFactorToValue(1000.0);
+        write.setWriteValues(Collections.singletonList(new ModbusWriteValue("ChargingCurrent", "0")));
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(null, Collections.singletonList(write));
+        connect(simulator.addSlave(0, SLAVE_ADDRESS, slave));
+
+        WriteHoldingRegisterExecutorImpl executor = (WriteHoldingRegisterExecutorImpl)
+                ModbusExecutorFactory.getWriteExecutor(null, write.getType(), write.getValueType(),
+                        write.getAddress(), write.getFactorToValue());
+        executor.setValue(16);
+        executor.execute(connection, SLAVE_ADDRESS);
+
+        assertEquals(Integer.valueOf(16000), executor.getResult());
+        assertEquals(16.0, slave.getWrittenValue("ChargingCurrent"), 0.001);
+    }
+
+    @Test
+    public void loadEVChargerTemplates() throws Exception {
+        String templates = "[{\"name\":\"Keba\",\"template\":{"
+                + "\"@class\":\"de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger\","
+                + "\"modbusControl\":{\"@class\":\"de.avanux.smartapplianceenabler.modbus.EVModbusControl\","
+                + "\"modbusReads\":[{\"@class\":\"de.avanux.smartapplianceenabler.modbus.ModbusRead\","
+                + "\"address\":\"1000\",\"type\":\"Holding\",\"valueType\":\"Integer\",\"readValues\":["
+                + "{\"@class\":\"de.avanux.smartapplianceenabler.modbus.ModbusReadValue\","
+                + "\"extractionRegex\":\"(2|5)\",\"name\":\"VehicleConnected\"},"
+                + "{\"@class\":\"de.avanux.smartapplianceenabler.modbus.ModbusReadValue\","
+                + "\"extractionRegex\":\"(3)\",\"name\":\"Charging\"}]}],"
+                + "\"modbusWrites\":[],\"slaveAddress\":255}}},"
+                + "{\"name\":\"go-eCharger\",\"template\":{"
+                + "\"@class\":\"de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger\","
+                + "\"httpControl\":{}}}]";
+        Map<String, EVModbusControl> controls = ModbusTcpSimulator.loadEVChargerTemplates(templates);
+        assertEquals(Collections.singleton("Keba"), controls.keySet());
+
+        EVModbusControl control = controls.get("Keba");
+        assertEquals(255, control.getSlaveAddress());
+        SimulatedModbusSlave slave = new SimulatedModbusSlave(control.getModbusReads(), control.getModbusWrites());
+        slave.setMatchingValue("Charging");
+        connect(simulator.addSlave(0, control.getSlaveAddress(), slave));
+
+        assertEquals(3, read(control.getModbusReads().get(0), control.getSlaveAddress()));
+    }
+
+    private ModbusRead modbusRead(String address, ReadRegisterType type, RegisterValueType valueType,
+                                  Double factorToValue, ModbusReadValue... readValues) {
+        ModbusRead read = new ModbusRead();
+        read.setAddress(address);
+        read.setType(type.name());
+        read.setValueType(valueType.name());
+        read.setFactorToValue(factorToValue);
+        if(valueType == RegisterValueType.Float || valueType == RegisterValueType.Integer2Float) {
+            read.setWords(2);
+        }
+        read.setReadValues(Arrays.asList(readValues));
+        return read;
+    }
+
+    private void connect(int port) throws Exception {
+        connection = new TCPMasterConnection(InetAddress.getLoopbackAddress());
+        connection.setPort(port);
+        connection.setTimeout(1000);
+        connection.connect();
+    }
+
+    private Object read(ModbusRead read) throws ModbusException {
+        return read(read, SLAVE_ADDRESS);
+    }
+
+    private Object read(ModbusRead read, int slaveAddress) throws ModbusException {
+        ModbusReadTransactionExecutor executor = ModbusExecutorFactory.getReadExecutor(null, read.getAddress(),
+                read.getType(), read.getValueType(), read.getWords(), read.getByteOrder(), read.getFactorToValue());
+        executor.execute(connection, slaveAddress);
+        return executor.getValueTransformer().getValue();
+    }
+}
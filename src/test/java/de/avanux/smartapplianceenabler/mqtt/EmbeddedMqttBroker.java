@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.mqtt;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Minimal MQTT 3.1.1 broker for tests delivering messages with QoS 0 and acknowledging messages published with QoS 1.
+ * Like a real broker it disconnects clients not sending any packet within one and a half times their keep alive
+ * interval.
+ */
+public class EmbeddedMqttBroker {
+    private ServerSocket serverSocket;
+    private final List<Session> sessions = new CopyOnWriteArrayList<>();
+    private final List<String> published = new CopyOnWriteArrayList<>();
+    private final AtomicInteger connectCount = new AtomicInteger();
+    private final AtomicInteger keepAliveTimeoutCount = new AtomicInteger();
+    private volatile Thread acceptThread;
+    private volatile boolean pubackEnabled = true;
+
+    public void start() throws IOException {
+        start(0);
+    }
+
+    public void start(int port) throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new java.net.InetSocketAddress("127.0.0.1", port));
+        acceptThread = new Thread(() -> {
+            while(! serverSocket.isClosed()) {
+                try {
+                    Session session = new Session(serverSocket.accept());
+                    sessions.add(session);
+                    new Thread(session, "broker-session").start();
+                }
+                catch(IOException e) {
+                    // closed
+                }
+            }
+        }, "broker-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public void stop() throws IOException {
+        serverSocket.close();
+        for(Session session : sessions) {
+            session.close();
+        }
+        sessions.clear();
+    }
+
+    /**
+     * Returns the messages published by clients as "topic=payload".
+     * @return
+     */
+    public List<String> getPublished() {
+        return published;
+    }
+
+    public int getConnectCount() {
+        return connectCount.get();
+    }
+
+    /**
+     * Returns the number of clients disconnected since they did not send any packet within the keep alive interval.
+     * @return
+     */
+    public int getKeepAliveTimeoutCount() {
+        return keepAliveTimeoutCount.get();
+    }
+
+    /**
+     * Set to false in order to simulate acknowledgements of messages published with QoS 1 getting lost.
+     * @param pubackEnabled
+     */
+    public void setPubackEnabled(boolean pubackEnabled) {
+        this.pubackEnabled = pubackEnabled;
+    }
+
+    public int getSubscriptionCount() {
+        return sessions.stream().mapToInt(session -> session.topicFilters.size()).sum();
+    }
+
+    public void publish(String topic, String payload) {
+        for(Session session : sessions) {
+            session.deliver(topic, payload);
+        }
+    }
+
+    private class Session implements Runnable {
+        private final Socket socket;
+        private final OutputStream out;
+        private final Set<String> topicFilters = ConcurrentHashMap.newKeySet();
+
+        Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        @Override
+        public void run() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                while(true) {
+                    int header = in.read();
+                    if(header < 0) {
+                        break;
+                    }
+                    byte[] packet = readPacket(in);
+                    switch (header & 0xF0) {
+                        case 0x10: // CONNECT
+                            // protocol name (6 bytes), protocol level and connect flags precede the keep alive
+                            int keepAliveSeconds = ((packet[8] & 0xFF) << 8) | (packet[9] & 0xFF);
+                            socket.setSoTimeout(keepAliveSeconds * 1500);
+                            connectCount.incrementAndGet();
+                            send(0x20, new byte[] {0, 0});
+                            break;
+                        case 0x80: // SUBSCRIBE
+                            int offset = 2;
+                            while(offset < packet.length) {
+                                int length = ((packet[offset] & 0xFF) << 8) | (packet[offset + 1] & 0xFF);
+                                topicFilters.add(new String(packet, offset + 2, length, StandardCharsets.UTF_8));
+                                offset += 2 + length + 1;
+                            }
+                            send(0x90, new byte[] {packet[0], packet[1], 0});
+                            break;
+                        case 0xA0: // UNSUBSCRIBE
+                            int length = ((packet[2] & 0xFF) << 8) | (packet[3] & 0xFF);
+                            topicFilters.remove(new String(packet, 4, length, StandardCharsets.UTF_8));
+                            send(0xB0, new byte[] {packet[0], packet[1]});
+                            break;
+                        case 0x30: // PUBLISH
+                            int topicLength = ((packet[0] & 0xFF) << 8) | (packet[1] & 0xFF);
+                            String topic = new String(packet, 2, topicLength, StandardCharsets.UTF_8);
+                            int payloadOffset = 2 + topicLength;
+                            if(((header >> 1) & 0x03) == 1) {
+                                if(pubackEnabled) {
+                                    send(0x40, new byte[] {packet[payloadOffset], packet[payloadOffset + 1]});
+                                }
+                                payloadOffset += 2;
+                            }
+                            String payload = new String(packet, payloadOffset, packet.length - payloadOffset,
+                                    StandardCharsets.UTF_8);
+                            published.add(topic + "=" + payload);
+                            EmbeddedMqttBroker.this.publish(topic, payload);
+                            break;
+                        case 0xC0: // PINGREQ
+                            send(0xD0, new byte[0]);
+                            break;
+                        case 0xE0: // DISCONNECT
+                            close();
+                            return;
+                    }
+                }
+            }
+            catch(SocketTimeoutException e) {
+                keepAliveTimeoutCount.incrementAndGet();
+                close();
+            }
+            catch(IOException e) {
+                // connection closed
+            }
+            finally {
+                sessions.remove(this);
+            }
+        }
+
+        void deliver(String topic, String payload) {
+            if(topicFilters.stream().anyMatch(topicFilter -> MqttClient.matches(topicFilter, topic))) {
+                ByteArrayOutputStream packet = new ByteArrayOutputStream();
+                byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+                packet.write(topicBytes.length >> 8);
+                packet.write(topicBytes.length & 0xFF);
+                packet.write(topicBytes, 0, topicBytes.length);
+                byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+                packet.write(payloadBytes, 0, payloadBytes.length);
+                try {
+                    send(0x30, packet.toByteArray());
+                }
+                catch(IOException e) {
+                    close();
+                }
+            }
+        }
+
+        private byte[] readPacket(DataInputStream in) throws IOException {
+            int length = 0;
+            int multiplier = 1;
+            int digit;
+            do {
+                digit = in.readUnsignedByte();
+                length += (digit & 0x7F) * multiplier;
+                multiplier *= 128;
+            }
+            while((digit & 0x80) != 0);
+            byte[] packet = new byte[length];
+            in.readFully(packet);
+            return packet;
+        }
+
+        private synchronized void send(int header, byte[] packet) throws IOException {
+            out.write(header);
+            int remaining = packet.length;
+            do {
+                int digit = remaining % 128;
+                remaining /= 128;
+                out.write(remaining > 0 ? digit | 0x80 : digit);
+            }
+            while(remaining > 0);
+            out.write(packet);
+            out.flush();
+        }
+
+        void close() {
+            try {
+                socket.close();
+            }
+            catch(IOException e) {
+                // ignore
+            }
+        }
+    }
+}
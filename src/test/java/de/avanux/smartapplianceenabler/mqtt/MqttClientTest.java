@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.mqtt;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MqttClientTest {
+
+    private EmbeddedMqttBroker broker = new EmbeddedMqttBroker();
+    private MqttClient client;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        broker.start();
+        client = new MqttClient("test", "127.0.0.1", broker.getPort(), null, null, 60);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        client.stop();
+        broker.stop();
+    }
+
+    @Test
+    public void matches() {
+        assertTrue(MqttClient.matches("tele/plug/SENSOR", "tele/plug/SENSOR"));
+        assertTrue(MqttClient.matches("tele/+/SENSOR", "tele/plug/SENSOR"));
+        assertTrue(MqttClient.matches("tele/#", "tele/plug/SENSOR"));
+        assertTrue(MqttClient.matches("#", "tele/plug/SENSOR"));
+        assertFalse(MqttClient.matches("tele/+", "tele/plug/SENSOR"));
+        assertFalse(MqttClient.matches("tele/plug/STATE", "tele/plug/SENSOR"));
+        assertFalse(MqttClient.matches("tele/plug/SENSOR/x", "tele/plug/SENSOR"));
+    }
+
+    @Test
+    public void subscribeAndPublish() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        client.subscribe("tele/+/SENSOR", (topic, payload) -> received.add(topic + "=" + payload));
+        client.start();
+        waitFor(() -> broker.getSubscriptionCount() == 1);
+
+        assertTrue(client.publish("tele/plug/SENSOR", "{\"Power\":42}", false));
+        waitFor(() -> received.size() == 1);
+        assertEquals("tele/plug/SENSOR={\"Power\":42}", received.get(0));
+        assertEquals(received, broker.getPublished());
+    }
+
+    @Test
+    public void publishAcknowledged() throws Exception {
+        client.start();
+        waitFor(client::isConnected);
+
+        assertTrue(client.publishAcknowledged("cmnd/plug/POWER", "ON", false));
+        assertEquals(Collections.singletonList("cmnd/plug/POWER=ON"), broker.getPublished());
+
+        broker.setPubackEnabled(false);
+        assertFalse(client.publishAcknowledged("cmnd/plug/POWER", "OFF", false));
+    }
+
+    @Test
+    public void resubscribeAfterReconnect() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        client.subscribe("stat/plug/POWER", (topic, payload) -> received.add(payload));
+        client.start();
+        waitFor(() -> broker.getSubscriptionCount() == 1);
+
+        int port = broker.getPort();
+        broker.stop();
+        waitFor(() -> ! client.isConnected());
+        broker = new EmbeddedMqttBroker();
+        broker.start(port);
+        waitFor(() -> broker.getSubscriptionCount() == 1);
+
+        broker.publish("stat/plug/POWER", "ON");
+        waitFor(() -> received.size() == 1);
+        assertEquals("ON", received.get(0));
+    }
+
+    @Test
+    public void keepAliveWhileReceiving() throws Exception {
+        client.stop();
+        client = new MqttClient("test", "127.0.0.1", broker.getPort(), null, null, 1);
+        List<String> received = new CopyOnWriteArrayList<>();
+        client.subscribe("tele/plug/SENSOR", (topic, payload) -> received.add(payload));
+        client.start();
+        waitFor(() -> broker.getSubscriptionCount() == 1);
+
+        // messages are received more often than the socket timeout, i.e. the client never runs into it
+        for(int i=0; i<40; i++) {
+            broker.publish("tele/plug/SENSOR", "{\"Power\":" + i + "}");
+            Thread.sleep(100);
+        }
+        assertEquals(40, received.size());
+        assertEquals(0, broker.getKeepAliveTimeoutCount());
+        assertEquals(1, broker.getConnectCount());
+    }
+
+    @Test
+    public void discardOversizedPacket() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        client.subscribe("tele/plug/SENSOR", (topic, payload) -> received.add(payload));
+        client.start();
+        waitFor(() -> broker.getSubscriptionCount() == 1);
+
+        char[] oversized = new char[MqttClient.MAX_PACKET_LENGTH];
+        Arrays.fill(oversized, 'x');
+        broker.publish("tele/plug/SENSOR", new String(oversized));
+        broker.publish("tele/plug/SENSOR", "{\"Power\":42}");
+        waitFor(() -> received.size() == 1);
+        assertEquals("{\"Power\":42}", received.get(0));
+        assertEquals(1, broker.getConnectCount());
+    }
+
+    @Test
+    public void unsubscribe() throws Exception {
+        List<String> received = new CopyOnWriteArrayList<>();
+        MqttMessageListener listener = (topic, payload) -> received.add(payload);
+        client.start();
+        waitFor(client::isConnected);
+        client.subscribe("stat/plug/POWER", listener);
+        waitFor(() -> broker.getSubscriptionCount() == 1);
+        client.unsubscribe("stat/plug/POWER", listener);
+        waitFor(() -> broker.getSubscriptionCount() == 0);
+    }
+
+    public static void waitFor(java.util.function.BooleanSupplier condition) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 10000;
+        while(! condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < timeout, "Timeout waiting for condition");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuntimeCheckpointTest {
+    private static final long CHECKSUM = 4711L;
+    private static final long NOW = 1_600_000_000_000L;
+    private File directory;
+    private File file;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        directory = Files.createTempDirectory("checkpoint").toFile();
+        file = new File(directory, "RuntimeCheckpoint.bin");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        if(files != null) {
+            for(File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    private Map<String, byte[]> sections() {
+        Map<String, byte[]> sections = new LinkedHashMap<>();
+        sections.put("F-00000001-000000000001-00", new byte[] {1, 2, 3});
+        sections.put("F-00000001-000000000002-00", new byte[0]);
+        return sections;
+    }
+
+    @Test
+    public void read() throws Exception {
+        new RuntimeCheckpoint(file).write(CHECKSUM, NOW, sections());
+        Map<String, byte[]> sections = new RuntimeCheckpoint(file).read(CHECKSUM, NOW + 1000, 60);
+        assertEquals(2, sections.size());
+        assertArrayEquals(new byte[] {1, 2, 3}, sections.get("F-00000001-000000000001-00"));
+        assertArrayEquals(new byte[0], sections.get("F-00000001-000000000002-00"));
+        assertFalse(new File(directory, "RuntimeCheckpoint.bin.tmp").exists());
+    }
+
+    @Test
+    public void read_configurationChanged() throws Exception {
+        new RuntimeCheckpoint(file).write(CHECKSUM, NOW, sections());
+        assertTrue(new RuntimeCheckpoint(file).read(CHECKSUM + 1, NOW, 60).isEmpty());
+    }
+
+    @Test
+    public void read_tooOld() throws Exception {
+        new RuntimeCheckpoint(file).write(CHECKSUM, NOW, sections());
+        assertTrue(new RuntimeCheckpoint(file).read(CHECKSUM, NOW + 61_000, 60).isEmpty());
+    }
+
+    @Test
+    public void read_corrupted() throws Exception {
+        new RuntimeCheckpoint(file).write(CHECKSUM, NOW, sections());
+        try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(30);
+            raf.write(0xff);
+        }
+        assertTrue(new RuntimeCheckpoint(file).read(CHECKSUM, NOW, 60).isEmpty());
+    }
+
+    @Test
+    public void read_missing() {
+        assertTrue(new RuntimeCheckpoint(file).read(CHECKSUM, NOW, 60).isEmpty());
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.persistence;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SegmentLogTest {
+    private File directory;
+    private SegmentLog segmentLog;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("segmentlog").toFile();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if(segmentLog != null) {
+            segmentLog.close();
+        }
+        Files.walk(directory.toPath()).sorted(Comparator.reverseOrder()).map(java.nio.file.Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private SegmentLog open(int segmentSize, int maxSegments, long sampleRetentionMillis) throws IOException {
+        if(segmentLog != null) {
+            // simulate a crash: nothing is flushed explicitly
+            segmentLog = null;
+        }
+        segmentLog = new SegmentLog(directory, segmentSize, maxSegments, sampleRetentionMillis);
+        // compact in the thread appending the record that triggers it
+        segmentLog.setCompactionExecutor(Runnable::run);
+        segmentLog.open();
+        return segmentLog;
+    }
+
+    @Test
+    public void open_RestoresState() throws IOException {
+        open(4096, 4, 1000).put("F-1.totalEnergy", 1, 1.5);
+        segmentLog.put("F-1.startEnergyCounter", 2, 100.0);
+        segmentLog.put("F-1.totalEnergy", 3, 2.5);
+        segmentLog.remove("F-1.startEnergyCounter");
+        segmentLog.addSample("F-1", 4, 1200.0);
+
+        open(4096, 4, 1000);
+        assertEquals(2.5, segmentLog.get("F-1.totalEnergy"), 0.0);
+        assertNull(segmentLog.get("F-1.startEnergyCounter"));
+        assertEquals(5, segmentLog.getRecoveredRecordCount());
+        List<Double> samples = new ArrayList<>();
+        segmentLog.replaySamples((key, timestamp, value) -> samples.add(value));
+        assertEquals(List.of(1200.0), samples);
+    }
+
+    @Test
+    public void open_TornWrite() throws IOException {
+        open(4096, 4, 1000).put("a", 1, 1.0);
+        segmentLog.put("b", 2, 2.0);
+        segmentLog.flush();
+
+        // corrupt the value of the last record
+        File segment = directory.listFiles()[0];
+        try(RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            int secondRecordValueOffset = 20 + (8 + 19 + 1) + 8 + 9;
+            file.seek(secondRecordValueOffset);
+            file.write(0xff);
+        }
+
+        open(4096, 4, 1000);
+        assertEquals(1.0, segmentLog.get("a"), 0.0);
+        assertNull(segmentLog.get("b"));
+        assertEquals(1, segmentLog.getDiscardedRecordCount());
+
+        segmentLog.put("c", 3, 3.0);
+        open(4096, 4, 1000);
+        assertEquals(3.0, segmentLog.get("c"), 0.0);
+        assertEquals(0, segmentLog.getDiscardedRecordCount());
+    }
+
+    @Test
+    public void compact() throws IOException {
+        open(4096, 3, 100);
+        for(int i=0; i<1000; i++) {
+            segmentLog.put("counter" + (i % 5), i, i);
+            segmentLog.addSample("power", i, i);
+        }
+        assertTrue(segmentLog.getSegmentCount() <= 3, "segments=" + segmentLog.getSegmentCount());
+        assertTrue(directory.listFiles().length <= 3);
+
+        open(4096, 3, 100);
+        for(int i=0; i<5; i++) {
+            assertEquals(995 + i, segmentLog.get("counter" + i), 0.0);
+        }
+        List<Long> timestamps = new ArrayList<>();
+        segmentLog.replaySamples((key, timestamp, value) -> timestamps.add(timestamp));
+        // samples within the retention period survive compaction in the order they have been added
+        assertEquals(999L, timestamps.get(timestamps.size() - 1).longValue());
+        assertTrue(timestamps.contains(900L));
+        assertFalse(timestamps.contains(0L));
+        for(int i=1; i<timestamps.size(); i++) {
+            assertTrue(timestamps.get(i) > timestamps.get(i - 1));
+        }
+    }
+
+    @Test
+    public void compact_Background() throws IOException {
+        List<Runnable> compactions = new ArrayList<>();
+        open(4096, 3, 100).setCompactionExecutor(compactions::add);
+        int i = 0;
+        while(compactions.isEmpty()) {
+            segmentLog.put("counter", i, i);
+            i++;
+        }
+        // appending continues while the compaction is pending
+        for(int j=0; j<200; j++, i++) {
+            segmentLog.put("counter", i, i);
+        }
+        assertEquals(1, compactions.size());
+        assertTrue(segmentLog.getSegmentCount() > 3);
+
+        compactions.get(0).run();
+        assertEquals(i - 1, segmentLog.get("counter"), 0.0);
+        // one compaction segment and the two append segments written while the compaction was pending
+        assertEquals(3, segmentLog.getSegmentCount());
+        assertEquals(3, directory.listFiles().length);
+
+        open(4096, 3, 100);
+        assertEquals(i - 1, segmentLog.get("counter"), 0.0);
+    }
+
+    @Test
+    public void open_InterruptedCompaction() throws IOException {
+        open(4096, 4, 1000).put("a", 1, 1.0);
+        segmentLog.flush();
+
+        // a compaction segment whose compaction has not been confirmed
+        File unconfirmed = new File(directory, "segment-00000000000000000002.log");
+        try(RandomAccessFile file = new RandomAccessFile(unconfirmed, "rw")) {
+            file.setLength(4096);
+            file.writeInt(0x5341454c);
+            file.writeInt(1);
+            file.writeInt(2);
+            file.writeLong(0);
+        }
+
+        open(4096, 4, 1000);
+        assertFalse(unconfirmed.exists());
+        assertEquals(1, segmentLog.getSegmentCount());
+        assertEquals(1.0, segmentLog.get("a"), 0.0);
+    }
+
+    @Test
+    public void flush_GroupCommit() throws IOException {
+        open(4096, 4, 1000);
+        segmentLog.flush();
+        assertEquals(0, segmentLog.getFlushCount());
+        for(int i=0; i<10; i++) {
+            segmentLog.put("counter", i, i);
+        }
+        segmentLog.flush();
+        segmentLog.flush();
+        assertEquals(1, segmentLog.getFlushCount());
+    }
+}
@@ -20,6 +20,7 @@ package de.avanux.smartapplianceenabler.schedule;
 
 import de.avanux.smartapplianceenabler.TestBase;
 import de.avanux.smartapplianceenabler.control.MockSwitch;
+import de.avanux.smartapplianceenabler.persistence.RuntimeCheckpoint;
 import java.time.LocalDateTime;
 import org.junit.jupiter.api.Test;
 
@@ -28,6 +29,7 @@ import java.util.Arrays;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TimeframeIntervalHandlerTest extends TestBase {
 
@@ -99,4 +101,33 @@ public class TimeframeIntervalHandlerTest extends TestBase {
         assertEquals(toIntervalByDow(now,5,14,0,5, 16, 0),
                 timeframeIntervals.get(4).getInterval());
     }
+
+    @Test
+    public void checkpoint_restoresQueue() throws Exception {
+        List<Schedule> schedules = new ArrayList<Schedule>();
+        addSchedule(schedules, 3600, 10, 0, 16, 0);
+        TimeframeIntervalHandler handler = buildTimeframeIntervalHandler(schedules);
+        handler.setApplianceId("F-00000001-000000000001-00");
+        LocalDateTime now = toToday(11, 0);
+        handler.fillQueue(now);
+        handler.getActiveTimeframeInterval().getRequest().setEnabled(true);
+        List<TimeframeInterval> queue = handler.getQueue();
+
+        TimeframeIntervalHandler restoredHandler = buildTimeframeIntervalHandler(schedules);
+        restoredHandler.setApplianceId("F-00000001-000000000001-00");
+        RuntimeCheckpoint.fromBytes(now, restoredHandler, RuntimeCheckpoint.toBytes(now, handler));
+        List<TimeframeInterval> restoredQueue = restoredHandler.getQueue();
+
+        assertEquals(queue.size(), restoredQueue.size());
+        for(int i=0; i<queue.size(); i++) {
+            assertEquals(queue.get(i).getInterval(), restoredQueue.get(i).getInterval());
+            assertEquals(queue.get(i).getStateHistory(), restoredQueue.get(i).getStateHistory());
+            assertEquals(queue.get(i).getRequest().isEnabled(), restoredQueue.get(i).getRequest().isEnabled());
+            assertEquals(queue.get(i).getRequest().getMax(now), restoredQueue.get(i).getRequest().getMax(now));
+        }
+        TimeframeInterval activeTimeframeInterval = restoredHandler.getActiveTimeframeInterval();
+        assertEquals(toInterval(0, 10, 0, 0, 16, 0), activeTimeframeInterval.getInterval());
+        assertTrue(activeTimeframeInterval.getRequest() instanceof RuntimeRequest);
+        assertTrue(activeTimeframeInterval.getRequest().isEnabled());
+    }
 }
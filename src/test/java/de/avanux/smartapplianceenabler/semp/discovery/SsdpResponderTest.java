@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.semp.discovery;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SsdpResponderTest {
+
+    private static final String UDN = "uuid:a1b2c3d4-0000-0000-0000-000000000001";
+    private static final String DEVICE_TYPE = "urn:schemas-simple-energy-management-protocol:device:Gateway:1";
+    private SsdpResponder responder = new SsdpResponder("192.168.1.2", "8080", UDN);
+
+    @Test
+    public void parseHeaders() {
+        Map<String, String> headers = SsdpResponder.parseHeaders("M-SEARCH * HTTP/1.1\r\n"
+                + "HOST: 239.255.255.250:1900\r\n"
+                + "Man: \"ssdp:discover\"\r\n"
+                + "MX: 3\r\n"
+                + "ST: urn:schemas-simple-energy-management-protocol:device:Gateway:1\r\n"
+                + "\r\n");
+        assertEquals("\"ssdp:discover\"", headers.get("MAN"));
+        assertEquals("3", headers.get("MX"));
+        assertEquals(DEVICE_TYPE, headers.get("ST"));
+    }
+
+    @Test
+    public void getMatchingSearchTargets() {
+        assertEquals(Arrays.asList("upnp:rootdevice", UDN, DEVICE_TYPE), responder.getMatchingSearchTargets("ssdp:all"));
+        assertEquals(Collections.singletonList(DEVICE_TYPE), responder.getMatchingSearchTargets(DEVICE_TYPE));
+        assertEquals(Collections.singletonList(UDN), responder.getMatchingSearchTargets(UDN));
+        assertTrue(responder.getMatchingSearchTargets("urn:schemas-upnp-org:device:MediaRenderer:1").isEmpty());
+        assertTrue(responder.getMatchingSearchTargets(null).isEmpty());
+    }
+
+    @Test
+    public void createSearchResponse() {
+        String response = responder.createSearchResponse(DEVICE_TYPE);
+        assertTrue(response.startsWith("HTTP/1.1 200 OK\r\n"));
+        assertTrue(response.contains("LOCATION: http://192.168.1.2:8080/upnp/description.xml\r\n"));
+        assertTrue(response.contains("ST: " + DEVICE_TYPE + "\r\n"));
+        assertTrue(response.contains("USN: " + UDN + "::" + DEVICE_TYPE + "\r\n"));
+        assertTrue(response.endsWith("\r\n\r\n"));
+    }
+
+    @Test
+    public void createNotifyMessages() {
+        List<String> alive = responder.createNotifyMessages(true);
+        assertEquals(3, alive.size());
+        assertTrue(alive.get(0).contains("NT: upnp:rootdevice\r\n"));
+        assertTrue(alive.get(0).contains("NTS: ssdp:alive\r\n"));
+        assertTrue(alive.get(1).contains("USN: " + UDN + "\r\n"));
+
+        List<String> byebye = responder.createNotifyMessages(false);
+        assertTrue(byebye.get(2).contains("NTS: ssdp:byebye\r\n"));
+        assertFalse(byebye.get(2).contains("LOCATION"));
+    }
+
+    @Test
+    public void getDescription() {
+        String description = responder.getDescription();
+        assertTrue(description.contains("<deviceType>" + DEVICE_TYPE + "</deviceType>"));
+        assertTrue(description.contains("<UDN>" + UDN + "</UDN>"));
+        assertTrue(description.contains("<semp:server>http://192.168.1.2:8080</semp:server>"));
+        assertTrue(description.contains("<semp:basePath>/semp</semp:basePath>"));
+    }
+}
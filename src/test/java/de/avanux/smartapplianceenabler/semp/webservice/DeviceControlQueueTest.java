@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.semp.webservice;
+
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class DeviceControlQueueTest {
+
+    private static final String DEVICE_ID = "F-00000001-000000000001-00";
+
+    @Test
+    public void pendingRequestIsReplacedByLatestRequest() throws Exception {
+        Appliance appliance = new Appliance();
+        appliance.setId(DEVICE_ID);
+        List<Integer> applied = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(2);
+        DeviceControlQueue queue = new DeviceControlQueue((now, app, deviceControl) -> {
+            started.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            applied.add(deviceControl.getRecommendedPowerConsumption());
+            done.countDown();
+        });
+
+        LocalDateTime now = LocalDateTime.now();
+        queue.submit(now, appliance, createDeviceControl(1000));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        queue.submit(now, appliance, createDeviceControl(2000));
+        queue.submit(now, appliance, createDeviceControl(3000));
+        assertTrue(queue.isPending(DEVICE_ID));
+        release.countDown();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(1000, 3000), applied);
+        DeviceControlQueue.Metrics metrics = queue.getMetrics(DEVICE_ID);
+        assertEquals(1, metrics.getCollapsedCount());
+        assertEquals(2, metrics.getAppliedCount());
+        assertFalse(queue.isPending(DEVICE_ID));
+        assertSame(metrics, queue.getMetricsByDeviceId().get(DEVICE_ID));
+    }
+
+    @Test
+    public void failingRequestDoesNotBlockQueue() throws Exception {
+        Appliance appliance = new Appliance();
+        appliance.setId(DEVICE_ID);
+        CountDownLatch done = new CountDownLatch(1);
+        DeviceControlQueue queue = new DeviceControlQueue((now, app, deviceControl) -> {
+            if(deviceControl.isOn()) {
+                done.countDown();
+            }
+            else {
+                throw new IllegalStateException("failure");
+            }
+        });
+
+        DeviceControl off = createDeviceControl(0);
+        off.setOn(false);
+        queue.submit(LocalDateTime.now(), appliance, off);
+        queue.submit(LocalDateTime.now(), appliance, createDeviceControl(1000));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    private DeviceControl createDeviceControl(int recommendedPowerConsumption) {
+        DeviceControl deviceControl = new DeviceControl();
+        deviceControl.setDeviceId(DEVICE_ID);
+        deviceControl.setOn(true);
+        deviceControl.setRecommendedPowerConsumption(recommendedPowerConsumption);
+        return deviceControl;
+    }
+}
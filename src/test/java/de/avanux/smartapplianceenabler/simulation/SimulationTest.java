@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.simulation;
+
+import de.avanux.smartapplianceenabler.appliance.ApplianceMailbox;
+import de.avanux.smartapplianceenabler.util.Clock;
+import de.avanux.smartapplianceenabler.util.DateTimeProvider;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SimulationTest {
+
+    @Test
+    public void run_deterministic() {
+        DateTimeProvider dateTimeProvider = Clock.getDateTimeProvider();
+        List<Simulation.Decision> decisions = run(3, null).getDecisions();
+        assertEquals(decisions, run(3, null).getDecisions());
+        assertSame(dateTimeProvider, Clock.getDateTimeProvider());
+        assertFalse(ApplianceMailbox.isDirect());
+    }
+
+    @Test
+    public void run_surplus() {
+        Simulation simulation = run(3, null);
+        List<Simulation.Decision> decisions = simulation.getDecisions();
+        assertEquals(3, decisions.stream().filter(decision -> decision.isOn()).count());
+        assertTrue(decisions.stream().filter(decision -> decision.isOn())
+                .allMatch(decision -> decision.getReason().equals("surplus")));
+        assertEquals(3, decisions.stream().filter(decision -> ! decision.isOn()).count());
+        assertTrue(simulation.getUsedSurplusEnergyWh() > 0.0);
+        assertTrue(simulation.getTimings().get("UpdateActiveTimeframeInterval").getCount() > 0);
+    }
+
+    @Test
+    public void run_noSurplus_latestStart() {
+        List<Simulation.Decision> decisions = run(3, 0).getDecisions();
+        assertEquals(3, decisions.stream().filter(decision -> decision.isOn()).count());
+        assertTrue(decisions.stream().filter(decision -> decision.isOn())
+                .allMatch(decision -> decision.getReason().equals("latest start")));
+    }
+
+    private Simulation run(int applianceCount, Integer peakSurplus) {
+        Simulation simulation = new Simulation();
+        simulation.setApplianceCount(applianceCount);
+        simulation.setPeakSurplus(peakSurplus);
+        simulation.run();
+        return simulation;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.speedwire;
+
+import de.avanux.smartapplianceenabler.meter.GridPowerListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static de.avanux.smartapplianceenabler.mqtt.MqttClientTest.waitFor;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SmaEnergyMeterTest {
+
+    private SmaEnergyMeter meter = new SmaEnergyMeter();
+
+    @AfterEach
+    public void tearDown() {
+        meter.stop();
+    }
+
+    private void replay(List<byte[]> telegrams) throws Exception {
+        try(DatagramChannel sender = DatagramChannel.open()) {
+            InetSocketAddress target = new InetSocketAddress("127.0.0.1", meter.getLocalPort());
+            for(byte[] telegram : telegrams) {
+                sender.send(ByteBuffer.wrap(telegram), target);
+            }
+        }
+    }
+
+    @Test
+    public void replay_FirstSerialAccepted() throws Exception {
+        List<Integer> gridPowers = new CopyOnWriteArrayList<>();
+        meter.setPort(0);
+        meter.addGridPowerListener((timestampMillis, gridPower) -> gridPowers.add(gridPower));
+        meter.start();
+
+        replay(SpeedwireTelegramTest.loadTelegrams());
+        waitFor(() -> gridPowers.size() == 3);
+        assertEquals(Arrays.asList(1250, -2380, -2410), gridPowers);
+        assertEquals(-2410, meter.getGridPower());
+        assertEquals(860, meter.getTelegram().getPhaseExportPower(3));
+        assertEquals(3, meter.getTelegramCount());
+        assertTrue(meter.getLastUpdateMillis() > 0);
+    }
+
+    @Test
+    public void replay_ConfiguredSerial() throws Exception {
+        List<Integer> gridPowers = new CopyOnWriteArrayList<>();
+        meter.setPort(0);
+        meter.setSerial(3005551234L);
+        meter.addGridPowerListener((timestampMillis, gridPower) -> gridPowers.add(gridPower));
+        meter.start();
+
+        List<byte[]> telegrams = SpeedwireTelegramTest.loadTelegrams();
+        replay(telegrams);
+        replay(telegrams);
+        waitFor(() -> gridPowers.size() == 2);
+        assertEquals(Arrays.asList(77, 77), gridPowers);
+    }
+
+    @Test
+    public void removeGridPowerListener() throws Exception {
+        List<Integer> gridPowers = new CopyOnWriteArrayList<>();
+        GridPowerListener listener = (timestampMillis, gridPower) -> gridPowers.add(gridPower);
+        meter.setPort(0);
+        meter.addGridPowerListener(listener);
+        meter.start();
+
+        List<byte[]> telegrams = SpeedwireTelegramTest.loadTelegrams().subList(0, 1);
+        replay(telegrams);
+        waitFor(() -> gridPowers.size() == 1);
+        meter.removeGridPowerListener(listener);
+        replay(telegrams);
+        waitFor(() -> meter.getTelegramCount() == 2);
+        assertEquals(1, gridPowers.size());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.speedwire;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SpeedwireTelegramTest {
+
+    private SpeedwireTelegram telegram = new SpeedwireTelegram();
+
+    /**
+     * Returns the telegrams of the replay file, one hex encoded telegram per line.
+     */
+    public static List<byte[]> loadTelegrams() throws Exception {
+        List<byte[]> telegrams = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                SpeedwireTelegramTest.class.getClassLoader().getResourceAsStream("speedwire/emeter-telegrams.hex")))) {
+            for(String line : reader.lines().collect(Collectors.toList())) {
+                byte[] bytes = new byte[line.length() / 2];
+                for(int i=0; i<bytes.length; i++) {
+                    bytes[i] = (byte) Integer.parseInt(line.substring(i * 2, i * 2 + 2), 16);
+                }
+                telegrams.add(bytes);
+            }
+        }
+        return telegrams;
+    }
+
+    private ByteBuffer directBuffer(byte[] bytes, int offset) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length + offset);
+        buffer.position(offset);
+        buffer.put(bytes);
+        buffer.flip();
+        buffer.position(offset);
+        return buffer;
+    }
+
+    @Test
+    public void parse_Import() throws Exception {
+        ByteBuffer buffer = directBuffer(loadTelegrams().get(0), 0);
+        assertTrue(telegram.parse(buffer));
+        assertEquals(0, buffer.position());
+        assertEquals(1900123456L, telegram.getSerial());
+        assertEquals(349, telegram.getSusyId());
+        assertEquals(1000000L, telegram.getTicker());
+        assertEquals(1250, telegram.getImportPower());
+        assertEquals(0, telegram.getExportPower());
+        assertEquals(1250, telegram.getGridPower());
+        assertEquals(4711L * 3600 * 1000, telegram.getImportEnergy());
+        assertEquals(815L * 3600 * 1000, telegram.getExportEnergy());
+        assertEquals(830, telegram.getPhaseImportPower(1));
+        assertEquals(420, telegram.getPhaseImportPower(2));
+        assertEquals(0, telegram.getPhaseImportPower(3));
+    }
+
+    @Test
+    public void parse_Export() throws Exception {
+        assertTrue(telegram.parse(directBuffer(loadTelegrams().get(1), 7)));
+        assertEquals(-2380, telegram.getGridPower());
+        assertEquals(1650, telegram.getPhaseExportPower(1));
+        assertEquals(120, telegram.getPhaseImportPower(2));
+        assertEquals(850, telegram.getPhaseExportPower(3));
+        assertEquals(816L * 3600 * 1000, telegram.getExportEnergy());
+    }
+
+    @Test
+    public void parse_Truncated() throws Exception {
+        byte[] bytes = loadTelegrams().get(0);
+        ByteBuffer buffer = directBuffer(bytes, 0);
+        buffer.limit(40);
+        assertTrue(telegram.parse(buffer));
+        assertEquals(1250, telegram.getImportPower());
+        assertEquals(0, telegram.getImportEnergy());
+    }
+
+    @Test
+    public void parse_NoEnergyMeterTelegram() throws Exception {
+        byte[] bytes = loadTelegrams().get(0);
+        bytes[17] = 0x65; // protocol 0x6065 (inverter)
+        assertFalse(telegram.parse(directBuffer(bytes, 0)));
+        assertFalse(telegram.parse(directBuffer(new byte[] { 'S', 'M', 'A', 0 }, 0)));
+        assertFalse(telegram.parse(directBuffer("M-SEARCH * HTTP/1.1\r\n\r\n".getBytes(), 0)));
+    }
+}
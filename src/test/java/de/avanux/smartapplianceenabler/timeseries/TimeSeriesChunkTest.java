@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeSeriesChunkTest {
+
+    @Test
+    public void append_RoundTrip() {
+        Random random = new Random(4711);
+        long[] timestamps = new long[TimeSeries.POINTS_PER_CHUNK];
+        double[] values = new double[TimeSeries.POINTS_PER_CHUNK];
+        long timestamp = 1_577_836_800_000L;
+        TimeSeriesChunk chunk = new TimeSeriesChunk(TimeSeries.POINTS_PER_CHUNK);
+        for(int i=0; i<timestamps.length; i++) {
+            // regular polling with jitter, occasional gaps and all kinds of values
+            timestamp += i % 50 == 49 ? 3_600_000L * random.nextInt(1000) : 10_000 + random.nextInt(200) - 100;
+            timestamps[i] = timestamp;
+            values[i] = i % 3 == 0 ? random.nextInt(3000) : (i % 3 == 1 ? random.nextDouble() * 1e6 : -values[i-1]);
+            chunk.append(timestamps[i], values[i]);
+        }
+        assertTrue(chunk.isFull());
+
+        List<Long> decodedTimestamps = new ArrayList<>();
+        List<Double> decodedValues = new ArrayList<>();
+        chunk.forEach((t, v) -> {
+            decodedTimestamps.add(t);
+            decodedValues.add(v);
+        });
+        assertEquals(timestamps.length, decodedTimestamps.size());
+        for(int i=0; i<timestamps.length; i++) {
+            assertEquals(timestamps[i], decodedTimestamps.get(i).longValue());
+            assertEquals(values[i], decodedValues.get(i).doubleValue(), 0.0);
+        }
+    }
+
+    @Test
+    public void append_Compression() {
+        TimeSeriesChunk chunk = new TimeSeriesChunk(TimeSeries.POINTS_PER_CHUNK);
+        for(int i=0; i<TimeSeries.POINTS_PER_CHUNK; i++) {
+            chunk.append(1_577_836_800_000L + i * 60_000L, i < 100 ? 0.0 : 2000.0);
+        }
+        chunk.seal();
+        // 2 bits per value if timestamps are regular and values do not change
+        assertTrue(chunk.getSizeInBytes() < 100, "size=" + chunk.getSizeInBytes());
+        assertEquals(1_577_836_800_000L + 255 * 60_000L, chunk.getLastTimestamp());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.timeseries;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TimeSeriesTest {
+    private long start = LocalDateTime.of(2020, 1, 6, 0, 0).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+    @Test
+    public void query_Rollups() {
+        TimeSeries timeSeries = new TimeSeries();
+        // 1000W for 2 hours, 3000W for 1 hour, one value every 10 seconds
+        for(int second=0; second<3 * 3600; second+=10) {
+            timeSeries.add(start + second * 1000L, second < 7200 ? 1000.0 : 3000.0);
+        }
+        long end = start + 3 * 3_600_000L;
+
+        List<TimeSeriesPoint> minutes = timeSeries.query(start, end, Resolution.MINUTE);
+        assertEquals(180, minutes.size());
+        assertEquals(6, minutes.get(1).getCount());
+        assertEquals(1000.0, minutes.get(1).getAverage(), 0.001);
+        assertEquals(1000.0 / 60, minutes.get(1).getEnergy(), 0.001);
+
+        List<TimeSeriesPoint> hours = timeSeries.query(start, end, Resolution.HOUR);
+        assertEquals(3, hours.size());
+        assertEquals(start + 3_600_000L, hours.get(1).getTimestamp());
+        assertEquals(1000.0, hours.get(1).getEnergy(), 0.001);
+        assertEquals(3000.0, hours.get(2).getMax(), 0.001);
+        assertEquals(3000.0, hours.get(2).getEnergy(), 0.001);
+
+        List<TimeSeriesPoint> days = timeSeries.query(start, end, Resolution.DAY);
+        assertEquals(1, days.size());
+        assertEquals(start, days.get(0).getTimestamp());
+        assertEquals(1000.0, days.get(0).getMin(), 0.001);
+        // the first value has no predecessor
+        assertEquals(5000.0 - 1000.0 / 360, days.get(0).getEnergy(), 0.001);
+
+        List<TimeSeriesPoint> raw = timeSeries.query(start + 3_600_000L, start + 3_660_000L, Resolution.RAW);
+        assertEquals(6, raw.size());
+        assertEquals(start + 3_600_000L, raw.get(0).getTimestamp());
+    }
+
+    @Test
+    public void add_GapNotCounted() {
+        TimeSeries timeSeries = new TimeSeries();
+        timeSeries.add(start, 1200.0);
+        timeSeries.add(start + 3_600_000L, 1200.0);
+        List<TimeSeriesPoint> days = timeSeries.query(start, start + 86_400_000L, Resolution.DAY);
+        assertEquals(1200.0 * TimeSeries.MAX_GAP_MILLIS / 3_600_000.0, days.get(0).getEnergy(), 0.001);
+    }
+
+    @Test
+    public void add_MemoryBounded() {
+        TimeSeries timeSeries = new TimeSeries(2);
+        for(int i=0; i<10 * TimeSeries.POINTS_PER_CHUNK; i++) {
+            timeSeries.add(start + i * 1000L, i);
+        }
+        assertTrue(timeSeries.getRawSize() <= 2 * TimeSeries.POINTS_PER_CHUNK);
+        List<TimeSeriesPoint> raw = timeSeries.query(start, start + 86_400_000L, Resolution.RAW);
+        assertEquals(10 * TimeSeries.POINTS_PER_CHUNK - 1, raw.get(raw.size() - 1).getAverage(), 0.0);
+        // rollups still cover everything
+        List<TimeSeriesPoint> days = timeSeries.query(start, start + 86_400_000L, Resolution.DAY);
+        assertEquals(10 * TimeSeries.POINTS_PER_CHUNK, days.get(0).getCount());
+    }
+
+    @Test
+    public void selectResolution() {
+        TimeSeries timeSeries = new TimeSeries();
+        timeSeries.add(start, 100.0);
+        assertEquals(Resolution.MINUTE, timeSeries.selectResolution(start, start + 3_600_000L, 500));
+        assertEquals(Resolution.QUARTER_HOUR, timeSeries.selectResolution(start, start + 86_400_000L, 500));
+        assertEquals(Resolution.HOUR, timeSeries.selectResolution(start, start + 7 * 86_400_000L, 500));
+        assertEquals(Resolution.DAY, timeSeries.selectResolution(start, start + 365 * 86_400_000L, 500));
+    }
+}
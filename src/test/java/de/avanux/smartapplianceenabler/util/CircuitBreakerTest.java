@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircuitBreakerTest {
+
+    private CircuitBreaker cut;
+
+    @BeforeEach
+    public void setup() {
+        cut = new CircuitBreaker("http://127.0.0.1:80");
+        cut.setFailureThreshold(2);
+        cut.setInitialOpenSeconds(10);
+        cut.setMaxOpenSeconds(30);
+    }
+
+    @Test
+    public void opensAfterFailureThreshold() {
+        assertFalse(cut.recordFailure(0));
+        assertEquals(CircuitBreakerState.CLOSED, cut.getState());
+        assertTrue(cut.recordFailure(1000));
+        assertEquals(CircuitBreakerState.OPEN, cut.getState());
+        assertFalse(cut.allowRequest(5000));
+        assertEquals(Long.valueOf(1000), cut.getUnreachableSinceTimestamp());
+    }
+
+    @Test
+    public void halfOpenPermitsSingleProbe() {
+        cut.recordFailure(0);
+        cut.recordFailure(0);
+        assertTrue(cut.allowRequest(10000));
+        assertEquals(CircuitBreakerState.HALF_OPEN, cut.getState());
+        assertFalse(cut.allowRequest(10001));
+        cut.recordSuccess();
+        assertEquals(CircuitBreakerState.CLOSED, cut.getState());
+        assertTrue(cut.allowRequest(10002));
+        assertNull(cut.getUnreachableSinceTimestamp());
+    }
+
+    @Test
+    public void releasedProbePermitsNextProbe() {
+        cut.recordFailure(0);
+        cut.recordFailure(0);
+        assertTrue(cut.allowRequest(10000));
+        assertFalse(cut.allowRequest(10001));
+        cut.releaseProbe();
+        assertEquals(CircuitBreakerState.HALF_OPEN, cut.getState());
+        assertTrue(cut.allowRequest(10002));
+    }
+
+    @Test
+    public void failedProbeBacksOffExponentially() {
+        cut.recordFailure(0);
+        cut.recordFailure(0);
+        assertTrue(cut.allowRequest(10000));
+        assertFalse(cut.recordFailure(10000));
+        assertFalse(cut.allowRequest(29999));
+        assertTrue(cut.allowRequest(30000));
+        cut.recordFailure(30000);
+        // capped at max open interval
+        assertFalse(cut.allowRequest(59999));
+        assertTrue(cut.allowRequest(60000));
+    }
+}
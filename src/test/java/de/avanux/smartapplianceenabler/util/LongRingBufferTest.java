@@ -0,0 +1,105 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LongRingBufferTest {
+
+    @Test
+    public void capacityRoundedUpToPowerOfTwo() {
+        assertEquals(8, new LongRingBuffer(5).getCapacity());
+        assertEquals(8, new LongRingBuffer(8).getCapacity());
+    }
+
+    @Test
+    public void offer_Full() {
+        LongRingBuffer buffer = new LongRingBuffer(4);
+        for(int i=0; i<4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(4));
+        assertEquals(4, buffer.size());
+    }
+
+    @Test
+    public void drain_InOrderAndWrapAround() {
+        LongRingBuffer buffer = new LongRingBuffer(4);
+        List<Long> drained = new ArrayList<>();
+        for(long i=0; i<10; i++) {
+            assertTrue(buffer.offer(i));
+            assertTrue(buffer.offer(-i));
+            assertEquals(2, buffer.drain(drained::add, 10));
+        }
+        assertTrue(buffer.isEmpty());
+        assertEquals(20, drained.size());
+        for(int i=0; i<10; i++) {
+            assertEquals(Long.valueOf(i), drained.get(2 * i));
+            assertEquals(Long.valueOf(-i), drained.get(2 * i + 1));
+        }
+    }
+
+    @Test
+    public void drain_Limit() {
+        LongRingBuffer buffer = new LongRingBuffer(8);
+        for(int i=0; i<5; i++) {
+            buffer.offer(i);
+        }
+        assertEquals(3, buffer.drain(value -> {}, 3));
+        assertEquals(2, buffer.size());
+        assertEquals(2, buffer.drain(value -> {}, 3));
+    }
+
+    @Test
+    public void concurrentProducers() throws Exception {
+        LongRingBuffer buffer = new LongRingBuffer(64);
+        int producers = 4;
+        int valuesPerProducer = 100000;
+        List<Thread> threads = new ArrayList<>();
+        for(int p=0; p<producers; p++) {
+            Thread thread = new Thread(() -> {
+                for(int i=1; i<=valuesPerProducer; i++) {
+                    while(! buffer.offer(i)) {
+                        Thread.yield();
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long[] sum = new long[1];
+        long[] count = new long[1];
+        while(count[0] < producers * valuesPerProducer) {
+            buffer.drain(value -> {
+                sum[0] += value;
+                count[0]++;
+            }, 16);
+        }
+        for(Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(producers * (long) valuesPerProducer * (valuesPerProducer + 1) / 2, sum[0]);
+        assertTrue(buffer.isEmpty());
+    }
+}
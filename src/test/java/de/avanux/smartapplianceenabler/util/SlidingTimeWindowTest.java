@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2021 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.util;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SlidingTimeWindowTest {
+
+    private SlidingTimeWindow cut;
+
+    @BeforeEach
+    public void setup() {
+        cut = new SlidingTimeWindow(60, 2);
+    }
+
+    @Test
+    public void add_expiresOldValues() {
+        cut.add(0, 5.0);
+        cut.add(30000, 1.0);
+        cut.add(61000, 3.0);
+        Assertions.assertEquals(2, cut.size());
+        Assertions.assertEquals(2.0, cut.getAverage(), 0.001);
+        Assertions.assertEquals(1.0, cut.getMin(), 0.001);
+        Assertions.assertEquals(3.0, cut.getMax(), 0.001);
+    }
+
+    @Test
+    public void add_growsCapacity() {
+        for(int i=0; i<10; i++) {
+            cut.add(i * 1000, i);
+        }
+        Assertions.assertEquals(10, cut.size());
+        Assertions.assertEquals(0.0, cut.getMin(), 0.001);
+        Assertions.assertEquals(9.0, cut.getMax(), 0.001);
+        Assertions.assertEquals(4.5, cut.getAverage(), 0.001);
+    }
+
+    @Test
+    public void expire_updatesMinMax() {
+        cut.add(0, 1.0);
+        cut.add(10000, 9.0);
+        cut.add(20000, 5.0);
+        cut.expire(65000);
+        Assertions.assertEquals(5.0, cut.getMin(), 0.001);
+        Assertions.assertEquals(9.0, cut.getMax(), 0.001);
+        cut.expire(75000);
+        Assertions.assertEquals(5.0, cut.getMax(), 0.001);
+    }
+
+    @Test
+    public void getMedian() {
+        cut.add(0, 7.0);
+        cut.add(1000, 1.0);
+        cut.add(2000, 3.0);
+        Assertions.assertEquals(3.0, cut.getMedian(), 0.001);
+        cut.add(3000, 5.0);
+        Assertions.assertEquals(4.0, cut.getMedian(), 0.001);
+    }
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.webservice;
+
+import de.avanux.smartapplianceenabler.appliance.Appliance;
+import de.avanux.smartapplianceenabler.appliance.ApplianceBuilder;
+import de.avanux.smartapplianceenabler.appliance.ApplianceManager;
+import de.avanux.smartapplianceenabler.appliance.Appliances;
+import de.avanux.smartapplianceenabler.control.ev.EVReadValueName;
+import de.avanux.smartapplianceenabler.control.ev.EVWriteValueName;
+import de.avanux.smartapplianceenabler.control.ev.ElectricVehicleCharger;
+import de.avanux.smartapplianceenabler.control.ev.SurplusControl;
+import de.avanux.smartapplianceenabler.http.*;
+import de.avanux.smartapplianceenabler.protocol.ContentProtocolType;
+import de.avanux.smartapplianceenabler.schedule.DayTimeframe;
+import de.avanux.smartapplianceenabler.schedule.RuntimeRequest;
+import de.avanux.smartapplianceenabler.schedule.Schedule;
+import de.avanux.smartapplianceenabler.schedule.TimeOfDay;
+import de.avanux.smartapplianceenabler.semp.webservice.Device2EM;
+import de.avanux.smartapplianceenabler.semp.webservice.SempBuilder;
+import de.avanux.smartapplianceenabler.util.FileHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+
+public class SaeControllerBatchTest {
+    private static final String APPLIANCE_ID_1 = "F-00000001-000000000001-00";
+    private static final String APPLIANCE_ID_2 = "F-00000001-000000000002-00";
+    private static final String CHARGER_ID = "F-00000001-000000000003-00";
+    private static final String BATCH_CONFIGURATION_URL = "/sae/batch/configuration";
+    private SaeController controller = new SaeController();
+    private ApplianceManager applianceManager = ApplianceManager.getInstanceWithoutTimer();
+    private FileHandler fileHandler;
+
+    public SaeControllerBatchTest() {
+        System.setProperty(FileHandler.SAE_HOME, System.getProperty("java.io.tmpdir"));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        applianceManager.setFileHandler(new FileHandler());
+    }
+
+    /**
+     * Save the configuration of the appliances and start them from the saved configuration files.
+     */
+    private void startAppliances(Appliance... applianceList) {
+        Appliances appliances = new Appliances();
+        appliances.setAppliances(new ArrayList<>(Arrays.asList(applianceList)));
+        fileHandler = Mockito.spy(new FileHandler());
+        fileHandler.save(appliances);
+        fileHandler.save(new SempBuilder(appliances).build());
+        applianceManager.setTimer(null);
+        applianceManager.setFileHandler(fileHandler);
+        applianceManager.setAppliances(null);
+        applianceManager.setDevice2EM(null);
+        applianceManager.run();
+        Mockito.clearInvocations(fileHandler);
+    }
+
+    private Appliance createAppliance(String applianceId, int minRunningTime) {
+        Appliance appliance = new ApplianceBuilder(applianceId).build(false);
+        appliance.setSchedules(new ArrayList<>(Collections.singletonList(createSchedule(minRunningTime))));
+        return appliance;
+    }
+
+    private Schedule createSchedule(int minRunningTime) {
+        return new Schedule(true, new DayTimeframe(new TimeOfDay(10, 0, 0), new TimeOfDay(14, 0, 0)),
+                new RuntimeRequest(minRunningTime, 7200));
+    }
+
+    private EVHttpControl createEVHttpControl() {
+        HttpRead read = new HttpRead("http://127.0.0.1:1/status");
+        read.setReadValues(Arrays.asList(
+                new HttpReadValue(EVReadValueName.VehicleNotConnected.name(), "$.car", "(1)"),
+                new HttpReadValue(EVReadValueName.VehicleConnected.name(), "$.car", "(3|4)"),
+                new HttpReadValue(EVReadValueName.Charging.name(), "$.car", "(2)"),
+                new HttpReadValue(EVReadValueName.Error.name(), "$.err", "([^0])")));
+        HttpWrite write = new HttpWrite("http://127.0.0.1:1/mqtt=");
+        write.setWriteValues(Arrays.asList(
+                new HttpWriteValue(EVWriteValueName.ChargingCurrent.name(), "amp={0}", HttpMethod.GET),
+                new HttpWriteValue(EVWriteValueName.StartCharging.name(), "alw=1", HttpMethod.GET),
+                new HttpWriteValue(EVWriteValueName.StopCharging.name(), "alw=0", HttpMethod.GET)));
+        EVHttpControl control = new EVHttpControl();
+        control.setContentProtocol(ContentProtocolType.JSON);
+        control.setHttpReads(new ArrayList<>(Collections.singletonList(read)));
+        control.setHttpWrites(new ArrayList<>(Collections.singletonList(write)));
+        return control;
+    }
+
+    private ApplianceConfiguration createSchedulesConfiguration(String applianceId, int minRunningTime) {
+        ApplianceConfiguration configuration = new ApplianceConfiguration();
+        configuration.setId(applianceId);
+        configuration.setSchedules(Collections.singletonList(createSchedule(minRunningTime)));
+        return configuration;
+    }
+
+    private MockHttpServletResponse setConfigurationBatch(String ifMatch, ApplianceConfiguration... configurations) {
+        MockHttpServletRequest request = new MockHttpServletRequest("PUT", BATCH_CONFIGURATION_URL);
+        if(ifMatch != null) {
+            request.addHeader(HttpHeaders.IF_MATCH, ifMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.setConfigurationBatch(request, response, configurations);
+        return response;
+    }
+
+    private MockHttpServletResponse getConfigurationBatch(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", BATCH_CONFIGURATION_URL);
+        if(ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getConfigurationBatch(request, response, null,
+                Collections.singletonList(ApplianceConfiguration.FIELD_SCHEDULES));
+        return response;
+    }
+
+    private int getMinRunningTime(String applianceId) {
+        List<Schedule> schedules = applianceManager.getAppliance(applianceId).getSchedules();
+        return schedules.get(0).getRequest().getMin(null);
+    }
+
+    @Test
+    public void setConfigurationBatch_SavedOnceAndChangedAppliancesRestarted() {
+        startAppliances(createAppliance(APPLIANCE_ID_1, 1800), createAppliance(APPLIANCE_ID_2, 1800));
+        Appliance appliance1 = applianceManager.getAppliance(APPLIANCE_ID_1);
+        Appliance appliance2 = applianceManager.getAppliance(APPLIANCE_ID_2);
+
+        MockHttpServletResponse response = setConfigurationBatch(null,
+                createSchedulesConfiguration(APPLIANCE_ID_1, 3600),
+                createSchedulesConfiguration(APPLIANCE_ID_1, 5400));
+
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        Mockito.verify(fileHandler, Mockito.times(1)).save(any(Appliances.class));
+        Mockito.verify(fileHandler, Mockito.never()).save(any(Device2EM.class));
+        // the changed appliance has been replaced by a copy reloaded from the saved configuration
+        assertNotSame(appliance1, applianceManager.getAppliance(APPLIANCE_ID_1));
+        assertEquals(5400, getMinRunningTime(APPLIANCE_ID_1));
+        assertSame(appliance2, applianceManager.getAppliance(APPLIANCE_ID_2));
+    }
+
+    @Test
+    public void setConfigurationBatch_UnknownAppliance_RolledBack() {
+        startAppliances(createAppliance(APPLIANCE_ID_1, 1800));
+        long savedChecksum = fileHandler.getChecksum(Appliances.class, Device2EM.class);
+
+        MockHttpServletResponse response = setConfigurationBatch(null,
+                createSchedulesConfiguration(APPLIANCE_ID_1, 3600),
+                createSchedulesConfiguration("F-00000001-000000000099-00", 3600));
+
+        assertEquals(HttpServletResponse.SC_NOT_FOUND, response.getStatus());
+        Mockito.verify(fileHandler, Mockito.never()).save(any());
+        assertEquals(savedChecksum, fileHandler.getChecksum(Appliances.class, Device2EM.class));
+        assertEquals(1800, getMinRunningTime(APPLIANCE_ID_1));
+    }
+
+    @Test
+    public void setConfigurationBatch_StaleETag() {
+        startAppliances(createAppliance(APPLIANCE_ID_1, 1800));
+        String etag = getConfigurationBatch(null).getHeader(HttpHeaders.ETAG);
+        assertEquals(HttpServletResponse.SC_OK,
+                setConfigurationBatch(etag, createSchedulesConfiguration(APPLIANCE_ID_1, 3600)).getStatus());
+
+        MockHttpServletResponse response = setConfigurationBatch(etag,
+                createSchedulesConfiguration(APPLIANCE_ID_1, 5400));
+
+        assertEquals(HttpServletResponse.SC_PRECONDITION_FAILED, response.getStatus());
+        Mockito.verify(fileHandler, Mockito.times(1)).save(any(Appliances.class));
+        assertEquals(3600, getMinRunningTime(APPLIANCE_ID_1));
+    }
+
+    @Test
+    public void getConfigurationBatch_NotModified() throws Exception {
+        startAppliances(createAppliance(APPLIANCE_ID_1, 1800));
+        MockHttpServletResponse response = getConfigurationBatch(null);
+        assertEquals(HttpServletResponse.SC_OK, response.getStatus());
+        String etag = response.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertTrue(response.getContentAsString().contains(APPLIANCE_ID_1));
+
+        response = getConfigurationBatch(etag);
+        assertEquals(HttpServletResponse.SC_NOT_MODIFIED, response.getStatus());
+        assertEquals(0, response.getContentLength());
+
+        // the ETag changes with the saved configuration
+        setConfigurationBatch(etag, createSchedulesConfiguration(APPLIANCE_ID_1, 3600));
+        assertEquals(HttpServletResponse.SC_OK, getConfigurationBatch(etag).getStatus());
+    }
+
+    @Test
+    public void setConfigurationBatch_DependentChargerRestarted() {
+        ElectricVehicleCharger evCharger = new ElectricVehicleCharger();
+        evCharger.setControl(createEVHttpControl());
+        SurplusControl surplusControl = new SurplusControl();
+        surplusControl.setMeterApplianceId(APPLIANCE_ID_1);
+        evCharger.setSurplusControl(surplusControl);
+        Appliance chargerAppliance = new ApplianceBuilder(CHARGER_ID).build(false);
+        chargerAppliance.setControl(evCharger);
+        startAppliances(createAppliance(APPLIANCE_ID_1, 1800), createAppliance(APPLIANCE_ID_2, 1800),
+                chargerAppliance);
+        Appliance charger = applianceManager.getAppliance(CHARGER_ID);
+        Appliance appliance2 = applianceManager.getAppliance(APPLIANCE_ID_2);
+
+        setConfigurationBatch(null, createSchedulesConfiguration(APPLIANCE_ID_1, 3600));
+
+        // the charger has to resolve the meter of the replaced appliance again
+        assertNotSame(charger, applianceManager.getAppliance(CHARGER_ID));
+        assertSame(appliance2, applianceManager.getAppliance(APPLIANCE_ID_2));
+    }
+}
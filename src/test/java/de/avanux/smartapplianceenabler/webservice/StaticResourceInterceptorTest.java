@@ -0,0 +1,57 @@
+/*
+ * Copyright (C) 2020 Axel Müller <axel.mueller@avanux.de>
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA.
+ */
+
+package de.avanux.smartapplianceenabler.webservice;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.ClassPathResource;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class StaticResourceInterceptorTest {
+
+    @Test
+    public void isFingerprinted() {
+        assertTrue(StaticResourceInterceptor.isFingerprinted("main.0a1b2c3d4e5f60718293.js"));
+        assertTrue(StaticResourceInterceptor.isFingerprinted("styles.3f2a1b0c9d8e7f6a5b4c.css"));
+        assertTrue(StaticResourceInterceptor.isFingerprinted("flags.9a8b7c6d5e4f3a2b1c0d.svg"));
+        assertFalse(StaticResourceInterceptor.isFingerprinted("index.html"));
+        assertFalse(StaticResourceInterceptor.isFingerprinted("favicon.ico"));
+        assertFalse(StaticResourceInterceptor.isFingerprinted("main.js"));
+        assertFalse(StaticResourceInterceptor.isFingerprinted("de.json"));
+    }
+
+    @Test
+    public void getIndexEtag() {
+        StaticResourceInterceptor interceptor = new StaticResourceInterceptor(
+                new ByteArrayResource("<html></html>".getBytes(StandardCharsets.UTF_8)));
+        String etag = interceptor.getIndexEtag();
+        assertTrue(etag.matches("W/\"[0-9a-f]{32}\""));
+        assertEquals(etag, interceptor.getIndexEtag());
+    }
+
+    @Test
+    public void getIndexEtag_noIndex() {
+        StaticResourceInterceptor interceptor = new StaticResourceInterceptor(
+                new ClassPathResource("static/doesNotExist.html"));
+        assertNull(interceptor.getIndexEtag());
+    }
+}